@@ -34,9 +34,13 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.SortedMap;
 import java.util.function.Function;
 
@@ -91,6 +95,10 @@ public interface CachedMetaData extends CachedData {
      *     getMetaValue("my-int-val", Integer::parseInt).orElse(0);
      * </pre></blockquote>
      *
+     * <p>For integer, long, double, boolean and duration values, prefer the
+     * dedicated methods (e.g. {@link #getIntegerMetaValue(String)}), which
+     * cache the parsed result.</p>
+     *
      * @param key the key
      * @param valueTransformer the transformer used to transform the value
      * @param <T> the type of the transformed result
@@ -107,6 +115,85 @@ public interface CachedMetaData extends CachedData {
         });
     }
 
+    /**
+     * Gets a value for the given meta key, parsed as an integer.
+     *
+     * <p>If no such meta value exists, or the value is not a valid integer,
+     * an {@link OptionalInt#empty() empty optional} is returned.</p>
+     *
+     * <p>The parsed value is cached alongside the raw value, so unlike
+     * {@link #getMetaValue(String, Function)}, repeated calls do not re-parse
+     * the value or allocate.</p>
+     *
+     * @param key the key
+     * @return the parsed meta value
+     * @since 5.5
+     */
+    @NonNull OptionalInt getIntegerMetaValue(@NonNull String key);
+
+    /**
+     * Gets a value for the given meta key, parsed as a long.
+     *
+     * <p>If no such meta value exists, or the value is not a valid long,
+     * an {@link OptionalLong#empty() empty optional} is returned.</p>
+     *
+     * <p>The parsed value is cached alongside the raw value, so repeated
+     * calls do not re-parse the value or allocate.</p>
+     *
+     * @param key the key
+     * @return the parsed meta value
+     * @since 5.5
+     */
+    @NonNull OptionalLong getLongMetaValue(@NonNull String key);
+
+    /**
+     * Gets a value for the given meta key, parsed as a double.
+     *
+     * <p>If no such meta value exists, or the value is not a valid double,
+     * an {@link OptionalDouble#empty() empty optional} is returned.</p>
+     *
+     * <p>The parsed value is cached alongside the raw value, so repeated
+     * calls do not re-parse the value or allocate.</p>
+     *
+     * @param key the key
+     * @return the parsed meta value
+     * @since 5.5
+     */
+    @NonNull OptionalDouble getDoubleMetaValue(@NonNull String key);
+
+    /**
+     * Gets a value for the given meta key, parsed as a boolean.
+     *
+     * <p>Only {@code true} and {@code false} (ignoring case) are accepted. If
+     * no such meta value exists, or the value is not one of these, an
+     * {@link Optional#empty() empty optional} is returned.</p>
+     *
+     * <p>The parsed value is cached alongside the raw value, so repeated
+     * calls do not re-parse the value or allocate.</p>
+     *
+     * @param key the key
+     * @return the parsed meta value
+     * @since 5.5
+     */
+    @NonNull Optional<Boolean> getBooleanMetaValue(@NonNull String key);
+
+    /**
+     * Gets a value for the given meta key, parsed as a {@link Duration}.
+     *
+     * <p>Values are accepted either as a whole number of seconds, or in the
+     * same format used for temporary durations in commands (e.g. {@code 1d12h}).
+     * If no such meta value exists, or the value cannot be parsed, an
+     * {@link Optional#empty() empty optional} is returned.</p>
+     *
+     * <p>The parsed value is cached alongside the raw value, so repeated
+     * calls do not re-parse the value or allocate.</p>
+     *
+     * @param key the key
+     * @return the parsed meta value
+     * @since 5.5
+     */
+    @NonNull Optional<Duration> getDurationMetaValue(@NonNull String key);
+
     /**
      * Query for a prefix.
      * 
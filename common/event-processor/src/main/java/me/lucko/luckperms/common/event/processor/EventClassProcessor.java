@@ -0,0 +1,333 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.event.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.ExecutableType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Generates implementations of the LuckPerms event interfaces at build time.
+ *
+ * <p>For each event interface listed in the {@code GenerateEventClasses} annotation,
+ * a class is generated which extends {@code AbstractEvent}, holds each {@code @Param}
+ * property in a final field, and accepts the properties (in {@code @Param} order)
+ * through its constructor. An index of the generated classes is also written.</p>
+ */
+@SupportedAnnotationTypes(EventClassProcessor.TRIGGER_ANNOTATION)
+public class EventClassProcessor extends AbstractProcessor {
+    static final String TRIGGER_ANNOTATION = "me.lucko.luckperms.common.event.gen.GenerateEventClasses";
+
+    private static final String PARAM_ANNOTATION = "net.luckperms.api.event.util.Param";
+    private static final String API_EVENT_PACKAGE = "net.luckperms.api.event";
+    private static final String GENERATED_PACKAGE = "me.lucko.luckperms.common.event.gen";
+    private static final String ABSTRACT_EVENT = GENERATED_PACKAGE + ".AbstractEvent";
+    private static final String LUCKPERMS_EVENT = API_EVENT_PACKAGE + ".LuckPermsEvent";
+    private static final String INDEX_CLASS = GENERATED_PACKAGE + ".GeneratedEvents";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                try {
+                    Map<String, String> generated = new LinkedHashMap<>();
+                    for (TypeElement eventType : getEventTypes(element)) {
+                        generated.put(eventType.getQualifiedName().toString(), generateEventClass(eventType, element));
+                    }
+                    generateIndex(generated, element);
+                } catch (IOException | IllegalStateException e) {
+                    this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to generate event classes: " + e.getMessage(), element);
+                }
+            }
+        }
+        return true;
+    }
+
+    private List<TypeElement> getEventTypes(Element element) {
+        List<TypeElement> eventTypes = new ArrayList<>();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(TRIGGER_ANNOTATION)) {
+                continue;
+            }
+
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (!entry.getKey().getSimpleName().contentEquals("value")) {
+                    continue;
+                }
+
+                @SuppressWarnings("unchecked")
+                List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) entry.getValue().getValue();
+                for (AnnotationValue value : values) {
+                    eventTypes.add((TypeElement) this.processingEnv.getTypeUtils().asElement((TypeMirror) value.getValue()));
+                }
+            }
+        }
+        return eventTypes;
+    }
+
+    private List<Property> getProperties(TypeElement eventType) {
+        DeclaredType declaredType = (DeclaredType) eventType.asType();
+        Map<String, Property> properties = new LinkedHashMap<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(eventType))) {
+            Integer index = getParamIndex(method);
+            if (index == null) {
+                continue;
+            }
+
+            String name = method.getSimpleName().toString();
+            if (properties.containsKey(name)) {
+                continue;
+            }
+
+            // resolve the return type as seen from the event type, so type arguments
+            // passed to generic super interfaces (e.g. ResultEvent<T>) are substituted
+            ExecutableType methodType = (ExecutableType) this.processingEnv.getTypeUtils().asMemberOf(declaredType, method);
+            properties.put(name, new Property(name, index, typeName(methodType.getReturnType())));
+        }
+
+        List<Property> sorted = new ArrayList<>(properties.values());
+        sorted.sort(Comparator.comparingInt(p -> p.index));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i - 1).index == sorted.get(i).index) {
+                throw new IllegalStateException("duplicate @Param index " + sorted.get(i).index + " in " + eventType.getQualifiedName());
+            }
+        }
+        return sorted;
+    }
+
+    private static Integer getParamIndex(ExecutableElement method) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(PARAM_ANNOTATION)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                if (entry.getKey().getSimpleName().contentEquals("value")) {
+                    return ((Number) entry.getValue().getValue()).intValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the source representation of a type, with any type annotations removed.
+     *
+     * @param type the type
+     * @return the source representation
+     */
+    private String typeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case CHAR:
+            case FLOAT:
+            case DOUBLE:
+                return type.getKind().name().toLowerCase(Locale.ROOT);
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED: {
+                DeclaredType declaredType = (DeclaredType) type;
+                String name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+                if (declaredType.getTypeArguments().isEmpty()) {
+                    return name;
+                }
+                StringJoiner arguments = new StringJoiner(", ", name + "<", ">");
+                for (TypeMirror argument : declaredType.getTypeArguments()) {
+                    arguments.add(typeName(argument));
+                }
+                return arguments.toString();
+            }
+            case WILDCARD: {
+                WildcardType wildcardType = (WildcardType) type;
+                if (wildcardType.getExtendsBound() != null) {
+                    return "? extends " + typeName(wildcardType.getExtendsBound());
+                }
+                if (wildcardType.getSuperBound() != null) {
+                    return "? super " + typeName(wildcardType.getSuperBound());
+                }
+                return "?";
+            }
+            case TYPEVAR:
+                return typeName(this.processingEnv.getTypeUtils().erasure(type));
+            default:
+                throw new IllegalStateException("unsupported type: " + type);
+        }
+    }
+
+    private String generateEventClass(TypeElement eventType, Element origin) throws IOException {
+        String eventTypeName = eventType.getQualifiedName().toString();
+        String packageName = this.processingEnv.getElementUtils().getPackageOf(eventType).getQualifiedName().toString();
+        if (!packageName.startsWith(API_EVENT_PACKAGE)) {
+            throw new IllegalStateException(eventTypeName + " is not in the " + API_EVENT_PACKAGE + " package");
+        }
+
+        String generatedPackage = GENERATED_PACKAGE + packageName.substring(API_EVENT_PACKAGE.length());
+        String simpleName = eventType.getSimpleName().toString();
+        String className = simpleName + "Impl";
+        List<Property> properties = getProperties(eventType);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by ").append(EventClassProcessor.class.getName()).append(" - do not edit\n");
+        sb.append("package ").append(generatedPackage).append(";\n\n");
+        sb.append("/**\n * Generated implementation of {@link ").append(eventTypeName).append("}.\n */\n");
+        sb.append("public final class ").append(className).append(" extends ").append(ABSTRACT_EVENT)
+                .append(" implements ").append(eventTypeName).append(" {\n");
+
+        // fields
+        for (Property property : properties) {
+            sb.append("    private final ").append(property.type).append(' ').append(property.name).append(";\n");
+        }
+        if (!properties.isEmpty()) {
+            sb.append('\n');
+        }
+
+        // constructor
+        sb.append("    public ").append(className).append("(net.luckperms.api.LuckPerms api");
+        for (Property property : properties) {
+            sb.append(", ").append(property.type).append(' ').append(property.name);
+        }
+        sb.append(") {\n        super(api);\n");
+        for (Property property : properties) {
+            sb.append("        this.").append(property.name).append(" = ").append(property.name).append(";\n");
+        }
+        sb.append("    }\n");
+
+        // accessors
+        for (Property property : properties) {
+            sb.append("\n    @Override\n");
+            sb.append("    public ").append(property.type).append(' ').append(property.name).append("() {\n");
+            sb.append("        return this.").append(property.name).append(";\n");
+            sb.append("    }\n");
+        }
+
+        // event type
+        sb.append("\n    @Override\n");
+        sb.append("    public java.lang.Class<? extends ").append(LUCKPERMS_EVENT).append("> getEventType() {\n");
+        sb.append("        return ").append(eventTypeName).append(".class;\n");
+        sb.append("    }\n");
+
+        // toString
+        sb.append("\n    @Override\n");
+        sb.append("    public java.lang.String toString() {\n");
+        sb.append("        return \"").append(simpleName).append("{\"");
+        for (int i = 0; i < properties.size(); i++) {
+            Property property = properties.get(i);
+            sb.append(" + \"").append(i == 0 ? "" : ", ").append(property.name).append("=\" + this.").append(property.name);
+        }
+        sb.append(" + \"}\";\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        String generatedName = generatedPackage + "." + className;
+        write(generatedName, sb.toString(), origin);
+        return generatedName;
+    }
+
+    private void generateIndex(Map<String, String> generated, Element origin) throws IOException {
+        String simpleName = INDEX_CLASS.substring(GENERATED_PACKAGE.length() + 1);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by ").append(EventClassProcessor.class.getName()).append(" - do not edit\n");
+        sb.append("package ").append(GENERATED_PACKAGE).append(";\n\n");
+        sb.append("/**\n * Index of the generated event implementation classes.\n */\n");
+        sb.append("public final class ").append(simpleName).append(" {\n");
+        sb.append("    private ").append(simpleName).append("() {}\n\n");
+        sb.append("    private static final java.util.Map<java.lang.Class<? extends ").append(LUCKPERMS_EVENT)
+                .append(">, java.lang.Class<? extends ").append(ABSTRACT_EVENT).append(">> IMPLEMENTATIONS;\n\n");
+        sb.append("    static {\n");
+        sb.append("        java.util.Map<java.lang.Class<? extends ").append(LUCKPERMS_EVENT)
+                .append(">, java.lang.Class<? extends ").append(ABSTRACT_EVENT).append(">> map = new java.util.LinkedHashMap<>();\n");
+        for (Map.Entry<String, String> entry : generated.entrySet()) {
+            sb.append("        map.put(").append(entry.getKey()).append(".class, ").append(entry.getValue()).append(".class);\n");
+        }
+        sb.append("        IMPLEMENTATIONS = java.util.Collections.unmodifiableMap(map);\n");
+        sb.append("    }\n\n");
+        sb.append("    /**\n     * Gets the event types which have a generated implementation.\n     *\n     * @return the event types\n     */\n");
+        sb.append("    public static java.util.Set<java.lang.Class<? extends ").append(LUCKPERMS_EVENT).append(">> getEventTypes() {\n");
+        sb.append("        return IMPLEMENTATIONS.keySet();\n");
+        sb.append("    }\n\n");
+        sb.append("    /**\n     * Gets the generated implementation of the given event type.\n     *\n");
+        sb.append("     * @param eventType the event type\n     * @return the implementation class, or null if there isn't one\n     */\n");
+        sb.append("    public static java.lang.Class<? extends ").append(ABSTRACT_EVENT).append("> getImplementation(java.lang.Class<? extends ")
+                .append(LUCKPERMS_EVENT).append("> eventType) {\n");
+        sb.append("        return IMPLEMENTATIONS.get(eventType);\n");
+        sb.append("    }\n");
+        sb.append("}\n");
+
+        write(INDEX_CLASS, sb.toString(), origin);
+    }
+
+    private void write(String className, String source, Element origin) throws IOException {
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(className, origin).openWriter()) {
+            writer.write(source);
+        }
+    }
+
+    private static final class Property {
+        private final String name;
+        private final int index;
+        private final String type;
+
+        Property(String name, int index, String type) {
+            this.name = name;
+            this.index = index;
+            this.type = type;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.context;
+
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.context.ImmutableContextSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares context satisfaction checks using context ids against the
+ * by-value comparison, for node context sets of 2-8 entries checked against
+ * a typical player context set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextSetSatisfyBenchmark {
+
+    private static final String[] KEYS = {"server", "world", "gamemode", "dimension-type", "instance", "region", "team", "proxy"};
+    private static final String[] VALUES = {"lobby", "survival", "creative", "overworld", "the_nether", "spawn", "red", "blue"};
+
+    @Param({"2", "4", "8"})
+    public int size;
+
+    @Param({"AT_LEAST_ONE_VALUE_PER_KEY", "ALL_VALUES_PER_KEY"})
+    public ContextSatisfyMode mode;
+
+    private ImmutableContextSetImpl[] nodeContexts;
+    private ImmutableContextSetImpl playerContexts;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+
+        // a player has one value for most keys
+        ImmutableContextSet.Builder player = new ImmutableContextSetImpl.BuilderImpl();
+        for (String key : KEYS) {
+            player.add(key, VALUES[random.nextInt(VALUES.length)]);
+        }
+        this.playerContexts = (ImmutableContextSetImpl) player.build();
+
+        // node contexts - a mix of sets which are and aren't satisfied
+        this.nodeContexts = new ImmutableContextSetImpl[64];
+        for (int i = 0; i < this.nodeContexts.length; i++) {
+            ImmutableContextSet.Builder builder = new ImmutableContextSetImpl.BuilderImpl();
+            for (int j = 0; j < this.size; j++) {
+                String key = KEYS[random.nextInt(KEYS.length)];
+                String value = random.nextBoolean()
+                        ? this.playerContexts.getAnyValue(key).orElse(VALUES[0])
+                        : VALUES[random.nextInt(VALUES.length)];
+                builder.add(key, value);
+            }
+            this.nodeContexts[i] = (ImmutableContextSetImpl) builder.build();
+        }
+
+        // compute ids up front
+        for (ImmutableContextSetImpl set : this.nodeContexts) {
+            set.otherContainsAll(this.playerContexts, this.mode);
+        }
+    }
+
+    @Benchmark
+    public void ids(Blackhole bh) {
+        for (ImmutableContextSetImpl set : this.nodeContexts) {
+            bh.consume(set.otherContainsAll(this.playerContexts, this.mode));
+        }
+    }
+
+    @Benchmark
+    public void byValue(Blackhole bh) {
+        for (ImmutableContextSetImpl set : this.nodeContexts) {
+            bh.consume(set.otherContainsAllByValue(this.playerContexts, this.mode));
+        }
+    }
+
+}
@@ -28,8 +28,9 @@ package me.lucko.luckperms.common.backup;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
@@ -38,40 +39,65 @@ import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
-import me.lucko.luckperms.common.util.CompletableFutures;
 import me.lucko.luckperms.common.util.Uuids;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.event.cause.CreationCause;
 import net.luckperms.api.model.data.DataType;
 import net.luckperms.api.node.Node;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles import operations
+ *
+ * <p>The data is read as a stream, twice. The first pass only checks that
+ * every entry can be read, so that malformed data is rejected before anything
+ * is imported. On the second pass, each entry is scheduled for import as soon
+ * as it has been read. The number of entries read but not yet imported is
+ * bounded, so the full dataset is never held in memory.</p>
  */
 public class Importer implements Runnable {
 
+    /** The maximum number of entries which can be waiting to be imported at once */
+    private static final int MAX_IN_FLIGHT = 1000;
+
+    /** How often progress reports are sent */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(2);
+
     private final LuckPermsPlugin plugin;
     private final Set<Sender> notify;
-    private final JsonObject data;
+    private final Reader reader;
+    private final Source source;
     private final boolean merge;
 
-    public Importer(LuckPermsPlugin plugin, Sender executor, JsonObject data, boolean merge) {
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final AtomicInteger processedCount = new AtomicInteger(0);
+    private ExecutorService executor;
+    private boolean validating;
+    private int total = 0;
+    private long lastProgress = 0;
+
+    /**
+     * Creates a new importer.
+     *
+     * @param plugin the plugin
+     * @param executor the sender who started the import
+     * @param reader a reader for the data, used to check it can be read
+     * @param source the source of the data, opened again to import it
+     * @param merge if the data should be merged with the existing data
+     */
+    public Importer(LuckPermsPlugin plugin, Sender executor, Reader reader, Source source, boolean merge) {
         this.plugin = plugin;
 
         if (executor.isConsole()) {
@@ -79,22 +105,11 @@ public class Importer implements Runnable {
         } else {
             this.notify = ImmutableSet.of(executor, plugin.getConsoleSender());
         }
-        this.data = data;
+        this.reader = reader;
+        this.source = source;
         this.merge = merge;
     }
 
-    private static final class UserData {
-        private final String username;
-        private final String primaryGroup;
-        private final Set<Node> nodes;
-
-        UserData(String username, String primaryGroup, Set<Node> nodes) {
-            this.username = username;
-            this.primaryGroup = primaryGroup;
-            this.nodes = nodes;
-        }
-    }
-
     private void processGroup(String groupName, Set<Node> nodes) {
         Group group = this.plugin.getStorage().createAndLoadGroup(groupName, CreationCause.INTERNAL).join();
         if (this.merge) {
@@ -111,42 +126,130 @@ public class Importer implements Runnable {
         this.plugin.getStorage().saveTrack(track).join();
     }
 
-    private void processUser(UUID uuid, UserData userData) {
-        User user = this.plugin.getStorage().loadUser(uuid, userData.username).join();
-        if (userData.primaryGroup != null) {
-            user.getPrimaryGroup().setStoredValue(userData.primaryGroup);
+    private void processUser(UUID uuid, String username, String primaryGroup, Set<Node> nodes) {
+        User user = this.plugin.getStorage().loadUser(uuid, username).join();
+        if (primaryGroup != null) {
+            user.getPrimaryGroup().setStoredValue(primaryGroup);
         }
         if (this.merge) {
-            user.mergeNodes(DataType.NORMAL, userData.nodes);
+            user.mergeNodes(DataType.NORMAL, nodes);
         } else {
-            user.setNodes(DataType.NORMAL, userData.nodes, false);
+            user.setNodes(DataType.NORMAL, nodes, false);
         }
         this.plugin.getStorage().saveUser(user).join();
         this.plugin.getUserManager().getHouseKeeper().cleanup(user.getUniqueId());
     }
 
-    private Set<Map.Entry<String, JsonElement>> getDataSection(String id) {
-        if (this.data.has(id)) {
-            return this.data.get(id).getAsJsonObject().entrySet();
-        } else {
-            return Collections.emptySet();
+    /**
+     * Schedules a task to import an entry, waiting for a free slot if too many
+     * entries are already waiting to be imported.
+     *
+     * @param task the task
+     * @throws InterruptedException if interrupted whilst waiting
+     */
+    private void schedule(Runnable task) throws InterruptedException {
+        // the first pass only counts the entries
+        if (this.validating) {
+            this.total++;
+            return;
+        }
+
+        while (!this.inFlight.tryAcquire(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+            sendProgress();
+        }
+
+        this.executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Exception whilst importing data", e);
+            } finally {
+                this.processedCount.incrementAndGet();
+                this.inFlight.release();
+            }
+        });
+
+        long now = System.currentTimeMillis();
+        if (now - this.lastProgress >= PROGRESS_INTERVAL) {
+            sendProgress();
         }
     }
 
-    private void parseExportData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        for (Map.Entry<String, JsonElement> group : getDataSection("groups")) {
-            groups.put(group.getKey(), NodeJsonSerializer.deserializeNodes(group.getValue().getAsJsonObject().get("nodes").getAsJsonArray()));
+    private static JsonObject readObject(JsonReader reader) {
+        return GsonProvider.normal().fromJson(reader, JsonObject.class);
+    }
+
+    private static List<String> readTrackGroups(JsonObject jsonData) {
+        JsonArray trackGroups = jsonData.get("groups").getAsJsonArray();
+        List<String> trackGroupsList = new ArrayList<>();
+        trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
+        return trackGroupsList;
+    }
+
+    private void readData(JsonReader reader) throws IOException, InterruptedException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "groups":
+                    readGroups(reader);
+                    break;
+                case "tracks":
+                    readTracks(reader);
+                    break;
+                case "users":
+                    readUsers(reader);
+                    break;
+                case "permissionHolders":
+                    this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
+                    readWebEditorHolders(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readGroups(JsonReader reader) throws IOException, InterruptedException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Set<Node> nodes = NodeJsonSerializer.deserializeNodes(readObject(reader).get("nodes").getAsJsonArray());
+            schedule(() -> processGroup(name, nodes));
         }
-        for (Map.Entry<String, JsonElement> track : getDataSection("tracks")) {
-            JsonArray trackGroups = track.getValue().getAsJsonObject().get("groups").getAsJsonArray();
-            List<String> trackGroupsList = new ArrayList<>();
-            trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(track.getKey(), trackGroupsList);
+        reader.endObject();
+    }
+
+    private void readTracks(JsonReader reader) throws IOException, InterruptedException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            // web editor format
+            reader.beginArray();
+            while (reader.hasNext()) {
+                JsonObject jsonData = readObject(reader);
+                String name = jsonData.get("id").getAsString();
+                List<String> groups = readTrackGroups(jsonData);
+                schedule(() -> processTrack(name, groups));
+            }
+            reader.endArray();
+            return;
         }
-        for (Map.Entry<String, JsonElement> user : getDataSection("users")) {
-            JsonObject jsonData = user.getValue().getAsJsonObject();
 
-            UUID uuid = UUID.fromString(user.getKey());
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            List<String> groups = readTrackGroups(readObject(reader));
+            schedule(() -> processTrack(name, groups));
+        }
+        reader.endObject();
+    }
+
+    private void readUsers(JsonReader reader) throws IOException, InterruptedException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            UUID uuid = UUID.fromString(reader.nextName());
+            JsonObject jsonData = readObject(reader);
+
             String username = null;
             String primaryGroup = null;
             Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
@@ -158,45 +261,32 @@ public class Importer implements Runnable {
                 primaryGroup = jsonData.get("primaryGroup").getAsString();
             }
 
-            users.put(uuid, new UserData(username, primaryGroup, nodes));
+            String finalUsername = username;
+            String finalPrimaryGroup = primaryGroup;
+            schedule(() -> processUser(uuid, finalUsername, finalPrimaryGroup, nodes));
         }
+        reader.endObject();
     }
 
-    private void parseWebEditorData(Map<String, Set<Node>> groups, Map<String, List<String>> tracks, Map<UUID, UserData> users) {
-        JsonArray holdersArray = this.data.get("permissionHolders").getAsJsonArray();
-        for (JsonElement holderElement : holdersArray) {
-            JsonObject jsonData = holderElement.getAsJsonObject();
+    private void readWebEditorHolders(JsonReader reader) throws IOException, InterruptedException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            JsonObject jsonData = readObject(reader);
 
             HolderType type = HolderType.valueOf(jsonData.get("type").getAsString().toUpperCase(Locale.ROOT));
             String id = jsonData.get("id").getAsString();
+            Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
 
             if (type == HolderType.GROUP) {
-                groups.put(id, NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray()));
+                schedule(() -> processGroup(id, nodes));
             } else {
                 UUID uuid = UUID.fromString(id);
-                String username = null;
-
                 String displayName = jsonData.get("displayName").getAsString();
-                if (!Uuids.PREDICATE.test(displayName)) {
-                    username = displayName;
-                }
-
-                Set<Node> nodes = NodeJsonSerializer.deserializeNodes(jsonData.get("nodes").getAsJsonArray());
-                users.put(uuid, new UserData(username, null, nodes));
+                String username = Uuids.PREDICATE.test(displayName) ? null : displayName;
+                schedule(() -> processUser(uuid, username, null, nodes));
             }
         }
-
-        JsonArray tracksArray = this.data.get("tracks").getAsJsonArray();
-        for (JsonElement trackElement : tracksArray) {
-            JsonObject jsonData = trackElement.getAsJsonObject();
-
-            String name = jsonData.get("id").getAsString();
-            JsonArray trackGroups = jsonData.get("groups").getAsJsonArray();
-
-            List<String> trackGroupsList = new ArrayList<>();
-            trackGroups.forEach(g -> trackGroupsList.add(g.getAsString()));
-            tracks.put(name, trackGroupsList);
-        }
+        reader.endArray();
     }
 
     @Override
@@ -204,93 +294,92 @@ public class Importer implements Runnable {
         long startTime = System.currentTimeMillis();
         this.notify.forEach(Message.IMPORT_START::send);
 
-        // start an update task in the background - we'll #join this later
-        CompletableFuture<Void> updateTask = CompletableFuture.runAsync(() -> this.plugin.getSyncTaskBuffer().requestDirectly());
-
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data..."));
-
-        Map<String, Set<Node>> groups = new HashMap<>();
-        Map<String, List<String>> tracks = new HashMap<>();
-        Map<UUID, UserData> users = new HashMap<>();
-
-        if (this.data.has("knownPermissions")) {
-            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "The data appears to be from a web editor upload - attempting to recover from it"));
-            parseWebEditorData(groups, tracks, users);
-        } else {
-            parseExportData(groups, tracks, users);
-        }
-
+        // run an update task before any data is imported
         this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Waiting for initial update task to complete..."));
-
-        // join the update task future before scheduling command executions
-        updateTask.join();
+        this.plugin.getSyncTaskBuffer().requestDirectly();
+
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Checking the data can be read..."));
+
+        this.validating = true;
+        try (JsonReader reader = new JsonReader(this.reader)) {
+            readData(reader);
+        } catch (IOException | RuntimeException e) {
+            this.plugin.getLogger().warn("Error whilst reading import data", e);
+            this.notify.forEach(Message.IMPORT_FILE_READ_FAILURE::send);
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "No data has been imported."));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        this.validating = false;
 
         this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Setting up data processor..."));
 
         // create a threadpool for the processing
-        ExecutorService executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
-
-        // A set of futures, which are really just the processes we need to wait for.
-        Set<CompletableFuture<Void>> futures = new HashSet<>();
-
-        int total = 0;
-        AtomicInteger processedCount = new AtomicInteger(0);
-
-        for (Map.Entry<String, Set<Node>> group : groups.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(group).thenAcceptAsync(ent -> {
-                processGroup(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
+        this.executor = Executors.newFixedThreadPool(16, new ThreadFactoryBuilder().setNameFormat("luckperms-importer-%d").build());
+
+        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Reading data and scheduling entries for import..."));
+
+        boolean success = true;
+        try (JsonReader reader = new JsonReader(this.source.open())) {
+            readData(reader);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            success = false;
+        } catch (Exception e) {
+            // the data could be read before, so this is an I/O error rather than malformed data
+            this.plugin.getLogger().warn("Error whilst reading import data", e);
+            this.notify.forEach(Message.IMPORT_FILE_READ_FAILURE::send);
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "Only the entries read so far will be imported."));
+            success = false;
         }
-        for (Map.Entry<String, List<String>> track : tracks.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(track).thenAcceptAsync(ent -> {
-                processTrack(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
-        }
-        for (Map.Entry<UUID, UserData> user : users.entrySet()) {
-            futures.add(CompletableFuture.completedFuture(user).thenAcceptAsync(ent -> {
-                processUser(ent.getKey(), ent.getValue());
-                processedCount.incrementAndGet();
-            }, executor));
-            total++;
-        }
-
-        // all of the threads have been scheduled now and are running. we just need to wait for them all to complete
-        CompletableFuture<Void> overallFuture = CompletableFutures.allOf(futures);
 
-        this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been processed and scheduled for import - now waiting for the execution to complete."));
+        if (success) {
+            this.notify.forEach(s -> Message.IMPORT_INFO.send(s, "All data entries have been read and scheduled for import - now waiting for the execution to complete."));
+        }
 
-        while (true) {
-            try {
-                overallFuture.get(2, TimeUnit.SECONDS);
-            } catch (InterruptedException | ExecutionException e) {
-                // abnormal error - just break
-                e.printStackTrace();
-                break;
-            } catch (TimeoutException e) {
-                // still executing - send a progress report and continue waiting
-                sendProgress(processedCount.get(), total);
-                continue;
+        // wait for all of the scheduled entries to complete
+        try {
+            while (!this.inFlight.tryAcquire(MAX_IN_FLIGHT, PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+                sendProgress();
             }
-
-            // process is complete
-            break;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        executor.shutdown();
+        this.executor.shutdown();
 
-        long endTime = System.currentTimeMillis();
-        double seconds = (endTime - startTime) / 1000.0;
+        if (success) {
+            long endTime = System.currentTimeMillis();
+            double seconds = (endTime - startTime) / 1000.0;
 
-        this.notify.forEach(s -> Message.IMPORT_END_COMPLETE.send(s, seconds));
+            this.notify.forEach(s -> Message.IMPORT_END_COMPLETE.send(s, seconds));
+        }
     }
 
-    private void sendProgress(int processedCount, int total) {
-        int percent = processedCount * 100 / total;
+    private void sendProgress() {
+        this.lastProgress = System.currentTimeMillis();
+
+        int processedCount = this.processedCount.get();
+        int total = this.total;
+        int percent = total == 0 ? 0 : processedCount * 100 / total;
         this.notify.forEach(s -> Message.IMPORT_PROGRESS.send(s, percent, processedCount, total));
     }
 
+    /**
+     * A source of import data which can be read more than once.
+     */
+    @FunctionalInterface
+    public interface Source {
+
+        /**
+         * Opens a new reader for the data.
+         *
+         * @return the reader
+         * @throws Exception if an error occurs
+         */
+        Reader open() throws Exception;
+    }
+
 }
@@ -66,4 +66,10 @@ public class LoadingMap<K, V> extends ForwardingMap<K, V> implements Map<K, V> {
         //noinspection unchecked
         return this.map.computeIfAbsent((K) key, this.function);
     }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        // delegate directly, the default implementation would load absent keys
+        return this.map.replace(key, oldValue, newValue);
+    }
 }
\ No newline at end of file
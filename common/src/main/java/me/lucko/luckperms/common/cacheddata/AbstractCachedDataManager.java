@@ -25,8 +25,10 @@
 
 package me.lucko.luckperms.common.cacheddata;
 
-import me.lucko.luckperms.common.cache.LoadingMap;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.MetaSources;
 import me.lucko.luckperms.common.cacheddata.type.MonitoredMetaCache;
 import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
@@ -34,6 +36,7 @@ import me.lucko.luckperms.common.calculator.PermissionCalculator;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.CompletableFutures;
+import me.lucko.luckperms.common.util.Difference;
 import net.luckperms.api.cacheddata.CachedData;
 import net.luckperms.api.cacheddata.CachedDataManager;
 import net.luckperms.api.cacheddata.CachedMetaData;
@@ -41,14 +44,20 @@ import net.luckperms.api.cacheddata.CachedPermissionData;
 import net.luckperms.api.metastacking.MetaStackDefinition;
 import net.luckperms.api.node.ChatMetaType;
 import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeType;
 import net.luckperms.api.query.QueryOptions;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.IntFunction;
@@ -60,11 +69,12 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
     private final LuckPermsPlugin plugin;
     private final AbstractContainer<PermissionCache, CachedPermissionData> permission;
     private final AbstractContainer<MonitoredMetaCache, CachedMetaData> meta;
+    private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
 
     protected AbstractCachedDataManager(LuckPermsPlugin plugin) {
         this.plugin = plugin;
-        this.permission = new AbstractContainer<>(this::calculatePermissions);
-        this.meta = new AbstractContainer<>(this::calculateMeta);
+        this.permission = new AbstractContainer<>(this::calculatePermissions, this::notifyInvalidationListeners);
+        this.meta = new AbstractContainer<>(this::calculateMeta, this::notifyInvalidationListeners);
     }
 
     public LuckPermsPlugin getPlugin() {
@@ -91,6 +101,28 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         return this.meta.get(queryOptions);
     }
 
+    /**
+     * Gets the cached permission data for the given {@link QueryOptions}, if
+     * it is currently held by this manager.
+     *
+     * @param queryOptions the query options
+     * @return the data, or null if it isn't loaded
+     */
+    public @Nullable PermissionCache getPermissionDataIfPresent(@NonNull QueryOptions queryOptions) {
+        return this.permission.getIfPresent(queryOptions);
+    }
+
+    /**
+     * Gets the cached meta data for the given {@link QueryOptions}, if it is
+     * currently held by this manager.
+     *
+     * @param queryOptions the query options
+     * @return the data, or null if it isn't loaded
+     */
+    public @Nullable MonitoredMetaCache getMetaDataIfPresent(@NonNull QueryOptions queryOptions) {
+        return this.meta.getIfPresent(queryOptions);
+    }
+
     @Override
     public @NonNull PermissionCache getPermissionData() {
         return getPermissionData(getQueryOptions());
@@ -148,12 +180,69 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
      * @param queryOptions the query options
      */
     protected abstract void resolveMeta(MetaAccumulator accumulator, QueryOptions queryOptions);
+
+    /**
+     * Resolves the owners meta data for the given {@link QueryOptions}, recording
+     * the inputs offered to the accumulator so the result can be patched later.
+     *
+     * <p>Implementations which cannot record their inputs should return null,
+     * in which case the cache will always be fully recalculated.</p>
+     *
+     * @param accumulator the accumulator to add resolved meta to
+     * @param queryOptions the query options
+     * @return the recorded sources, or null
+     */
+    protected @Nullable MetaSources resolveMetaSources(MetaAccumulator accumulator, QueryOptions queryOptions) {
+        resolveMeta(accumulator, queryOptions);
+        return null;
+    }
+
+    /**
+     * Resolves the meta and chat meta nodes held directly by the owner, in
+     * accumulation order.
+     *
+     * @param queryOptions the query options
+     * @return the nodes, or null if not supported
+     */
+    protected @Nullable List<Node> resolveOwnMeta(QueryOptions queryOptions) {
+        return null;
+    }
+
+    /**
+     * Resolves the source permissions map used to construct a {@link PermissionCache}.
+     *
+     * <p>The returned map is owned by the cache it is used to construct, and
+     * may be patched in place.</p>
+     *
+     * @param queryOptions the query options
+     * @return the permissions map
+     */
+    protected ConcurrentHashMap<String, Node> resolveSourcePermissions(QueryOptions queryOptions) {
+        return resolvePermissions(ConcurrentHashMap::new, queryOptions);
+    }
     
+    /**
+     * Resolves the new values in a source permissions map following a change
+     * to the given (non-inheritance) nodes held directly by the owner.
+     *
+     * <p>Implementations should return null if the change cannot be applied
+     * without walking the inheritance graph, in which case the cache will be
+     * fully recalculated.</p>
+     *
+     * @param queryOptions the query options
+     * @param sourcePermissions the current source permissions map
+     * @param changedNodes the nodes which were added or removed
+     * @return the entries to put into the map, or null
+     */
+    protected @Nullable Map<String, Node> resolvePermissionChanges(QueryOptions queryOptions, Map<String, Node> sourcePermissions, List<Node> changedNodes) {
+        return null;
+    }
+
     private PermissionCache calculatePermissions(QueryOptions queryOptions) {
         Objects.requireNonNull(queryOptions, "queryOptions");
         CacheMetadata metadata = getMetadataForQueryOptions(queryOptions);
 
-        ConcurrentHashMap<String, Node> sourcePermissions = resolvePermissions(ConcurrentHashMap::new, queryOptions);
+        ConcurrentHashMap<String, Node> sourcePermissions = resolveSourcePermissions(queryOptions);
         return new PermissionCache(queryOptions, metadata, getCalculatorFactory(), sourcePermissions);
     }
     
@@ -162,9 +251,9 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         CacheMetadata metadata = getMetadataForQueryOptions(queryOptions);
 
         MetaAccumulator accumulator = newAccumulator(queryOptions);
-        resolveMeta(accumulator, queryOptions);
+        MetaSources sources = resolveMetaSources(accumulator, queryOptions);
 
-        return new MonitoredMetaCache(this.plugin, queryOptions, metadata, accumulator);
+        return new MonitoredMetaCache(this.plugin, queryOptions, metadata, accumulator, sources);
     }
 
     @Override
@@ -173,36 +262,166 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         this.meta.invalidate();
     }
 
+    /**
+     * Invalidates the cached data following a change to the owners own nodes.
+     *
+     * <p>Changes to inheritance nodes fall back to a full invalidation. For
+     * any other change, each loaded permission cache has the changed entries
+     * patched into its source map. A cache which can't be patched (see
+     * {@link #resolvePermissionChanges(QueryOptions, Map, List)}) is dropped,
+     * and fully recalculated when it is next requested.</p>
+     *
+     * <p>Meta data is left untouched if only permission nodes changed, and is
+     * patched in place (without walking the inheritance graph) if only meta,
+     * prefix or suffix nodes changed.</p>
+     *
+     * @param changes the changes made to the owners nodes
+     */
+    public final void invalidate(Difference<Node> changes) {
+        List<Node> changedNodes = new ArrayList<>(changes.getChanges().size());
+        boolean metaChanged = false;
+        boolean metaInvalidated = false;
+
+        for (Difference.Change<Node> change : changes.getChanges()) {
+            Node node = change.value();
+            if (NodeType.INHERITANCE.matches(node)) {
+                invalidate();
+                return;
+            }
+
+            changedNodes.add(node);
+            if (NodeType.PERMISSION.matches(node) || NodeType.REGEX_PERMISSION.matches(node)) {
+                continue;
+            }
+            if (NodeType.META_OR_CHAT_META.matches(node)) {
+                metaChanged = true;
+            } else {
+                metaInvalidated = true;
+            }
+        }
+
+        patchPermissions(changedNodes);
+
+        if (metaInvalidated) {
+            this.meta.invalidate();
+        } else if (metaChanged) {
+            patchMeta();
+        }
+    }
+
+    private void patchPermissions(List<Node> changedNodes) {
+        boolean removed = false;
+
+        // serialise patches, so a patch resolved against older nodes can't be applied over a newer one
+        synchronized (this.permission) {
+            for (Map.Entry<QueryOptions, PermissionCache> entry : this.permission.cache.entrySet()) {
+                QueryOptions queryOptions = entry.getKey();
+                PermissionCache cache = entry.getValue();
+
+                Map<String, Node> sourcePermissions = cache.getSourcePermissions();
+                Map<String, Node> patch = resolvePermissionChanges(queryOptions, sourcePermissions, changedNodes);
+                if (patch == null) {
+                    this.permission.cache.remove(queryOptions, cache);
+                    removed = true;
+                    continue;
+                }
+
+                cache.applyChanges(patch);
+            }
+        }
+
+        // caches patched in place are still valid, only notify if any were dropped
+        if (removed) {
+            notifyInvalidationListeners();
+        }
+    }
+
+    private void patchMeta() {
+        for (Map.Entry<QueryOptions, MonitoredMetaCache> entry : this.meta.cache.entrySet()) {
+            QueryOptions queryOptions = entry.getKey();
+            MonitoredMetaCache previous = entry.getValue();
+
+            MetaSources sources = previous.getSources();
+            List<Node> ownNodes = sources == null ? null : resolveOwnMeta(queryOptions);
+            MetaSources patched = ownNodes == null ? null : sources.withRootNodes(ownNodes);
+            if (patched == null) {
+                this.meta.cache.remove(queryOptions, previous);
+                continue;
+            }
+
+            MetaAccumulator accumulator = patched.replay(newAccumulator(queryOptions));
+            MonitoredMetaCache replacement = new MonitoredMetaCache(this.plugin, queryOptions, previous.getMetadata(), accumulator, patched);
+            this.meta.cache.replace(queryOptions, previous, replacement);
+        }
+        notifyInvalidationListeners();
+    }
+
     @Override
     public final void invalidatePermissionCalculators() {
         this.permission.cache.values().forEach(PermissionCache::invalidateCache);
     }
 
-    public final void performCacheCleanup() {
-        this.permission.cleanup();
-        this.meta.cleanup();
+    /**
+     * Adds a listener to be called whenever a cached permission or meta data
+     * instance held by this manager is invalidated or replaced.
+     *
+     * <p>Allows callers to safely hold direct references to cached data
+     * instances, dropping them when the listener is called.</p>
+     *
+     * @param listener the listener
+     */
+    public void addInvalidationListener(Runnable listener) {
+        this.invalidationListeners.add(listener);
+    }
+
+    public void removeInvalidationListener(Runnable listener) {
+        this.invalidationListeners.remove(listener);
+    }
+
+    private void notifyInvalidationListeners() {
+        for (Runnable listener : this.invalidationListeners) {
+            listener.run();
+        }
     }
 
     private static final class AbstractContainer<C extends I, I extends CachedData> implements Container<I> {
+
+        /** The maximum number of query options to hold data for, per holder */
+        private static final int MAXIMUM_SIZE = 100;
+
+        /** How long data can go unused before it is dropped */
+        private static final long EXPIRE_AFTER_ACCESS_MINUTES = 2;
+
         private final Function<QueryOptions, C> cacheLoader;
-        private final LoadingMap<QueryOptions, C> cache;
+        private final LoadingCache<QueryOptions, C> loadingCache;
+        private final ConcurrentMap<QueryOptions, C> cache;
+        private final Runnable invalidationCallback;
 
-        public AbstractContainer(Function<QueryOptions, C> cacheLoader) {
+        public AbstractContainer(Function<QueryOptions, C> cacheLoader, Runnable invalidationCallback) {
             this.cacheLoader = cacheLoader;
-            this.cache = LoadingMap.of(this.cacheLoader);
-        }
-
-        public void cleanup() {
-            this.cache.values().removeIf(value -> ((UsageTracked) value).usedSince(TimeUnit.MINUTES.toMillis(2)));
+            this.loadingCache = CaffeineFactory.newBuilder()
+                    .maximumSize(MAXIMUM_SIZE)
+                    .expireAfterAccess(EXPIRE_AFTER_ACCESS_MINUTES, TimeUnit.MINUTES)
+                    // evicted data is no longer patched, so holders of a direct reference must drop it
+                    .removalListener((QueryOptions key, C value, RemovalCause cause) -> {
+                        if (cause.wasEvicted()) {
+                            invalidationCallback.run();
+                        }
+                    })
+                    .build(this.cacheLoader::apply);
+            this.cache = this.loadingCache.asMap();
+            this.invalidationCallback = invalidationCallback;
         }
 
         @Override
         public @NonNull C get(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
+            return this.loadingCache.get(queryOptions);
+        }
 
-            C data = this.cache.get(queryOptions);
-            ((UsageTracked) data).recordUsage();
-            return data;
+        public @Nullable C getIfPresent(@NonNull QueryOptions queryOptions) {
+            Objects.requireNonNull(queryOptions, "queryOptions");
+            return this.cache.get(queryOptions);
         }
 
         @Override
@@ -217,6 +436,7 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
             CompletableFuture.runAsync(() -> {
                 final C value = this.cacheLoader.apply(queryOptions);
                 this.cache.put(queryOptions, value);
+                this.invalidationCallback.run();
             }, CaffeineFactory.executor());
         }
 
@@ -226,9 +446,10 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
 
             // invalidate the previous value until we're done recalculating
             this.cache.remove(queryOptions);
+            this.invalidationCallback.run();
 
             // request recalculation from the cache
-            return CompletableFuture.supplyAsync(() -> this.cache.get(queryOptions), CaffeineFactory.executor());
+            return CompletableFuture.supplyAsync(() -> this.loadingCache.get(queryOptions), CaffeineFactory.executor());
         }
 
         @Override
@@ -247,11 +468,13 @@ public abstract class AbstractCachedDataManager implements CachedDataManager {
         public void invalidate(@NonNull QueryOptions queryOptions) {
             Objects.requireNonNull(queryOptions, "queryOptions");
             this.cache.remove(queryOptions);
+            this.invalidationCallback.run();
         }
 
         @Override
         public void invalidate() {
             this.cache.clear();
+            this.invalidationCallback.run();
         }
     }
     
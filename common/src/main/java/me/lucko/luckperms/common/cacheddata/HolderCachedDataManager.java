@@ -26,15 +26,22 @@
 package me.lucko.luckperms.common.cacheddata;
 
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.MetaSources;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import net.luckperms.api.metastacking.MetaStackDefinition;
 import net.luckperms.api.node.ChatMetaType;
 import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.IntFunction;
 
 /**
@@ -79,8 +86,63 @@ public abstract class HolderCachedDataManager<T extends PermissionHolder> extend
         return this.holder.exportPermissions(mapFactory, queryOptions, true, getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND));
     }
 
+    @Override
+    protected Map<String, Node> resolvePermissionChanges(QueryOptions queryOptions, Map<String, Node> sourcePermissions, List<Node> changedNodes) {
+        boolean applyShorthand = getPlugin().getConfiguration().get(ConfigKeys.APPLYING_SHORTHAND);
+
+        Set<String> changedKeys = new HashSet<>();
+        for (Node node : changedNodes) {
+            // shorthand expansions are applied after every direct key, so can't be patched individually
+            if (applyShorthand && !node.resolveShorthand().isEmpty()) {
+                return null;
+            }
+            changedKeys.add(node.getKey().toLowerCase(Locale.ROOT));
+        }
+
+        // the holders own nodes are exported first, so take precedence over anything inherited
+        Map<String, Node> changes = new HashMap<>();
+        for (Node node : this.holder.getOwnNodes(queryOptions)) {
+            String key = node.getKey().toLowerCase(Locale.ROOT);
+            if (changedKeys.contains(key)) {
+                changes.putIfAbsent(key, node);
+            }
+        }
+
+        for (String key : changedKeys) {
+            if (changes.containsKey(key)) {
+                continue;
+            }
+
+            // no own node remains for the key - if the previous value was our own,
+            // an inherited node may now apply instead
+            Node previous = sourcePermissions.get(key);
+            if (previous != null && isOwnNode(previous)) {
+                return null;
+            }
+        }
+        return changes;
+    }
+
+    private boolean isOwnNode(Node node) {
+        return node.getMetadata(InheritanceOriginMetadata.KEY)
+                .map(origin -> origin.getOrigin().equals(this.holder.getIdentifier()))
+                .orElse(true);
+    }
+
     @Override
     protected void resolveMeta(MetaAccumulator accumulator, QueryOptions queryOptions) {
         this.holder.accumulateMeta(accumulator, queryOptions);
     }
+
+    @Override
+    protected MetaSources resolveMetaSources(MetaAccumulator accumulator, QueryOptions queryOptions) {
+        MetaSources sources = new MetaSources();
+        this.holder.accumulateMeta(accumulator, queryOptions, sources);
+        return sources;
+    }
+
+    @Override
+    protected List<Node> resolveOwnMeta(QueryOptions queryOptions) {
+        return this.holder.getOwnMetaNodes(queryOptions);
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.util.CaffeineFactory;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.query.Flag;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A cache of resolved permission maps, shared between users whose resolution
+ * would be identical.
+ *
+ * <p>A user who holds nothing but inheritance nodes in a given set of query
+ * options resolves to exactly the same permissions as any other user with the
+ * same inheritance nodes and primary group. When many such users share the
+ * same contexts (e.g. they are all in the same world or instance), the map is
+ * resolved once and shared between them, instead of walking the inheritance
+ * graph once per user.</p>
+ *
+ * <p>The cached maps are never handed out directly, as the entries for the
+ * users own inheritance nodes carry that users {@link InheritanceOriginMetadata}.
+ * Each user instead receives their own copy of the map, with those entries
+ * replaced by their own nodes. The cache is cleared whenever group or user
+ * caches are invalidated.</p>
+ */
+public class SharedPermissionMapCache {
+    private final Cache<Key, ConcurrentHashMap<String, Node>> cache = CaffeineFactory.newBuilder()
+            .maximumSize(10000)
+            .expireAfterAccess(10, TimeUnit.MINUTES)
+            .build();
+
+    /**
+     * Resolves the source permissions for the given user, using a shared map
+     * if possible.
+     *
+     * @param user the user
+     * @param queryOptions the query options
+     * @param resolver the function used to resolve the map if it is not shared or not yet cached
+     * @return the resolved map, owned by the caller
+     */
+    public ConcurrentHashMap<String, Node> resolve(User user, QueryOptions queryOptions, Function<QueryOptions, ConcurrentHashMap<String, Node>> resolver) {
+        if (!queryOptions.flag(Flag.RESOLVE_INHERITANCE)) {
+            return resolver.apply(queryOptions);
+        }
+
+        List<Node> ownNodes = user.getOwnNodes(queryOptions);
+        for (Node node : ownNodes) {
+            if (!(node instanceof InheritanceNode)) {
+                return resolver.apply(queryOptions);
+            }
+        }
+
+        // the primary group affects the inheritance order
+        String primaryGroup = user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME).toLowerCase(Locale.ROOT);
+        Key key = new Key(queryOptions, ImmutableList.copyOf(ownNodes), primaryGroup);
+        ConcurrentHashMap<String, Node> shared = this.cache.get(key, k -> resolver.apply(queryOptions));
+
+        // own nodes are exported before anything inherited, so the first one with each key is the one in the map
+        ConcurrentHashMap<String, Node> map = new ConcurrentHashMap<>(shared);
+        Set<String> replaced = new HashSet<>();
+        for (Node node : ownNodes) {
+            String permission = node.getKey().toLowerCase(Locale.ROOT);
+            if (replaced.add(permission) && map.containsKey(permission)) {
+                map.put(permission, node);
+            }
+        }
+        return map;
+    }
+
+    public long size() {
+        return this.cache.estimatedSize();
+    }
+
+    public void invalidate() {
+        this.cache.invalidateAll();
+    }
+
+    private static final class Key {
+        private final QueryOptions queryOptions;
+        private final List<Node> inheritanceNodes;
+        private final String primaryGroup;
+        private final int hashCode;
+
+        Key(QueryOptions queryOptions, List<Node> inheritanceNodes, String primaryGroup) {
+            this.queryOptions = queryOptions;
+            this.inheritanceNodes = inheritanceNodes;
+            this.primaryGroup = primaryGroup;
+            this.hashCode = Objects.hash(queryOptions, inheritanceNodes, primaryGroup);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return this.queryOptions.equals(other.queryOptions) &&
+                    this.inheritanceNodes.equals(other.inheritanceNodes) &&
+                    this.primaryGroup.equals(other.primaryGroup);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+}
@@ -29,8 +29,11 @@ import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.verbose.VerboseCheckTarget;
 import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.query.QueryOptions;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Holds an easily accessible cache of a user's data in a number of contexts
  */
@@ -45,4 +48,13 @@ public class UserCachedDataManager extends HolderCachedDataManager<User> impleme
         return new CacheMetadata(HolderType.USER, VerboseCheckTarget.user(this.holder), queryOptions);
     }
 
+    @Override
+    protected ConcurrentHashMap<String, Node> resolveSourcePermissions(QueryOptions queryOptions) {
+        SharedPermissionMapCache sharedMaps = getPlugin().getSharedPermissionMapCache();
+        if (sharedMaps == null) {
+            return super.resolveSourcePermissions(queryOptions);
+        }
+        return sharedMaps.resolve(this.holder, queryOptions, super::resolveSourcePermissions);
+    }
+
 }
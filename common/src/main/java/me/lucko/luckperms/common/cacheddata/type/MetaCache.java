@@ -32,13 +32,13 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimaps;
-import me.lucko.luckperms.common.cacheddata.UsageTracked;
 import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
 import me.lucko.luckperms.common.cacheddata.result.StringResult;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.node.types.Prefix;
 import me.lucko.luckperms.common.node.types.Suffix;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.DurationParser;
 import me.lucko.luckperms.common.verbose.event.CheckOrigin;
 import net.luckperms.api.cacheddata.CachedMetaData;
 import net.luckperms.api.cacheddata.Result;
@@ -52,16 +52,21 @@ import net.luckperms.api.query.meta.MetaValueSelector;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.SortedMap;
 
 /**
  * Holds cached meta for a given context
  */
-public class MetaCache extends UsageTracked implements CachedMetaData {
+public class MetaCache implements CachedMetaData {
 
     private final LuckPermsPlugin plugin;
 
@@ -71,6 +76,7 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
     /* The data */
     private final Map<String, List<StringResult<MetaNode>>> meta;
     private final Map<String, StringResult<MetaNode>> flattenedMeta;
+    private final Map<String, ParsedMetaValue> parsedMeta;
     private final SortedMap<Integer, StringResult<PrefixNode>> prefixes;
     private final SortedMap<Integer, StringResult<SuffixNode>> suffixes;
     private final IntegerResult<WeightNode> weight;
@@ -90,6 +96,7 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
                 .orElseGet(() -> this.plugin.getConfiguration().get(ConfigKeys.META_VALUE_SELECTOR));
 
         ImmutableMap.Builder<String, StringResult<MetaNode>> builder = ImmutableMap.builder();
+        ImmutableMap.Builder<String, ParsedMetaValue> parsedBuilder = ImmutableMap.builder();
         for (Map.Entry<String, List<StringResult<MetaNode>>> e : meta.entrySet()) {
             if (e.getValue().isEmpty()) {
                 continue;
@@ -101,8 +108,12 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
             }
 
             builder.put(e.getKey(), (StringResult<MetaNode>) selected);
+            if (selected.result() != null) {
+                parsedBuilder.put(e.getKey(), new ParsedMetaValue(selected.result()));
+            }
         }
         this.flattenedMeta = builder.build();
+        this.parsedMeta = parsedBuilder.build();
         this.meta = new LowerCaseMetaMap(meta);
 
         this.prefixes = ImmutableSortedMap.copyOfSorted(sourceMeta.getPrefixes());
@@ -120,6 +131,39 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
         return this.flattenedMeta.getOrDefault(key.toLowerCase(Locale.ROOT), StringResult.nullResult());
     }
 
+    private @Nullable ParsedMetaValue getParsedMetaValue(String key, CheckOrigin origin) {
+        // lookup the raw value first, so the check is still monitored
+        if (getMetaValue(key, origin).result() == null) {
+            return null;
+        }
+        return this.parsedMeta.get(key.toLowerCase(Locale.ROOT));
+    }
+
+    public @NonNull OptionalInt getIntegerMetaValue(String key, CheckOrigin origin) {
+        ParsedMetaValue value = getParsedMetaValue(key, origin);
+        return value == null ? OptionalInt.empty() : value.asInt();
+    }
+
+    public @NonNull OptionalLong getLongMetaValue(String key, CheckOrigin origin) {
+        ParsedMetaValue value = getParsedMetaValue(key, origin);
+        return value == null ? OptionalLong.empty() : value.asLong();
+    }
+
+    public @NonNull OptionalDouble getDoubleMetaValue(String key, CheckOrigin origin) {
+        ParsedMetaValue value = getParsedMetaValue(key, origin);
+        return value == null ? OptionalDouble.empty() : value.asDouble();
+    }
+
+    public @NonNull Optional<Boolean> getBooleanMetaValue(String key, CheckOrigin origin) {
+        ParsedMetaValue value = getParsedMetaValue(key, origin);
+        return value == null ? Optional.empty() : value.asBoolean();
+    }
+
+    public @NonNull Optional<Duration> getDurationMetaValue(String key, CheckOrigin origin) {
+        ParsedMetaValue value = getParsedMetaValue(key, origin);
+        return value == null ? Optional.empty() : value.asDuration();
+    }
+
     public @NonNull StringResult<PrefixNode> getPrefix(CheckOrigin origin) {
         return this.prefix;
     }
@@ -159,6 +203,31 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
         return getMetaValue(key, CheckOrigin.LUCKPERMS_API);
     }
 
+    @Override
+    public final @NonNull OptionalInt getIntegerMetaValue(@NonNull String key) {
+        return getIntegerMetaValue(key, CheckOrigin.LUCKPERMS_API);
+    }
+
+    @Override
+    public final @NonNull OptionalLong getLongMetaValue(@NonNull String key) {
+        return getLongMetaValue(key, CheckOrigin.LUCKPERMS_API);
+    }
+
+    @Override
+    public final @NonNull OptionalDouble getDoubleMetaValue(@NonNull String key) {
+        return getDoubleMetaValue(key, CheckOrigin.LUCKPERMS_API);
+    }
+
+    @Override
+    public final @NonNull Optional<Boolean> getBooleanMetaValue(@NonNull String key) {
+        return getBooleanMetaValue(key, CheckOrigin.LUCKPERMS_API);
+    }
+
+    @Override
+    public final @NonNull Optional<Duration> getDurationMetaValue(@NonNull String key) {
+        return getDurationMetaValue(key, CheckOrigin.LUCKPERMS_API);
+    }
+
     @Override
     public final @NonNull Result<String, PrefixNode> queryPrefix() {
         return getPrefix(CheckOrigin.LUCKPERMS_API);
@@ -209,6 +278,109 @@ public class MetaCache extends UsageTracked implements CachedMetaData {
         return this.queryOptions;
     }
 
+    /**
+     * A selected meta value, with its parsed forms computed lazily and then
+     * retained for subsequent lookups.
+     *
+     * <p>Publication of the parsed forms is racy but benign - at worst a
+     * value is parsed more than once.</p>
+     */
+    private static final class ParsedMetaValue {
+        private static final Optional<Boolean> TRUE = Optional.of(Boolean.TRUE);
+        private static final Optional<Boolean> FALSE = Optional.of(Boolean.FALSE);
+
+        private final String value;
+
+        private OptionalInt intValue;
+        private OptionalLong longValue;
+        private OptionalDouble doubleValue;
+        private Optional<Boolean> booleanValue;
+        private Optional<Duration> durationValue;
+
+        ParsedMetaValue(String value) {
+            this.value = value;
+        }
+
+        OptionalInt asInt() {
+            OptionalInt result = this.intValue;
+            if (result == null) {
+                try {
+                    result = OptionalInt.of(Integer.parseInt(this.value));
+                } catch (NumberFormatException e) {
+                    result = OptionalInt.empty();
+                }
+                this.intValue = result;
+            }
+            return result;
+        }
+
+        OptionalLong asLong() {
+            OptionalLong result = this.longValue;
+            if (result == null) {
+                try {
+                    result = OptionalLong.of(Long.parseLong(this.value));
+                } catch (NumberFormatException e) {
+                    result = OptionalLong.empty();
+                }
+                this.longValue = result;
+            }
+            return result;
+        }
+
+        OptionalDouble asDouble() {
+            OptionalDouble result = this.doubleValue;
+            if (result == null) {
+                try {
+                    result = OptionalDouble.of(Double.parseDouble(this.value));
+                } catch (NumberFormatException e) {
+                    result = OptionalDouble.empty();
+                }
+                this.doubleValue = result;
+            }
+            return result;
+        }
+
+        Optional<Boolean> asBoolean() {
+            Optional<Boolean> result = this.booleanValue;
+            if (result == null) {
+                if (this.value.equalsIgnoreCase("true")) {
+                    result = TRUE;
+                } else if (this.value.equalsIgnoreCase("false")) {
+                    result = FALSE;
+                } else {
+                    result = Optional.empty();
+                }
+                this.booleanValue = result;
+            }
+            return result;
+        }
+
+        Optional<Duration> asDuration() {
+            Optional<Duration> result = this.durationValue;
+            if (result == null) {
+                result = parseDuration(this.value);
+                this.durationValue = result;
+            }
+            return result;
+        }
+
+        private static Optional<Duration> parseDuration(String value) {
+            if (value.trim().isEmpty()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(Duration.ofSeconds(Long.parseLong(value)));
+            } catch (NumberFormatException e) {
+                // ignore
+            }
+            try {
+                return Optional.of(DurationParser.parseDuration(value));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        }
+    }
+
     private static final class LowerCaseMetaMap extends ForwardingMap<String, List<StringResult<MetaNode>>> {
         private final Map<String, List<StringResult<MetaNode>>> delegate;
 
@@ -0,0 +1,134 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata.type;
+
+import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.WeightNode;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the inputs offered to a {@link MetaAccumulator} by each holder in
+ * an inheritance tree, in traversal order.
+ *
+ * <p>When only the meta, prefix or suffix nodes held directly by the root
+ * holder change, an up-to-date accumulator can be produced by replaying the
+ * recorded inputs with the new root nodes substituted in, instead of walking
+ * the inheritance graph again.</p>
+ */
+public final class MetaSources {
+
+    /** The inputs from each holder, in the order they were accumulated */
+    private final List<HolderSource> sources;
+
+    /** The primary group, if one was set */
+    private @Nullable String primaryGroup;
+
+    public MetaSources() {
+        this.sources = new ArrayList<>();
+    }
+
+    private MetaSources(List<HolderSource> sources, @Nullable String primaryGroup) {
+        this.sources = sources;
+        this.primaryGroup = primaryGroup;
+    }
+
+    /**
+     * Records the inputs accumulated from a holder.
+     *
+     * @param root if the holder is the root of the inheritance tree
+     * @param nodes the meta and chat meta nodes accumulated from the holder
+     * @param weight the weight of the holder
+     */
+    public void recordHolder(boolean root, List<Node> nodes, IntegerResult<WeightNode> weight) {
+        this.sources.add(new HolderSource(root, nodes, weight));
+    }
+
+    public void recordPrimaryGroup(@Nullable String primaryGroup) {
+        this.primaryGroup = primaryGroup;
+    }
+
+    /**
+     * Creates a copy of these sources, with the nodes held by the root
+     * holder replaced.
+     *
+     * @param nodes the new meta and chat meta nodes held by the root holder
+     * @return the new sources, or null if no root holder was recorded
+     */
+    public @Nullable MetaSources withRootNodes(List<Node> nodes) {
+        List<HolderSource> sources = new ArrayList<>(this.sources.size());
+        boolean replaced = false;
+        for (HolderSource source : this.sources) {
+            if (source.root) {
+                sources.add(new HolderSource(true, nodes, source.weight));
+                replaced = true;
+            } else {
+                sources.add(source);
+            }
+        }
+        return replaced ? new MetaSources(sources, this.primaryGroup) : null;
+    }
+
+    /**
+     * Replays the recorded inputs into the given accumulator, and completes it.
+     *
+     * @param accumulator the accumulator
+     * @return the accumulator
+     */
+    public MetaAccumulator replay(MetaAccumulator accumulator) {
+        for (HolderSource source : this.sources) {
+            for (Node node : source.nodes) {
+                accumulator.accumulateNode(node);
+            }
+            if (!source.weight.isNull()) {
+                accumulator.accumulateWeight(source.weight);
+            }
+        }
+
+        if (this.primaryGroup != null) {
+            accumulator.setPrimaryGroup(this.primaryGroup);
+        }
+
+        accumulator.complete();
+        return accumulator;
+    }
+
+    private static final class HolderSource {
+        private final boolean root;
+        private final List<Node> nodes;
+        private final IntegerResult<WeightNode> weight;
+
+        HolderSource(boolean root, List<Node> nodes, IntegerResult<WeightNode> weight) {
+            this.root = root;
+            this.nodes = nodes;
+            this.weight = weight;
+        }
+    }
+
+}
@@ -57,10 +57,26 @@ public class MonitoredMetaCache extends MetaCache implements CachedMetaData {
     /** The metadata for this cache */
     private final CacheMetadata metadata;
 
+    /** The inputs used to build this cache, if they were recorded */
+    private final @Nullable MetaSources sources;
+
     public MonitoredMetaCache(LuckPermsPlugin plugin, QueryOptions queryOptions, CacheMetadata metadata, MetaAccumulator sourceMeta) {
+        this(plugin, queryOptions, metadata, sourceMeta, null);
+    }
+
+    public MonitoredMetaCache(LuckPermsPlugin plugin, QueryOptions queryOptions, CacheMetadata metadata, MetaAccumulator sourceMeta, @Nullable MetaSources sources) {
         super(plugin, queryOptions, sourceMeta);
         this.plugin = plugin;
         this.metadata = metadata;
+        this.sources = sources;
+    }
+
+    public CacheMetadata getMetadata() {
+        return this.metadata;
+    }
+
+    public @Nullable MetaSources getSources() {
+        return this.sources;
     }
 
     @Override
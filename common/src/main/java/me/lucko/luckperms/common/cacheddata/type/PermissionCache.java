@@ -27,7 +27,6 @@ package me.lucko.luckperms.common.cacheddata.type;
 
 import com.google.common.collect.Maps;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
-import me.lucko.luckperms.common.cacheddata.UsageTracked;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.calculator.PermissionCalculator;
@@ -46,7 +45,7 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Holds cached permissions data for a given context
  */
-public class PermissionCache extends UsageTracked implements CachedPermissionData {
+public class PermissionCache implements CachedPermissionData {
 
     /**
      * The query options this container is holding data for
@@ -84,6 +83,33 @@ public class PermissionCache extends UsageTracked implements CachedPermissionDat
         this.calculator.invalidateCache();
     }
 
+    /**
+     * Gets the raw source permissions map backing this cache.
+     *
+     * @return the source permissions
+     */
+    public Map<String, Node> getSourcePermissions() {
+        return this.permissions;
+    }
+
+    /**
+     * Applies changes to the source permissions in place, and updates the
+     * calculator to match.
+     *
+     * <p>The source map is owned by this cache (users resolved through the
+     * {@link me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache} are
+     * given their own copy), so patching it doesn't affect any other cache.</p>
+     *
+     * @param changes the entries to put into the source map
+     */
+    public void applyChanges(Map<String, Node> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        this.permissions.putAll(changes);
+        this.calculator.refresh(changes.keySet());
+    }
+
     public PermissionCalculator getCalculator() {
         return this.calculator;
     }
@@ -37,6 +37,7 @@ import org.checkerframework.checker.nullness.qual.NonNull;
 import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 
 /**
@@ -113,6 +114,19 @@ public class PermissionCalculator implements Function<String, TristateResult> {
         }
     }
 
+    /**
+     * Called after the values for the given keys have been changed in place
+     * in the source permissions map.
+     *
+     * @param changedKeys the keys which changed
+     */
+    public synchronized void refresh(Set<String> changedKeys) {
+        for (PermissionProcessor processor : this.processors) {
+            processor.refresh(changedKeys);
+        }
+        this.lookupCache.clear();
+    }
+
     public void invalidateCache() {
         for (PermissionProcessor processor : this.processors) {
             processor.invalidate();
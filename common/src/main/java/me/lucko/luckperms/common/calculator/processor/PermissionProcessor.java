@@ -30,6 +30,7 @@ import me.lucko.luckperms.common.calculator.PermissionCalculator;
 import net.luckperms.api.node.Node;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A processor within a {@link PermissionCalculator}.
@@ -64,6 +65,18 @@ public interface PermissionProcessor {
 
     }
 
+    /**
+     * Called after the values for the given keys have been changed in place
+     * in the source map.
+     *
+     * <p>By default, the processor is fully refreshed.</p>
+     *
+     * @param changedKeys the keys which changed
+     */
+    default void refresh(Set<String> changedKeys) {
+        refresh();
+    }
+
     /**
      * Called after the parent calculator has been invalidated
      */
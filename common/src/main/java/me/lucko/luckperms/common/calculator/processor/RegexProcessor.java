@@ -34,6 +34,7 @@ import net.luckperms.api.node.Node;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 public class RegexProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
@@ -70,4 +71,15 @@ public class RegexProcessor extends AbstractSourceBasedProcessor implements Perm
         }
         this.regexPermissions = builder.build();
     }
+
+    @Override
+    public void refresh(Set<String> changedKeys) {
+        // patterns are matched in map order, so rebuild the list if any of them changed
+        for (String key : changedKeys) {
+            if (RegexPermission.parse(key) != null) {
+                refresh();
+                return;
+            }
+        }
+    }
 }
@@ -32,7 +32,9 @@ import net.luckperms.api.node.Node;
 import net.luckperms.api.util.Tristate;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class WildcardProcessor extends AbstractSourceBasedProcessor implements PermissionProcessor {
     private static final TristateResult.Factory RESULT_FACTORY = new TristateResult.Factory(WildcardProcessor.class);
@@ -95,4 +97,43 @@ public class WildcardProcessor extends AbstractSourceBasedProcessor implements P
         }
         this.rootWildcardState = rootWildcard == null ? TristateResult.UNDEFINED : RESULT_FACTORY.result(rootWildcard);
     }
+
+    @Override
+    public void refresh(Set<String> changedKeys) {
+        Map<String, TristateResult> wildcardPermissions = null;
+        boolean rootWildcardChanged = false;
+
+        for (String key : changedKeys) {
+            if (isRootWildcard(key)) {
+                rootWildcardChanged = true;
+                continue;
+            }
+            if (!key.endsWith(WILDCARD_SUFFIX) || key.length() <= 2) {
+                continue;
+            }
+
+            if (wildcardPermissions == null) {
+                wildcardPermissions = new HashMap<>(this.wildcardPermissions);
+            }
+
+            Node node = this.sourceMap.get(key);
+            key = key.substring(0, key.length() - 2);
+            if (node == null) {
+                wildcardPermissions.remove(key);
+            } else {
+                wildcardPermissions.put(key, RESULT_FACTORY.result(node));
+            }
+        }
+
+        if (wildcardPermissions != null) {
+            this.wildcardPermissions = ImmutableMap.copyOf(wildcardPermissions);
+        }
+        if (rootWildcardChanged) {
+            Node rootWildcard = this.sourceMap.get(ROOT_WILDCARD);
+            if (rootWildcard == null) {
+                rootWildcard = this.sourceMap.get(ROOT_WILDCARD_WITH_QUOTES);
+            }
+            this.rootWildcardState = rootWildcard == null ? TristateResult.UNDEFINED : RESULT_FACTORY.result(rootWildcard);
+        }
+    }
 }
@@ -45,6 +45,7 @@ import me.lucko.luckperms.common.commands.misc.EditorCommand;
 import me.lucko.luckperms.common.commands.misc.ExportCommand;
 import me.lucko.luckperms.common.commands.misc.ImportCommand;
 import me.lucko.luckperms.common.commands.misc.InfoCommand;
+import me.lucko.luckperms.common.commands.misc.MemoryCommand;
 import me.lucko.luckperms.common.commands.misc.NetworkSyncCommand;
 import me.lucko.luckperms.common.commands.misc.ReloadConfigCommand;
 import me.lucko.luckperms.common.commands.misc.SearchCommand;
@@ -116,6 +117,7 @@ public class CommandManager {
                 .add(new LogParentCommand())
                 .add(new SyncCommand())
                 .add(new InfoCommand())
+                .add(new MemoryCommand())
                 .add(new EditorCommand())
                 .add(new VerboseCommand())
                 .add(new TreeCommand())
@@ -34,6 +34,7 @@ public enum CommandPermission {
 
     SYNC("sync", Type.NONE),
     INFO("info", Type.NONE),
+    MEMORY("memory", Type.NONE),
     EDITOR("editor", Type.NONE),
     VERBOSE("verbose", Type.NONE),
     VERBOSE_COMMAND_OTHERS("verbose.command.others", Type.NONE),
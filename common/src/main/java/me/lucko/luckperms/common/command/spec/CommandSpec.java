@@ -46,6 +46,7 @@ public enum CommandSpec {
 
     SYNC("/%s sync"),
     INFO("/%s info"),
+    MEMORY("/%s memory"),
     EDITOR("/%s editor [type]",
             arg("type", false),
             arg("filter", false)
@@ -25,7 +25,6 @@
 
 package me.lucko.luckperms.common.commands.misc;
 
-import com.google.gson.JsonObject;
 import me.lucko.luckperms.common.backup.Importer;
 import me.lucko.luckperms.common.command.abstraction.SingleCommand;
 import me.lucko.luckperms.common.command.access.CommandPermission;
@@ -36,11 +35,11 @@ import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.Predicates;
-import me.lucko.luckperms.common.util.gson.GsonProvider;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -63,7 +62,8 @@ public class ImportCommand extends SingleCommand {
 
         boolean fromFile = !args.remove("--upload");
 
-        JsonObject data;
+        Importer.Source source;
+        Reader reader;
         if (fromFile) {
             String fileName = args.get(0);
             Path dataDirectory = plugin.getBootstrap().getDataDirectory();
@@ -97,9 +97,11 @@ public class ImportCommand extends SingleCommand {
                 return;
             }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8))) {
-                data = GsonProvider.normal().fromJson(reader, JsonObject.class);
-            } catch (IOException e) {
+            Path importPath = path;
+            source = () -> new BufferedReader(new InputStreamReader(new GZIPInputStream(Files.newInputStream(importPath)), StandardCharsets.UTF_8));
+            try {
+                reader = source.open();
+            } catch (Exception e) {
                 plugin.getLogger().warn("Error whilst reading from the import file", e);
                 Message.IMPORT_FILE_READ_FAILURE.send(sender);
                 this.running.set(false);
@@ -113,24 +115,28 @@ public class ImportCommand extends SingleCommand {
                 return;
             }
 
+            if (!this.running.compareAndSet(false, true)) {
+                Message.IMPORT_ALREADY_RUNNING.send(sender);
+                return;
+            }
+
+            source = () -> plugin.getBytebin().getContentReader(code);
             try {
-                data = plugin.getBytebin().getJsonContent(code).getAsJsonObject();
+                reader = plugin.getBytebin().getContentReader(code);
             } catch (UnsuccessfulRequestException e) {
                 Message.HTTP_REQUEST_FAILURE.send(sender, e.getResponse().code(), e.getResponse().message());
+                this.running.set(false);
                 return;
             } catch (IOException e) {
                 plugin.getLogger().severe("Error reading data to bytebin", e);
                 Message.HTTP_UNKNOWN_FAILURE.send(sender);
-                return;
-            }
-
-            if (data == null) {
-                Message.IMPORT_UNABLE_TO_READ.send(sender, code);
+                this.running.set(false);
                 return;
             }
         }
 
-        Importer importer = new Importer(plugin, sender, data, !args.contains("--replace"));
+        // the data is read as it is imported - the importer closes the reader once done, and opens the source again to import
+        Importer importer = new Importer(plugin, sender, reader, source, !args.contains("--replace"));
 
         // Run the importer in its own thread.
         plugin.getBootstrap().getScheduler().executeAsync(() -> {
@@ -42,6 +42,7 @@ public class SyncCommand extends SingleCommand {
     @Override
     public void execute(LuckPermsPlugin plugin, Sender sender, ArgumentList args, String label) {
         Message.UPDATE_TASK_REQUEST.send(sender);
+        plugin.getStorage().invalidateCaches();
         plugin.getSyncTaskBuffer().request().join();
         Message.UPDATE_TASK_COMPLETE.send(sender);
     }
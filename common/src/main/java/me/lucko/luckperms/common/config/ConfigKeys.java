@@ -42,6 +42,7 @@ import me.lucko.luckperms.common.query.QueryOptionsBuilderImpl;
 import me.lucko.luckperms.common.storage.StorageType;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorageType;
 import me.lucko.luckperms.common.storage.misc.StorageCredentials;
+import me.lucko.luckperms.common.treeview.PermissionRegistry;
 import me.lucko.luckperms.common.util.ImmutableCollectors;
 import me.lucko.luckperms.common.util.Predicates;
 import net.luckperms.api.context.ContextSatisfyMode;
@@ -182,6 +183,16 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<Boolean> REGISTER_COMMAND_LIST_DATA = notReloadable(booleanKey("register-command-list-data", true));
 
+    /**
+     * The maximum number of nodes held in the permission registry (used for tab completion and the tree viewer)
+     */
+    public static final ConfigKey<Integer> PERMISSION_REGISTRY_MAX_SIZE = notReloadable(key(c -> Math.max(1, c.getInteger("permission-registry-max-size", PermissionRegistry.DEFAULT_MAXIMUM_SIZE))));
+
+    /**
+     * The percentage of the maximum heap size which loaded offline users may use before they are unloaded early (0 to disable)
+     */
+    public static final ConfigKey<Integer> OFFLINE_USER_MEMORY_BUDGET = notReloadable(key(c -> Math.max(0, Math.min(100, c.getInteger("offline-user-memory-budget", 5)))));
+
     /**
      * If LuckPerms should attempt to resolve Vanilla command target selectors for LP commands.
      */
@@ -571,6 +582,16 @@ public final class ConfigKeys {
         return c.getString("data.table-prefix", c.getString("data.table_prefix", "luckperms_"));
     }));
 
+    /**
+     * If user permissions should be stored using the compact SQL table layout
+     */
+    public static final ConfigKey<Boolean> SQL_COMPACT_USER_PERMISSIONS = notReloadable(booleanKey("data.compact-user-permissions", false));
+
+    /**
+     * If group memberships should be maintained in a separate SQL table, for fast member lookups
+     */
+    public static final ConfigKey<Boolean> SQL_GROUP_MEMBERSHIP_TABLE = notReloadable(booleanKey("data.group-membership-table", false));
+
     /**
      * The prefix for any MongoDB collections
      */
@@ -615,6 +636,16 @@ public final class ConfigKeys {
         return ImmutableMap.copyOf(map);
     }));
 
+    /**
+     * If split storage should keep a local copy of the group, track and uuid data held by remote backends
+     */
+    public static final ConfigKey<Boolean> SPLIT_STORAGE_LOCAL_CACHE = notReloadable(booleanKey("split-storage.local-cache", false));
+
+    /**
+     * How often (in minutes) expired nodes should be removed from storage, or -1 if disabled
+     */
+    public static final ConfigKey<Integer> EXPIRED_NODE_SWEEP_TIME = notReloadable(key(c -> c.getInteger("expired-node-sweep-minutes", 60)));
+
     /**
      * The name of the messaging service in use, or "none" if not enabled
      */
@@ -715,6 +746,22 @@ public final class ConfigKeys {
      */
     public static final ConfigKey<String> RABBITMQ_PASSWORD = notReloadable(stringKey("rabbitmq.password", "guest"));
 
+    /**
+     * The multicast group address (and port) used by the multicast messaging service
+     */
+    public static final ConfigKey<String> MULTICAST_ADDRESS = notReloadable(stringKey("multicast.address", "239.255.76.80:25580"));
+
+    /**
+     * The name of the network interface to send and receive multicast messages on,
+     * or an empty string if it should be selected automatically
+     */
+    public static final ConfigKey<String> MULTICAST_INTERFACE = notReloadable(stringKey("multicast.interface", ""));
+
+    /**
+     * The shared secret used to sign messages sent by the multicast messaging service
+     */
+    public static final ConfigKey<String> MULTICAST_SECRET = notReloadable(stringKey("multicast.secret", ""));
+
     /**
      * If the editor key should be generated lazily (only when needed)
      */
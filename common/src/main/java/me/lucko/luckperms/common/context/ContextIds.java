@@ -0,0 +1,128 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.context;
+
+import net.luckperms.api.context.Context;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns small integer ids to context keys and entries, so context sets can
+ * be compared without comparing strings.
+ *
+ * <p>Ids are never released, so the registry is bounded instead: a single
+ * key is given ids for at most {@link #MAX_VALUES_PER_KEY} distinct values,
+ * and no more than {@link #MAX_IDS} ids are handed out in total. Keys with a
+ * constantly changing value (e.g. a random id) hit the per-key limit quickly
+ * and are recorded as high cardinality - their new values get {@link #NO_ID},
+ * and sets containing them fall back to string comparisons. This stops one
+ * such key from using up the ids every other key depends on.</p>
+ */
+public final class ContextIds {
+    private ContextIds() {}
+
+    static final int NO_ID = -1;
+    public static final int MAX_IDS = 1 << 16;
+    public static final int MAX_VALUES_PER_KEY = 1024;
+
+    private static final Map<String, Integer> KEY_IDS = new ConcurrentHashMap<>();
+    private static final Map<Context, Integer> ENTRY_IDS = new ConcurrentHashMap<>();
+    private static final AtomicInteger NEXT_KEY_ID = new AtomicInteger();
+    private static final AtomicInteger NEXT_ENTRY_ID = new AtomicInteger();
+
+    // distinct values given an id, per key. only populated while there are
+    // ids left, so it's bounded by the size of ENTRY_IDS
+    private static final Map<String, AtomicInteger> VALUE_COUNTS = new ConcurrentHashMap<>();
+    private static final Set<String> HIGH_CARDINALITY_KEYS = ConcurrentHashMap.newKeySet();
+
+    static int keyId(String key) {
+        Integer id = KEY_IDS.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (NEXT_KEY_ID.get() >= MAX_IDS) {
+            return NO_ID;
+        }
+        return KEY_IDS.computeIfAbsent(key, k -> NEXT_KEY_ID.getAndIncrement());
+    }
+
+    static int entryId(Context entry) {
+        Integer id = ENTRY_IDS.get(entry);
+        if (id != null) {
+            return id;
+        }
+        if (NEXT_ENTRY_ID.get() >= MAX_IDS || HIGH_CARDINALITY_KEYS.contains(entry.getKey())) {
+            return NO_ID;
+        }
+
+        // returning null from the mapping function leaves the entry unmapped
+        id = ENTRY_IDS.computeIfAbsent(entry, e -> {
+            if (NEXT_ENTRY_ID.get() >= MAX_IDS) {
+                return null;
+            }
+            AtomicInteger count = VALUE_COUNTS.computeIfAbsent(e.getKey(), k -> new AtomicInteger());
+            if (count.incrementAndGet() > MAX_VALUES_PER_KEY) {
+                HIGH_CARDINALITY_KEYS.add(e.getKey());
+                return null;
+            }
+            return NEXT_ENTRY_ID.getAndIncrement();
+        });
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * Gets the number of context entry ids handed out so far.
+     *
+     * @return the number of entry ids in use
+     */
+    public static int getEntryIdCount() {
+        return Math.min(NEXT_ENTRY_ID.get(), MAX_IDS);
+    }
+
+    /**
+     * Gets if all {@link #MAX_IDS} entry ids have been handed out.
+     *
+     * @return if the registry is exhausted
+     */
+    public static boolean isExhausted() {
+        return NEXT_ENTRY_ID.get() >= MAX_IDS;
+    }
+
+    /**
+     * Gets the context keys which went over {@link #MAX_VALUES_PER_KEY}
+     * distinct values, and so are no longer given new ids.
+     *
+     * @return the high cardinality keys
+     */
+    public static Set<String> getHighCardinalityKeys() {
+        return Collections.unmodifiableSet(HIGH_CARDINALITY_KEYS);
+    }
+
+}
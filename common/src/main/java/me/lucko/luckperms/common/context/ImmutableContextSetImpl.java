@@ -67,6 +67,9 @@ public final class ImmutableContextSetImpl extends AbstractContextSet implements
 
     private ImmutableSetMultimap<String, String> cachedMap;
 
+    // lazily computed, see #ids()
+    private Ids ids;
+
     ImmutableContextSetImpl(Context[] contexts) {
         this.array = contexts; // always sorted
         this.size = this.array.length;
@@ -126,6 +129,27 @@ public final class ImmutableContextSetImpl extends AbstractContextSet implements
 
     @Override
     protected boolean otherContainsAll(ContextSet other, ContextSatisfyMode mode) {
+        if (other instanceof ImmutableContextSetImpl) {
+            Ids ids = ids();
+            Ids otherIds = ((ImmutableContextSetImpl) other).ids();
+            if (ids != Ids.UNAVAILABLE && otherIds != Ids.UNAVAILABLE) {
+                return ids.satisfiedBy(otherIds, mode);
+            }
+        }
+        return otherContainsAllByValue(other, mode);
+    }
+
+    private Ids ids() {
+        Ids ids = this.ids;
+        if (ids == null) {
+            // racy, but Ids is immutable & any thread computing it will arrive at the same result
+            this.ids = ids = Ids.of(this.array);
+        }
+        return ids;
+    }
+
+    // compares entries by value - used when the other set is mutable, or ids aren't available
+    boolean otherContainsAllByValue(ContextSet other, ContextSatisfyMode mode) {
         switch (mode) {
             // Use other.contains
             case ALL_VALUES_PER_KEY: {
@@ -237,6 +261,119 @@ public final class ImmutableContextSetImpl extends AbstractContextSet implements
         return this.size;
     }
 
+    /**
+     * The contexts in a set, represented by their {@link ContextIds ids}.
+     *
+     * <p>Satisfaction checks between two sets with ids only compare ints,
+     * and can usually be rejected with a single mask comparison.</p>
+     */
+    private static final class Ids {
+        /** Marker for sets containing a key or entry which wasn't assigned an id */
+        static final Ids UNAVAILABLE = new Ids(new int[0], new int[0], new int[0], 0L, 0L);
+
+        /** The key id of each entry, in the same order as the set's array */
+        private final int[] keyIds;
+        /** The entry id of each entry, in the same order as the set's array */
+        private final int[] entryIds;
+        /** The entry ids, sorted for binary searching */
+        private final int[] sortedEntryIds;
+        /** Bloom-filter style masks with bit (id % 64) set for each key/entry */
+        private final long keyMask;
+        private final long entryMask;
+
+        private Ids(int[] keyIds, int[] entryIds, int[] sortedEntryIds, long keyMask, long entryMask) {
+            this.keyIds = keyIds;
+            this.entryIds = entryIds;
+            this.sortedEntryIds = sortedEntryIds;
+            this.keyMask = keyMask;
+            this.entryMask = entryMask;
+        }
+
+        static Ids of(Context[] array) {
+            int len = array.length;
+            int[] keyIds = new int[len];
+            int[] entryIds = new int[len];
+            long keyMask = 0L;
+            long entryMask = 0L;
+
+            for (int i = 0; i < len; i++) {
+                int keyId = ContextIds.keyId(array[i].getKey());
+                int entryId = ContextIds.entryId(array[i]);
+                if (keyId == ContextIds.NO_ID || entryId == ContextIds.NO_ID) {
+                    return UNAVAILABLE;
+                }
+
+                keyIds[i] = keyId;
+                entryIds[i] = entryId;
+                keyMask |= 1L << keyId;
+                entryMask |= 1L << entryId;
+            }
+
+            int[] sortedEntryIds = entryIds.clone();
+            Arrays.sort(sortedEntryIds);
+            return new Ids(keyIds, entryIds, sortedEntryIds, keyMask, entryMask);
+        }
+
+        private boolean contains(int entryId) {
+            int[] sorted = this.sortedEntryIds;
+            // sets are small, so a linear scan is usually quicker than a binary search
+            if (sorted.length <= 8) {
+                for (int id : sorted) {
+                    if (id >= entryId) {
+                        return id == entryId;
+                    }
+                }
+                return false;
+            }
+            return Arrays.binarySearch(sorted, entryId) >= 0;
+        }
+
+        boolean satisfiedBy(Ids other, ContextSatisfyMode mode) {
+            switch (mode) {
+                case ALL_VALUES_PER_KEY: {
+                    // other must contain every entry
+                    if ((this.entryMask & ~other.entryMask) != 0L) {
+                        return false;
+                    }
+                    for (int entryId : this.entryIds) {
+                        if (!other.contains(entryId)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+                case AT_LEAST_ONE_VALUE_PER_KEY: {
+                    // other must (at least) contain every key
+                    if ((this.keyMask & ~other.keyMask) != 0L) {
+                        return false;
+                    }
+
+                    // entries are ordered by key, so scan through each key group once
+                    int[] keyIds = this.keyIds;
+                    int[] entryIds = this.entryIds;
+                    for (int i = 0, len = keyIds.length; i < len; i++) {
+                        int keyId = keyIds[i];
+                        if (other.contains(entryIds[i])) {
+                            // skip forward past any other entries with the same key
+                            while (i + 1 < len && keyIds[i + 1] == keyId) {
+                                i++;
+                            }
+                        } else {
+                            // if this is the last one of the key, return false
+                            int next = i + 1;
+                            if (next >= len || keyIds[next] != keyId) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown mode: " + mode);
+            }
+        }
+    }
+
     public static final class BuilderImpl implements ImmutableContextSet.Builder {
         private static final int INITIAL_SIZE = 16;
         private Context[] builder = EMPTY.array;
@@ -116,13 +116,6 @@ public enum Dependency {
             Relocation.of(RelocationHelper.OKHTTP3_STRING, RelocationHelper.OKHTTP3_STRING),
             Relocation.of(RelocationHelper.OKIO_STRING, RelocationHelper.OKIO_STRING)
     ),
-    BYTEBUDDY(
-            "net{}bytebuddy",
-            "byte-buddy",
-            "1.10.22",
-            "+TGtxDkxd6+lJExHJXqDlV4n/gR8QJN4xu2gkPsHSoQ=",
-            Relocation.of("bytebuddy", "net{}bytebuddy")
-    ),
     COMMODORE(
             "me{}lucko",
             "commodore",
@@ -33,9 +33,15 @@ import net.luckperms.api.event.EventBus;
 import net.luckperms.api.event.EventSubscription;
 import net.luckperms.api.event.LuckPermsEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -56,6 +62,11 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
      */
     private final Bus bus = new Bus();
 
+    /**
+     * Timings for the posting of each event type, across all subscribers
+     */
+    private final Map<Class<? extends LuckPermsEvent>, EventTimings> timings = new ConcurrentHashMap<>();
+
     protected AbstractEventBus(LuckPermsPlugin plugin, LuckPermsApiProvider apiProvider) {
         this.plugin = plugin;
         this.apiProvider = apiProvider;
@@ -79,7 +90,68 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
     protected abstract P checkPlugin(Object plugin) throws IllegalArgumentException;
 
     public void post(LuckPermsEvent event) {
+        long start = System.nanoTime();
         this.bus.post(event);
+        long duration = System.nanoTime() - start;
+
+        Class<? extends LuckPermsEvent> eventType = event.getEventType();
+        EventTimings timings = this.timings.get(eventType);
+        if (timings == null) {
+            timings = this.timings.computeIfAbsent(eventType, t -> new EventTimings());
+        }
+        timings.record(duration);
+    }
+
+    /**
+     * Gets the timings for the posting of each event type.
+     *
+     * @return the timings
+     */
+    public Map<Class<? extends LuckPermsEvent>, EventTimings> getEventTimings() {
+        return Collections.unmodifiableMap(this.timings);
+    }
+
+    /**
+     * Gets the total number of events posted to the bus.
+     *
+     * @return the number of events posted
+     */
+    public long getPostedCount() {
+        long count = 0;
+        for (EventTimings timings : this.timings.values()) {
+            count += timings.getCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the active subscription which has taken the longest, on average,
+     * to handle an event.
+     *
+     * @return the slowest subscription, or null if no events have been handled
+     */
+    public @Nullable LuckPermsEventSubscription<?> getSlowestSubscription() {
+        LuckPermsEventSubscription<?> slowest = null;
+        double slowestAverage = 0;
+        for (LuckPermsEventSubscription<?> subscription : getAllSubscriptions()) {
+            double average = subscription.getTimings().getAverageTime(TimeUnit.NANOSECONDS);
+            if (average > slowestAverage) {
+                slowest = subscription;
+                slowestAverage = average;
+            }
+        }
+        return slowest;
+    }
+
+    /**
+     * Gets all of the active subscriptions.
+     *
+     * <p>Each subscription records its own {@link LuckPermsEventSubscription#getTimings() timings}.</p>
+     *
+     * @return the subscriptions
+     */
+    public List<LuckPermsEventSubscription<?>> getAllSubscriptions() {
+        return this.bus.getAllHandlers();
     }
 
     public boolean shouldPost(Class<? extends LuckPermsEvent> eventClass) {
@@ -157,6 +229,13 @@ public abstract class AbstractEventBus<P> implements EventBus, AutoCloseable {
             return true;
         }
 
+        public List<LuckPermsEventSubscription<?>> getAllHandlers() {
+            return super.subscribers().values().stream()
+                    .filter(s -> s instanceof LuckPermsEventSubscription)
+                    .map(s -> (LuckPermsEventSubscription<?>) s)
+                    .collect(Collectors.toList());
+        }
+
         public <T extends LuckPermsEvent> Set<EventSubscription<T>> getHandlers(Class<T> eventClass) {
             //noinspection unchecked
             return super.subscribers().values().stream()
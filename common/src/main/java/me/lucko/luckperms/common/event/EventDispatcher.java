@@ -30,7 +30,50 @@ import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.api.implementation.ApiPermissionHolder;
 import me.lucko.luckperms.common.cacheddata.GroupCachedDataManager;
 import me.lucko.luckperms.common.cacheddata.UserCachedDataManager;
-import me.lucko.luckperms.common.event.gen.GeneratedEventClass;
+import me.lucko.luckperms.common.event.gen.GenerateEventClasses;
+import me.lucko.luckperms.common.event.gen.GeneratedEvents;
+import me.lucko.luckperms.common.event.gen.context.ContextUpdateEventImpl;
+import me.lucko.luckperms.common.event.gen.extension.ExtensionLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupCacheLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupCreateEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupDataRecalculateEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupDeleteEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupLoadAllEventImpl;
+import me.lucko.luckperms.common.event.gen.group.GroupLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.log.LogBroadcastEventImpl;
+import me.lucko.luckperms.common.event.gen.log.LogNetworkPublishEventImpl;
+import me.lucko.luckperms.common.event.gen.log.LogNotifyEventImpl;
+import me.lucko.luckperms.common.event.gen.log.LogPublishEventImpl;
+import me.lucko.luckperms.common.event.gen.log.LogReceiveEventImpl;
+import me.lucko.luckperms.common.event.gen.messaging.CustomMessageReceiveEventImpl;
+import me.lucko.luckperms.common.event.gen.node.NodeAddEventImpl;
+import me.lucko.luckperms.common.event.gen.node.NodeClearEventImpl;
+import me.lucko.luckperms.common.event.gen.node.NodeRemoveEventImpl;
+import me.lucko.luckperms.common.event.gen.player.PlayerDataSaveEventImpl;
+import me.lucko.luckperms.common.event.gen.player.PlayerLoginProcessEventImpl;
+import me.lucko.luckperms.common.event.gen.player.lookup.UniqueIdDetermineTypeEventImpl;
+import me.lucko.luckperms.common.event.gen.player.lookup.UniqueIdLookupEventImpl;
+import me.lucko.luckperms.common.event.gen.player.lookup.UsernameLookupEventImpl;
+import me.lucko.luckperms.common.event.gen.player.lookup.UsernameValidityCheckEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.ConfigReloadEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PostNetworkSyncEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PostSyncEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PreNetworkSyncEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PreSyncEventImpl;
+import me.lucko.luckperms.common.event.gen.track.TrackCreateEventImpl;
+import me.lucko.luckperms.common.event.gen.track.TrackDeleteEventImpl;
+import me.lucko.luckperms.common.event.gen.track.TrackLoadAllEventImpl;
+import me.lucko.luckperms.common.event.gen.track.TrackLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.track.mutate.TrackAddGroupEventImpl;
+import me.lucko.luckperms.common.event.gen.track.mutate.TrackClearEventImpl;
+import me.lucko.luckperms.common.event.gen.track.mutate.TrackRemoveGroupEventImpl;
+import me.lucko.luckperms.common.event.gen.user.UserCacheLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.user.UserDataRecalculateEventImpl;
+import me.lucko.luckperms.common.event.gen.user.UserFirstLoginEventImpl;
+import me.lucko.luckperms.common.event.gen.user.UserLoadEventImpl;
+import me.lucko.luckperms.common.event.gen.user.UserUnloadEventImpl;
+import me.lucko.luckperms.common.event.gen.user.track.UserDemoteEventImpl;
+import me.lucko.luckperms.common.event.gen.user.track.UserPromoteEventImpl;
 import me.lucko.luckperms.common.event.model.EntitySourceImpl;
 import me.lucko.luckperms.common.event.model.SenderPlatformEntity;
 import me.lucko.luckperms.common.event.model.UnknownSource;
@@ -41,6 +84,7 @@ import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.util.Difference;
+import net.luckperms.api.LuckPerms;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.event.LuckPermsEvent;
 import net.luckperms.api.event.cause.CreationCause;
@@ -61,7 +105,6 @@ import net.luckperms.api.event.log.LogReceiveEvent;
 import net.luckperms.api.event.messaging.CustomMessageReceiveEvent;
 import net.luckperms.api.event.node.NodeAddEvent;
 import net.luckperms.api.event.node.NodeClearEvent;
-import net.luckperms.api.event.node.NodeMutateEvent;
 import net.luckperms.api.event.node.NodeRemoveEvent;
 import net.luckperms.api.event.player.PlayerDataSaveEvent;
 import net.luckperms.api.event.player.PlayerLoginProcessEvent;
@@ -103,7 +146,53 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+@GenerateEventClasses({
+        ContextUpdateEvent.class,
+        ExtensionLoadEvent.class,
+        GroupCacheLoadEvent.class,
+        GroupCreateEvent.class,
+        GroupDataRecalculateEvent.class,
+        GroupDeleteEvent.class,
+        GroupLoadAllEvent.class,
+        GroupLoadEvent.class,
+        LogBroadcastEvent.class,
+        LogNetworkPublishEvent.class,
+        LogNotifyEvent.class,
+        LogPublishEvent.class,
+        LogReceiveEvent.class,
+        CustomMessageReceiveEvent.class,
+        NodeAddEvent.class,
+        NodeClearEvent.class,
+        NodeRemoveEvent.class,
+        PlayerDataSaveEvent.class,
+        PlayerLoginProcessEvent.class,
+        UniqueIdDetermineTypeEvent.class,
+        UniqueIdLookupEvent.class,
+        UsernameLookupEvent.class,
+        UsernameValidityCheckEvent.class,
+        ConfigReloadEvent.class,
+        PostNetworkSyncEvent.class,
+        PostSyncEvent.class,
+        PreNetworkSyncEvent.class,
+        PreSyncEvent.class,
+        TrackCreateEvent.class,
+        TrackDeleteEvent.class,
+        TrackLoadAllEvent.class,
+        TrackLoadEvent.class,
+        TrackAddGroupEvent.class,
+        TrackClearEvent.class,
+        TrackRemoveGroupEvent.class,
+        UserCacheLoadEvent.class,
+        UserDataRecalculateEvent.class,
+        UserFirstLoginEvent.class,
+        UserLoadEvent.class,
+        UserUnloadEvent.class,
+        UserDemoteEvent.class,
+        UserPromoteEvent.class
+})
 public final class EventDispatcher {
     private final AbstractEventBus<?> eventBus;
 
@@ -115,20 +204,11 @@ public final class EventDispatcher {
         return this.eventBus;
     }
 
-    private LuckPermsEvent generate(Class<? extends LuckPermsEvent> eventClass, Object... params) {
-        try {
-            return GeneratedEventClass.generate(eventClass).newInstance(this.eventBus.getApiProvider(), params);
-        } catch (Throwable e) {
-            throw new RuntimeException("Exception occurred whilst generating event instance", e);
-        }
-    }
-
-    private void post(Class<? extends LuckPermsEvent> eventClass, Object... params) {
-        LuckPermsEvent event = generate(eventClass, params);
-        this.eventBus.post(event);
+    private LuckPerms api() {
+        return this.eventBus.getApiProvider();
     }
 
-    private void postAsync(Class<? extends LuckPermsEvent> eventClass, Object... params) {
+    private void postAsync(Class<? extends LuckPermsEvent> eventClass, Supplier<? extends LuckPermsEvent> event) {
         // check against common mistakes - events with any sort of result shouldn't be posted async
         if (Cancellable.class.isAssignableFrom(eventClass) || ResultEvent.class.isAssignableFrom(eventClass)) {
             throw new RuntimeException("Event cannot be posted async (" + eventClass.getName() + ")");
@@ -139,28 +219,25 @@ public final class EventDispatcher {
             return;
         }
 
-        // async: generate an event class and post it
-        this.eventBus.getPlugin().getBootstrap().getScheduler().executeAsync(() -> post(eventClass, params));
+        // async: create the event and post it
+        this.eventBus.getPlugin().getBootstrap().getScheduler().executeAsync(() -> this.eventBus.post(event.get()));
     }
 
-    private void postSync(Class<? extends LuckPermsEvent> eventClass, Object... params) {
+    private void postSync(Class<? extends LuckPermsEvent> eventClass, Supplier<? extends LuckPermsEvent> event) {
         // if there aren't any handlers registered for our event, don't bother trying to post it
         if (!this.eventBus.shouldPost(eventClass)) {
             return;
         }
 
-        // generate an event class and post it
-        post(eventClass, params);
+        // create the event and post it
+        this.eventBus.post(event.get());
     }
 
-    private boolean postCancellable(Class<? extends LuckPermsEvent> eventClass, Object... params) {
+    private boolean postCancellable(Class<? extends LuckPermsEvent> eventClass, boolean initialState, Function<AtomicBoolean, ? extends LuckPermsEvent> event) {
         if (!Cancellable.class.isAssignableFrom(eventClass)) {
             throw new RuntimeException("Event is not cancellable: " + eventClass.getName());
         }
 
-        // extract the initial state from the first parameter
-        boolean initialState = (boolean) params[0];
-
         // if there aren't any handlers registered for the event, just return the initial state
         if (!this.eventBus.shouldPost(eventClass)) {
             return initialState;
@@ -168,66 +245,66 @@ public final class EventDispatcher {
 
         // otherwise:
         // - initialise an AtomicBoolean for the result with the initial state
-        // - replace the boolean with the AtomicBoolean in the params array
-        // - generate an event class and post it
+        // - create the event using it as the cancellation state, and post it
         AtomicBoolean cancel = new AtomicBoolean(initialState);
-        params[0] = cancel;
-        post(eventClass, params);
+        this.eventBus.post(event.apply(cancel));
 
         // return the final status
         return cancel.get();
     }
 
     public void dispatchContextUpdate(Object subject) {
-        postSync(ContextUpdateEvent.class, subject);
+        postSync(ContextUpdateEvent.class, () -> new ContextUpdateEventImpl(api(), subject));
     }
 
     public void dispatchExtensionLoad(Extension extension) {
-        postAsync(ExtensionLoadEvent.class, extension);
+        postAsync(ExtensionLoadEvent.class, () -> new ExtensionLoadEventImpl(api(), extension));
     }
 
     public void dispatchGroupCacheLoad(Group group, GroupCachedDataManager data) {
-        postAsync(GroupCacheLoadEvent.class, group.getApiProxy(), data);
+        postAsync(GroupCacheLoadEvent.class, () -> new GroupCacheLoadEventImpl(api(), group.getApiProxy(), data));
     }
 
     public void dispatchGroupCreate(Group group, CreationCause cause) {
-        postAsync(GroupCreateEvent.class, group.getApiProxy(), cause);
+        postAsync(GroupCreateEvent.class, () -> new GroupCreateEventImpl(api(), group.getApiProxy(), cause));
     }
 
     public void dispatchGroupDelete(Group group, DeletionCause cause) {
-        postAsync(GroupDeleteEvent.class, group.getName(), ImmutableSet.copyOf(group.normalData().asSet()), cause);
+        String name = group.getName();
+        ImmutableSet<Node> existingData = ImmutableSet.copyOf(group.normalData().asSet());
+        postAsync(GroupDeleteEvent.class, () -> new GroupDeleteEventImpl(api(), name, existingData, cause));
     }
 
     public void dispatchGroupLoadAll() {
-        postAsync(GroupLoadAllEvent.class);
+        postAsync(GroupLoadAllEvent.class, () -> new GroupLoadAllEventImpl(api()));
     }
 
     public void dispatchGroupLoad(Group group) {
-        postAsync(GroupLoadEvent.class, group.getApiProxy());
+        postAsync(GroupLoadEvent.class, () -> new GroupLoadEventImpl(api(), group.getApiProxy()));
     }
 
     public boolean dispatchLogBroadcast(boolean initialState, Action entry, LogBroadcastEvent.Origin origin) {
-        return postCancellable(LogBroadcastEvent.class, initialState, entry, origin);
+        return postCancellable(LogBroadcastEvent.class, initialState, cancel -> new LogBroadcastEventImpl(api(), cancel, entry, origin));
     }
 
     public boolean dispatchLogPublish(boolean initialState, Action entry) {
-        return postCancellable(LogPublishEvent.class, initialState, entry);
+        return postCancellable(LogPublishEvent.class, initialState, cancel -> new LogPublishEventImpl(api(), cancel, entry));
     }
 
     public boolean dispatchLogNetworkPublish(boolean initialState, UUID id, Action entry) {
-        return postCancellable(LogNetworkPublishEvent.class, initialState, id, entry);
+        return postCancellable(LogNetworkPublishEvent.class, initialState, cancel -> new LogNetworkPublishEventImpl(api(), cancel, id, entry));
     }
 
     public boolean dispatchLogNotify(boolean initialState, Action entry, LogNotifyEvent.Origin origin, Sender sender) {
-        return postCancellable(LogNotifyEvent.class, initialState, entry, origin, new SenderPlatformEntity(sender));
+        return postCancellable(LogNotifyEvent.class, initialState, cancel -> new LogNotifyEventImpl(api(), cancel, entry, origin, new SenderPlatformEntity(sender)));
     }
 
     public void dispatchLogReceive(UUID id, Action entry) {
-        postAsync(LogReceiveEvent.class, id, entry);
+        postAsync(LogReceiveEvent.class, () -> new LogReceiveEventImpl(api(), id, entry));
     }
 
     public void dispatchCustomMessageReceive(String channelId, String payload) {
-        postAsync(CustomMessageReceiveEvent.class, channelId, payload);
+        postAsync(CustomMessageReceiveEvent.class, () -> new CustomMessageReceiveEventImpl(api(), channelId, payload));
     }
 
     public void dispatchNodeChanges(PermissionHolder target, DataType dataType, Difference<Node> changes) {
@@ -244,10 +321,12 @@ public final class EventDispatcher {
 
         // call an event for each recorded change
         for (Difference.Change<Node> change : changes.getChanges()) {
-            Class<? extends NodeMutateEvent> type = change.type() == Difference.ChangeType.ADD ?
-                    NodeAddEvent.class : NodeRemoveEvent.class;
-
-            postAsync(type, proxy, dataType, state, change.value());
+            Node node = change.value();
+            if (change.type() == Difference.ChangeType.ADD) {
+                postAsync(NodeAddEvent.class, () -> new NodeAddEventImpl(api(), proxy, dataType, state, node));
+            } else {
+                postAsync(NodeRemoveEvent.class, () -> new NodeRemoveEventImpl(api(), proxy, dataType, state, node));
+            }
         }
     }
 
@@ -265,128 +344,135 @@ public final class EventDispatcher {
 
         // call clear event
         ImmutableSet<Node> nodes = ImmutableSet.copyOf(changes.getRemoved());
-        postAsync(NodeClearEvent.class, proxy, dataType, state, nodes);
+        postAsync(NodeClearEvent.class, () -> new NodeClearEventImpl(api(), proxy, dataType, state, nodes));
 
         // call add event if needed for any nodes that were added
         for (Node added : changes.getAdded()) {
-            postAsync(NodeAddEvent.class, proxy, dataType, state, added);
+            postAsync(NodeAddEvent.class, () -> new NodeAddEventImpl(api(), proxy, dataType, state, added));
         }
     }
 
     public void dispatchConfigReload() {
-        postAsync(ConfigReloadEvent.class);
+        postAsync(ConfigReloadEvent.class, () -> new ConfigReloadEventImpl(api()));
     }
 
     public void dispatchNetworkPostSync(UUID id, SyncType type, boolean didOccur, UUID specificUserUniqueId) {
-        postAsync(PostNetworkSyncEvent.class, id, type, didOccur, specificUserUniqueId);
+        postAsync(PostNetworkSyncEvent.class, () -> new PostNetworkSyncEventImpl(api(), id, type, didOccur, specificUserUniqueId));
     }
 
     public void dispatchPostSync() {
-        postAsync(PostSyncEvent.class);
+        postAsync(PostSyncEvent.class, () -> new PostSyncEventImpl(api()));
     }
 
     public boolean dispatchNetworkPreSync(boolean initialState, UUID id, SyncType type, UUID specificUserUniqueId) {
-        return postCancellable(PreNetworkSyncEvent.class, initialState, id, type, specificUserUniqueId);
+        return postCancellable(PreNetworkSyncEvent.class, initialState, cancel -> new PreNetworkSyncEventImpl(api(), cancel, id, type, specificUserUniqueId));
     }
 
     public boolean dispatchPreSync(boolean initialState) {
-        return postCancellable(PreSyncEvent.class, initialState);
+        return postCancellable(PreSyncEvent.class, initialState, cancel -> new PreSyncEventImpl(api(), cancel));
     }
 
     public void dispatchTrackCreate(Track track, CreationCause cause) {
-        postAsync(TrackCreateEvent.class, track.getApiProxy(), cause);
+        postAsync(TrackCreateEvent.class, () -> new TrackCreateEventImpl(api(), track.getApiProxy(), cause));
     }
 
     public void dispatchTrackDelete(Track track, DeletionCause cause) {
-        postAsync(TrackDeleteEvent.class, track.getName(), ImmutableList.copyOf(track.getGroups()), cause);
+        String name = track.getName();
+        ImmutableList<String> existingData = ImmutableList.copyOf(track.getGroups());
+        postAsync(TrackDeleteEvent.class, () -> new TrackDeleteEventImpl(api(), name, existingData, cause));
     }
 
     public void dispatchTrackLoadAll() {
-        postAsync(TrackLoadAllEvent.class);
+        postAsync(TrackLoadAllEvent.class, () -> new TrackLoadAllEventImpl(api()));
     }
 
     public void dispatchTrackLoad(Track track) {
-        postAsync(TrackLoadEvent.class, track.getApiProxy());
+        postAsync(TrackLoadEvent.class, () -> new TrackLoadEventImpl(api(), track.getApiProxy()));
     }
 
     public void dispatchTrackAddGroup(Track track, String group, List<String> before, List<String> after) {
-        postAsync(TrackAddGroupEvent.class, track.getApiProxy(), ImmutableList.copyOf(before), ImmutableList.copyOf(after), group);
+        ImmutableList<String> stateBefore = ImmutableList.copyOf(before);
+        ImmutableList<String> stateAfter = ImmutableList.copyOf(after);
+        postAsync(TrackAddGroupEvent.class, () -> new TrackAddGroupEventImpl(api(), track.getApiProxy(), stateBefore, stateAfter, group));
     }
 
     public void dispatchTrackClear(Track track, List<String> before) {
-        postAsync(TrackClearEvent.class, track.getApiProxy(), ImmutableList.copyOf(before), ImmutableList.of());
+        ImmutableList<String> stateBefore = ImmutableList.copyOf(before);
+        postAsync(TrackClearEvent.class, () -> new TrackClearEventImpl(api(), track.getApiProxy(), stateBefore, ImmutableList.of()));
     }
 
     public void dispatchTrackRemoveGroup(Track track, String group, List<String> before, List<String> after) {
-        postAsync(TrackRemoveGroupEvent.class, track.getApiProxy(), ImmutableList.copyOf(before), ImmutableList.copyOf(after), group);
+        ImmutableList<String> stateBefore = ImmutableList.copyOf(before);
+        ImmutableList<String> stateAfter = ImmutableList.copyOf(after);
+        postAsync(TrackRemoveGroupEvent.class, () -> new TrackRemoveGroupEventImpl(api(), track.getApiProxy(), stateBefore, stateAfter, group));
     }
 
     public void dispatchUserCacheLoad(User user, UserCachedDataManager data) {
-        postAsync(UserCacheLoadEvent.class, user.getApiProxy(), data);
+        postAsync(UserCacheLoadEvent.class, () -> new UserCacheLoadEventImpl(api(), user.getApiProxy(), data));
     }
 
     public void dispatchDataRecalculate(PermissionHolder holder) {
         if (holder.getType() == HolderType.USER) {
             User user = (User) holder;
-            postAsync(UserDataRecalculateEvent.class, user.getApiProxy(), user.getCachedData());
+            postAsync(UserDataRecalculateEvent.class, () -> new UserDataRecalculateEventImpl(api(), user.getApiProxy(), user.getCachedData()));
         } else {
             Group group = (Group) holder;
-            postAsync(GroupDataRecalculateEvent.class, group.getApiProxy(), group.getCachedData());
+            postAsync(GroupDataRecalculateEvent.class, () -> new GroupDataRecalculateEventImpl(api(), group.getApiProxy(), group.getCachedData()));
         }
     }
 
     public void dispatchUserFirstLogin(UUID uniqueId, String username) {
-        postAsync(UserFirstLoginEvent.class, uniqueId, username);
+        postAsync(UserFirstLoginEvent.class, () -> new UserFirstLoginEventImpl(api(), uniqueId, username));
     }
 
     public void dispatchPlayerLoginProcess(UUID uniqueId, String username, @Nullable User user) {
-        postSync(PlayerLoginProcessEvent.class, uniqueId, username, user == null ? null : user.getApiProxy());
+        postSync(PlayerLoginProcessEvent.class, () -> new PlayerLoginProcessEventImpl(api(), uniqueId, username, user == null ? null : user.getApiProxy()));
     }
 
     public void dispatchPlayerDataSave(UUID uniqueId, String username, PlayerSaveResult result) {
-        postAsync(PlayerDataSaveEvent.class, uniqueId, username, result);
+        postAsync(PlayerDataSaveEvent.class, () -> new PlayerDataSaveEventImpl(api(), uniqueId, username, result));
     }
 
     public String dispatchUniqueIdDetermineType(UUID uniqueId, String initialType) {
         AtomicReference<String> result = new AtomicReference<>(initialType);
-        postSync(UniqueIdDetermineTypeEvent.class, result, uniqueId);
+        postSync(UniqueIdDetermineTypeEvent.class, () -> new UniqueIdDetermineTypeEventImpl(api(), result, uniqueId));
         return result.get();
     }
 
     public UUID dispatchUniqueIdLookup(String username, UUID initial) {
         AtomicReference<UUID> result = new AtomicReference<>(initial);
-        postSync(UniqueIdLookupEvent.class, result, username);
+        postSync(UniqueIdLookupEvent.class, () -> new UniqueIdLookupEventImpl(api(), result, username));
         return result.get();
     }
 
     public String dispatchUsernameLookup(UUID uniqueId, String initial) {
         AtomicReference<String> result = new AtomicReference<>(initial);
-        postSync(UsernameLookupEvent.class, result, uniqueId);
+        postSync(UsernameLookupEvent.class, () -> new UsernameLookupEventImpl(api(), result, uniqueId));
         return result.get();
     }
 
     public boolean dispatchUsernameValidityCheck(String username, boolean initialState) {
         AtomicBoolean result = new AtomicBoolean(initialState);
-        postSync(UsernameValidityCheckEvent.class, username, result);
+        postSync(UsernameValidityCheckEvent.class, () -> new UsernameValidityCheckEventImpl(api(), username, result));
         return result.get();
     }
 
     public void dispatchUserLoad(User user) {
-        postAsync(UserLoadEvent.class, user.getApiProxy());
+        postAsync(UserLoadEvent.class, () -> new UserLoadEventImpl(api(), user.getApiProxy()));
     }
 
     public boolean dispatchUserUnload(User user) {
-        return postCancellable(UserUnloadEvent.class, false, user.getApiProxy());
+        return postCancellable(UserUnloadEvent.class, false, cancel -> new UserUnloadEventImpl(api(), cancel, user.getApiProxy()));
     }
 
     public void dispatchUserDemote(User user, Track track, String from, String to, @Nullable Sender sender) {
         Source source = sender == null ? UnknownSource.INSTANCE : new EntitySourceImpl(new SenderPlatformEntity(sender));
-        postAsync(UserDemoteEvent.class, source, track.getApiProxy(), user.getApiProxy(), Optional.ofNullable(from), Optional.ofNullable(to));
+        postAsync(UserDemoteEvent.class, () -> new UserDemoteEventImpl(api(), source, track.getApiProxy(), user.getApiProxy(), Optional.ofNullable(from), Optional.ofNullable(to)));
     }
 
     public void dispatchUserPromote(User user, Track track, String from, String to, @Nullable Sender sender) {
         Source source = sender == null ? UnknownSource.INSTANCE : new EntitySourceImpl(new SenderPlatformEntity(sender));
-        postAsync(UserPromoteEvent.class, source, track.getApiProxy(), user.getApiProxy(), Optional.ofNullable(from), Optional.ofNullable(to));
+        postAsync(UserPromoteEvent.class, () -> new UserPromoteEventImpl(api(), source, track.getApiProxy(), user.getApiProxy(), Optional.ofNullable(from), Optional.ofNullable(to)));
     }
 
     private static ApiPermissionHolder proxy(PermissionHolder holder) {
@@ -401,50 +487,7 @@ public final class EventDispatcher {
 
     @SuppressWarnings("unchecked")
     public static Class<? extends LuckPermsEvent>[] getKnownEventTypes() {
-        return new Class[]{
-                ContextUpdateEvent.class,
-                ExtensionLoadEvent.class,
-                GroupCacheLoadEvent.class,
-                GroupCreateEvent.class,
-                GroupDataRecalculateEvent.class,
-                GroupDeleteEvent.class,
-                GroupLoadAllEvent.class,
-                GroupLoadEvent.class,
-                LogBroadcastEvent.class,
-                LogNetworkPublishEvent.class,
-                LogNotifyEvent.class,
-                LogPublishEvent.class,
-                LogReceiveEvent.class,
-                CustomMessageReceiveEvent.class,
-                NodeAddEvent.class,
-                NodeClearEvent.class,
-                NodeRemoveEvent.class,
-                PlayerDataSaveEvent.class,
-                PlayerLoginProcessEvent.class,
-                UniqueIdDetermineTypeEvent.class,
-                UniqueIdLookupEvent.class,
-                UsernameLookupEvent.class,
-                UsernameValidityCheckEvent.class,
-                ConfigReloadEvent.class,
-                PostNetworkSyncEvent.class,
-                PostSyncEvent.class,
-                PreNetworkSyncEvent.class,
-                PreSyncEvent.class,
-                TrackCreateEvent.class,
-                TrackDeleteEvent.class,
-                TrackLoadAllEvent.class,
-                TrackLoadEvent.class,
-                TrackAddGroupEvent.class,
-                TrackClearEvent.class,
-                TrackRemoveGroupEvent.class,
-                UserCacheLoadEvent.class,
-                UserDataRecalculateEvent.class,
-                UserFirstLoginEvent.class,
-                UserLoadEvent.class,
-                UserUnloadEvent.class,
-                UserDemoteEvent.class,
-                UserPromoteEvent.class
-        };
+        return GeneratedEvents.getEventTypes().toArray(new Class[0]);
     }
 
 }
@@ -31,6 +31,7 @@ import net.luckperms.api.event.LuckPermsEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
@@ -41,6 +42,11 @@ import java.util.function.Consumer;
  */
 public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements EventSubscription<T>, EventSubscriber<T> {
 
+    /**
+     * The time above which a single invocation of a handler is considered slow
+     */
+    private static final long SLOW_HANDLER_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(50);
+
     /**
      * The event bus which created this handler
      */
@@ -66,6 +72,16 @@ public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements Eve
      */
     private final AtomicBoolean active = new AtomicBoolean(true);
 
+    /**
+     * Timings for the invocations of this handler
+     */
+    private final EventTimings timings = new EventTimings();
+
+    /**
+     * If a warning has been logged about this handler being slow
+     */
+    private final AtomicBoolean warnedSlow = new AtomicBoolean(false);
+
     public LuckPermsEventSubscription(AbstractEventBus<?> eventBus, Class<T> eventClass, Consumer<? super T> consumer, @Nullable Object plugin) {
         this.eventBus = eventBus;
         this.eventClass = eventClass;
@@ -90,13 +106,33 @@ public class LuckPermsEventSubscription<T extends LuckPermsEvent> implements Eve
 
     @Override
     public void invoke(@NonNull T event) throws Throwable {
+        long start = System.nanoTime();
         try {
             this.consumer.accept(event);
         } catch (Throwable t) {
             this.eventBus.getPlugin().getLogger().warn("Unable to pass event " + event.getEventType().getSimpleName() + " to handler " + this.consumer.getClass().getName(), t);
+        } finally {
+            long duration = System.nanoTime() - start;
+            this.timings.record(duration);
+
+            if (duration > SLOW_HANDLER_THRESHOLD && this.warnedSlow.compareAndSet(false, true)) {
+                this.eventBus.getPlugin().getLogger().warn("Handler " + this.consumer.getClass().getName() +
+                        (this.plugin != null ? " (registered by " + this.plugin + ")" : "") +
+                        " took " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms to handle " + event.getEventType().getSimpleName() +
+                        ". Slow handlers delay the processing of other events.");
+            }
         }
     }
 
+    /**
+     * Gets the timings for the invocations of this handler.
+     *
+     * @return the timings
+     */
+    public EventTimings getTimings() {
+        return this.timings;
+    }
+
     @Override
     public @NonNull Class<T> getEventClass() {
         return this.eventClass;
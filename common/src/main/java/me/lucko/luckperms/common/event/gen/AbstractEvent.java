@@ -29,10 +29,12 @@ import net.luckperms.api.LuckPerms;
 import net.luckperms.api.event.LuckPermsEvent;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
-import java.lang.invoke.MethodHandles;
-
 /**
  * Abstract implementation of {@link LuckPermsEvent}.
+ *
+ * <p>Extended by the event classes generated at build time.</p>
+ *
+ * @see GenerateEventClasses
  */
 public abstract class AbstractEvent implements LuckPermsEvent {
     private final LuckPerms api;
@@ -45,9 +47,4 @@ public abstract class AbstractEvent implements LuckPermsEvent {
     public @NonNull LuckPerms getLuckPerms() {
         return this.api;
     }
-
-    // Overridden by the subclass. Used by GeneratedEventClass to get setter method handles.
-    public MethodHandles.Lookup mhl() {
-        throw new UnsupportedOperationException();
-    }
 }
@@ -23,25 +23,32 @@
  *  SOFTWARE.
  */
 
-package me.lucko.luckperms.sponge.tasks;
+package me.lucko.luckperms.common.event.gen;
 
-import me.lucko.luckperms.sponge.service.LuckPermsService;
-import me.lucko.luckperms.sponge.service.model.LPSubject;
-import me.lucko.luckperms.sponge.service.model.LPSubjectCollection;
+import net.luckperms.api.event.LuckPermsEvent;
 
-public class ServiceCacheHousekeepingTask implements Runnable {
-    private final LuckPermsService service;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
 
-    public ServiceCacheHousekeepingTask(LuckPermsService service) {
-        this.service = service;
-    }
+/**
+ * Marks the event types which should have an implementation generated at build time.
+ *
+ * <p>For each type, the {@code EventClassProcessor} generates a class named
+ * {@code <EventType>Impl} in the equivalent sub-package of this package, with a
+ * constructor accepting the API instance followed by each {@code @Param} property in
+ * order. An index of the generated classes is written to {@code GeneratedEvents}.</p>
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.SOURCE)
+public @interface GenerateEventClasses {
+
+    /**
+     * Gets the event types to generate implementations for.
+     *
+     * @return the event types
+     */
+    Class<? extends LuckPermsEvent>[] value();
 
-    @Override
-    public void run() {
-        for (LPSubjectCollection collection : this.service.getLoadedCollections().values()) {
-            for (LPSubject subject : collection.getLoadedSubjects()) {
-                subject.performCacheCleanup();
-            }
-        }
-    }
 }
@@ -38,6 +38,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 
 public class BytebinClient extends AbstractHttpClient {
@@ -140,6 +141,33 @@ public class BytebinClient extends AbstractHttpClient {
         }
     }
 
+    /**
+     * GETs content from bytebin, returning a reader which streams the data
+     * as it is received.
+     *
+     * <p>The caller is responsible for closing the reader.</p>
+     *
+     * @param id the id of the content
+     * @return a reader for the data
+     * @throws IOException if an error occurs
+     */
+    public Reader getContentReader(String id) throws IOException, UnsuccessfulRequestException {
+        Request request = new Request.Builder()
+                .header("User-Agent", this.userAgent)
+                .url(this.url + id)
+                .build();
+
+        Response response = makeHttpRequest(request);
+        ResponseBody responseBody = response.body();
+        if (responseBody == null) {
+            response.close();
+            throw new RuntimeException("No response");
+        }
+
+        // closing the reader closes the response body, and in turn the response
+        return new BufferedReader(new InputStreamReader(responseBody.byteStream(), StandardCharsets.UTF_8));
+    }
+
     public static final class Content {
         private final String key;
 
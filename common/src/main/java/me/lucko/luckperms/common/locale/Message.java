@@ -27,10 +27,15 @@ package me.lucko.luckperms.common.locale;
 
 import com.google.common.collect.Maps;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.context.ContextIds;
+import me.lucko.luckperms.common.event.EventTimings;
+import me.lucko.luckperms.common.event.LuckPermsEventSubscription;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.PermissionHolder;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.user.UserHousekeeper;
+import me.lucko.luckperms.common.model.nodemap.NodeMapFootprint;
 import me.lucko.luckperms.common.node.factory.NodeCommandFactory;
 import me.lucko.luckperms.common.plugin.AbstractLuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
@@ -67,6 +72,8 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import static net.kyori.adventure.text.Component.empty;
@@ -1553,7 +1560,9 @@ public interface Message {
             // "     &3Static contexts: &f{}"
             // "     &3Online Players: &a{} &7(&a{}&7 unique)"
             // "     &3Uptime: &7{}"
-            // "     &3Local Data: &a{} &7users, &a{} &7groups, &a{} &7tracks",
+            // "     &3Local Data: &a{} &7users, &a{} &7groups, &a{} &7tracks"
+            // "     &3Context Ids: &a{}&7/&a{} &7(high cardinality keys: &f{}&7)"
+            // "     &3Event Handlers: &a{} &7handlers, &a{} &7events posted &7(slowest: &f{} &7for &f{}&7, avg &a{}&7, max &a{}&7)",
             prefixed(translatable()
                     .key("luckperms.command.info.running-plugin")
                     .color(DARK_GREEN)
@@ -1699,7 +1708,139 @@ public interface Message {
                                     text(plugin.getGroupManager().getAll().size(), GREEN),
                                     text(plugin.getTrackManager().getAll().size(), GREEN)
                             )
-                    ))
+                    )),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("     "))
+                    .append(translatable("luckperms.command.info.context-ids-key"))
+                    .append(text(": "))
+                    .append(text(ContextIds.getEntryIdCount(), ContextIds.isExhausted() ? RED : GREEN))
+                    .append(text('/', GRAY))
+                    .append(text(ContextIds.MAX_IDS, GREEN))
+                    .apply(builder -> {
+                        Set<String> highCardinalityKeys = ContextIds.getHighCardinalityKeys();
+                        if (!highCardinalityKeys.isEmpty()) {
+                            builder.append(space());
+                            builder.append(text()
+                                    .color(GRAY)
+                                    .append(OPEN_BRACKET)
+                                    .append(translatable()
+                                            .key("luckperms.command.info.context-ids-high-cardinality")
+                                            .args(formatStringList(highCardinalityKeys))
+                                    )
+                                    .append(CLOSE_BRACKET)
+                            );
+                        }
+                    })),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("     "))
+                    .append(translatable("luckperms.command.info.event-handlers-key"))
+                    .append(text(": "))
+                    .append(translatable()
+                            .key("luckperms.command.info.event-handlers")
+                            .color(GRAY)
+                            .args(
+                                    text(plugin.getEventDispatcher().getEventBus().getAllSubscriptions().size(), GREEN),
+                                    text(plugin.getEventDispatcher().getEventBus().getPostedCount(), GREEN)
+                            )
+                    )
+                    .apply(builder -> {
+                        LuckPermsEventSubscription<?> slowest = plugin.getEventDispatcher().getEventBus().getSlowestSubscription();
+                        if (slowest != null) {
+                            EventTimings timings = slowest.getTimings();
+                            builder.append(space());
+                            builder.append(text()
+                                    .color(GRAY)
+                                    .append(OPEN_BRACKET)
+                                    .append(translatable()
+                                            .key("luckperms.command.info.event-handlers-slowest")
+                                            .args(
+                                                    text(slowest.getHandler().getClass().getName(), WHITE),
+                                                    text(slowest.getEventClass().getSimpleName(), WHITE),
+                                                    text(formatMillis(timings.getAverageTime(TimeUnit.NANOSECONDS)), GREEN),
+                                                    text(formatMillis(timings.getMaxTime(TimeUnit.NANOSECONDS)), GREEN)
+                                            )
+                                    )
+                                    .append(CLOSE_BRACKET)
+                            );
+                        }
+                    }))
+    );
+
+    Args2<NodeMapFootprint, NodeMapFootprint> MEMORY_FOOTPRINT = (users, groups) -> joinNewline(
+            // "&bEstimated permission data footprint:"
+            // "&f-  &3Users: &a{} &7holders, &a{} &7nodes across &a{} &7context sets, &a{} &7compacted, approx. &a{}"
+            // "&f-  &3Groups: &a{} &7holders, &a{} &7nodes across &a{} &7context sets, &a{} &7compacted, approx. &a{}"
+            // "&7(estimates cover the node map structures only, not the nodes themselves)"
+            prefixed(translatable()
+                    .key("luckperms.command.memory.header")
+                    .color(AQUA)
+                    .append(text(':'))),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("-  ", WHITE))
+                    .append(translatable("luckperms.command.memory.users-key"))
+                    .append(text(": "))
+                    .append(formatFootprint(users))),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("-  ", WHITE))
+                    .append(translatable("luckperms.command.memory.groups-key"))
+                    .append(text(": "))
+                    .append(formatFootprint(groups))),
+            prefixed(text()
+                    .color(GRAY)
+                    .append(OPEN_BRACKET)
+                    .append(translatable("luckperms.command.memory.note"))
+                    .append(CLOSE_BRACKET))
+    );
+
+    Args1<UserHousekeeper.Stats> MEMORY_USER_HOUSEKEEPING = stats -> joinNewline(
+            // "&bUser housekeeping:"
+            // "&f-  &3Loaded users: &a{} &7({} tracked for unloading)"
+            // "&f-  &3Offline user data: &7approx. &a{} &7of &a{}"
+            // "&f-  &3Unloaded: &a{} &7({} early, to stay within the budget)"
+            prefixed(translatable()
+                    .key("luckperms.command.memory.housekeeping.header")
+                    .color(AQUA)
+                    .append(text(':'))),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("-  ", WHITE))
+                    .append(translatable("luckperms.command.memory.housekeeping.loaded-key"))
+                    .append(text(": "))
+                    .append(text(stats.loaded(), GREEN))
+                    .append(space())
+                    .append(text()
+                            .color(GRAY)
+                            .append(OPEN_BRACKET)
+                            .append(translatable("luckperms.command.memory.housekeeping.tracked", text(stats.tracked())))
+                            .append(CLOSE_BRACKET))),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("-  ", WHITE))
+                    .append(translatable("luckperms.command.memory.housekeeping.budget-key"))
+                    .append(text(": "))
+                    .append(stats.budgetBytes() <= 0
+                            ? translatable("luckperms.command.memory.housekeeping.no-budget", GRAY)
+                            : translatable()
+                                    .key("luckperms.command.memory.housekeeping.budget")
+                                    .color(GRAY)
+                                    .args(text(formatBytes(stats.estimatedBytes()), GREEN), text(formatBytes(stats.budgetBytes()), GREEN))
+                                    .build())),
+            prefixed(text()
+                    .color(DARK_AQUA)
+                    .append(text("-  ", WHITE))
+                    .append(translatable("luckperms.command.memory.housekeeping.unloaded-key"))
+                    .append(text(": "))
+                    .append(text(stats.unloads(), GREEN))
+                    .append(space())
+                    .append(text()
+                            .color(GRAY)
+                            .append(OPEN_BRACKET)
+                            .append(translatable("luckperms.command.memory.housekeeping.evicted", text(stats.evictions())))
+                            .append(CLOSE_BRACKET)))
     );
 
     Args1<Component> CREATE_ERROR = name -> prefixed(translatable()
@@ -4179,6 +4320,30 @@ public interface Message {
             .append(FULL_STOP)
     );
 
+    static String formatBytes(long bytes) {
+        return new DecimalFormat("#.##").format(bytes / 1048576D) + "MB";
+    }
+
+    static String formatMillis(double nanos) {
+        return new DecimalFormat("#.##").format(nanos / 1000000D) + "ms";
+    }
+
+    static Component formatFootprint(NodeMapFootprint footprint) {
+        String size = formatBytes(footprint.bytes());
+
+        return translatable()
+                .key("luckperms.command.memory.summary")
+                .color(GRAY)
+                .args(
+                        text(footprint.holders(), GREEN),
+                        text(footprint.nodes(), GREEN),
+                        text(footprint.contexts(), GREEN),
+                        text(footprint.compacted(), GREEN),
+                        text(size, GREEN)
+                )
+                .build();
+    }
+
     static Component formatColoredValue(String value) {
         boolean containsLegacyFormattingCharacter = value.indexOf(LegacyComponentSerializer.AMPERSAND_CHAR) != -1
                 || value.indexOf(LegacyComponentSerializer.SECTION_CHAR) != -1;
@@ -260,6 +260,7 @@ public class LuckPermsMessagingService extends AsyncInterface implements Interna
             }
 
             this.plugin.getLogger().info("[Messaging] Received update ping with id: " + msgId);
+            this.plugin.getStorage().invalidateCaches();
             this.plugin.getSyncTaskBuffer().request()
                     .thenRunAsync(() -> this.plugin.getEventDispatcher().dispatchNetworkPostSync(msgId, SyncType.FULL, true, null));
 
@@ -28,12 +28,15 @@ package me.lucko.luckperms.common.model;
 import me.lucko.luckperms.common.api.implementation.ApiGroup;
 import me.lucko.luckperms.common.cache.Cache;
 import me.lucko.luckperms.common.cacheddata.GroupCachedDataManager;
+import me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache;
 import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.Difference;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.node.NodeType;
 import net.luckperms.api.node.types.DisplayNameNode;
 import net.luckperms.api.node.types.WeightNode;
@@ -77,10 +80,25 @@ public class Group extends PermissionHolder {
     @Override
     protected void invalidateCache() {
         super.invalidateCache();
+        invalidateGroupCaches();
+    }
+
+    @Override
+    protected void invalidateCache(Difference<Node> changes) {
+        super.invalidateCache(changes);
+        invalidateGroupCaches();
+    }
 
+    private void invalidateGroupCaches() {
         // invalidate our caches
         this.weightCache.invalidate();
         this.displayNameCache.invalidate();
+
+        // users sharing resolved maps may inherit from this group
+        SharedPermissionMapCache sharedMaps = getPlugin().getSharedPermissionMapCache();
+        if (sharedMaps != null) {
+            sharedMaps.invalidate();
+        }
     }
 
     // name getters
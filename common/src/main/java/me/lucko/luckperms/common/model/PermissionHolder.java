@@ -29,6 +29,7 @@ import com.google.common.collect.Iterables;
 import me.lucko.luckperms.common.cacheddata.HolderCachedDataManager;
 import me.lucko.luckperms.common.cacheddata.result.IntegerResult;
 import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.MetaSources;
 import me.lucko.luckperms.common.inheritance.InheritanceComparator;
 import me.lucko.luckperms.common.inheritance.InheritanceGraph;
 import me.lucko.luckperms.common.model.nodemap.NodeMap;
@@ -215,6 +216,19 @@ public abstract class PermissionHolder {
         getPlugin().getEventDispatcher().dispatchDataRecalculate(this);
     }
 
+    /**
+     * Invalidates the holders cached data following a change to its own nodes.
+     *
+     * <p>Unlike {@link #invalidateCache()}, cached meta may be updated in place
+     * if the changes allow it.</p>
+     *
+     * @param changes the changes
+     */
+    protected void invalidateCache(Difference<Node> changes) {
+        getCachedData().invalidate(changes);
+        getPlugin().getEventDispatcher().dispatchDataRecalculate(this);
+    }
+
     public void loadNodesFromStorage(Iterable<? extends Node> set) {
         // TODO: should we attempt to "replay" existing changes on top of the new data?
         normalData().discardChanges();
@@ -387,13 +401,22 @@ public abstract class PermissionHolder {
     }
 
     public MetaAccumulator accumulateMeta(MetaAccumulator accumulator, QueryOptions queryOptions) {
+        return accumulateMeta(accumulator, queryOptions, null);
+    }
+
+    public MetaAccumulator accumulateMeta(MetaAccumulator accumulator, QueryOptions queryOptions, @Nullable MetaSources sources) {
         InheritanceGraph graph = this.plugin.getInheritanceGraphFactory().getGraph(queryOptions);
         for (PermissionHolder holder : graph.traverse(this)) {
+            final List<Node> accumulated = sources != null ? new ArrayList<>() : null;
+
             // accumulate nodes
             for (DataType dataType : holder.queryOrder(queryOptions)) {
                 holder.getData(dataType).forEach(queryOptions, node -> {
                     if (NodeType.META_OR_CHAT_META.matches(node)) {
                         accumulator.accumulateNode(node);
+                        if (accumulated != null) {
+                            accumulated.add(node);
+                        }
                     }
                 });
             }
@@ -403,18 +426,44 @@ public abstract class PermissionHolder {
             if (!weight.isNull()) {
                 accumulator.accumulateWeight(weight);
             }
+
+            if (sources != null) {
+                sources.recordHolder(holder == this, accumulated, weight);
+            }
         }
 
         // accumulate primary group
         if (this instanceof User) {
             String primaryGroup = ((User) this).getPrimaryGroup().calculateValue(queryOptions);
             accumulator.setPrimaryGroup(primaryGroup);
+            if (sources != null) {
+                sources.recordPrimaryGroup(primaryGroup);
+            }
         }
 
         accumulator.complete();
         return accumulator;
     }
 
+    /**
+     * Gets the meta and chat meta nodes held directly by this holder, in the
+     * order they would be accumulated by {@link #accumulateMeta(MetaAccumulator, QueryOptions)}.
+     *
+     * @param queryOptions the query options
+     * @return the nodes
+     */
+    public List<Node> getOwnMetaNodes(QueryOptions queryOptions) {
+        List<Node> nodes = new ArrayList<>();
+        for (DataType dataType : queryOrder(queryOptions)) {
+            getData(dataType).forEach(queryOptions, node -> {
+                if (NodeType.META_OR_CHAT_META.matches(node)) {
+                    nodes.add(node);
+                }
+            });
+        }
+        return nodes;
+    }
+
     /**
      * Removes temporary permissions that have expired
      *
@@ -463,7 +512,7 @@ public abstract class PermissionHolder {
         }
 
         Difference<Node> changes = getData(dataType).add(node);
-        invalidateCache();
+        invalidateCache(changes);
         if (callEvent) {
             this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
         }
@@ -500,7 +549,7 @@ public abstract class PermissionHolder {
                 if (newNode != null) {
                     // Remove the old Node & add the new one.
                     Difference<Node> changes = data.removeThenAdd(otherMatch, newNode);
-                    invalidateCache();
+                    invalidateCache(changes);
                     this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
                     return new MergedNodeResult(DataMutateResult.SUCCESS, newNode);
@@ -518,7 +567,7 @@ public abstract class PermissionHolder {
         }
 
         Difference<Node> changes = getData(dataType).remove(node);
-        invalidateCache();
+        invalidateCache(changes);
         this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
         return DataMutateResult.SUCCESS;
@@ -540,7 +589,7 @@ public abstract class PermissionHolder {
 
                     // Remove the old Node & add the new one.
                     Difference<Node> changes = data.removeThenAdd(otherMatch, newNode);
-                    invalidateCache();
+                    invalidateCache(changes);
                     this.plugin.getEventDispatcher().dispatchNodeChanges(this, dataType, changes);
 
                     return new MergedNodeResult(DataMutateResult.SUCCESS, newNode);
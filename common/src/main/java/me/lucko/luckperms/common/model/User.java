@@ -29,7 +29,10 @@ import me.lucko.luckperms.common.api.implementation.ApiUser;
 import me.lucko.luckperms.common.cacheddata.UserCachedDataManager;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.util.Difference;
 import net.kyori.adventure.text.Component;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
 import net.luckperms.api.query.QueryOptions;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -104,6 +107,26 @@ public class User extends PermissionHolder {
         return this.cachedData;
     }
 
+    @Override
+    public void loadNodesFromStorage(Iterable<? extends Node> set) {
+        super.loadNodesFromStorage(set);
+        getPlugin().getUserManager().getHouseKeeper().reweigh(this.uniqueId);
+    }
+
+    @Override
+    public Difference<Node> setNodes(DataType type, Iterable<? extends Node> set, boolean callEvent) {
+        Difference<Node> res = super.setNodes(type, set, callEvent);
+        getPlugin().getUserManager().getHouseKeeper().reweigh(this.uniqueId);
+        return res;
+    }
+
+    @Override
+    public Difference<Node> setNodes(DataType type, Difference<Node> changes, boolean callEvent) {
+        Difference<Node> res = super.setNodes(type, changes, callEvent);
+        getPlugin().getUserManager().getHouseKeeper().reweigh(this.uniqueId);
+        return res;
+    }
+
     public PrimaryGroupHolder getPrimaryGroup() {
         return this.primaryGroup;
     }
@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.model.manager.user;
 
+import me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.common.model.User;
@@ -58,6 +59,13 @@ public abstract class AbstractUserManager<T extends User> extends AbstractManage
         this.plugin.getBootstrap().getScheduler().asyncRepeating(this.housekeeper, 30, TimeUnit.SECONDS);
     }
 
+    @Override
+    public T getOrMake(UUID id) {
+        T user = super.getOrMake(id);
+        this.housekeeper.registerLoad(id);
+        return user;
+    }
+
     @Override
     public T getOrMake(UUID id, String username) {
         T user = getOrMake(id);
@@ -172,6 +180,10 @@ public abstract class AbstractUserManager<T extends User> extends AbstractManage
 
     @Override
     public void invalidateAllUserCaches() {
+        SharedPermissionMapCache sharedMaps = this.plugin.getSharedPermissionMapCache();
+        if (sharedMaps != null) {
+            sharedMaps.invalidate();
+        }
         getAll().values().forEach(u -> u.getCachedData().invalidate());
     }
 
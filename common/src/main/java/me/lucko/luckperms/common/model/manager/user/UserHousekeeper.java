@@ -25,66 +25,165 @@
 
 package me.lucko.luckperms.common.model.manager.user;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Policy;
+import com.github.benmanes.caffeine.cache.RemovalCause;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.nodemap.NodeMapFootprint;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
-import me.lucko.luckperms.common.util.ExpiringSet;
+import me.lucko.luckperms.common.util.CaffeineFactory;
+import org.checkerframework.checker.nullness.qual.NonNull;
 
+import java.util.OptionalLong;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The instance responsible for unloading users which are no longer needed.
+ *
+ * <p>Loaded users are tracked in an access-ordered cache, which records why
+ * each user was last used. Entries expire a while after the user was last
+ * used, at which point the user is unloaded (unless they are online).</p>
+ *
+ * <p>The cache is also bounded by a memory budget (a proportion of the
+ * maximum heap size), weighted by an estimate of the size of each user. When
+ * the budget is exceeded, the least recently used users are unloaded early,
+ * regardless of why they were last used. Estimates are refreshed when a
+ * user's data is loaded or set, and when they log out.</p>
+ *
+ * <p>Users who are online when their entry expires are left loaded, and are
+ * tracked again when they log out.</p>
  */
 public class UserHousekeeper implements Runnable {
+
+    /** Rough estimate of the size of a user, excluding its node maps (cached data, query options, etc) */
+    private static final int USER_BASE_BYTES = 4096;
+
     private final LuckPermsPlugin plugin;
     private final UserManager<?> userManager;
+    private final long timeoutNanos;
+    private final long budgetBytes;
 
-    // contains the uuids of users who have recently logged in / out
-    private final ExpiringSet<UUID> recentlyUsed;
+    // contains the uuids of loaded users, and the reason they were last used
+    private final Cache<UUID, Usage> tracked;
 
-    // contains the uuids of users who have recently been retrieved from the API
-    private final ExpiringSet<UUID> recentlyUsedApi;
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong unloads = new AtomicLong();
 
     public UserHousekeeper(LuckPermsPlugin plugin, UserManager<?> userManager, TimeoutSettings timeoutSettings) {
         this.plugin = plugin;
         this.userManager = userManager;
-        this.recentlyUsed = new ExpiringSet<>(timeoutSettings.duration, timeoutSettings.unit);
-        this.recentlyUsedApi = new ExpiringSet<>(5, TimeUnit.MINUTES);
+        this.timeoutNanos = timeoutSettings.unit.toNanos(timeoutSettings.duration);
+
+        int budgetPercent = plugin.getConfiguration().get(ConfigKeys.OFFLINE_USER_MEMORY_BUDGET);
+        this.budgetBytes = budgetPercent <= 0 ? 0 : Runtime.getRuntime().maxMemory() / 100 * budgetPercent;
+
+        Caffeine<Object, Object> builder = CaffeineFactory.newBuilder();
+        if (this.budgetBytes > 0) {
+            builder.maximumWeight(this.budgetBytes).weigher((UUID uuid, Usage usage) -> estimateSize(uuid));
+        }
+        this.tracked = builder
+                .expireAfter(new UsageExpiry())
+                .removalListener((UUID uuid, Usage usage, RemovalCause cause) -> onRemoval(uuid, cause))
+                .build();
     }
 
     // called when a player attempts a connection or logs out
     public void registerUsage(UUID uuid) {
-        this.recentlyUsed.add(uuid);
+        track(uuid, Usage.LOGIN);
     }
 
     public void registerApiUsage(UUID uuid) {
-        this.recentlyUsedApi.add(uuid);
+        track(uuid, Usage.API);
+    }
+
+    // called when a user is loaded or retrieved from the manager
+    public void registerLoad(UUID uuid) {
+        track(uuid, Usage.LOADED);
     }
 
     public void clearApiUsage(UUID uuid) {
-        this.recentlyUsedApi.remove(uuid);
+        this.tracked.asMap().computeIfPresent(uuid, (k, usage) -> usage == Usage.API ? Usage.LOADED : usage);
+    }
+
+    private void track(UUID uuid, Usage usage) {
+        // keep the strongest reason - the entry is re-weighed & its expiry extended either way
+        this.tracked.asMap().compute(uuid, (k, current) -> current == null || usage.compareTo(current) > 0 ? usage : current);
     }
 
     @Override
     public void run() {
-        for (UUID entry : this.userManager.getAll().keySet()) {
-            cleanup(entry);
+        // process any expired entries - eviction is otherwise amortized across cache operations
+        this.tracked.cleanUp();
+    }
+
+    /**
+     * Refreshes the size estimate for the given user, if they are tracked.
+     *
+     * <p>Users are weighed when they are tracked, which is often before their
+     * data has loaded, or whilst they're still online.</p>
+     *
+     * @param uuid the uuid of the user
+     */
+    public void reweigh(UUID uuid) {
+        if (this.budgetBytes <= 0) {
+            return;
+        }
+
+        Policy.VarExpiration<UUID, Usage> expiration = this.tracked.policy().expireVariably().orElse(null);
+        if (expiration == null) {
+            return;
+        }
+
+        // put the entry again with its remaining duration, so it is re-weighed without extending its expiry
+        Usage usage = this.tracked.getIfPresent(uuid);
+        OptionalLong remaining = expiration.getExpiresAfter(uuid, TimeUnit.NANOSECONDS);
+        if (usage != null && remaining.isPresent()) {
+            expiration.put(uuid, usage, remaining.getAsLong(), TimeUnit.NANOSECONDS);
         }
     }
 
     public void cleanup(UUID uuid) {
         // unload users which aren't online and who haven't been online (or tried to login) recently
-        if (this.recentlyUsed.contains(uuid) || this.recentlyUsedApi.contains(uuid) || this.plugin.getBootstrap().isPlayerOnline(uuid)) {
+        Usage usage = this.tracked.getIfPresent(uuid);
+        if (usage == Usage.LOGIN || usage == Usage.API || this.plugin.getBootstrap().isPlayerOnline(uuid)) {
+            return;
+        }
+
+        unload(uuid);
+    }
+
+    private void onRemoval(UUID uuid, RemovalCause cause) {
+        if (uuid == null || !cause.wasEvicted()) {
+            return;
+        }
+
+        if (cause == RemovalCause.SIZE) {
+            this.evictions.incrementAndGet();
+        }
+
+        // the user has been used again since, or is online - they'll be tracked again when they log out
+        if (this.tracked.getIfPresent(uuid) != null || this.plugin.getBootstrap().isPlayerOnline(uuid)) {
             return;
         }
 
+        unload(uuid);
+    }
+
+    private void unload(UUID uuid) {
         User user = this.userManager.getIfLoaded(uuid);
         if (user == null) {
+            this.tracked.invalidate(uuid);
             return;
         }
 
         if (this.plugin.getEventDispatcher().dispatchUserUnload(user)) {
+            // try again later
+            registerLoad(uuid);
             return;
         }
 
@@ -92,7 +191,40 @@ public class UserHousekeeper implements Runnable {
         if (this.plugin.getConfiguration().get(ConfigKeys.DEBUG_LOGINS)) {
             this.plugin.getLogger().info("User Housekeeper: unloading user data for " + uuid);
         }
+        this.tracked.invalidate(uuid);
         this.userManager.unload(uuid);
+        this.unloads.incrementAndGet();
+    }
+
+    private int estimateSize(UUID uuid) {
+        // online users are never unloaded, so don't count them against the budget
+        if (this.plugin.getBootstrap().isPlayerOnline(uuid)) {
+            return 0;
+        }
+
+        User user = this.userManager.getIfLoaded(uuid);
+        if (user == null) {
+            return USER_BASE_BYTES;
+        }
+
+        NodeMapFootprint footprint = new NodeMapFootprint();
+        footprint.add(user);
+        return (int) Math.min(Integer.MAX_VALUE, USER_BASE_BYTES + footprint.bytes());
+    }
+
+    public Stats getStats() {
+        long estimatedBytes = this.tracked.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(-1L);
+
+        return new Stats(
+                this.userManager.getAll().size(),
+                this.tracked.estimatedSize(),
+                estimatedBytes,
+                this.budgetBytes,
+                this.evictions.get(),
+                this.unloads.get()
+        );
     }
 
     public static TimeoutSettings timeoutSettings(long duration, TimeUnit unit) {
@@ -108,4 +240,93 @@ public class UserHousekeeper implements Runnable {
             this.unit = unit;
         }
     }
+
+    /**
+     * The reason a user was last used, in increasing order of precedence.
+     */
+    private enum Usage {
+
+        /** Loaded from storage, or retrieved by a command */
+        LOADED,
+
+        /** Attempted to login, or logged out */
+        LOGIN,
+
+        /** Retrieved from the API */
+        API
+    }
+
+    private final class UsageExpiry implements Expiry<UUID, Usage> {
+        private final long apiTimeoutNanos = TimeUnit.MINUTES.toNanos(5);
+
+        private long timeout(Usage usage) {
+            return usage == Usage.API ? Math.max(UserHousekeeper.this.timeoutNanos, this.apiTimeoutNanos) : UserHousekeeper.this.timeoutNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(@NonNull UUID uuid, @NonNull Usage usage, long currentTime) {
+            return timeout(usage);
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull UUID uuid, @NonNull Usage usage, long currentTime, long currentDuration) {
+            return timeout(usage);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull UUID uuid, @NonNull Usage usage, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
+    /**
+     * A snapshot of the state of the housekeeper.
+     */
+    public static final class Stats {
+        private final int loaded;
+        private final long tracked;
+        private final long estimatedBytes;
+        private final long budgetBytes;
+        private final long evictions;
+        private final long unloads;
+
+        Stats(int loaded, long tracked, long estimatedBytes, long budgetBytes, long evictions, long unloads) {
+            this.loaded = loaded;
+            this.tracked = tracked;
+            this.estimatedBytes = estimatedBytes;
+            this.budgetBytes = budgetBytes;
+            this.evictions = evictions;
+            this.unloads = unloads;
+        }
+
+        /** The number of users currently loaded */
+        public int loaded() {
+            return this.loaded;
+        }
+
+        /** The number of loaded users tracked for unloading */
+        public long tracked() {
+            return this.tracked;
+        }
+
+        /** The estimated size of the tracked users, or -1 if there is no memory budget */
+        public long estimatedBytes() {
+            return this.estimatedBytes;
+        }
+
+        /** The memory budget, or 0 if there is no budget */
+        public long budgetBytes() {
+            return this.budgetBytes;
+        }
+
+        /** The number of users evicted early because the memory budget was exceeded */
+        public long evictions() {
+            return this.evictions;
+        }
+
+        /** The number of users unloaded */
+        public long unloads() {
+            return this.unloads;
+        }
+    }
 }
@@ -0,0 +1,185 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.model.nodemap;
+
+import net.luckperms.api.context.Context;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.query.QueryMode;
+import net.luckperms.api.query.QueryOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+
+/**
+ * An immutable index of the context sets (buckets) held in a {@link NodeMap},
+ * used to find the buckets satisfied by a {@link QueryOptions} without testing
+ * every one of them.
+ *
+ * <p>A non-empty context set can only be satisfied if it shares at least one
+ * context pair with the query, so the index maps each context pair to the
+ * buckets containing it. The empty context set is always satisfied and is
+ * tracked separately. Candidate buckets are then checked properly, and
+ * returned in the same order as the map they were indexed from.</p>
+ *
+ * <p>The index must be rebuilt whenever a bucket is added to or removed from
+ * the map. It does not need to be rebuilt if nodes are added to or removed
+ * from an existing bucket.</p>
+ */
+final class ContextIndex {
+
+    /** The indexed context sets, in map order */
+    private final ImmutableContextSet[] contexts;
+
+    /** The node sets mapped to each context set, in the same order */
+    private final List<SortedSet<Node>> buckets;
+
+    /** The index of the empty context set, or -1 if there is none */
+    private final int emptyContextIndex;
+
+    /** context key -> context value -> indexes of the context sets containing the pair */
+    private final Map<String, Map<String, int[]>> postings;
+
+    /** The result of the most recent lookup, reused if the next one is for the same query */
+    private volatile Lookup lastLookup;
+
+    ContextIndex(SortedMap<ImmutableContextSet, SortedSet<Node>> map) {
+        int size = map.size();
+        this.contexts = new ImmutableContextSet[size];
+        this.buckets = new ArrayList<>(size);
+
+        int emptyContextIndex = -1;
+        Map<String, Map<String, List<Integer>>> postings = new HashMap<>();
+
+        int i = 0;
+        for (Map.Entry<ImmutableContextSet, SortedSet<Node>> e : map.entrySet()) {
+            ImmutableContextSet context = e.getKey();
+            this.contexts[i] = context;
+            this.buckets.add(e.getValue());
+
+            if (context.isEmpty()) {
+                emptyContextIndex = i;
+            } else {
+                for (Context pair : context) {
+                    postings.computeIfAbsent(pair.getKey(), k -> new HashMap<>())
+                            .computeIfAbsent(pair.getValue(), v -> new ArrayList<>())
+                            .add(i);
+                }
+            }
+            i++;
+        }
+
+        this.emptyContextIndex = emptyContextIndex;
+        this.postings = new HashMap<>(postings.size());
+        for (Map.Entry<String, Map<String, List<Integer>>> e : postings.entrySet()) {
+            Map<String, int[]> values = new HashMap<>(e.getValue().size());
+            for (Map.Entry<String, List<Integer>> value : e.getValue().entrySet()) {
+                values.put(value.getKey(), value.getValue().stream().mapToInt(Integer::intValue).toArray());
+            }
+            this.postings.put(e.getKey(), values);
+        }
+    }
+
+    /**
+     * Gets the positions of the context sets satisfied by the given filter, in map order.
+     *
+     * @param filter the filter
+     * @param defaultSatisfyMode the satisfy mode to use if the filter doesn't specify one
+     * @return the positions
+     */
+    int[] satisfied(QueryOptions filter, ContextSatisfyMode defaultSatisfyMode) {
+        Lookup last = this.lastLookup;
+        if (last != null && last.defaultSatisfyMode == defaultSatisfyMode && last.filter.equals(filter)) {
+            return last.result;
+        }
+
+        int[] result = lookup(filter, defaultSatisfyMode);
+        this.lastLookup = new Lookup(filter, defaultSatisfyMode, result);
+        return result;
+    }
+
+    private int[] lookup(QueryOptions filter, ContextSatisfyMode defaultSatisfyMode) {
+        if (filter.mode() == QueryMode.NON_CONTEXTUAL) {
+            int[] all = new int[this.contexts.length];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+
+        BitSet candidates = new BitSet(this.contexts.length);
+        if (this.emptyContextIndex != -1) {
+            candidates.set(this.emptyContextIndex);
+        }
+        for (Context pair : filter.context()) {
+            Map<String, int[]> values = this.postings.get(pair.getKey());
+            if (values == null) {
+                continue;
+            }
+            int[] positions = values.get(pair.getValue());
+            if (positions == null) {
+                continue;
+            }
+            for (int position : positions) {
+                candidates.set(position);
+            }
+        }
+
+        int[] result = new int[candidates.cardinality()];
+        int size = 0;
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            if (i == this.emptyContextIndex || filter.satisfies(this.contexts[i], defaultSatisfyMode)) {
+                result[size++] = i;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    ImmutableContextSet context(int position) {
+        return this.contexts[position];
+    }
+
+    SortedSet<Node> bucket(int position) {
+        return this.buckets.get(position);
+    }
+
+    private static final class Lookup {
+        final QueryOptions filter;
+        final ContextSatisfyMode defaultSatisfyMode;
+        final int[] result;
+
+        Lookup(QueryOptions filter, ContextSatisfyMode defaultSatisfyMode, int[] result) {
+            this.filter = filter;
+            this.defaultSatisfyMode = defaultSatisfyMode;
+            this.result = result;
+        }
+    }
+}
@@ -43,12 +43,22 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 /**
  * Base implementation of {@link NodeMap} query methods.
  */
 abstract class NodeMapBase implements NodeMap {
+
+    /**
+     * Holds either the current {@link ContextIndex}, or a token marking that
+     * the index needs to be rebuilt.
+     *
+     * <p>A fresh token is installed each time the index is invalidated, so an
+     * index built from a map which has since changed is never published.</p>
+     */
+    private final AtomicReference<Object> contextIndex = new AtomicReference<>(new Object());
    
     NodeMapBase() {
 
@@ -60,6 +70,25 @@ abstract class NodeMapBase implements NodeMap {
 
     protected abstract ContextSatisfyMode defaultSatisfyMode();
 
+    /**
+     * Marks the context index as out of date. Must be called after a context
+     * set is added to or removed from {@link #map()}, or the map is replaced.
+     */
+    protected final void invalidateContextIndex() {
+        this.contextIndex.set(new Object());
+    }
+
+    private ContextIndex contextIndex() {
+        Object current = this.contextIndex.get();
+        if (current instanceof ContextIndex) {
+            return (ContextIndex) current;
+        }
+
+        ContextIndex index = new ContextIndex(map());
+        this.contextIndex.compareAndSet(current, index);
+        return index;
+    }
+
     @Override
     public boolean isEmpty() {
         return map().isEmpty();
@@ -101,20 +130,19 @@ abstract class NodeMapBase implements NodeMap {
 
     @Override
     public void forEach(QueryOptions filter, Consumer<? super Node> consumer) {
-        for (Map.Entry<ImmutableContextSet, SortedSet<Node>> e : map().entrySet()) {
-            if (!filter.satisfies(e.getKey(), defaultSatisfyMode())) {
-                continue;
-            }
+        ContextIndex index = contextIndex();
+        for (int i : index.satisfied(filter, defaultSatisfyMode())) {
+            ImmutableContextSet context = index.context(i);
 
-            if (normalNodesExcludeTest(filter, e.getKey())) {
-                if (inheritanceNodesIncludeTest(filter, e.getKey())) {
-                    SortedSet<InheritanceNode> inheritanceNodes = inheritanceMap().get(e.getKey());
+            if (normalNodesExcludeTest(filter, context)) {
+                if (inheritanceNodesIncludeTest(filter, context)) {
+                    SortedSet<InheritanceNode> inheritanceNodes = inheritanceMap().get(context);
                     if (inheritanceNodes != null) {
                         inheritanceNodes.forEach(consumer);
                     }
                 }
             } else {
-                e.getValue().forEach(consumer);
+                index.bucket(i).forEach(consumer);
             }
         }
     }
@@ -135,20 +163,19 @@ abstract class NodeMapBase implements NodeMap {
 
     @Override
     public void copyTo(Collection<? super Node> collection, QueryOptions filter) {
-        for (Map.Entry<ImmutableContextSet, SortedSet<Node>> e : map().entrySet()) {
-            if (!filter.satisfies(e.getKey(), defaultSatisfyMode())) {
-                continue;
-            }
+        ContextIndex index = contextIndex();
+        for (int i : index.satisfied(filter, defaultSatisfyMode())) {
+            ImmutableContextSet context = index.context(i);
 
-            if (normalNodesExcludeTest(filter, e.getKey())) {
-                if (inheritanceNodesIncludeTest(filter, e.getKey())) {
-                    SortedSet<InheritanceNode> inheritanceNodes = inheritanceMap().get(e.getKey());
+            if (normalNodesExcludeTest(filter, context)) {
+                if (inheritanceNodesIncludeTest(filter, context)) {
+                    SortedSet<InheritanceNode> inheritanceNodes = inheritanceMap().get(context);
                     if (inheritanceNodes != null) {
                         collection.addAll(inheritanceNodes);
                     }
                 }
             } else {
-                collection.addAll(e.getValue());
+                collection.addAll(index.bucket(i));
             }
         }
     }
@@ -161,16 +188,13 @@ abstract class NodeMapBase implements NodeMap {
             return;
         }
         
-        for (Map.Entry<ImmutableContextSet, SortedSet<Node>> e : map().entrySet()) {
-            if (!filter.satisfies(e.getKey(), defaultSatisfyMode())) {
-                continue;
-            }
-
-            if (normalNodesExcludeTest(filter, e.getKey())) {
+        ContextIndex index = contextIndex();
+        for (int i : index.satisfied(filter, defaultSatisfyMode())) {
+            if (normalNodesExcludeTest(filter, index.context(i))) {
                 continue;
             }
 
-            for (Node node : e.getValue()) {
+            for (Node node : index.bucket(i)) {
                 if (type.matches(node)) {
                     collection.add(type.cast(node));
                 }
@@ -194,13 +218,16 @@ abstract class NodeMapBase implements NodeMap {
 
     @Override
     public void copyInheritanceNodesTo(Collection<? super InheritanceNode> collection, QueryOptions filter) {
-        for (Map.Entry<ImmutableContextSet, SortedSet<InheritanceNode>> e : inheritanceMap().entrySet()) {
-            if (!filter.satisfies(e.getKey(), defaultSatisfyMode())) {
-                continue;
-            }
-
-            if (inheritanceNodesIncludeTest(filter, e.getKey())) {
-                collection.addAll(e.getValue());
+        // the inheritance map's keys are always a subset of the main map's keys
+        ContextIndex index = contextIndex();
+        for (int i : index.satisfied(filter, defaultSatisfyMode())) {
+            ImmutableContextSet context = index.context(i);
+
+            if (inheritanceNodesIncludeTest(filter, context)) {
+                SortedSet<InheritanceNode> inheritanceNodes = inheritanceMap().get(context);
+                if (inheritanceNodes != null) {
+                    collection.addAll(inheritanceNodes);
+                }
             }
         }
     }
@@ -23,16 +23,56 @@
  *  SOFTWARE.
  */
 
-package me.lucko.luckperms.common.cacheddata;
+package me.lucko.luckperms.common.model.nodemap;
 
-public abstract class UsageTracked {
-    private long lastUsed = System.currentTimeMillis();
+import me.lucko.luckperms.common.model.PermissionHolder;
 
-    public void recordUsage() {
-        this.lastUsed = System.currentTimeMillis();
+/**
+ * Accumulates an estimate of the memory used by the node maps of a number
+ * of {@link PermissionHolder}s.
+ */
+public final class NodeMapFootprint {
+    private int holders = 0;
+    private long nodes = 0;
+    private long contexts = 0;
+    private int compacted = 0;
+    private long bytes = 0;
+
+    public void add(PermissionHolder holder) {
+        this.holders++;
+        add(holder.normalData().bypass());
+        add(holder.transientData());
+    }
+
+    private void add(NodeMap nodeMap) {
+        this.nodes += nodeMap.size();
+        if (nodeMap instanceof NodeMapMutable) {
+            NodeMapMutable map = (NodeMapMutable) nodeMap;
+            this.contexts += map.contextCount();
+            this.bytes += map.estimateStructureSize();
+            if (map.isCompacted()) {
+                this.compacted++;
+            }
+        }
+    }
+
+    public int holders() {
+        return this.holders;
+    }
+
+    public long nodes() {
+        return this.nodes;
+    }
+
+    public long contexts() {
+        return this.contexts;
+    }
+
+    public int compacted() {
+        return this.compacted;
     }
 
-    public boolean usedSince(long duration) {
-        return this.lastUsed > System.currentTimeMillis() - duration;
+    public long bytes() {
+        return this.bytes;
     }
 }
@@ -25,6 +25,8 @@
 
 package me.lucko.luckperms.common.model.nodemap;
 
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.ImmutableSortedSet;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.context.comparator.ContextSetComparator;
 import me.lucko.luckperms.common.model.InheritanceOrigin;
@@ -42,6 +44,7 @@ import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
 import net.luckperms.api.node.types.InheritanceNode;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -60,6 +63,15 @@ public class NodeMapMutable extends NodeMapBase {
     private static final Function<ImmutableContextSet, SortedSet<Node>> VALUE_SET_SUPPLIER = k -> new ConcurrentSkipListSet<>(NodeComparator.reverse());
     private static final Function<ImmutableContextSet, SortedSet<InheritanceNode>> INHERITANCE_VALUE_SET_SUPPLIER = k -> new ConcurrentSkipListSet<>(NodeComparator.reverse());
 
+    // Rough shallow sizes (in bytes, assuming compressed oops) of the structures backing the maps,
+    // used to estimate the footprint of the map. The nodes themselves are not included.
+    private static final int SKIP_LIST_MAP_BYTES = 104;
+    private static final int SKIP_LIST_SET_BYTES = 120;
+    private static final int SKIP_LIST_ENTRY_BYTES = 36;
+    private static final int IMMUTABLE_MAP_BYTES = 128;
+    private static final int IMMUTABLE_SET_BYTES = 64;
+    private static final int IMMUTABLE_ENTRY_BYTES = 4;
+
     // Creates the Map instances used by this.map and this.inheritanceMap
     private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> createMap() {
         return new ConcurrentSkipListMap<>(ContextSetComparator.reverse());
@@ -77,8 +89,17 @@ public class NodeMapMutable extends NodeMapBase {
      * state in the middle of an update from the DB. (see below comment about locking - we don't
      * lock for reads!)
      */
-    private SortedMap<ImmutableContextSet, SortedSet<Node>> map = createMap();
-    private SortedMap<ImmutableContextSet, SortedSet<InheritanceNode>> inheritanceMap = createMap();
+    private volatile SortedMap<ImmutableContextSet, SortedSet<Node>> map = createMap();
+    private volatile SortedMap<ImmutableContextSet, SortedSet<InheritanceNode>> inheritanceMap = createMap();
+
+    /*
+     * Holders which are rarely modified (typically groups) can have their maps "compacted" into
+     * immutable, array-backed sorted structures, which are much smaller than the skip lists
+     * and quicker to iterate. Before the next mutation, the maps are copied back into mutable
+     * form. (see #compact and #beginMutation)
+     */
+    private volatile boolean compacted = false;
+    private volatile long lastMutation = System.currentTimeMillis();
 
     /**
      * This lock is used whilst performing mutations, but *not* reads.
@@ -112,6 +133,122 @@ public class NodeMapMutable extends NodeMapBase {
         return this.holder.getPlugin().getConfiguration().get(ConfigKeys.CONTEXT_SATISFY_MODE);
     }
 
+    /**
+     * Gets if the map is currently held in compacted (immutable) form.
+     *
+     * @return if the map is compacted
+     */
+    public boolean isCompacted() {
+        return this.compacted;
+    }
+
+    /**
+     * Gets the time (in unix millis) when the map was last mutated.
+     *
+     * @return the last mutation time
+     */
+    public long getLastMutationTime() {
+        return this.lastMutation;
+    }
+
+    /**
+     * Gets the number of distinct context sets nodes are held under.
+     *
+     * @return the number of context sets
+     */
+    public int contextCount() {
+        return this.map.size();
+    }
+
+    /**
+     * Estimates the number of bytes retained by the structures backing the
+     * map, excluding the nodes themselves.
+     *
+     * @return the estimated size in bytes
+     */
+    public long estimateStructureSize() {
+        return estimateStructureSize(this.map) + estimateStructureSize(this.inheritanceMap);
+    }
+
+    private static long estimateStructureSize(SortedMap<ImmutableContextSet, ? extends SortedSet<?>> map) {
+        if (map instanceof ImmutableSortedMap) {
+            long size = IMMUTABLE_MAP_BYTES;
+            for (SortedSet<?> nodes : map.values()) {
+                size += 2 * IMMUTABLE_ENTRY_BYTES + IMMUTABLE_SET_BYTES + (long) nodes.size() * IMMUTABLE_ENTRY_BYTES;
+            }
+            return size;
+        } else {
+            long size = SKIP_LIST_MAP_BYTES;
+            for (SortedSet<?> nodes : map.values()) {
+                size += SKIP_LIST_ENTRY_BYTES + SKIP_LIST_SET_BYTES + (long) nodes.size() * SKIP_LIST_ENTRY_BYTES;
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Replaces the backing maps with immutable, array-backed copies, dropping
+     * any empty context buckets.
+     *
+     * <p>Reads continue to be served lock-free from the compacted form. The
+     * next mutation will copy the data back into mutable maps.</p>
+     *
+     * @return true if the map was compacted, false if it already was
+     */
+    public boolean compact() {
+        this.lock.lock();
+        try {
+            if (this.compacted) {
+                return false;
+            }
+
+            this.map = compactMap(this.map);
+            this.inheritanceMap = compactMap(this.inheritanceMap);
+            this.compacted = true;
+            invalidateContextIndex();
+            return true;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> compactMap(SortedMap<ImmutableContextSet, SortedSet<N>> map) {
+        ImmutableSortedMap.Builder<ImmutableContextSet, SortedSet<N>> builder = new ImmutableSortedMap.Builder<>(ContextSetComparator.reverse());
+        for (Map.Entry<ImmutableContextSet, SortedSet<N>> e : map.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                builder.put(e.getKey(), ImmutableSortedSet.copyOfSorted(e.getValue()));
+            }
+        }
+        return builder.build();
+    }
+
+    private static <N extends Node> SortedMap<ImmutableContextSet, SortedSet<N>> expandMap(SortedMap<ImmutableContextSet, SortedSet<N>> map) {
+        SortedMap<ImmutableContextSet, SortedSet<N>> expanded = createMap();
+        for (Map.Entry<ImmutableContextSet, SortedSet<N>> e : map.entrySet()) {
+            SortedSet<N> nodes = new ConcurrentSkipListSet<>(NodeComparator.reverse());
+            nodes.addAll(e.getValue());
+            expanded.put(e.getKey(), nodes);
+        }
+        return expanded;
+    }
+
+    /**
+     * Prepares the maps for a mutation, copying them back into mutable form if
+     * they have been compacted.
+     *
+     * <p>Must be called whilst holding the lock.</p>
+     */
+    private void beginMutation() {
+        this.lastMutation = System.currentTimeMillis();
+        if (this.compacted) {
+            // readers keep using the compacted maps until the mutable copies are swapped in
+            this.map = expandMap(this.map);
+            this.inheritanceMap = expandMap(this.inheritanceMap);
+            this.compacted = false;
+            invalidateContextIndex();
+        }
+    }
+
     private Node addInheritanceOrigin(Node node) {
         Optional<InheritanceOriginMetadata> existing = node.getMetadata(InheritanceOriginMetadata.KEY);
         if (existing.isPresent() && existing.get().equals(this.inheritanceOrigin)) {
@@ -130,7 +267,14 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
-            SortedSet<Node> nodes = this.map.computeIfAbsent(context, VALUE_SET_SUPPLIER);
+            beginMutation();
+
+            SortedSet<Node> nodes = this.map.get(context);
+            if (nodes == null) {
+                nodes = VALUE_SET_SUPPLIER.apply(context);
+                this.map.put(context, nodes);
+                invalidateContextIndex();
+            }
 
             // add the new node to the set - if it was already there, return
             if (!nodes.add(node)) {
@@ -168,6 +312,8 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            beginMutation();
+
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -218,6 +364,8 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            beginMutation();
+
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -250,6 +398,8 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            beginMutation();
+
             for (SortedSet<Node> nodes : this.map.values()) {
                 removeMatching(nodes.iterator(), predicate, result);
             }
@@ -267,6 +417,8 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            beginMutation();
+
             SortedSet<Node> nodes = this.map.get(context);
             if (nodes == null) {
                 return result;
@@ -328,6 +480,9 @@ public class NodeMapMutable extends NodeMapBase {
             // by any race conditions between this call to clear and any subsequent call to setContent
             this.map = createMap();
             this.inheritanceMap = createMap();
+            this.compacted = false;
+            this.lastMutation = System.currentTimeMillis();
+            invalidateContextIndex();
         } finally {
             this.lock.unlock();
         }
@@ -342,10 +497,13 @@ public class NodeMapMutable extends NodeMapBase {
 
         this.lock.lock();
         try {
+            beginMutation();
+
             SortedSet<Node> removed = this.map.remove(context);
             if (removed != null) {
                 result.recordChanges(ChangeType.REMOVE, removed);
                 this.inheritanceMap.remove(context);
+                invalidateContextIndex();
             }
         } finally {
             this.lock.unlock();
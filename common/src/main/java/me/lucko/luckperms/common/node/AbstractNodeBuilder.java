@@ -48,18 +48,31 @@ import java.util.Objects;
 public abstract class AbstractNodeBuilder<N extends ScopedNode<N, B>, B extends NodeBuilder<N, B>> implements NodeBuilder<N, B> {
     protected boolean value;
     protected long expireAt;
-    protected ImmutableContextSet.Builder context;
     protected final Map<NodeMetadataKey<?>, Object> metadata;
 
-    protected AbstractNodeBuilder(boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+    // the context set is only copied into a builder once it is modified - until then, nodes
+    // built from this builder (e.g. via toBuilder) share the same context set instance
+    private ImmutableContextSet contextSet;
+    private ImmutableContextSet.Builder context;
+
+    // the key of the node this builder was created from, or null once a property the key
+    // is derived from has changed - lets nodes built via toBuilder share the same key instance
+    protected @Nullable String key;
+
+    protected AbstractNodeBuilder(@Nullable String key, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+        this.key = key;
         this.value = value;
         this.expireAt = expireAt;
-        this.context = new ImmutableContextSetImpl.BuilderImpl().addAll(context);
+        this.contextSet = context;
         this.metadata = new HashMap<>(metadata);
     }
 
+    protected AbstractNodeBuilder(boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+        this(null, value, expireAt, context, metadata);
+    }
+
     protected AbstractNodeBuilder() {
-        this(true, 0L, ImmutableContextSetImpl.EMPTY, Collections.emptyMap());
+        this(null, true, 0L, ImmutableContextSetImpl.EMPTY, Collections.emptyMap());
     }
 
     @Override
@@ -109,22 +122,40 @@ public abstract class AbstractNodeBuilder<N extends ScopedNode<N, B>, B extends
     @Override
     public @NonNull B context(@NonNull ContextSet contextSet) {
         Objects.requireNonNull(contextSet, "contextSet");
-        this.context = new ImmutableContextSetImpl.BuilderImpl().addAll(contextSet);
+        if (contextSet instanceof ImmutableContextSetImpl) {
+            this.contextSet = (ImmutableContextSet) contextSet;
+            this.context = null;
+        } else {
+            this.contextSet = null;
+            this.context = new ImmutableContextSetImpl.BuilderImpl().addAll(contextSet);
+        }
         return (B) this;
     }
 
     @Override
     public @NonNull B withContext(@NonNull String key, @NonNull String value) {
-        this.context.add(key, value);
+        contextBuilder().add(key, value);
         return (B) this;
     }
 
     @Override
     public @NonNull B withContext(@NonNull ContextSet contextSet) {
-        this.context.addAll(contextSet);
+        contextBuilder().addAll(contextSet);
         return (B) this;
     }
 
+    private ImmutableContextSet.Builder contextBuilder() {
+        if (this.context == null) {
+            this.context = new ImmutableContextSetImpl.BuilderImpl().addAll(this.contextSet);
+            this.contextSet = null;
+        }
+        return this.context;
+    }
+
+    protected ImmutableContextSet buildContext() {
+        return this.context == null ? this.contextSet : this.context.build();
+    }
+
     @Override
     public <T> @NonNull B withMetadata(@NonNull NodeMetadataKey<T> key, @Nullable T metadata) {
         Objects.requireNonNull(key, "key");
@@ -0,0 +1,70 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.node;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import net.luckperms.api.context.ImmutableContextSet;
+
+/**
+ * Weak interning pools used to deduplicate node data held in memory.
+ *
+ * <p>Most holders share the same small set of nodes (e.g. {@code group.default}),
+ * so the keys and context sets of nodes read from storage are interned to share
+ * a single instance between all holders. Nodes themselves are not pooled, as they
+ * are rebuilt with metadata (row ids, inheritance origins) once loaded - copies
+ * made via {@link AbstractNode#toBuilder()} keep the same key and context set.</p>
+ *
+ * <p>Entries are only weakly referenced, so are released once no longer
+ * referenced by any holder.</p>
+ */
+public final class NodeInterner {
+    private NodeInterner() {}
+
+    private static final Interner<String> KEYS = Interners.newWeakInterner();
+    private static final Interner<ImmutableContextSet> CONTEXTS = Interners.newWeakInterner();
+
+    /**
+     * Gets the canonical instance of the given node key.
+     *
+     * @param key the key
+     * @return the canonical instance
+     */
+    public static String internKey(String key) {
+        return KEYS.intern(key);
+    }
+
+    /**
+     * Gets the canonical instance of the given context set.
+     *
+     * @param contextSet the context set
+     * @return the canonical instance
+     */
+    public static ImmutableContextSet intern(ImmutableContextSet contextSet) {
+        return CONTEXTS.intern(contextSet);
+    }
+
+}
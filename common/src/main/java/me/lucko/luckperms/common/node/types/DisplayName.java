@@ -56,7 +56,11 @@ public class DisplayName extends AbstractNode<DisplayNameNode, DisplayNameNode.B
     private final String displayName;
 
     public DisplayName(String displayName, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(displayName), value, expireAt, contexts, metadata);
+        this(key(displayName), displayName, value, expireAt, contexts, metadata);
+    }
+
+    private DisplayName(String key, String displayName, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.displayName = displayName;
     }
 
@@ -67,7 +71,7 @@ public class DisplayName extends AbstractNode<DisplayNameNode, DisplayNameNode.B
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.displayName, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.displayName, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -86,8 +90,8 @@ public class DisplayName extends AbstractNode<DisplayNameNode, DisplayNameNode.B
             this.displayName = null;
         }
 
-        public Builder(String displayName, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String displayName, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.displayName = displayName;
         }
 
@@ -98,13 +102,15 @@ public class DisplayName extends AbstractNode<DisplayNameNode, DisplayNameNode.B
                 throw new IllegalArgumentException("display name is empty");
             }
             this.displayName = displayName;
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull DisplayName build() {
             ensureDefined(this.displayName, "display name");
-            return new DisplayName(this.displayName, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : DisplayName.key(this.displayName);
+            return new DisplayName(key, this.displayName, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
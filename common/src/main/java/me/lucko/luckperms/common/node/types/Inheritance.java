@@ -58,7 +58,11 @@ public class Inheritance extends AbstractNode<InheritanceNode, InheritanceNode.B
     private final String groupName;
 
     public Inheritance(String groupName, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(groupName), value, expireAt, contexts, metadata);
+        this(key(groupName), groupName, value, expireAt, contexts, metadata);
+    }
+
+    private Inheritance(String key, String groupName, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.groupName = groupName.toLowerCase(Locale.ROOT);
     }
 
@@ -69,7 +73,7 @@ public class Inheritance extends AbstractNode<InheritanceNode, InheritanceNode.B
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.groupName, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.groupName, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -89,8 +93,8 @@ public class Inheritance extends AbstractNode<InheritanceNode, InheritanceNode.B
             this.groupName = null;
         }
 
-        public Builder(String groupName, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String groupName, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.groupName = groupName;
         }
 
@@ -101,19 +105,22 @@ public class Inheritance extends AbstractNode<InheritanceNode, InheritanceNode.B
                 throw new IllegalArgumentException("group name is invalid");
             }
             this.groupName = group;
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Builder group(@NonNull Group group) {
             this.groupName = Objects.requireNonNull(group, "group").getName();
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Inheritance build() {
             ensureDefined(this.groupName, "group");
-            return new Inheritance(this.groupName, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : Inheritance.key(this.groupName);
+            return new Inheritance(key, this.groupName, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
@@ -59,7 +59,11 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
     private final String metaValue;
 
     public Meta(String metaKey, String metaValue, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(metaKey, metaValue), value, expireAt, contexts, metadata);
+        this(key(metaKey, metaValue), metaKey, metaValue, value, expireAt, contexts, metadata);
+    }
+
+    private Meta(String key, String metaKey, String metaValue, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.metaKey = metaKey.toLowerCase(Locale.ROOT);
         this.metaValue = metaValue;
     }
@@ -76,7 +80,7 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.metaKey, this.metaValue, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.metaKey, this.metaValue, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -106,8 +110,8 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
             this.metaValue = null;
         }
 
-        public Builder(String metaKey, String metaValue, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String metaKey, String metaValue, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.metaKey = metaKey;
             this.metaValue = metaValue;
         }
@@ -119,12 +123,14 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
                 throw new IllegalArgumentException("key is empty");
             }
             this.metaKey = key;
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Builder value(@NonNull String value) {
             this.metaValue = Objects.requireNonNull(value, "value");
+            this.key = null;
             return this;
         }
 
@@ -132,7 +138,8 @@ public class Meta extends AbstractNode<MetaNode, MetaNode.Builder> implements Me
         public @NonNull Meta build() {
             ensureDefined(this.metaKey, "meta key");
             ensureDefined(this.metaValue, "meta value");
-            return new Meta(this.metaKey, this.metaValue, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : Meta.key(this.metaKey, this.metaValue);
+            return new Meta(key, this.metaKey, this.metaValue, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
@@ -102,7 +102,7 @@ public class Permission extends AbstractNode<PermissionNode, PermissionNode.Buil
                 throw new IllegalArgumentException("Attempting to build non-permission node with PermissionNode.Builder. permission = '" + this.permission + "', correct builder type = " + testBuilder.getClass().getName());
             }
 
-            return new Permission(this.permission, this.value, this.expireAt, this.context.build(), this.metadata);
+            return new Permission(this.permission, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 
@@ -60,7 +60,11 @@ public class Prefix extends AbstractNode<PrefixNode, PrefixNode.Builder> impleme
     private final int priority;
 
     public Prefix(String prefix, int priority, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(priority, prefix), value, expireAt, contexts, metadata);
+        this(key(priority, prefix), prefix, priority, value, expireAt, contexts, metadata);
+    }
+
+    private Prefix(String key, String prefix, int priority, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.prefix = prefix;
         this.priority = priority;
     }
@@ -82,7 +86,7 @@ public class Prefix extends AbstractNode<PrefixNode, PrefixNode.Builder> impleme
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.prefix, this.priority, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.prefix, this.priority, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -116,8 +120,8 @@ public class Prefix extends AbstractNode<PrefixNode, PrefixNode.Builder> impleme
             this.priority = null;
         }
 
-        public Builder(String prefix, int priority, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String prefix, int priority, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.prefix = prefix;
             this.priority = priority;
         }
@@ -125,12 +129,14 @@ public class Prefix extends AbstractNode<PrefixNode, PrefixNode.Builder> impleme
         @Override
         public @NonNull Builder prefix(@NonNull String prefix) {
             this.prefix = Objects.requireNonNull(prefix, "prefix");
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Builder priority(int priority) {
             this.priority = priority;
+            this.key = null;
             return this;
         }
 
@@ -138,7 +144,8 @@ public class Prefix extends AbstractNode<PrefixNode, PrefixNode.Builder> impleme
         public @NonNull Prefix build() {
             ensureDefined(this.prefix, "prefix");
             ensureDefined(this.priority, "priority");
-            return new Prefix(this.prefix, this.priority, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : Prefix.key(this.priority, this.prefix);
+            return new Prefix(key, this.prefix, this.priority, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
@@ -62,7 +62,11 @@ public class RegexPermission extends AbstractNode<RegexPermissionNode, RegexPerm
     };
 
     public RegexPermission(String pattern, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(pattern), value, expireAt, contexts, metadata);
+        this(key(pattern), pattern, value, expireAt, contexts, metadata);
+    }
+
+    private RegexPermission(String key, String pattern, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.pattern = pattern;
     }
 
@@ -78,7 +82,7 @@ public class RegexPermission extends AbstractNode<RegexPermissionNode, RegexPerm
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.pattern, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.pattern, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -97,8 +101,8 @@ public class RegexPermission extends AbstractNode<RegexPermissionNode, RegexPerm
             this.pattern = null;
         }
 
-        public Builder(String pattern, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String pattern, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.pattern = pattern;
         }
 
@@ -109,6 +113,7 @@ public class RegexPermission extends AbstractNode<RegexPermissionNode, RegexPerm
                 throw new IllegalArgumentException("pattern is empty");
             }
             this.pattern = pattern;
+            this.key = null;
             return this;
         }
 
@@ -120,7 +125,8 @@ public class RegexPermission extends AbstractNode<RegexPermissionNode, RegexPerm
         @Override
         public @NonNull RegexPermission build() {
             ensureDefined(this.pattern, "pattern");
-            return new RegexPermission(this.pattern, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : RegexPermission.key(this.pattern);
+            return new RegexPermission(key, this.pattern, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
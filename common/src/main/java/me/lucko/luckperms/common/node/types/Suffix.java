@@ -60,7 +60,11 @@ public class Suffix extends AbstractNode<SuffixNode, SuffixNode.Builder> impleme
     private final int priority;
 
     public Suffix(String suffix, int priority, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(priority, suffix), value, expireAt, contexts, metadata);
+        this(key(priority, suffix), suffix, priority, value, expireAt, contexts, metadata);
+    }
+
+    private Suffix(String key, String suffix, int priority, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.suffix = suffix;
         this.priority = priority;
     }
@@ -82,7 +86,7 @@ public class Suffix extends AbstractNode<SuffixNode, SuffixNode.Builder> impleme
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.suffix, this.priority, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.suffix, this.priority, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -117,8 +121,8 @@ public class Suffix extends AbstractNode<SuffixNode, SuffixNode.Builder> impleme
             this.priority = null;
         }
 
-        public Builder(String suffix, int priority, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, String suffix, int priority, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.suffix = suffix;
             this.priority = priority;
         }
@@ -126,12 +130,14 @@ public class Suffix extends AbstractNode<SuffixNode, SuffixNode.Builder> impleme
         @Override
         public @NonNull Builder suffix(@NonNull String suffix) {
             this.suffix = Objects.requireNonNull(suffix, "suffix");
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Builder priority(int priority) {
             this.priority = priority;
+            this.key = null;
             return this;
         }
 
@@ -139,7 +145,8 @@ public class Suffix extends AbstractNode<SuffixNode, SuffixNode.Builder> impleme
         public @NonNull Suffix build() {
             ensureDefined(this.suffix, "suffix");
             ensureDefined(this.priority, "priority");
-            return new Suffix(this.suffix, this.priority, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : Suffix.key(this.priority, this.suffix);
+            return new Suffix(key, this.suffix, this.priority, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
@@ -55,7 +55,11 @@ public class Weight extends AbstractNode<WeightNode, WeightNode.Builder> impleme
     private final int weight;
 
     public Weight(int weight, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
-        super(key(weight), value, expireAt, contexts, metadata);
+        this(key(weight), weight, value, expireAt, contexts, metadata);
+    }
+
+    private Weight(String key, int weight, boolean value, long expireAt, ImmutableContextSet contexts, Map<NodeMetadataKey<?>, Object> metadata) {
+        super(key, value, expireAt, contexts, metadata);
         this.weight = weight;
     }
 
@@ -66,7 +70,7 @@ public class Weight extends AbstractNode<WeightNode, WeightNode.Builder> impleme
 
     @Override
     public @NonNull Builder toBuilder() {
-        return new Builder(this.weight, this.value, this.expireAt, this.contexts, this.metadata);
+        return new Builder(this.key, this.weight, this.value, this.expireAt, this.contexts, this.metadata);
     }
 
     public static @Nullable Builder parse(String key) {
@@ -90,21 +94,23 @@ public class Weight extends AbstractNode<WeightNode, WeightNode.Builder> impleme
             this.weight = null;
         }
 
-        public Builder(int weight, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
-            super(value, expireAt, context, metadata);
+        public Builder(String key, int weight, boolean value, long expireAt, ImmutableContextSet context, Map<NodeMetadataKey<?>, Object> metadata) {
+            super(key, value, expireAt, context, metadata);
             this.weight = weight;
         }
 
         @Override
         public @NonNull Builder weight(int weight) {
             this.weight = weight;
+            this.key = null;
             return this;
         }
 
         @Override
         public @NonNull Weight build() {
             ensureDefined(this.weight, "weight");
-            return new Weight(this.weight, this.value, this.expireAt, this.context.build(), this.metadata);
+            String key = this.key != null ? this.key : Weight.key(this.weight);
+            return new Weight(key, this.weight, this.value, this.expireAt, buildContext(), this.metadata);
         }
     }
 }
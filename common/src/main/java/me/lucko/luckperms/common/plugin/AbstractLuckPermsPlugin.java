@@ -28,6 +28,7 @@ package me.lucko.luckperms.common.plugin;
 import me.lucko.luckperms.common.actionlog.LogDispatcher;
 import me.lucko.luckperms.common.api.ApiRegistrationUtil;
 import me.lucko.luckperms.common.api.LuckPermsApiProvider;
+import me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
@@ -41,7 +42,6 @@ import me.lucko.luckperms.common.dependencies.DependencyManager;
 import me.lucko.luckperms.common.dependencies.DependencyManagerImpl;
 import me.lucko.luckperms.common.event.AbstractEventBus;
 import me.lucko.luckperms.common.event.EventDispatcher;
-import me.lucko.luckperms.common.event.gen.GeneratedEventClass;
 import me.lucko.luckperms.common.extension.SimpleExtensionManager;
 import me.lucko.luckperms.common.http.BytebinClient;
 import me.lucko.luckperms.common.http.BytesocksClient;
@@ -60,6 +60,7 @@ import me.lucko.luckperms.common.storage.implementation.file.watcher.FileWatcher
 import me.lucko.luckperms.common.storage.misc.DataConstraints;
 import me.lucko.luckperms.common.tasks.CacheHousekeepingTask;
 import me.lucko.luckperms.common.tasks.ExpireTemporaryTask;
+import me.lucko.luckperms.common.tasks.ExpiredNodeSweepTask;
 import me.lucko.luckperms.common.tasks.SyncTask;
 import me.lucko.luckperms.common.treeview.PermissionRegistry;
 import me.lucko.luckperms.common.verbose.VerboseHandler;
@@ -108,6 +109,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
     private InternalMessagingService messagingService = null;
     private SyncTask.Buffer syncTaskBuffer;
     private InheritanceGraphFactory inheritanceGraphFactory;
+    private SharedPermissionMapCache sharedPermissionMapCache;
     private CalculatorFactory calculatorFactory;
     private LuckPermsApiProvider apiProvider;
     private EventDispatcher eventDispatcher;
@@ -150,6 +152,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
                 new EnvironmentVariableConfigAdapter(this),
                 configFileAdapter
         ));
+        this.permissionRegistry.setMaximumSize(getConfiguration().get(ConfigKeys.PERMISSION_REGISTRY_MAX_SIZE));
 
         // setup a bytebin instance
         this.httpClient = new OkHttpClient.Builder()
@@ -210,6 +213,7 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         // load internal managers
         getLogger().info("Loading internal permission managers...");
         this.inheritanceGraphFactory = new InheritanceGraphFactory(this);
+        this.sharedPermissionMapCache = provideSharedPermissionMapCache();
 
         // setup user/group/track manager
         setupManagers();
@@ -228,7 +232,6 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         this.apiProvider = new LuckPermsApiProvider(this);
         this.apiProvider.ensureApiWasLoadedByPlugin();
         this.eventDispatcher = new EventDispatcher(provideEventBus(this.apiProvider));
-        getBootstrap().getScheduler().executeAsync(GeneratedEventClass::preGenerate);
         ApiRegistrationUtil.registerProvider(this.apiProvider);
         registerApiOnPlatform(this.apiProvider);
 
@@ -239,7 +242,13 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         // schedule update tasks
         int syncMins = getConfiguration().get(ConfigKeys.SYNC_TIME);
         if (syncMins > 0) {
-            getBootstrap().getScheduler().asyncRepeating(() -> this.syncTaskBuffer.request(), syncMins, TimeUnit.MINUTES);
+            getBootstrap().getScheduler().asyncRepeating(() -> {
+                // without a messaging service, nothing else tells us the cached data is out of date
+                if (this.messagingService == null) {
+                    this.storage.invalidateCaches();
+                }
+                this.syncTaskBuffer.request();
+            }, syncMins, TimeUnit.MINUTES);
         }
 
         // run an update instantly.
@@ -335,7 +344,6 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
                 Dependency.CAFFEINE,
                 Dependency.OKIO,
                 Dependency.OKHTTP,
-                Dependency.BYTEBUDDY,
                 Dependency.EVENT
         );
     }
@@ -345,6 +353,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
     protected void registerHousekeepingTasks() {
         getBootstrap().getScheduler().asyncRepeating(new ExpireTemporaryTask(this), 3, TimeUnit.SECONDS);
         getBootstrap().getScheduler().asyncRepeating(new CacheHousekeepingTask(this), 2, TimeUnit.MINUTES);
+
+        int sweepMins = getConfiguration().get(ConfigKeys.EXPIRED_NODE_SWEEP_TIME);
+        if (sweepMins > 0) {
+            getBootstrap().getScheduler().asyncRepeating(new ExpiredNodeSweepTask(this, Duration.ofMinutes(sweepMins)), sweepMins, TimeUnit.MINUTES);
+        }
     }
 
     protected abstract void setupSenderFactory();
@@ -360,6 +373,10 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
     protected abstract void registerApiOnPlatform(LuckPerms api);
     protected abstract void performFinalSetup();
 
+    protected SharedPermissionMapCache provideSharedPermissionMapCache() {
+        return null;
+    }
+
     // hooks called during disable
 
     protected void removePlatformHooks() {}
@@ -548,6 +565,11 @@ public abstract class AbstractLuckPermsPlugin implements LuckPermsPlugin {
         return this.inheritanceGraphFactory;
     }
 
+    @Override
+    public SharedPermissionMapCache getSharedPermissionMapCache() {
+        return this.sharedPermissionMapCache;
+    }
+
     @Override
     public CalculatorFactory getCalculatorFactory() {
         return this.calculatorFactory;
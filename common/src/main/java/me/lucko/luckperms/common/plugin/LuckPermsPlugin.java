@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.plugin;
 
 import me.lucko.luckperms.common.actionlog.LogDispatcher;
 import me.lucko.luckperms.common.api.LuckPermsApiProvider;
+import me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.command.CommandManager;
 import me.lucko.luckperms.common.command.abstraction.Command;
@@ -59,6 +60,7 @@ import me.lucko.luckperms.common.verbose.VerboseHandler;
 import me.lucko.luckperms.common.webeditor.store.WebEditorStore;
 import net.luckperms.api.platform.Health;
 import net.luckperms.api.query.QueryOptions;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.Collections;
 import java.util.List;
@@ -208,6 +210,14 @@ public interface LuckPermsPlugin {
      */
     InheritanceGraphFactory getInheritanceGraphFactory();
 
+    /**
+     * Gets the cache of resolved permission maps shared between users, if
+     * enabled on this platform.
+     *
+     * @return the shared permission map cache, or null
+     */
+    @Nullable SharedPermissionMapCache getSharedPermissionMapCache();
+
     /**
      * Gets the class responsible for constructing PermissionCalculators on this platform.
      *
@@ -121,6 +121,9 @@ public abstract class AbstractConnectionListener {
             User user = this.plugin.getUserManager().getIfLoaded(uniqueId);
             if (user != null) {
                 user.clearNodes(DataType.TRANSIENT, null, false);
+
+                // the user was weighed whilst online - refresh the estimate now they've gone
+                this.plugin.getUserManager().getHouseKeeper().reweigh(uniqueId);
             }
         });
     }
@@ -38,6 +38,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.AsyncInterface;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.event.cause.CreationCause;
@@ -46,6 +47,8 @@ import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -55,6 +58,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Provides a {@link CompletableFuture} based API for interacting with a {@link StorageImplementation}.
@@ -85,6 +89,16 @@ public class Storage extends AsyncInterface {
         return this.implementation.getImplementationName();
     }
 
+    /**
+     * Marks any locally cached copy of the storage data as stale, so that the
+     * next load reads from the storage itself.
+     */
+    public void invalidateCaches() {
+        if (this.implementation instanceof SplitStorage) {
+            ((SplitStorage) this.implementation).invalidateCache();
+        }
+    }
+
     public void init() {
         try {
             this.implementation.init();
@@ -141,10 +155,18 @@ public class Storage extends AsyncInterface {
         return future(() -> this.implementation.saveUser(user));
     }
 
+    public CompletableFuture<Void> saveUsers(Collection<User> users) {
+        return future(() -> this.implementation.saveUsers(users));
+    }
+
     public CompletableFuture<Set<UUID>> getUniqueUsers() {
         return future(this.implementation::getUniqueUsers);
     }
 
+    public CompletableFuture<Void> iterateUsers(Consumer<? super StoredUser> consumer) {
+        return future(() -> this.implementation.iterateUsers(consumer));
+    }
+
     public <N extends Node> CompletableFuture<List<NodeEntry<UUID, N>>> searchUserNodes(ConstraintNodeMatcher<N> constraint) {
         return future(() -> {
             List<NodeEntry<UUID, N>> result = this.implementation.searchUserNodes(constraint);
@@ -153,6 +175,14 @@ public class Storage extends AsyncInterface {
         });
     }
 
+    public CompletableFuture<Integer> deleteExpiredUserNodes(Instant time, int limit) {
+        return future(() -> this.implementation.deleteExpiredUserNodes(time, limit));
+    }
+
+    public CompletableFuture<Boolean> tryAcquireLock(String name, Duration duration) {
+        return future(() -> this.implementation.tryAcquireLock(name, duration));
+    }
+
     public CompletableFuture<Group> createAndLoadGroup(String name, CreationCause cause) {
         return future(() -> {
             Group group = this.implementation.createAndLoadGroup(name.toLowerCase(Locale.ROOT));
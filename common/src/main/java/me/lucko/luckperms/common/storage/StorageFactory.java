@@ -38,6 +38,7 @@ import me.lucko.luckperms.common.storage.implementation.file.loader.TomlLoader;
 import me.lucko.luckperms.common.storage.implementation.file.loader.YamlLoader;
 import me.lucko.luckperms.common.storage.implementation.mongodb.MongoStorage;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
+import me.lucko.luckperms.common.storage.implementation.split.SplitStorageCache;
 import me.lucko.luckperms.common.storage.implementation.split.SplitStorageType;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.file.H2ConnectionFactory;
@@ -47,6 +48,9 @@ import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.My
 import me.lucko.luckperms.common.storage.implementation.sql.connection.hikari.PostgresConnectionFactory;
 import me.lucko.luckperms.common.util.ImmutableCollectors;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 
@@ -75,8 +79,20 @@ public class StorageFactory {
                     .distinct()
                     .collect(ImmutableCollectors.toEnumMap(StorageType.class, e -> e, this::createNewImplementation));
 
+            SplitStorageCache cache = null;
+            if (this.plugin.getConfiguration().get(ConfigKeys.SPLIT_STORAGE_LOCAL_CACHE)) {
+                // kept in its own directory, so the h2 migrations don't mistake it for the main database
+                Path cacheDirectory = this.plugin.getBootstrap().getDataDirectory().resolve("split-storage-cache");
+                try {
+                    Files.createDirectories(cacheDirectory);
+                    cache = new SplitStorageCache(this.plugin, new H2ConnectionFactory(cacheDirectory.resolve("luckperms-cache")));
+                } catch (IOException e) {
+                    this.plugin.getLogger().warn("Unable to create the split storage cache directory", e);
+                }
+            }
+
             // make a base implementation
-            storage = new Storage(this.plugin, new SplitStorage(this.plugin, backing, mappedTypes));
+            storage = new Storage(this.plugin, new SplitStorage(this.plugin, backing, mappedTypes, cache));
 
         } else {
             StorageType type = this.plugin.getConfiguration().get(ConfigKeys.STORAGE_METHOD);
@@ -96,31 +112,41 @@ public class StorageFactory {
                 return new SqlStorage(
                         this.plugin,
                         new MariaDbConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_COMPACT_USER_PERMISSIONS),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_GROUP_MEMBERSHIP_TABLE)
                 );
             case MYSQL:
                 return new SqlStorage(
                         this.plugin,
                         new MySqlConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_COMPACT_USER_PERMISSIONS),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_GROUP_MEMBERSHIP_TABLE)
                 );
             case SQLITE:
                 return new SqlStorage(
                         this.plugin,
                         new SqliteConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-sqlite.db")),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_COMPACT_USER_PERMISSIONS),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_GROUP_MEMBERSHIP_TABLE)
                 );
             case H2:
                 return new SqlStorage(
                         this.plugin,
                         new H2ConnectionFactory(this.plugin.getBootstrap().getDataDirectory().resolve("luckperms-h2-v2")),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_COMPACT_USER_PERMISSIONS),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_GROUP_MEMBERSHIP_TABLE)
                 );
             case POSTGRESQL:
                 return new SqlStorage(
                         this.plugin,
                         new PostgresConnectionFactory(this.plugin.getConfiguration().get(ConfigKeys.DATABASE_VALUES)),
-                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX)
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_TABLE_PREFIX),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_COMPACT_USER_PERMISSIONS),
+                        this.plugin.getConfiguration().get(ConfigKeys.SQL_GROUP_MEMBERSHIP_TABLE)
                 );
             case MONGODB:
                 return new MongoStorage(
@@ -25,6 +25,7 @@
 
 package me.lucko.luckperms.common.storage.implementation;
 
+import com.google.common.collect.Iterables;
 import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.filter.FilterList;
@@ -36,16 +37,23 @@ import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.StorageMetadata;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface StorageImplementation {
     LuckPermsPlugin getPlugin();
@@ -70,10 +78,69 @@ public interface StorageImplementation {
 
     void saveUser(User user) throws Exception;
 
+    default void saveUsers(Collection<User> users) throws Exception {
+        for (User user : users) {
+            saveUser(user);
+        }
+    }
+
     Set<UUID> getUniqueUsers() throws Exception;
 
+    /**
+     * Passes the stored data of each user with data in storage to the given consumer,
+     * one user at a time.
+     *
+     * @param consumer the consumer
+     * @throws Exception if an error occurs
+     */
+    default void iterateUsers(Consumer<? super StoredUser> consumer) throws Exception {
+        List<UUID> uniqueUsers = new ArrayList<>(getUniqueUsers());
+        uniqueUsers.sort(null);
+
+        for (List<UUID> batch : Iterables.partition(uniqueUsers, 100)) {
+            Map<UUID, User> users = loadUsers(new HashSet<>(batch));
+            for (UUID uniqueId : batch) {
+                User user = users.get(uniqueId);
+                if (user != null) {
+                    consumer.accept(StoredUser.of(user));
+                }
+                getPlugin().getUserManager().getHouseKeeper().cleanup(uniqueId);
+            }
+        }
+    }
+
     <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception;
 
+    /**
+     * Removes temporary nodes which expired before the given time from the stored
+     * data of users.
+     *
+     * <p>Implementations which are able to should remove at most {@code limit}
+     * nodes per call, so that callers can spread the work out over time.</p>
+     *
+     * @param time the time
+     * @param limit the maximum number of nodes to remove
+     * @return the number of nodes removed
+     * @throws Exception if an error occurs
+     */
+    default int deleteExpiredUserNodes(Instant time, int limit) throws Exception {
+        return 0;
+    }
+
+    /**
+     * Attempts to acquire a named lock, shared with any other servers using the same storage.
+     *
+     * <p>Once acquired, the lock is held until the given duration has passed.</p>
+     *
+     * @param name the name of the lock
+     * @param duration how long to hold the lock for
+     * @return true if the lock was acquired
+     * @throws Exception if an error occurs
+     */
+    default boolean tryAcquireLock(String name, Duration duration) throws Exception {
+        return true;
+    }
+
     Group createAndLoadGroup(String name) throws Exception;
 
     Optional<Group> loadGroup(String name) throws Exception;
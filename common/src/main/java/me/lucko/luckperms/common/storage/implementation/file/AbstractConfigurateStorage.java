@@ -37,6 +37,7 @@ import me.lucko.luckperms.common.model.HolderType;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.node.NodeInterner;
 import me.lucko.luckperms.common.node.factory.NodeBuilders;
 import me.lucko.luckperms.common.node.types.Inheritance;
 import me.lucko.luckperms.common.node.types.Meta;
@@ -48,6 +49,7 @@ import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.file.loader.ConfigurateLoader;
 import me.lucko.luckperms.common.storage.implementation.file.loader.JsonLoader;
 import me.lucko.luckperms.common.storage.implementation.file.loader.YamlLoader;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.MoreFiles;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.context.DefaultContextKeys;
@@ -422,7 +424,7 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         Instant expiry = expiryVal == 0L ? null : Instant.ofEpochSecond(expiryVal);
         ImmutableContextSet context = readContexts(attributes);
 
-        return builder.expiry(expiry).context(context).build();
+        return builder.expiry(expiry).context(NodeInterner.intern(context)).build();
     }
 
     private static final class NodeEntry {
@@ -465,13 +467,31 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
         return new NodeEntry(permission, configNode);
     }
 
+    protected int removeExpiredNodes(ConfigurationNode node, Instant time) {
+        Set<Node> nodes = readNodes(node);
+        int size = nodes.size();
+        nodes.removeIf(n -> n.hasExpiry() && n.getExpiry().isBefore(time));
+
+        int removed = size - nodes.size();
+        if (removed != 0) {
+            writeNodes(node, nodes);
+        }
+        return removed;
+    }
+
+    protected StoredUser readStoredUser(UUID uniqueId, ConfigurationNode data) {
+        String name = data.getNode("name").getString();
+        String primaryGroup = data.getNode(this.loader instanceof JsonLoader ? "primaryGroup" : "primary-group").getString();
+        return StoredUser.of(uniqueId, name, primaryGroup, readNodes(data));
+    }
+
     protected static Set<Node> readNodes(ConfigurationNode data) {
         Set<Node> nodes = new HashSet<>();
 
         for (ConfigurationNode appended : data.getNode("permissions").getChildrenList()) {
             String plainValue = appended.getValue(Types::strictAsString);
             if (plainValue != null && !plainValue.isEmpty()) {
-                nodes.add(NodeBuilders.determineMostApplicable(plainValue).build());
+                nodes.add(NodeBuilders.determineMostApplicable(NodeInterner.internKey(plainValue)).build());
                 continue;
             }
 
@@ -481,7 +501,7 @@ public abstract class AbstractConfigurateStorage implements StorageImplementatio
             }
 
             nodes.add(readAttributes(
-                    NodeBuilders.determineMostApplicable(entry.key).value(entry.attributes.getNode("value").getBoolean(true)),
+                    NodeBuilders.determineMostApplicable(NodeInterner.internKey(entry.key)).value(entry.attributes.getNode("value").getBoolean(true)),
                     entry.attributes
             ));
         }
@@ -32,6 +32,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.file.loader.ConfigurateLoader;
 import me.lucko.luckperms.common.storage.implementation.file.watcher.FileWatcher;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.Iterators;
 import me.lucko.luckperms.common.util.Uuids;
 import net.luckperms.api.node.Node;
@@ -40,12 +41,14 @@ import ninja.leaping.configurate.loader.ConfigurationLoader;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
@@ -161,6 +164,22 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
         }
     }
 
+    @Override
+    public int deleteExpiredUserNodes(Instant time, int limit) throws IOException {
+        // the whole file is read anyway, so the limit is ignored and all users are processed at once
+        AtomicInteger removed = new AtomicInteger();
+        this.users.apply(false, true, root -> {
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
+                removed.addAndGet(removeExpiredNodes(entry.getValue(), time));
+            }
+        });
+
+        if (removed.get() != 0) {
+            this.users.save();
+        }
+        return removed.get();
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws IOException {
         return this.users.getNode().getChildrenMap().keySet().stream()
@@ -170,6 +189,18 @@ public class CombinedConfigurateStorage extends AbstractConfigurateStorage {
                 .collect(Collectors.toSet());
     }
 
+    @Override
+    public void iterateUsers(Consumer<? super StoredUser> consumer) throws IOException {
+        this.users.apply(false, true, root -> {
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : root.getChildrenMap().entrySet()) {
+                UUID uniqueId = Uuids.fromString(entry.getKey().toString());
+                if (uniqueId != null) {
+                    consumer.accept(readStoredUser(uniqueId, entry.getValue()));
+                }
+            }
+        });
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
@@ -35,6 +35,7 @@ import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.implementation.file.loader.ConfigurateLoader;
 import me.lucko.luckperms.common.storage.implementation.file.watcher.FileWatcher;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.Iterators;
 import me.lucko.luckperms.common.util.MoreFiles;
@@ -43,8 +44,10 @@ import net.luckperms.api.node.Node;
 import ninja.leaping.configurate.ConfigurationNode;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.List;
@@ -54,6 +57,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -250,6 +254,39 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
         }
     }
 
+    @Override
+    public int deleteExpiredUserNodes(Instant time, int limit) throws IOException {
+        // every file has to be read anyway, so the limit is ignored and all users are processed at once
+        int removed = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getDirectory(StorageLocation.USERS))) {
+            for (Path file : stream) {
+                if (!this.fileExtensionFilter.test(file)) {
+                    continue;
+                }
+
+                try {
+                    registerFileAction(StorageLocation.USERS, file);
+                    ConfigurationNode object = readFile(file);
+                    if (object == null) {
+                        continue;
+                    }
+
+                    int count = removeExpiredNodes(object, time);
+                    if (count != 0) {
+                        saveFile(file, object);
+                        removed += count;
+                    }
+                } catch (Exception e) {
+                    this.plugin.getLogger().severe(
+                            "Exception whilst removing expired nodes",
+                            new FileIOException(file.getFileName().toString(), e)
+                    );
+                }
+            }
+        }
+        return removed;
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws IOException {
         try (Stream<Path> stream = Files.list(this.users.directory)) {
@@ -262,6 +299,39 @@ public class SeparatedConfigurateStorage extends AbstractConfigurateStorage {
         }
     }
 
+    @Override
+    public void iterateUsers(Consumer<? super StoredUser> consumer) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(getDirectory(StorageLocation.USERS))) {
+            for (Path file : stream) {
+                if (!this.fileExtensionFilter.test(file)) {
+                    continue;
+                }
+
+                String fileName = file.getFileName().toString();
+                UUID uniqueId = Uuids.fromString(fileName.substring(0, fileName.length() - this.fileExtension.length()));
+                if (uniqueId == null) {
+                    continue;
+                }
+
+                ConfigurationNode object;
+                try {
+                    registerFileAction(StorageLocation.USERS, file);
+                    object = readFile(file);
+                } catch (Exception e) {
+                    this.plugin.getLogger().severe(
+                            "Exception whilst reading user data",
+                            new FileIOException(file.getFileName().toString(), e)
+                    );
+                    continue;
+                }
+
+                if (object != null) {
+                    consumer.accept(readStoredUser(uniqueId, object));
+                }
+            }
+        }
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws IOException {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
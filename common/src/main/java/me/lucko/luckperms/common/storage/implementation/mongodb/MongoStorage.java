@@ -27,22 +27,35 @@ package me.lucko.luckperms.common.storage.implementation.mongodb;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
+import com.mongodb.ErrorCategory;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
 import com.mongodb.MongoCredential;
+import com.mongodb.MongoWriteException;
 import com.mongodb.ServerAddress;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
 import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
 import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
 import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
 import me.lucko.luckperms.common.actionlog.filter.ActionFilterMongoBuilder;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateField;
 import me.lucko.luckperms.common.context.MutableContextSetImpl;
+import me.lucko.luckperms.common.filter.Constraint;
+import me.lucko.luckperms.common.filter.Filter;
 import me.lucko.luckperms.common.filter.FilterList;
 import me.lucko.luckperms.common.filter.PageParameters;
 import me.lucko.luckperms.common.filter.mongo.ConstraintMongoBuilder;
@@ -59,6 +72,7 @@ import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
 import me.lucko.luckperms.common.storage.misc.StorageCredentials;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.Iterators;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.context.Context;
@@ -73,8 +87,11 @@ import org.bson.UuidRepresentation;
 import org.bson.conversions.Bson;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -84,9 +101,18 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class MongoStorage implements StorageImplementation {
+
+    /** The number of documents to request per cursor batch, and to submit per bulk write / $in query */
+    private static final int BATCH_SIZE = 1000;
+
+    /** Unordered bulk writes let the server apply the batch in parallel and continue past individual failures */
+    private static final BulkWriteOptions UNORDERED = new BulkWriteOptions().ordered(false);
+
     private final LuckPermsPlugin plugin;
 
     private final StorageCredentials configuration;
@@ -198,36 +224,112 @@ public class MongoStorage implements StorageImplementation {
 
     @Override
     public void applyBulkUpdate(BulkUpdate bulkUpdate) {
+        Bson filter = bulkUpdateFilter(bulkUpdate.getFilters());
+
         if (bulkUpdate.getDataType().isIncludingUsers()) {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            try (MongoCursor<Document> cursor = c.find(filter).projection(Projections.include("permissions", "perms")).batchSize(BATCH_SIZE).iterator()) {
                 while (cursor.hasNext()) {
                     Document d = cursor.next();
                     UUID uuid = getDocumentId(d);
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.USER);
-                    if (results != null) {
-                        c.replaceOne(Filters.eq("_id", uuid), results);
+                    Bson update = processBulkUpdate(d, bulkUpdate, HolderType.USER);
+                    if (update != null) {
+                        writes.add(new UpdateOneModel<>(Filters.eq("_id", uuid), update));
+                        flushBulkWrites(c, writes, false);
                     }
                 }
             }
+            flushBulkWrites(c, writes, true);
         }
 
         if (bulkUpdate.getDataType().isIncludingGroups()) {
             MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-            try (MongoCursor<Document> cursor = c.find().iterator()) {
+            List<WriteModel<Document>> writes = new ArrayList<>();
+            try (MongoCursor<Document> cursor = c.find(filter).projection(Projections.include("permissions", "perms")).batchSize(BATCH_SIZE).iterator()) {
                 while (cursor.hasNext()) {
                     Document d = cursor.next();
                     String holder = d.getString("_id");
-                    Document results = processBulkUpdate(d, bulkUpdate, HolderType.GROUP);
-                    if (results != null) {
-                        c.replaceOne(Filters.eq("_id", holder), results);
+                    Bson update = processBulkUpdate(d, bulkUpdate, HolderType.GROUP);
+                    if (update != null) {
+                        writes.add(new UpdateOneModel<>(Filters.eq("_id", holder), update));
+                        flushBulkWrites(c, writes, false);
                     }
                 }
             }
+            flushBulkWrites(c, writes, true);
+        }
+    }
+
+    private static void flushBulkWrites(MongoCollection<Document> collection, List<WriteModel<Document>> writes, boolean force) {
+        if (writes.isEmpty() || (!force && writes.size() < BATCH_SIZE)) {
+            return;
+        }
+        collection.bulkWrite(new ArrayList<>(writes), UNORDERED);
+        writes.clear();
+    }
+
+    /**
+     * Creates a filter which excludes documents that cannot possibly be
+     * affected by a bulk update, so they are never sent to the client.
+     *
+     * <p>Only constraints on the permission key are pushed down - the server and
+     * world fields may be stored in a number of legacy formats, so documents are
+     * still checked client-side by {@link BulkUpdate#apply(Set, HolderType)}.</p>
+     *
+     * @param filters the bulk update filters
+     * @return a filter for holder documents
+     */
+    private static Bson bulkUpdateFilter(FilterList<Node> filters) {
+        List<Constraint<?>> keyConstraints = new ArrayList<>();
+        for (Filter<Node, ?> filter : filters) {
+            if (filter.field() == BulkUpdateField.PERMISSION) {
+                keyConstraints.add(filter.constraint());
+            } else if (filters.operator() == FilterList.LogicalOperator.OR) {
+                // any node could match the other field, can't narrow the search
+                return Filters.empty();
+            }
+        }
+
+        if (keyConstraints.isEmpty()) {
+            return Filters.empty();
         }
+
+        // match against both the current and legacy key field names
+        return Filters.or(
+                Filters.elemMatch("permissions", keyFilter(filters.operator(), keyConstraints, "key")),
+                Filters.elemMatch("permissions", keyFilter(filters.operator(), keyConstraints, "permission"))
+        );
     }
 
-    private Document processBulkUpdate(Document document, BulkUpdate bulkUpdate, HolderType holderType) {
+    private static Bson keyFilter(FilterList.LogicalOperator operator, List<Constraint<?>> constraints, String fieldName) {
+        List<Bson> filters = new ArrayList<>(constraints.size());
+        for (Constraint<?> constraint : constraints) {
+            // equality is case-insensitive when bulk update filters are evaluated in memory
+            switch (constraint.comparison()) {
+                case EQUAL:
+                    filters.add(Filters.regex(fieldName, exactIgnoreCase(constraint.value())));
+                    break;
+                case NOT_EQUAL:
+                    filters.add(Filters.not(Filters.regex(fieldName, exactIgnoreCase(constraint.value()))));
+                    break;
+                default:
+                    filters.add(ConstraintMongoBuilder.INSTANCE.make(constraint, fieldName));
+                    break;
+            }
+        }
+
+        if (filters.size() == 1) {
+            return filters.get(0);
+        }
+        return operator == FilterList.LogicalOperator.AND ? Filters.and(filters) : Filters.or(filters);
+    }
+
+    private static Pattern exactIgnoreCase(Object value) {
+        return Pattern.compile("^" + Pattern.quote(String.valueOf(value)) + "$", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static Bson processBulkUpdate(Document document, BulkUpdate bulkUpdate, HolderType holderType) {
         Set<Node> nodes = new HashSet<>(nodesFromDoc(document));
         Set<Node> results = bulkUpdate.apply(nodes, holderType);
 
@@ -239,52 +341,73 @@ public class MongoStorage implements StorageImplementation {
                 .map(MongoStorage::nodeToDoc)
                 .collect(Collectors.toList());
 
-        document.append("permissions", newNodes).remove("perms");
-        return document;
+        return Updates.combine(Updates.set("permissions", newNodes), Updates.unset("perms"));
     }
 
     @Override
     public User loadUser(UUID uniqueId, String username) {
-        User user = this.plugin.getUserManager().getOrMake(uniqueId, username);
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find(Filters.eq("_id", user.getUniqueId())).iterator()) {
-            if (cursor.hasNext()) {
-                // User exists, let's load.
-                Document d = cursor.next();
-                String name = d.getString("name");
+        Document d = c.find(Filters.eq("_id", uniqueId)).first();
+        return createUser(c, uniqueId, username, d, null);
+    }
 
-                user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
-                user.setUsername(name, true);
+    @Override
+    public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
 
-                user.loadNodesFromStorage(nodesFromDoc(d));
-                this.plugin.getUserManager().giveDefaultIfNeeded(user);
+        Map<UUID, Document> documents = new HashMap<>();
+        for (List<UUID> batch : Iterators.divideIterable(uniqueIds, BATCH_SIZE)) {
+            try (MongoCursor<Document> cursor = c.find(Filters.in("_id", batch)).batchSize(BATCH_SIZE).iterator()) {
+                while (cursor.hasNext()) {
+                    Document d = cursor.next();
+                    documents.put(getDocumentId(d), d);
+                }
+            }
+        }
 
+        Map<UUID, User> users = new HashMap<>();
+        List<User> audited = new ArrayList<>();
+        for (UUID uniqueId : uniqueIds) {
+            users.put(uniqueId, createUser(c, uniqueId, null, documents.get(uniqueId), audited));
+        }
+
+        // save the users changed by the audit in one batch, rather than one at a time
+        if (!audited.isEmpty()) {
+            saveUsers(audited);
+        }
+        return users;
+    }
+
+    private User createUser(MongoCollection<Document> c, UUID uniqueId, String username, @Nullable Document d, @Nullable List<User> audited) {
+        User user = this.plugin.getUserManager().getOrMake(uniqueId, username);
+        if (d != null) {
+            // User exists, let's load.
+            String name = d.getString("name");
 
-                boolean updatedUsername = user.getUsername().isPresent() && (name == null || !user.getUsername().get().equalsIgnoreCase(name));
-                if (updatedUsername | user.auditTemporaryNodes()) {
+            user.getPrimaryGroup().setStoredValue(d.getString("primaryGroup"));
+            user.setUsername(name, true);
+
+            user.loadNodesFromStorage(nodesFromDoc(d));
+            this.plugin.getUserManager().giveDefaultIfNeeded(user);
+
+            boolean updatedUsername = user.getUsername().isPresent() && (name == null || !user.getUsername().get().equalsIgnoreCase(name));
+            if (updatedUsername | user.auditTemporaryNodes()) {
+                if (audited != null) {
+                    audited.add(user);
+                } else {
                     c.replaceOne(Filters.eq("_id", user.getUniqueId()), userToDoc(user));
                 }
-            } else {
-                if (this.plugin.getUserManager().isNonDefaultUser(user)) {
-                    user.loadNodesFromStorage(Collections.emptyList());
-                    user.getPrimaryGroup().setStoredValue(null);
-                    this.plugin.getUserManager().giveDefaultIfNeeded(user);
-                }
+            }
+        } else {
+            if (this.plugin.getUserManager().isNonDefaultUser(user)) {
+                user.loadNodesFromStorage(Collections.emptyList());
+                user.getPrimaryGroup().setStoredValue(null);
+                this.plugin.getUserManager().giveDefaultIfNeeded(user);
             }
         }
         return user;
     }
 
-    @Override
-    public Map<UUID, User> loadUsers(Set<UUID> uniqueIds) throws Exception {
-        // make this a bulk search?
-        Map<UUID, User> map = new HashMap<>();
-        for (UUID uniqueId : uniqueIds) {
-            map.put(uniqueId, loadUser(uniqueId, null));
-        }
-        return map;
-    }
-
     @Override
     public void saveUser(User user) {
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
@@ -296,6 +419,22 @@ public class MongoStorage implements StorageImplementation {
         }
     }
 
+    @Override
+    public void saveUsers(Collection<User> users) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        for (User user : users) {
+            user.normalData().discardChanges();
+            if (!this.plugin.getUserManager().isNonDefaultUser(user)) {
+                writes.add(new DeleteOneModel<>(Filters.eq("_id", user.getUniqueId())));
+            } else {
+                writes.add(new ReplaceOneModel<>(Filters.eq("_id", user.getUniqueId()), userToDoc(user), new ReplaceOptions().upsert(true)));
+            }
+            flushBulkWrites(c, writes, false);
+        }
+        flushBulkWrites(c, writes, true);
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() {
         Set<UUID> uuids = new HashSet<>();
@@ -312,27 +451,110 @@ public class MongoStorage implements StorageImplementation {
         return uuids;
     }
 
+    @Override
+    public void iterateUsers(Consumer<? super StoredUser> consumer) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        try (MongoCursor<Document> cursor = c.find().batchSize(BATCH_SIZE).iterator()) {
+            while (cursor.hasNext()) {
+                Document d = cursor.next();
+
+                UUID uniqueId;
+                try {
+                    uniqueId = getDocumentId(d);
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+
+                consumer.accept(StoredUser.of(uniqueId, d.getString("name"), d.getString("primaryGroup"), nodesFromDoc(d)));
+            }
+        }
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
-        try (MongoCursor<Document> cursor = c.find(Filters.elemMatch("permissions", ConstraintMongoBuilder.INSTANCE.make(constraint.getConstraint(), "key"))).iterator()) {
+
+        // unwind the matching documents so that only the matching nodes are sent back,
+        // an $elemMatch projection can't be used here as it only returns the first match
+        List<Bson> pipeline = Arrays.asList(
+                Aggregates.match(Filters.elemMatch("permissions", ConstraintMongoBuilder.INSTANCE.make(constraint.getConstraint(), "key"))),
+                Aggregates.project(Projections.include("permissions")),
+                Aggregates.unwind("$permissions"),
+                Aggregates.match(ConstraintMongoBuilder.INSTANCE.make(constraint.getConstraint(), "permissions.key"))
+        );
+
+        UUID lastHolder = null;
+        Set<Node> seen = new HashSet<>();
+        try (MongoCursor<Document> cursor = c.aggregate(pipeline).batchSize(BATCH_SIZE).iterator()) {
             while (cursor.hasNext()) {
                 Document d = cursor.next();
                 UUID holder = getDocumentId(d);
 
-                Set<Node> nodes = new HashSet<>(nodesFromDoc(d));
-                for (Node e : nodes) {
-                    N match = constraint.match(e);
-                    if (match != null) {
-                        held.add(NodeEntry.of(holder, match));
-                    }
+                // unwound documents for the same holder are returned consecutively
+                if (!holder.equals(lastHolder)) {
+                    lastHolder = holder;
+                    seen.clear();
+                }
+
+                Node node = nodeFromDoc(d.get("permissions", Document.class));
+                if (node == null || !seen.add(node)) {
+                    continue;
+                }
+
+                N match = constraint.match(node);
+                if (match != null) {
+                    held.add(NodeEntry.of(holder, match));
                 }
             }
         }
         return held;
     }
 
+    @Override
+    public int deleteExpiredUserNodes(Instant time, int limit) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "users");
+        Document expired = new Document("expiry", new Document("$gt", 0L).append("$lt", time.getEpochSecond()));
+
+        int removed = 0;
+        List<WriteModel<Document>> writes = new ArrayList<>();
+        try (MongoCursor<Document> cursor = c.find(Filters.elemMatch("permissions", expired)).projection(Projections.include("permissions")).limit(limit).batchSize(BATCH_SIZE).iterator()) {
+            while (cursor.hasNext() && removed < limit) {
+                Document d = cursor.next();
+                for (Document node : d.getList("permissions", Document.class)) {
+                    Object expiry = node.get("expiry");
+                    if (expiry instanceof Number && ((Number) expiry).longValue() > 0 && ((Number) expiry).longValue() < time.getEpochSecond()) {
+                        removed++;
+                    }
+                }
+
+                writes.add(new UpdateOneModel<>(Filters.eq("_id", d.get("_id")), Updates.pull("permissions", expired)));
+                flushBulkWrites(c, writes, false);
+            }
+        }
+        flushBulkWrites(c, writes, true);
+        return removed;
+    }
+
+    @Override
+    public boolean tryAcquireLock(String name, Duration duration) {
+        MongoCollection<Document> c = this.database.getCollection(this.prefix + "locks");
+        long now = System.currentTimeMillis();
+        Document lock = new Document("_id", name).append("until", now + duration.toMillis());
+
+        try {
+            // replaces the lock if it has lapsed, otherwise attempts to insert it
+            c.replaceOne(Filters.and(Filters.eq("_id", name), Filters.lt("until", now)), lock, new ReplaceOptions().upsert(true));
+            return true;
+        } catch (MongoWriteException e) {
+            // the lock is held by another server
+            if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
     @Override
     public Group createAndLoadGroup(String name) {
         Group group = this.plugin.getGroupManager().getOrMake(name);
@@ -366,15 +588,27 @@ public class MongoStorage implements StorageImplementation {
     @Override
     public void loadAllGroups() {
         List<String> groups = new ArrayList<>();
+        boolean success = true;
+
+        // load every group from a single cursor, rather than querying for each one
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "groups");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = c.find().batchSize(BATCH_SIZE).iterator()) {
             while (cursor.hasNext()) {
-                String name = cursor.next().getString("_id");
+                Document d = cursor.next();
+                String name = d.getString("_id");
                 groups.add(name);
+
+                try {
+                    Group group = this.plugin.getGroupManager().getOrMake(name);
+                    group.loadNodesFromStorage(nodesFromDoc(d));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    success = false;
+                }
             }
         }
 
-        if (!Iterators.tryIterate(groups, this::loadGroup)) {
+        if (!success) {
             throw new RuntimeException("Exception occurred whilst loading a group");
         }
 
@@ -450,15 +684,27 @@ public class MongoStorage implements StorageImplementation {
     @Override
     public void loadAllTracks() {
         List<String> tracks = new ArrayList<>();
+        boolean success = true;
+
         MongoCollection<Document> c = this.database.getCollection(this.prefix + "tracks");
-        try (MongoCursor<Document> cursor = c.find().iterator()) {
+        try (MongoCursor<Document> cursor = c.find().batchSize(BATCH_SIZE).iterator()) {
             while (cursor.hasNext()) {
-                String name = cursor.next().getString("_id");
+                Document d = cursor.next();
+                String name = d.getString("_id");
                 tracks.add(name);
+
+                try {
+                    Track track = this.plugin.getTrackManager().getOrMake(name);
+                    //noinspection unchecked
+                    track.setGroups((List<String>) d.get("groups"));
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    success = false;
+                }
             }
         }
 
-        if (!Iterators.tryIterate(tracks, this::loadTrack)) {
+        if (!success) {
             throw new RuntimeException("Exception occurred whilst loading a track");
         }
 
@@ -33,32 +33,74 @@ import me.lucko.luckperms.common.filter.PageParameters;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.track.TrackManager;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.storage.StorageMetadata;
 import me.lucko.luckperms.common.storage.StorageType;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class SplitStorage implements StorageImplementation {
+
+    /** The storage types worth keeping a local copy of */
+    private static final Set<StorageType> REMOTE_TYPES = EnumSet.of(StorageType.MONGODB, StorageType.MARIADB, StorageType.MYSQL, StorageType.POSTGRESQL);
+
     private final LuckPermsPlugin plugin;
     private final Map<StorageType, StorageImplementation> implementations;
     private final Map<SplitStorageType, StorageType> types;
-    
+
+    /** The local cache, or null if disabled */
+    private @Nullable SplitStorageCache cache;
+    /** The data types served from the local cache */
+    private final Set<SplitStorageType> cachedTypes = EnumSet.noneOf(SplitStorageType.class);
+
+    private final AtomicBoolean groupsLoaded = new AtomicBoolean(false);
+    private final AtomicBoolean tracksLoaded = new AtomicBoolean(false);
+
+    /**
+     * If the loaded groups/tracks came from a cache which wasn't fresh. Some backends
+     * (e.g. MongoDB) save the whole group or track, so saving a stale copy would undo
+     * changes made by other servers - saves are refused until they have been refreshed.
+     */
+    private volatile boolean groupsStale = false;
+    private volatile boolean tracksStale = false;
+
     public SplitStorage(LuckPermsPlugin plugin, Map<StorageType, StorageImplementation> implementations, Map<SplitStorageType, StorageType> types) {
+        this(plugin, implementations, types, null);
+    }
+
+    public SplitStorage(LuckPermsPlugin plugin, Map<StorageType, StorageImplementation> implementations, Map<SplitStorageType, StorageType> types, @Nullable SplitStorageCache cache) {
         this.plugin = plugin;
         this.implementations = ImmutableMap.copyOf(implementations);
         this.types = ImmutableMap.copyOf(types);
+        this.cache = cache;
+
+        for (SplitStorageType type : EnumSet.of(SplitStorageType.GROUP, SplitStorageType.TRACK, SplitStorageType.UUID)) {
+            if (REMOTE_TYPES.contains(this.types.get(type))) {
+                this.cachedTypes.add(type);
+            }
+        }
     }
 
     public Map<StorageType, StorageImplementation> getImplementations() {
@@ -69,6 +111,20 @@ public class SplitStorage implements StorageImplementation {
         return this.implementations.get(this.types.get(type));
     }
 
+    private @Nullable SplitStorageCache cacheFor(SplitStorageType type) {
+        return this.cachedTypes.contains(type) ? this.cache : null;
+    }
+
+    /**
+     * Marks the data held in the local cache as stale, so that it is loaded
+     * from the remote storage again.
+     */
+    public void invalidateCache() {
+        if (this.cache != null) {
+            this.cache.invalidate();
+        }
+    }
+
     @Override
     public LuckPermsPlugin getPlugin() {
         return this.plugin;
@@ -93,6 +149,20 @@ public class SplitStorage implements StorageImplementation {
         if (failed) {
             throw new RuntimeException("One of the backings failed to init");
         }
+
+        if (this.cache != null) {
+            if (this.cachedTypes.isEmpty()) {
+                this.cache = null;
+                return;
+            }
+
+            try {
+                this.cache.init();
+            } catch (Exception e) {
+                this.plugin.getLogger().severe("Unable to init the split storage cache, continuing without it", e);
+                this.cache = null;
+            }
+        }
     }
 
     @Override
@@ -104,6 +174,10 @@ public class SplitStorage implements StorageImplementation {
                 this.plugin.getLogger().severe("Exception whilst disabling " + ds + " storage", e);
             }
         }
+
+        if (this.cache != null) {
+            this.cache.shutdown();
+        }
     }
 
     @Override
@@ -136,6 +210,9 @@ public class SplitStorage implements StorageImplementation {
         if (userType != groupType) {
             this.implementations.get(groupType).applyBulkUpdate(bulkUpdate);
         }
+
+        // the changes weren't made through this class, so the cached groups are out of date
+        invalidateCache();
     }
 
     @Override
@@ -153,39 +230,189 @@ public class SplitStorage implements StorageImplementation {
         implFor(SplitStorageType.USER).saveUser(user);
     }
 
+    @Override
+    public void saveUsers(Collection<User> users) throws Exception {
+        implFor(SplitStorageType.USER).saveUsers(users);
+    }
+
     @Override
     public Set<UUID> getUniqueUsers() throws Exception {
         return implFor(SplitStorageType.USER).getUniqueUsers();
     }
 
+    @Override
+    public void iterateUsers(Consumer<? super StoredUser> consumer) throws Exception {
+        implFor(SplitStorageType.USER).iterateUsers(consumer);
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws Exception {
         return implFor(SplitStorageType.USER).searchUserNodes(constraint);
     }
 
+    @Override
+    public int deleteExpiredUserNodes(Instant time, int limit) throws Exception {
+        return implFor(SplitStorageType.USER).deleteExpiredUserNodes(time, limit);
+    }
+
+    @Override
+    public boolean tryAcquireLock(String name, Duration duration) throws Exception {
+        return implFor(SplitStorageType.USER).tryAcquireLock(name, duration);
+    }
+
     @Override
     public Group createAndLoadGroup(String name) throws Exception {
-        return implFor(SplitStorageType.GROUP).createAndLoadGroup(name);
+        Group group = implFor(SplitStorageType.GROUP).createAndLoadGroup(name);
+        cacheGroup(group);
+        return group;
     }
 
     @Override
     public Optional<Group> loadGroup(String name) throws Exception {
-        return implFor(SplitStorageType.GROUP).loadGroup(name);
+        SplitStorageCache cache = cacheFor(SplitStorageType.GROUP);
+        if (cache != null && cache.isGroupsFresh()) {
+            try {
+                Optional<Set<Node>> nodes = cache.loadGroup(name);
+                if (!nodes.isPresent()) {
+                    return Optional.empty();
+                }
+
+                Group group = this.plugin.getGroupManager().getOrMake(name);
+                group.loadNodesFromStorage(nodes.get());
+                return Optional.of(group);
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Unable to load group '" + name + "' from the split storage cache", e);
+            }
+        }
+
+        Optional<Group> group = implFor(SplitStorageType.GROUP).loadGroup(name);
+        if (cache != null) {
+            if (group.isPresent()) {
+                cacheGroup(group.get());
+            } else {
+                uncacheGroup(name);
+            }
+        }
+        return group;
     }
 
     @Override
     public void loadAllGroups() throws Exception {
+        SplitStorageCache cache = cacheFor(SplitStorageType.GROUP);
+        if (cache == null) {
+            implFor(SplitStorageType.GROUP).loadAllGroups();
+            return;
+        }
+
+        boolean firstLoad = !this.groupsLoaded.getAndSet(true);
+
+        if (cache.isGroupsFresh() && loadAllGroupsFromCache(cache)) {
+            return;
+        }
+
+        // don't wait for the remote storage on startup, the copy from the last run is refreshed in the background
+        if (firstLoad && loadAllGroupsFromCache(cache)) {
+            this.groupsStale = true;
+            this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+                try {
+                    loadAllGroupsFromRemote(cache);
+                    this.plugin.getSyncTaskBuffer().request();
+                } catch (Exception e) {
+                    this.plugin.getLogger().warn("Unable to refresh groups from the remote storage", e);
+                }
+            });
+            return;
+        }
+
+        try {
+            loadAllGroupsFromRemote(cache);
+        } catch (Exception e) {
+            if (!loadAllGroupsFromCache(cache)) {
+                throw e;
+            }
+            this.groupsStale = true;
+            this.plugin.getLogger().warn("Unable to load groups from the remote storage, using the split storage cache instead", e);
+        }
+    }
+
+    private void loadAllGroupsFromRemote(SplitStorageCache cache) throws Exception {
+        int generation = cache.getGeneration();
         implFor(SplitStorageType.GROUP).loadAllGroups();
+        this.groupsStale = false;
+
+        Map<String, List<Node>> groups = new HashMap<>();
+        for (Group group : this.plugin.getGroupManager().getAll().values()) {
+            groups.put(group.getName(), group.normalData().asList());
+        }
+
+        try {
+            cache.replaceGroups(groups);
+            cache.setGroupsFresh(generation);
+        } catch (SQLException e) {
+            this.plugin.getLogger().warn("Unable to write groups to the split storage cache", e);
+        }
+    }
+
+    private boolean loadAllGroupsFromCache(SplitStorageCache cache) {
+        Map<String, Set<Node>> groups;
+        try {
+            groups = cache.loadGroups();
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("Unable to load groups from the split storage cache", e);
+            return false;
+        }
+
+        // the default group always exists, so an empty cache has just never been filled
+        if (groups.isEmpty()) {
+            return false;
+        }
+
+        GroupManager<?> groupManager = this.plugin.getGroupManager();
+        for (Map.Entry<String, Set<Node>> entry : groups.entrySet()) {
+            Group group = groupManager.getOrMake(entry.getKey());
+            group.loadNodesFromStorage(entry.getValue());
+        }
+        groupManager.retainAll(groups.keySet());
+        return true;
+    }
+
+    private void cacheGroup(Group group) {
+        SplitStorageCache cache = cacheFor(SplitStorageType.GROUP);
+        if (cache != null) {
+            try {
+                cache.saveGroup(group.getName(), group.normalData().asList());
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to write group '" + group.getName() + "' to the split storage cache", e);
+            }
+        }
+    }
+
+    private void uncacheGroup(String name) {
+        SplitStorageCache cache = cacheFor(SplitStorageType.GROUP);
+        if (cache != null) {
+            try {
+                cache.deleteGroup(name);
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to remove group '" + name + "' from the split storage cache", e);
+            }
+        }
     }
 
     @Override
     public void saveGroup(Group group) throws Exception {
+        if (this.groupsStale) {
+            throw new IllegalStateException("Unable to save group '" + group.getName() + "', groups haven't been loaded from the remote storage yet");
+        }
         implFor(SplitStorageType.GROUP).saveGroup(group);
+        cacheGroup(group);
     }
 
     @Override
     public void deleteGroup(Group group) throws Exception {
         implFor(SplitStorageType.GROUP).deleteGroup(group);
+        uncacheGroup(group.getName());
     }
 
     @Override
@@ -195,46 +422,232 @@ public class SplitStorage implements StorageImplementation {
 
     @Override
     public Track createAndLoadTrack(String name) throws Exception {
-        return implFor(SplitStorageType.TRACK).createAndLoadTrack(name);
+        Track track = implFor(SplitStorageType.TRACK).createAndLoadTrack(name);
+        cacheTrack(track);
+        return track;
     }
 
     @Override
     public Optional<Track> loadTrack(String name) throws Exception {
-        return implFor(SplitStorageType.TRACK).loadTrack(name);
+        SplitStorageCache cache = cacheFor(SplitStorageType.TRACK);
+        if (cache != null && cache.isTracksFresh()) {
+            try {
+                Optional<List<String>> groups = cache.loadTrack(name);
+                if (!groups.isPresent()) {
+                    return Optional.empty();
+                }
+
+                Track track = this.plugin.getTrackManager().getOrMake(name);
+                track.setGroups(groups.get());
+                return Optional.of(track);
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Unable to load track '" + name + "' from the split storage cache", e);
+            }
+        }
+
+        Optional<Track> track = implFor(SplitStorageType.TRACK).loadTrack(name);
+        if (cache != null) {
+            if (track.isPresent()) {
+                cacheTrack(track.get());
+            } else {
+                uncacheTrack(name);
+            }
+        }
+        return track;
     }
 
     @Override
     public void loadAllTracks() throws Exception {
+        SplitStorageCache cache = cacheFor(SplitStorageType.TRACK);
+        if (cache == null) {
+            implFor(SplitStorageType.TRACK).loadAllTracks();
+            return;
+        }
+
+        boolean firstLoad = !this.tracksLoaded.getAndSet(true);
+
+        if (cache.isTracksFresh() && loadAllTracksFromCache(cache)) {
+            return;
+        }
+
+        // don't wait for the remote storage on startup, the copy from the last run is refreshed in the background
+        if (firstLoad && loadAllTracksFromCache(cache)) {
+            this.tracksStale = true;
+            this.plugin.getBootstrap().getScheduler().executeAsync(() -> {
+                try {
+                    loadAllTracksFromRemote(cache);
+                    this.plugin.getSyncTaskBuffer().request();
+                } catch (Exception e) {
+                    this.plugin.getLogger().warn("Unable to refresh tracks from the remote storage", e);
+                }
+            });
+            return;
+        }
+
+        try {
+            loadAllTracksFromRemote(cache);
+        } catch (Exception e) {
+            if (!loadAllTracksFromCache(cache)) {
+                throw e;
+            }
+            this.tracksStale = true;
+            this.plugin.getLogger().warn("Unable to load tracks from the remote storage, using the split storage cache instead", e);
+        }
+    }
+
+    private void loadAllTracksFromRemote(SplitStorageCache cache) throws Exception {
+        int generation = cache.getGeneration();
         implFor(SplitStorageType.TRACK).loadAllTracks();
+        this.tracksStale = false;
+
+        Map<String, List<String>> tracks = new HashMap<>();
+        for (Track track : this.plugin.getTrackManager().getAll().values()) {
+            tracks.put(track.getName(), track.getGroups());
+        }
+
+        try {
+            cache.replaceTracks(tracks);
+            cache.setTracksFresh(generation);
+        } catch (SQLException e) {
+            this.plugin.getLogger().warn("Unable to write tracks to the split storage cache", e);
+        }
+    }
+
+    private boolean loadAllTracksFromCache(SplitStorageCache cache) {
+        Map<String, List<String>> tracks;
+        try {
+            tracks = cache.loadTracks();
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("Unable to load tracks from the split storage cache", e);
+            return false;
+        }
+
+        // unlike groups, there may legitimately be no tracks - but it can't be told apart from a cache which was never filled
+        if (tracks.isEmpty()) {
+            return false;
+        }
+
+        TrackManager<?> trackManager = this.plugin.getTrackManager();
+        for (Map.Entry<String, List<String>> entry : tracks.entrySet()) {
+            Track track = trackManager.getOrMake(entry.getKey());
+            track.setGroups(entry.getValue());
+        }
+        trackManager.retainAll(tracks.keySet());
+        return true;
+    }
+
+    private void cacheTrack(Track track) {
+        SplitStorageCache cache = cacheFor(SplitStorageType.TRACK);
+        if (cache != null) {
+            try {
+                cache.saveTrack(track.getName(), track.getGroups());
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to write track '" + track.getName() + "' to the split storage cache", e);
+            }
+        }
+    }
+
+    private void uncacheTrack(String name) {
+        SplitStorageCache cache = cacheFor(SplitStorageType.TRACK);
+        if (cache != null) {
+            try {
+                cache.deleteTrack(name);
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to remove track '" + name + "' from the split storage cache", e);
+            }
+        }
     }
 
     @Override
     public void saveTrack(Track track) throws Exception {
+        if (this.tracksStale) {
+            throw new IllegalStateException("Unable to save track '" + track.getName() + "', tracks haven't been loaded from the remote storage yet");
+        }
         implFor(SplitStorageType.TRACK).saveTrack(track);
+        cacheTrack(track);
     }
 
     @Override
     public void deleteTrack(Track track) throws Exception {
         implFor(SplitStorageType.TRACK).deleteTrack(track);
+        uncacheTrack(track.getName());
     }
 
     @Override
     public PlayerSaveResult savePlayerData(UUID uniqueId, String username) throws Exception {
-        return implFor(SplitStorageType.UUID).savePlayerData(uniqueId, username);
+        PlayerSaveResult result = implFor(SplitStorageType.UUID).savePlayerData(uniqueId, username);
+        cachePlayerData(uniqueId, username);
+        return result;
     }
 
     @Override
     public void deletePlayerData(UUID uniqueId) throws Exception {
         implFor(SplitStorageType.UUID).deletePlayerData(uniqueId);
+
+        SplitStorageCache cache = cacheFor(SplitStorageType.UUID);
+        if (cache != null) {
+            try {
+                cache.deletePlayerData(uniqueId);
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to remove player data from the split storage cache", e);
+            }
+        }
     }
 
     @Override
     public UUID getPlayerUniqueId(String username) throws Exception {
-        return implFor(SplitStorageType.UUID).getPlayerUniqueId(username);
+        SplitStorageCache cache = cacheFor(SplitStorageType.UUID);
+        if (cache != null) {
+            try {
+                UUID uniqueId = cache.getPlayerUniqueId(username);
+                if (uniqueId != null) {
+                    return uniqueId;
+                }
+            } catch (SQLException e) {
+                this.plugin.getLogger().warn("Unable to read player data from the split storage cache", e);
+            }
+        }
+
+        UUID uniqueId = implFor(SplitStorageType.UUID).getPlayerUniqueId(username);
+        if (uniqueId != null) {
+            cachePlayerData(uniqueId, username);
+        }
+        return uniqueId;
     }
 
     @Override
     public String getPlayerName(UUID uniqueId) throws Exception {
-        return implFor(SplitStorageType.UUID).getPlayerName(uniqueId);
+        SplitStorageCache cache = cacheFor(SplitStorageType.UUID);
+        if (cache != null) {
+            try {
+                String username = cache.getPlayerName(uniqueId);
+                if (username != null) {
+                    return username;
+                }
+            } catch (SQLException e) {
+                this.plugin.getLogger().warn("Unable to read player data from the split storage cache", e);
+            }
+        }
+
+        String username = implFor(SplitStorageType.UUID).getPlayerName(uniqueId);
+        if (username != null) {
+            cachePlayerData(uniqueId, username);
+        }
+        return username;
+    }
+
+    private void cachePlayerData(UUID uniqueId, String username) {
+        SplitStorageCache cache = cacheFor(SplitStorageType.UUID);
+        if (cache != null) {
+            try {
+                cache.savePlayerData(uniqueId, username);
+            } catch (SQLException e) {
+                cache.invalidate();
+                this.plugin.getLogger().warn("Unable to write player data to the split storage cache", e);
+            }
+        }
     }
 }
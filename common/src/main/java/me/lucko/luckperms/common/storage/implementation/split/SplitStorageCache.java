@@ -0,0 +1,399 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.split;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import me.lucko.luckperms.common.node.utils.NodeJsonSerializer;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.node.Node;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A local (embedded database) copy of the group, track and uuid data held by
+ * the remote backends of a {@link SplitStorage}.
+ *
+ * <p>Groups and tracks are stored as complete snapshots, and are only served
+ * from the cache whilst it is "fresh" - i.e. it has been filled from the remote
+ * storage since the last call to {@link #invalidate()}. Player data entries
+ * are served if they were written since the last invalidation, or were
+ * carried over from a previous run.</p>
+ */
+public final class SplitStorageCache {
+
+    private static final String[] SCHEMA = new String[]{
+            "CREATE TABLE IF NOT EXISTS 'cached_groups' ('name' VARCHAR(36) NOT NULL, 'nodes' CLOB NOT NULL, PRIMARY KEY ('name'))",
+            "CREATE TABLE IF NOT EXISTS 'cached_tracks' ('name' VARCHAR(36) NOT NULL, 'groups' CLOB NOT NULL, PRIMARY KEY ('name'))",
+            "CREATE TABLE IF NOT EXISTS 'cached_players' ('uuid' VARCHAR(36) NOT NULL, 'username' VARCHAR(16) NOT NULL, 'cached_at' BIGINT NOT NULL, PRIMARY KEY ('uuid'))",
+            "CREATE INDEX IF NOT EXISTS 'cached_players_username' ON 'cached_players' ('username')"
+    };
+
+    private static final String GROUP_SELECT_ALL = "SELECT name, nodes FROM 'cached_groups'";
+    private static final String GROUP_SELECT = "SELECT nodes FROM 'cached_groups' WHERE name=?";
+    private static final String GROUP_INSERT = "INSERT INTO 'cached_groups' (name, nodes) VALUES(?, ?)";
+    private static final String GROUP_DELETE = "DELETE FROM 'cached_groups' WHERE name=?";
+    private static final String GROUP_DELETE_ALL = "DELETE FROM 'cached_groups'";
+
+    private static final String TRACK_SELECT_ALL = "SELECT name, 'groups' FROM 'cached_tracks'";
+    private static final String TRACK_SELECT = "SELECT 'groups' FROM 'cached_tracks' WHERE name=?";
+    private static final String TRACK_INSERT = "INSERT INTO 'cached_tracks' (name, 'groups') VALUES(?, ?)";
+    private static final String TRACK_DELETE = "DELETE FROM 'cached_tracks' WHERE name=?";
+    private static final String TRACK_DELETE_ALL = "DELETE FROM 'cached_tracks'";
+
+    private static final String PLAYER_SELECT_BY_USERNAME = "SELECT uuid FROM 'cached_players' WHERE username=? AND cached_at>? LIMIT 1";
+    private static final String PLAYER_SELECT_BY_UUID = "SELECT username FROM 'cached_players' WHERE uuid=? AND cached_at>? LIMIT 1";
+    private static final String PLAYER_INSERT = "INSERT INTO 'cached_players' (uuid, username, cached_at) VALUES(?, ?, ?)";
+    private static final String PLAYER_DELETE_BY_USERNAME = "DELETE FROM 'cached_players' WHERE username=?";
+    private static final String PLAYER_DELETE = "DELETE FROM 'cached_players' WHERE uuid=?";
+
+    private final LuckPermsPlugin plugin;
+    private final ConnectionFactory connectionFactory;
+    private final Function<String, String> statementProcessor;
+
+    /** Incremented each time the cache is invalidated */
+    private final AtomicInteger generation = new AtomicInteger();
+    /** The generation in which the groups/tracks were last filled from the remote storage */
+    private volatile int groupsGeneration = -1;
+    private volatile int tracksGeneration = -1;
+    /** Player data entries written at or before this time are no longer served */
+    private volatile long playersValidSince = 0;
+
+    public SplitStorageCache(LuckPermsPlugin plugin, ConnectionFactory connectionFactory) {
+        this.plugin = plugin;
+        this.connectionFactory = connectionFactory;
+        this.statementProcessor = connectionFactory.getStatementProcessor();
+    }
+
+    public void init() throws SQLException {
+        this.connectionFactory.init(this.plugin);
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (Statement s = c.createStatement()) {
+                for (String query : SCHEMA) {
+                    s.addBatch(this.statementProcessor.apply(query));
+                }
+                s.executeBatch();
+            }
+        }
+    }
+
+    public void shutdown() {
+        try {
+            this.connectionFactory.shutdown();
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("Exception whilst disabling the split storage cache", e);
+        }
+    }
+
+    /**
+     * Marks all cached data as stale, so that it is loaded from the remote
+     * storage again.
+     */
+    public void invalidate() {
+        this.generation.incrementAndGet();
+        this.playersValidSince = System.currentTimeMillis();
+    }
+
+    /**
+     * Gets the current generation, to be passed to {@link #setGroupsFresh(int)}
+     * or {@link #setTracksFresh(int)} once the data has been copied from the remote
+     * storage.
+     *
+     * @return the current generation
+     */
+    public int getGeneration() {
+        return this.generation.get();
+    }
+
+    public boolean isGroupsFresh() {
+        return this.groupsGeneration == this.generation.get();
+    }
+
+    public void setGroupsFresh(int generation) {
+        this.groupsGeneration = generation;
+    }
+
+    public boolean isTracksFresh() {
+        return this.tracksGeneration == this.generation.get();
+    }
+
+    public void setTracksFresh(int generation) {
+        this.tracksGeneration = generation;
+    }
+
+    public Map<String, Set<Node>> loadGroups() throws SQLException {
+        Map<String, Set<Node>> groups = new HashMap<>();
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(GROUP_SELECT_ALL))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        groups.put(rs.getString("name"), deserializeNodes(rs.getString("nodes")));
+                    }
+                }
+            }
+        }
+        return groups;
+    }
+
+    public Optional<Set<Node>> loadGroup(String name) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(GROUP_SELECT))) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(deserializeNodes(rs.getString("nodes")));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void saveGroup(String name, Collection<Node> nodes) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                delete(c, GROUP_DELETE, name);
+                insert(c, GROUP_INSERT, name, serializeNodes(nodes));
+            });
+        }
+    }
+
+    public void replaceGroups(Map<String, ? extends Collection<Node>> groups) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                try (Statement s = c.createStatement()) {
+                    s.execute(this.statementProcessor.apply(GROUP_DELETE_ALL));
+                }
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(GROUP_INSERT))) {
+                    for (Map.Entry<String, ? extends Collection<Node>> group : groups.entrySet()) {
+                        ps.setString(1, group.getKey());
+                        ps.setString(2, serializeNodes(group.getValue()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+        }
+    }
+
+    public void deleteGroup(String name) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            delete(c, GROUP_DELETE, name);
+        }
+    }
+
+    public Map<String, List<String>> loadTracks() throws SQLException {
+        Map<String, List<String>> tracks = new HashMap<>();
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(TRACK_SELECT_ALL))) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        tracks.put(rs.getString("name"), deserializeGroups(rs.getString("groups")));
+                    }
+                }
+            }
+        }
+        return tracks;
+    }
+
+    public Optional<List<String>> loadTrack(String name) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(TRACK_SELECT))) {
+                ps.setString(1, name);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return Optional.of(deserializeGroups(rs.getString("groups")));
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    public void saveTrack(String name, List<String> groups) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                delete(c, TRACK_DELETE, name);
+                insert(c, TRACK_INSERT, name, serializeGroups(groups));
+            });
+        }
+    }
+
+    public void replaceTracks(Map<String, List<String>> tracks) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                try (Statement s = c.createStatement()) {
+                    s.execute(this.statementProcessor.apply(TRACK_DELETE_ALL));
+                }
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(TRACK_INSERT))) {
+                    for (Map.Entry<String, List<String>> track : tracks.entrySet()) {
+                        ps.setString(1, track.getKey());
+                        ps.setString(2, serializeGroups(track.getValue()));
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+        }
+    }
+
+    public void deleteTrack(String name) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            delete(c, TRACK_DELETE, name);
+        }
+    }
+
+    public @Nullable UUID getPlayerUniqueId(String username) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_BY_USERNAME))) {
+                ps.setString(1, username.toLowerCase(Locale.ROOT));
+                ps.setLong(2, this.playersValidSince);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return UUID.fromString(rs.getString("uuid"));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public @Nullable String getPlayerName(UUID uniqueId) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_BY_UUID))) {
+                ps.setString(1, uniqueId.toString());
+                ps.setLong(2, this.playersValidSince);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        return rs.getString("username");
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    public void savePlayerData(UUID uniqueId, String username) throws SQLException {
+        String lowerUsername = username.toLowerCase(Locale.ROOT);
+        try (Connection c = this.connectionFactory.getConnection()) {
+            transaction(c, () -> {
+                // usernames are unique, any other player with the same name has since changed theirs
+                delete(c, PLAYER_DELETE_BY_USERNAME, lowerUsername);
+                delete(c, PLAYER_DELETE, uniqueId.toString());
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_INSERT))) {
+                    ps.setString(1, uniqueId.toString());
+                    ps.setString(2, lowerUsername);
+                    ps.setLong(3, System.currentTimeMillis());
+                    ps.execute();
+                }
+            });
+        }
+    }
+
+    public void deletePlayerData(UUID uniqueId) throws SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            delete(c, PLAYER_DELETE, uniqueId.toString());
+        }
+    }
+
+    private void insert(Connection c, String query, String name, String data) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(query))) {
+            ps.setString(1, name);
+            ps.setString(2, data);
+            ps.execute();
+        }
+    }
+
+    private void delete(Connection c, String query, String key) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(query))) {
+            ps.setString(1, key);
+            ps.execute();
+        }
+    }
+
+    private static void transaction(Connection c, SqlAction action) throws SQLException {
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            action.run();
+            c.commit();
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static String serializeNodes(Collection<Node> nodes) {
+        return GsonProvider.normal().toJson(NodeJsonSerializer.serializeNodes(nodes));
+    }
+
+    private static Set<Node> deserializeNodes(String json) {
+        return NodeJsonSerializer.deserializeNodes(GsonProvider.parser().parse(json).getAsJsonArray());
+    }
+
+    private static String serializeGroups(List<String> groups) {
+        JsonArray array = new JsonArray();
+        for (String group : groups) {
+            array.add(group);
+        }
+        return GsonProvider.normal().toJson(array);
+    }
+
+    private static List<String> deserializeGroups(String json) {
+        List<String> groups = new ArrayList<>();
+        for (JsonElement element : GsonProvider.parser().parse(json).getAsJsonArray()) {
+            groups.add(element.getAsString());
+        }
+        return groups;
+    }
+
+    @FunctionalInterface
+    private interface SqlAction {
+        void run() throws SQLException;
+    }
+
+}
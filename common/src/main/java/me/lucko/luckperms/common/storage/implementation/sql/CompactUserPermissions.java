@@ -0,0 +1,582 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.sql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateSqlBuilder;
+import me.lucko.luckperms.common.context.serializer.ContextSetJsonSerializer;
+import me.lucko.luckperms.common.model.HolderType;
+import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.util.CaffeineFactory;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.context.DefaultContextKeys;
+import net.luckperms.api.context.MutableContextSet;
+import net.luckperms.api.node.Node;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Reads and writes user permissions using the compact table layout.
+ *
+ * <p>Unique ids are stored as 16 byte binary values, and permission strings and
+ * context sets (server, world &amp; other contexts) are interned into dictionary
+ * tables and referenced by integer id. Dictionary entries are cached client side,
+ * so nodes are read and written without joining against the dictionary tables.</p>
+ *
+ * <p>Dictionary entries are made unique by a SHA-1 hash of their values rather
+ * than the values themselves, as a unique index over the (utf8mb4) value columns
+ * would exceed the MySQL index key length limit on older row formats.</p>
+ */
+final class CompactUserPermissions {
+    private static final String SELECT = "SELECT id, permission_id, value, expiry, context_id FROM '{prefix}compact_user_permissions' WHERE uuid=?";
+    private static final String SELECT_MULTIPLE = "SELECT uuid, id, permission_id, value, expiry, context_id FROM '{prefix}compact_user_permissions' WHERE uuid IN (";
+    private static final String SELECT_DISTINCT = "SELECT DISTINCT uuid FROM '{prefix}compact_user_permissions'";
+    private static final String SELECT_EXPIRED = "SELECT uuid, id, permission_id, value, expiry, context_id FROM '{prefix}compact_user_permissions' WHERE expiry > 0 AND expiry < ? LIMIT ?";
+    private static final String SELECT_JOINED = "SELECT p.uuid, p.id, k.permission, p.value, c.server, c.world, p.expiry, c.contexts FROM '{prefix}compact_user_permissions' p JOIN '{prefix}compact_permissions' k ON p.permission_id = k.id JOIN '{prefix}compact_contexts' c ON p.context_id = c.id";
+    private static final String SELECT_DISTINCT_JOINED = "SELECT DISTINCT p.uuid FROM '{prefix}compact_user_permissions' p JOIN '{prefix}compact_permissions' k ON p.permission_id = k.id JOIN '{prefix}compact_contexts' c ON p.context_id = c.id";
+    private static final String DELETE_SPECIFIC = "DELETE FROM '{prefix}compact_user_permissions' WHERE id=?";
+    private static final String DELETE_SPECIFIC_PROPS = "DELETE FROM '{prefix}compact_user_permissions' WHERE uuid=? AND permission_id=? AND value=? AND expiry=? AND context_id=?";
+    private static final String DELETE = "DELETE FROM '{prefix}compact_user_permissions' WHERE uuid=?";
+    private static final String INSERT = "INSERT INTO '{prefix}compact_user_permissions' (uuid, permission_id, value, expiry, context_id) VALUES(?, ?, ?, ?, ?)";
+
+    private static final String PERMISSION_SELECT = "SELECT permission FROM '{prefix}compact_permissions' WHERE id=?";
+    private static final String PERMISSION_SELECT_ID = "SELECT id FROM '{prefix}compact_permissions' WHERE permission_hash=?";
+    private static final String PERMISSION_INSERT = "INSERT INTO '{prefix}compact_permissions' (permission, permission_hash) VALUES(?, ?)";
+    private static final String CONTEXTS_SELECT = "SELECT server, world, contexts FROM '{prefix}compact_contexts' WHERE id=?";
+    private static final String CONTEXTS_SELECT_ID = "SELECT id FROM '{prefix}compact_contexts' WHERE contexts_hash=?";
+    private static final String CONTEXTS_INSERT = "INSERT INTO '{prefix}compact_contexts' (server, world, contexts, contexts_hash) VALUES(?, ?, ?, ?)";
+
+    /** The maximum number of entries to cache from each dictionary */
+    private static final int DICTIONARY_CACHE_SIZE = 50_000;
+
+    /** The maximum number of unique ids to bind in a single 'IN' clause */
+    private static final int SELECT_BATCH_SIZE = 500;
+
+    private final Function<String, String> statementProcessor;
+    private final String implementationName;
+
+    private final Cache<String, Integer> permissionIds = CaffeineFactory.newBuilder().maximumSize(DICTIONARY_CACHE_SIZE).build();
+    private final Cache<Integer, String> permissions = CaffeineFactory.newBuilder().maximumSize(DICTIONARY_CACHE_SIZE).build();
+    private final Cache<ContextColumns, Integer> contextIds = CaffeineFactory.newBuilder().maximumSize(DICTIONARY_CACHE_SIZE).build();
+    private final Cache<Integer, ContextColumns> contexts = CaffeineFactory.newBuilder().maximumSize(DICTIONARY_CACHE_SIZE).build();
+
+    CompactUserPermissions(Function<String, String> statementProcessor, String implementationName) {
+        this.statementProcessor = statementProcessor;
+        this.implementationName = implementationName;
+    }
+
+    public List<Node> select(Connection c, UUID user) throws SQLException {
+        // read every row before resolving dictionary ids, which may require further queries
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(SELECT))) {
+            ps.setBytes(1, toBytes(user));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Row(user, rs));
+                }
+            }
+        }
+
+        List<Node> nodes = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            Node node = row.toNode(c);
+            if (node != null) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    public Map<UUID, List<Node>> select(Connection c, Set<UUID> users) throws SQLException {
+        Map<UUID, List<Node>> map = new HashMap<>();
+        for (UUID uuid : users) {
+            map.put(uuid, new ArrayList<>());
+        }
+
+        Iterator<UUID> it = users.iterator();
+        while (it.hasNext()) {
+            List<UUID> batch = new ArrayList<>(SELECT_BATCH_SIZE);
+            while (it.hasNext() && batch.size() < SELECT_BATCH_SIZE) {
+                batch.add(it.next());
+            }
+
+            String sql = this.statementProcessor.apply(SELECT_MULTIPLE) + String.join(", ", Collections.nCopies(batch.size(), "?")) + ")";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                for (int i = 0; i < batch.size(); i++) {
+                    ps.setBytes(i + 1, toBytes(batch.get(i)));
+                }
+
+                List<Row> rows = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        rows.add(new Row(fromBytes(rs.getBytes("uuid")), rs));
+                    }
+                }
+                for (Row row : rows) {
+                    Node node = row.toNode(c);
+                    if (node != null) {
+                        map.get(row.uuid).add(node);
+                    }
+                }
+            }
+        }
+
+        return map;
+    }
+
+    /**
+     * Prepares a statement which selects the permissions of every user, ordered by unique id.
+     *
+     * @param c the connection
+     * @return the statement
+     * @throws SQLException if an error occurs
+     */
+    public PreparedStatement prepareSelectAll(Connection c) throws SQLException {
+        return c.prepareStatement(this.statementProcessor.apply(SELECT_JOINED + " ORDER BY p.uuid"));
+    }
+
+    public Set<UUID> selectUniqueUsers(Connection c) throws SQLException {
+        Set<UUID> uuids = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(SELECT_DISTINCT))) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    uuids.add(fromBytes(rs.getBytes("uuid")));
+                }
+            }
+        }
+        return uuids;
+    }
+
+    /**
+     * Selects the rows of nodes which expired before the given time.
+     *
+     * @param c the connection
+     * @param time the time, in epoch seconds
+     * @param limit the maximum number of rows to select
+     * @return the expired rows
+     * @throws SQLException if an error occurs
+     */
+    public SqlStorage.ExpiredRows selectExpired(Connection c, long time, int limit) throws SQLException {
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(SELECT_EXPIRED))) {
+            ps.setLong(1, time);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Row(fromBytes(rs.getBytes("uuid")), rs));
+                }
+            }
+        }
+
+        SqlStorage.ExpiredRows expired = new SqlStorage.ExpiredRows();
+        for (Row row : rows) {
+            expired.add(row.uuid, row.id, row.toNode(c));
+        }
+        return expired;
+    }
+
+    /**
+     * Deletes the rows with the given ids.
+     *
+     * @param c the connection
+     * @param rowIds the row ids
+     * @throws SQLException if an error occurs
+     */
+    public void deleteRows(Connection c, Collection<Long> rowIds) throws SQLException {
+        SqlStorage.deleteRows(c, this.statementProcessor.apply(DELETE_SPECIFIC), rowIds);
+    }
+
+    public <N extends Node> void search(Connection c, ConstraintNodeMatcher<N> constraint, List<NodeEntry<UUID, N>> results) throws SQLException {
+        // the dictionary columns have unique names, so the constraint can be applied to the joined row
+        NodeSearchSqlBuilder sqlBuilder = new NodeSearchSqlBuilder(this.implementationName);
+        sqlBuilder.builder().append(SELECT_JOINED);
+        sqlBuilder.builder().append(" WHERE ");
+        sqlBuilder.visitPermission("permission", constraint.getConstraint());
+
+        try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor)) {
+            ps.setFetchSize(SqlStorage.ITERATE_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    UUID holder = fromBytes(rs.getBytes("uuid"));
+                    Node node = SqlStorage.readNode(rs);
+                    if (node == null) {
+                        continue;
+                    }
+
+                    N match = constraint.filterConstraintMatch(node);
+                    if (match != null) {
+                        results.add(NodeEntry.of(holder, match));
+                    }
+                }
+            }
+        }
+    }
+
+    public Set<UUID> applyBulkUpdate(Connection c, BulkUpdate bulkUpdate) throws SQLException {
+        // find the users with at least one matching node, then apply the update to each of them
+        BulkUpdateSqlBuilder sqlBuilder = new BulkUpdateSqlBuilder();
+        sqlBuilder.builder().append(SELECT_DISTINCT_JOINED);
+        sqlBuilder.visit(bulkUpdate.getFilters());
+
+        Set<UUID> users = new HashSet<>();
+        try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor)) {
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    users.add(fromBytes(rs.getBytes("uuid")));
+                }
+            }
+        }
+
+        for (Map.Entry<UUID, List<Node>> entry : select(c, users).entrySet()) {
+            Set<Node> nodes = new HashSet<>(entry.getValue());
+            Set<Node> results = bulkUpdate.apply(nodes, HolderType.USER);
+            if (results == null) {
+                continue;
+            }
+
+            // unchanged nodes are returned as the same instance
+            Set<Node> unchanged = Collections.newSetFromMap(new IdentityHashMap<>());
+            unchanged.addAll(nodes);
+            unchanged.retainAll(results);
+
+            Set<Node> removed = new HashSet<>(nodes);
+            removed.removeAll(unchanged);
+            Set<Node> added = new HashSet<>(results);
+            added.removeAll(unchanged);
+
+            update(c, entry.getKey(), added, removed);
+        }
+        return users;
+    }
+
+    public void update(Connection c, UUID user, Set<Node> add, Set<Node> delete) throws SQLException {
+        byte[] uuid = toBytes(user);
+
+        if (!delete.isEmpty()) {
+            List<Long> deleteRows = new ArrayList<>(delete.size());
+            List<Node> deleteNodes = new ArrayList<>(delete.size());
+            for (Node node : delete) {
+                SqlRowId rowId = node.getMetadata(SqlRowId.KEY).orElse(null);
+                if (rowId != null) {
+                    deleteRows.add(rowId.getRowId());
+                } else {
+                    deleteNodes.add(node);
+                }
+            }
+
+            if (!deleteRows.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(DELETE_SPECIFIC))) {
+                    for (Long id : deleteRows) {
+                        ps.setLong(1, id);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+            if (!deleteNodes.isEmpty()) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(DELETE_SPECIFIC_PROPS))) {
+                    for (Node node : deleteNodes) {
+                        ps.setBytes(1, uuid);
+                        writeNode(c, node, ps);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+        }
+
+        if (!add.isEmpty()) {
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(INSERT))) {
+                for (Node node : add) {
+                    ps.setBytes(1, uuid);
+                    writeNode(c, node, ps);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        }
+    }
+
+    public void delete(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(DELETE))) {
+            ps.setBytes(1, toBytes(user));
+            ps.execute();
+        }
+    }
+
+    /**
+     * Resolves (inserting if necessary) the dictionary ids for the given nodes.
+     *
+     * <p>Should be called before writing the nodes within a transaction, so that new
+     * dictionary entries are committed (and visible to other servers) straight away
+     * and the transaction itself stays short.</p>
+     *
+     * @param c the connection
+     * @param nodes the nodes
+     * @throws SQLException if an error occurs
+     */
+    public void prepare(Connection c, Collection<Node> nodes) throws SQLException {
+        for (Node node : nodes) {
+            getPermissionId(c, node.getKey());
+            getContextId(c, ContextColumns.of(node));
+        }
+    }
+
+    private void writeNode(Connection c, Node node, PreparedStatement ps) throws SQLException {
+        ps.setInt(2, getPermissionId(c, node.getKey()));
+        ps.setBoolean(3, node.getValue());
+        ps.setLong(4, node.hasExpiry() ? node.getExpiry().getEpochSecond() : 0L);
+        ps.setInt(5, getContextId(c, ContextColumns.of(node)));
+    }
+
+    private String getPermission(Connection c, int id) throws SQLException {
+        String permission = this.permissions.getIfPresent(id);
+        if (permission != null) {
+            return permission;
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PERMISSION_SELECT))) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                permission = rs.getString("permission");
+            }
+        }
+
+        this.permissions.put(id, permission);
+        this.permissionIds.put(permission, id);
+        return permission;
+    }
+
+    private int getPermissionId(Connection c, String permission) throws SQLException {
+        Integer id = this.permissionIds.getIfPresent(permission);
+        if (id != null) {
+            return id;
+        }
+
+        id = selectOrInsertId(c, PERMISSION_SELECT_ID, PERMISSION_INSERT, permission);
+        this.permissionIds.put(permission, id);
+        this.permissions.put(id, permission);
+        return id;
+    }
+
+    private ContextColumns getContexts(Connection c, int id) throws SQLException {
+        ContextColumns contexts = this.contexts.getIfPresent(id);
+        if (contexts != null) {
+            return contexts;
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(CONTEXTS_SELECT))) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                contexts = new ContextColumns(rs.getString("server"), rs.getString("world"), rs.getString("contexts"));
+            }
+        }
+
+        this.contexts.put(id, contexts);
+        this.contextIds.put(contexts, id);
+        return contexts;
+    }
+
+    private int getContextId(Connection c, ContextColumns contexts) throws SQLException {
+        Integer id = this.contextIds.getIfPresent(contexts);
+        if (id != null) {
+            return id;
+        }
+
+        id = selectOrInsertId(c, CONTEXTS_SELECT_ID, CONTEXTS_INSERT, contexts.server, contexts.world, contexts.contexts);
+        this.contextIds.put(contexts, id);
+        this.contexts.put(id, contexts);
+        return id;
+    }
+
+    private int selectOrInsertId(Connection c, String selectQuery, String insertQuery, String... values) throws SQLException {
+        byte[] hash = hash(values);
+        Integer id = selectId(c, selectQuery, hash);
+        if (id != null) {
+            return id;
+        }
+
+        // a failed statement aborts the whole transaction on some databases (e.g. PostgreSQL),
+        // so when called within one, only roll back as far as the insert
+        Savepoint savepoint = c.getAutoCommit() ? null : c.setSavepoint();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(insertQuery))) {
+            for (int i = 0; i < values.length; i++) {
+                ps.setString(i + 1, values[i]);
+            }
+            ps.setBytes(values.length + 1, hash);
+            ps.execute();
+        } catch (SQLException e) {
+            // the entry may have been inserted concurrently by another server,
+            // in which case the unique index rejects our insert
+            if (savepoint != null) {
+                c.rollback(savepoint);
+                savepoint = null;
+            }
+        } finally {
+            if (savepoint != null) {
+                c.releaseSavepoint(savepoint);
+            }
+        }
+
+        id = selectId(c, selectQuery, hash);
+        if (id == null) {
+            throw new SQLException("Unable to insert dictionary entry: " + String.join(", ", values));
+        }
+        return id;
+    }
+
+    private Integer selectId(Connection c, String selectQuery, byte[] hash) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(selectQuery))) {
+            ps.setBytes(1, hash);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt("id") : null;
+            }
+        }
+    }
+
+    private static byte[] hash(String... values) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                digest.update((byte) 0);
+            }
+            digest.update(values[i].getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        return new UUID(buf.getLong(), buf.getLong());
+    }
+
+    /**
+     * A row read from the compact user permissions table, before its dictionary ids are resolved.
+     */
+    private final class Row {
+        private final UUID uuid;
+        private final long id;
+        private final int permissionId;
+        private final boolean value;
+        private final long expiry;
+        private final int contextId;
+
+        Row(UUID uuid, ResultSet rs) throws SQLException {
+            this.uuid = uuid;
+            this.id = rs.getLong("id");
+            this.permissionId = rs.getInt("permission_id");
+            this.value = rs.getBoolean("value");
+            this.expiry = rs.getLong("expiry");
+            this.contextId = rs.getInt("context_id");
+        }
+
+        Node toNode(Connection c) throws SQLException {
+            String permission = getPermission(c, this.permissionId);
+            ContextColumns contexts = getContexts(c, this.contextId);
+            if (permission == null || contexts == null) {
+                return null;
+            }
+            return SqlStorage.createNode(this.id, permission, this.value, contexts.server, contexts.world, this.expiry, contexts.contexts);
+        }
+    }
+
+    /**
+     * The context columns of a node, as stored in the contexts dictionary.
+     */
+    private static final class ContextColumns {
+        private final String server;
+        private final String world;
+        private final String contexts;
+
+        ContextColumns(String server, String world, String contexts) {
+            this.server = server;
+            this.world = world;
+            this.contexts = contexts;
+        }
+
+        static ContextColumns of(Node node) {
+            MutableContextSet contexts = node.getContexts().mutableCopy();
+            String server = SqlStorage.getFirstContextValue(contexts, DefaultContextKeys.SERVER_KEY);
+            String world = SqlStorage.getFirstContextValue(contexts, DefaultContextKeys.WORLD_KEY);
+            return new ContextColumns(server, world, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ContextColumns)) return false;
+            ContextColumns that = (ContextColumns) o;
+            return this.server.equals(that.server) && this.world.equals(that.world) && this.contexts.equals(that.contexts);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.server, this.world, this.contexts);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.sql;
+
+import me.lucko.luckperms.common.context.serializer.ContextSetJsonSerializer;
+import me.lucko.luckperms.common.filter.Comparison;
+import me.lucko.luckperms.common.filter.Constraint;
+import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.context.DefaultContextKeys;
+import net.luckperms.api.context.MutableContextSet;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.InheritanceNode;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Maintains a table of the inheritance (group membership) nodes held by users.
+ *
+ * <p>The table is derived from the user permissions table, and is kept up to
+ * date as users are saved. Searches for the members of a single group are
+ * answered using the index on the group name, rather than by searching every
+ * user permission.</p>
+ *
+ * <p>Rows are written after the permissions they are derived from, so that
+ * a concurrent {@link #replace(Connection, Map)} either sees the permissions,
+ * or is followed by the rows.</p>
+ */
+final class GroupMembershipTable {
+    private static final String SELECT = "SELECT uuid, value, server, world, expiry, contexts FROM '{prefix}group_members' WHERE group_name=?";
+    private static final String DELETE_SPECIFIC = "DELETE FROM '{prefix}group_members' WHERE uuid=? AND group_name=? AND value=? AND server=? AND world=? AND expiry=? AND contexts=?";
+    private static final String DELETE = "DELETE FROM '{prefix}group_members' WHERE uuid=?";
+    private static final String INSERT = "INSERT INTO '{prefix}group_members' (uuid, group_name, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INHERITANCE_PREFIX = Inheritance.key("");
+
+    private final Function<String, String> statementProcessor;
+
+    GroupMembershipTable(Function<String, String> statementProcessor) {
+        this.statementProcessor = statementProcessor;
+    }
+
+    /**
+     * Gets the name of the group the given search is for, if it can be
+     * answered using this table.
+     *
+     * @param constraint the search constraint
+     * @return the group name, or null
+     */
+    public static @Nullable String getSearchGroup(Constraint<String> constraint) {
+        String value = constraint.value();
+        if (constraint.comparison() != Comparison.EQUAL || !value.regionMatches(true, 0, INHERITANCE_PREFIX, 0, INHERITANCE_PREFIX.length())) {
+            return null;
+        }
+
+        String group = value.substring(INHERITANCE_PREFIX.length()).toLowerCase(Locale.ROOT);
+        return group.isEmpty() ? null : group;
+    }
+
+    public <N extends Node> void search(Connection c, String group, ConstraintNodeMatcher<N> constraint, List<NodeEntry<UUID, N>> results) throws SQLException {
+        String key = Inheritance.key(group);
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(SELECT))) {
+            ps.setString(1, group);
+            ps.setFetchSize(SqlStorage.ITERATE_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Node node = SqlStorage.createNode(
+                            0,
+                            key,
+                            rs.getBoolean("value"),
+                            rs.getString("server"),
+                            rs.getString("world"),
+                            rs.getLong("expiry"),
+                            rs.getString("contexts")
+                    );
+                    if (node == null) {
+                        continue;
+                    }
+
+                    N match = constraint.filterConstraintMatch(node);
+                    if (match != null) {
+                        results.add(NodeEntry.of(UUID.fromString(rs.getString("uuid")), match));
+                    }
+                }
+            }
+        }
+    }
+
+    public void update(Connection c, UUID user, Collection<Node> add, Collection<Node> delete) throws SQLException {
+        write(c, user, delete, DELETE_SPECIFIC);
+        // the added rows may already have been copied from the permissions table by a concurrent fill
+        write(c, user, add, DELETE_SPECIFIC);
+        write(c, user, add, INSERT);
+    }
+
+    public void replace(Connection c, Map<UUID, List<Node>> users) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(DELETE))) {
+            for (UUID user : users.keySet()) {
+                ps.setString(1, user.toString());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+
+        for (Map.Entry<UUID, List<Node>> entry : users.entrySet()) {
+            write(c, entry.getKey(), entry.getValue(), INSERT);
+        }
+    }
+
+    public void delete(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(DELETE))) {
+            ps.setString(1, user.toString());
+            ps.execute();
+        }
+    }
+
+    private void write(Connection c, UUID user, Collection<Node> nodes, String query) throws SQLException {
+        PreparedStatement ps = null;
+        try {
+            for (Node node : nodes) {
+                if (!(node instanceof InheritanceNode)) {
+                    continue;
+                }
+
+                if (ps == null) {
+                    ps = c.prepareStatement(this.statementProcessor.apply(query));
+                }
+
+                MutableContextSet contexts = node.getContexts().mutableCopy();
+                ps.setString(1, user.toString());
+                ps.setString(2, ((InheritanceNode) node).getGroupName());
+                ps.setBoolean(3, node.getValue());
+                ps.setString(4, SqlStorage.getFirstContextValue(contexts, DefaultContextKeys.SERVER_KEY));
+                ps.setString(5, SqlStorage.getFirstContextValue(contexts, DefaultContextKeys.WORLD_KEY));
+                ps.setLong(6, node.hasExpiry() ? node.getExpiry().getEpochSecond() : 0L);
+                ps.setString(7, GsonProvider.normal().toJson(ContextSetJsonSerializer.serialize(contexts)));
+                ps.addBatch();
+            }
+
+            if (ps != null) {
+                ps.executeBatch();
+            }
+        } finally {
+            if (ps != null) {
+                ps.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.sql;
+
+import me.lucko.luckperms.common.filter.Comparison;
+import me.lucko.luckperms.common.filter.Constraint;
+import me.lucko.luckperms.common.filter.sql.ConstraintSqlBuilder;
+import me.lucko.luckperms.common.node.types.Inheritance;
+
+import java.util.Locale;
+
+/**
+ * Builds the 'WHERE' clause of a node search, rewriting the constraint into
+ * predicates which can be answered using the index on the permission column.
+ *
+ * <ul>
+ *     <li>Inheritance keys ('group.xxx') are always stored in lowercase, so
+ *     the value is lowercased before it is compared.</li>
+ *     <li>On databases which can't use an index to answer a 'LIKE' query
+ *     (H2 and SQLite, where 'LIKE' is case-insensitive), the literal prefix of
+ *     an inheritance key pattern is also turned into a range predicate.</li>
+ * </ul>
+ */
+final class NodeSearchSqlBuilder extends ConstraintSqlBuilder {
+    private static final String INHERITANCE_PREFIX = Inheritance.key("");
+
+    private final boolean rangeScans;
+
+    NodeSearchSqlBuilder(String implementationName) {
+        this.rangeScans = implementationName.equals("H2") || implementationName.equals("SQLite");
+    }
+
+    public void visitPermission(String column, Constraint<String> constraint) {
+        //                                   'permission = value'
+        // 'permission >= lower AND permission < upper AND permission LIKE value'
+
+        Comparison comparison = constraint.comparison();
+        String value = constraint.value();
+        if (isInheritanceKey(value)) {
+            value = value.toLowerCase(Locale.ROOT);
+
+            if (comparison == Comparison.SIMILAR && this.rangeScans) {
+                visitRange(column, literalPrefix(value));
+            }
+        }
+
+        this.builder.append(column).append(' ');
+        visit(comparison);
+        this.builder.append(' ');
+        visitConstraintValue(value);
+    }
+
+    private void visitRange(String column, String prefix) {
+        char last = prefix.charAt(prefix.length() - 1);
+        if (last == Character.MAX_VALUE) {
+            return;
+        }
+
+        String upper = prefix.substring(0, prefix.length() - 1) + (char) (last + 1);
+        this.builder.append(column).append(" >= ").variable(prefix)
+                .append(" AND ").append(column).append(" < ").variable(upper)
+                .append(" AND ");
+    }
+
+    private static boolean isInheritanceKey(String value) {
+        return value.regionMatches(true, 0, INHERITANCE_PREFIX, 0, INHERITANCE_PREFIX.length());
+    }
+
+    private static String literalPrefix(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == Comparison.WILDCARD.charAt(0) || c == Comparison.WILDCARD_ONE.charAt(0)) {
+                return pattern.substring(0, i);
+            }
+        }
+        return pattern;
+    }
+}
@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.storage.implementation.sql;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
 import com.google.gson.reflect.TypeToken;
 import me.lucko.luckperms.common.actionlog.LogPage;
 import me.lucko.luckperms.common.actionlog.LoggedAction;
@@ -34,14 +35,15 @@ import me.lucko.luckperms.common.actionlog.filter.ActionFilterSqlBuilder;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdate;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdateSqlBuilder;
 import me.lucko.luckperms.common.bulkupdate.BulkUpdateStatistics;
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.common.context.serializer.ContextSetJsonSerializer;
 import me.lucko.luckperms.common.filter.FilterList;
 import me.lucko.luckperms.common.filter.PageParameters;
-import me.lucko.luckperms.common.filter.sql.ConstraintSqlBuilder;
 import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.Track;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.node.NodeInterner;
 import me.lucko.luckperms.common.node.factory.NodeBuilders;
 import me.lucko.luckperms.common.node.matcher.ConstraintNodeMatcher;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
@@ -50,14 +52,17 @@ import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.misc.NodeEntry;
 import me.lucko.luckperms.common.storage.misc.PlayerSaveResultImpl;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import me.lucko.luckperms.common.util.Difference;
 import me.lucko.luckperms.common.util.Uuids;
 import me.lucko.luckperms.common.util.gson.GsonProvider;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.context.DefaultContextKeys;
+import net.luckperms.api.context.ImmutableContextSet;
 import net.luckperms.api.context.MutableContextSet;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.node.Node;
+import net.luckperms.api.node.NodeBuilder;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.io.IOException;
@@ -69,23 +74,52 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class SqlStorage implements StorageImplementation {
     private static final Type LIST_STRING_TYPE = new TypeToken<List<String>>(){}.getType();
 
+    /**
+     * The current version of the schema.
+     *
+     * <p>Version 1 is the base schema, created from the bundled schema file.
+     * Each later version is applied in order from the corresponding migration
+     * file in the schema/migrations directory.</p>
+     */
+    private static final int SCHEMA_VERSION = 2;
+    private static final String SCHEMA_VERSION_KEY = "schema_version";
+
+    /** The MySQL & MariaDB error code for an attempt to create an index which already exists */
+    private static final int MYSQL_ER_DUP_KEYNAME = 1061;
+
+    /** Metadata key recording whether the group membership table has been filled with the existing data */
+    private static final String GROUP_MEMBERS_FILLED_KEY = "group_members_filled";
+    private static final String GROUP_MEMBERS_FILL_LOCK = "group_members_fill";
+    private static final Duration GROUP_MEMBERS_FILL_LOCK_DURATION = Duration.ofHours(1);
+
+    /** The number of rows fetched at a time when iterating over all users, or reading search results */
+    static final int ITERATE_FETCH_SIZE = 1000;
+
+    /** The number of users to look up player data for at a time when iterating over all users */
+    private static final int ITERATE_BATCH_SIZE = 100;
+
     private static final String USER_PERMISSIONS_SELECT = "SELECT id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' WHERE uuid=?";
     private static final String USER_PERMISSIONS_SELECT_MULTIPLE = "SELECT uuid, id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' WHERE ";
     private static final String USER_PERMISSIONS_DELETE_SPECIFIC = "DELETE FROM '{prefix}user_permissions' WHERE id=?";
@@ -94,6 +128,9 @@ public class SqlStorage implements StorageImplementation {
     private static final String USER_PERMISSIONS_INSERT = "INSERT INTO '{prefix}user_permissions' (uuid, permission, value, server, world, expiry, contexts) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String USER_PERMISSIONS_SELECT_DISTINCT = "SELECT DISTINCT uuid FROM '{prefix}user_permissions'";
     private static final String USER_PERMISSIONS_SELECT_PERMISSION = "SELECT uuid, id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' WHERE ";
+    private static final String USER_PERMISSIONS_SELECT_ALL = "SELECT uuid, id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' ORDER BY uuid";
+    private static final String USER_PERMISSIONS_SELECT_EXPIRED = "SELECT uuid, id, permission, value, server, world, expiry, contexts FROM '{prefix}user_permissions' WHERE expiry > 0 AND expiry < ? LIMIT ?";
+    private static final String USER_PERMISSIONS_SELECT_DISTINCT_BATCH = "SELECT DISTINCT uuid FROM '{prefix}user_permissions' ORDER BY uuid LIMIT ? OFFSET ?";
 
     private static final String PLAYER_SELECT_UUID_BY_USERNAME = "SELECT uuid FROM '{prefix}players' WHERE username=? LIMIT 1";
     private static final String PLAYER_SELECT_USERNAME_BY_UUID = "SELECT username FROM '{prefix}players' WHERE uuid=? LIMIT 1";
@@ -130,6 +167,12 @@ public class SqlStorage implements StorageImplementation {
     private static final String TRACK_UPDATE = "UPDATE '{prefix}tracks' SET 'groups'=? WHERE name=?";
     private static final String TRACK_DELETE = "DELETE FROM '{prefix}tracks' WHERE name=?";
 
+    private static final String METADATA_CREATE = "CREATE TABLE IF NOT EXISTS '{prefix}metadata' ('name' VARCHAR(36) NOT NULL, 'value' VARCHAR(200) NOT NULL, PRIMARY KEY ('name'))";
+    private static final String METADATA_SELECT = "SELECT 'value' FROM '{prefix}metadata' WHERE 'name'=?";
+    private static final String METADATA_UPDATE = "UPDATE '{prefix}metadata' SET 'value'=? WHERE 'name'=?";
+    private static final String METADATA_INSERT = "INSERT INTO '{prefix}metadata' ('name', 'value') VALUES(?, ?)";
+    private static final String METADATA_REPLACE = "UPDATE '{prefix}metadata' SET 'value'=? WHERE 'name'=? AND 'value'=?";
+
     private static final String ACTION_INSERT = "INSERT INTO '{prefix}actions' (time, actor_uuid, actor_name, type, acted_uuid, acted_name, action) VALUES(?, ?, ?, ?, ?, ?, ?)";
     private static final String ACTION_SELECT_ALL = "SELECT * FROM '{prefix}actions'";
     private static final String ACTION_COUNT = "SELECT COUNT(*) FROM '{prefix}actions'";
@@ -139,10 +182,29 @@ public class SqlStorage implements StorageImplementation {
     private final ConnectionFactory connectionFactory;
     private final Function<String, String> statementProcessor;
 
+    /** The compact user permissions layout, or null if the standard layout is used */
+    private final @Nullable CompactUserPermissions compactUserPermissions;
+
+    /** If there are (or may be) rows left in the standard user permissions table to migrate to the compact layout */
+    private volatile boolean pendingCompactMigration = false;
+
+    /** The group membership table, or null if it is not enabled */
+    private final @Nullable GroupMembershipTable groupMembershipTable;
+
     public SqlStorage(LuckPermsPlugin plugin, ConnectionFactory connectionFactory, String tablePrefix) {
+        this(plugin, connectionFactory, tablePrefix, false);
+    }
+
+    public SqlStorage(LuckPermsPlugin plugin, ConnectionFactory connectionFactory, String tablePrefix, boolean compactUserPermissions) {
+        this(plugin, connectionFactory, tablePrefix, compactUserPermissions, false);
+    }
+
+    public SqlStorage(LuckPermsPlugin plugin, ConnectionFactory connectionFactory, String tablePrefix, boolean compactUserPermissions, boolean groupMembershipTable) {
         this.plugin = plugin;
         this.connectionFactory = connectionFactory;
         this.statementProcessor = connectionFactory.getStatementProcessor().compose(s -> s.replace("{prefix}", tablePrefix));
+        this.compactUserPermissions = compactUserPermissions ? new CompactUserPermissions(this.statementProcessor, connectionFactory.getImplementationName()) : null;
+        this.groupMembershipTable = groupMembershipTable ? new GroupMembershipTable(this.statementProcessor) : null;
     }
 
     @Override
@@ -173,23 +235,34 @@ public class SqlStorage implements StorageImplementation {
         }
 
         if (!tableExists) {
-            applySchema();
+            applySchema("");
+        }
+        migrateSchema(tableExists);
+
+        if (this.compactUserPermissions != null) {
+            initCompactUserPermissions();
         }
-    }
 
-    private void applySchema() throws IOException, SQLException {
-        List<String> statements;
+        if (this.groupMembershipTable != null) {
+            initGroupMembershipTable();
+        }
+    }
 
-        String schemaFileName = "me/lucko/luckperms/schema/" + this.connectionFactory.getImplementationName().toLowerCase(Locale.ROOT) + ".sql";
+    private List<String> readSchemaFile(String path) throws IOException {
+        String schemaFileName = "me/lucko/luckperms/schema/" + path + this.connectionFactory.getImplementationName().toLowerCase(Locale.ROOT) + ".sql";
         try (InputStream is = this.plugin.getBootstrap().getResourceStream(schemaFileName)) {
             if (is == null) {
                 throw new IOException("Couldn't locate schema file for " + this.connectionFactory.getImplementationName());
             }
 
-            statements = SchemaReader.getStatements(is).stream()
+            return SchemaReader.getStatements(is).stream()
                     .map(this.statementProcessor)
                     .collect(Collectors.toList());
         }
+    }
+
+    private void applySchema(String path) throws IOException, SQLException {
+        List<String> statements = readSchemaFile(path);
 
         try (Connection connection = this.connectionFactory.getConnection()) {
             boolean utf8mb4Unsupported = false;
@@ -223,6 +296,303 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    private void migrateSchema(boolean existingInstall) throws IOException, SQLException {
+        try (Connection c = this.connectionFactory.getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute(this.statementProcessor.apply(METADATA_CREATE));
+            }
+
+            int version = readSchemaVersion(c);
+            if (version >= SCHEMA_VERSION) {
+                return;
+            }
+
+            if (existingInstall) {
+                this.plugin.getLogger().info("Upgrading " + getImplementationName() + " schema from version " + version + " to " + SCHEMA_VERSION + ", this may take a while...");
+            }
+
+            for (int target = version + 1; target <= SCHEMA_VERSION; target++) {
+                // migration statements are written so they can be safely re-run, in case another
+                // server is migrating concurrently or a previous attempt was interrupted
+                try (Statement s = c.createStatement()) {
+                    for (String query : readSchemaFile("migrations/v" + target + "/")) {
+                        try {
+                            s.execute(query);
+                        } catch (SQLException e) {
+                            // MySQL & MariaDB don't support 'CREATE INDEX IF NOT EXISTS'
+                            if (e.getErrorCode() != MYSQL_ER_DUP_KEYNAME) {
+                                throw e;
+                            }
+                        }
+                    }
+                }
+                writeSchemaVersion(c, target);
+            }
+        }
+    }
+
+    private int readSchemaVersion(Connection c) throws SQLException {
+        String version = readMetadata(c, SCHEMA_VERSION_KEY);
+
+        // tables created before versioning was introduced
+        return version == null ? 1 : Integer.parseInt(version);
+    }
+
+    private void writeSchemaVersion(Connection c, int version) throws SQLException {
+        try {
+            writeMetadata(c, SCHEMA_VERSION_KEY, Integer.toString(version));
+        } catch (SQLException e) {
+            // another server may have recorded the version first
+            if (readSchemaVersion(c) < version) {
+                throw e;
+            }
+        }
+    }
+
+    private @Nullable String readMetadata(Connection c, String key) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(METADATA_SELECT))) {
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getString(1);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeMetadata(Connection c, String key, String value) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(METADATA_UPDATE))) {
+            ps.setString(1, value);
+            ps.setString(2, key);
+            if (ps.executeUpdate() != 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(METADATA_INSERT))) {
+            ps.setString(1, key);
+            ps.setString(2, value);
+            ps.execute();
+        }
+    }
+
+    private void initCompactUserPermissions() throws IOException, SQLException {
+        boolean tableExists;
+        boolean legacyRows;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            tableExists = tableExists(c, this.statementProcessor.apply("{prefix}compact_user_permissions"));
+            legacyRows = !selectLegacyUserBatch(c, 1, 0).isEmpty();
+        }
+
+        if (!tableExists) {
+            applySchema("compact/");
+        }
+
+        // users are migrated individually when they are loaded, and in the background
+        if (legacyRows) {
+            this.pendingCompactMigration = true;
+            this.plugin.getBootstrap().getScheduler().executeAsync(this::migrateToCompactUserPermissions);
+        }
+    }
+
+    private void migrateToCompactUserPermissions() {
+        this.plugin.getLogger().info("Migrating user permissions to the compact storage layout...");
+
+        int migrated = 0;
+        int skipped = 0;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            while (true) {
+                List<String> batch = selectLegacyUserBatch(c, 500, skipped);
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                Set<UUID> users = new HashSet<>();
+                for (String uuid : batch) {
+                    UUID parsed = Uuids.fromString(uuid);
+                    if (parsed != null) {
+                        users.add(parsed);
+                    } else {
+                        skipped++;
+                    }
+                }
+
+                int remaining = migrateToCompactUserPermissions(c, users);
+                migrated += users.size() - remaining;
+                skipped += remaining;
+            }
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("Exception whilst migrating user permissions, the migration will continue on next startup", e);
+            return;
+        }
+
+        this.pendingCompactMigration = false;
+        this.plugin.getLogger().info("Migrated the permissions of " + migrated + " users to the compact storage layout");
+    }
+
+    /**
+     * Moves the legacy permission rows of the given users to the compact table.
+     *
+     * @return the number of users whose legacy rows couldn't be removed
+     */
+    private int migrateToCompactUserPermissions(Connection c, Set<UUID> users) throws SQLException {
+        if (users.isEmpty()) {
+            return 0;
+        }
+
+        int remaining = 0;
+        Map<UUID, List<Node>> nodes = selectLegacyUserPermissions(c, users);
+        Iterator<Map.Entry<UUID, List<Node>>> it = nodes.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, List<Node>> entry = it.next();
+            if (entry.getValue().isEmpty()) {
+                // none of the rows can be read as nodes (e.g. an empty permission), they would be selected again forever
+                if (deleteLegacyUserPermissions(c, entry.getKey()) == 0) {
+                    // stored in a form which doesn't match the parsed uuid, leave it behind
+                    remaining++;
+                }
+                it.remove();
+            }
+        }
+        if (nodes.isEmpty()) {
+            return remaining;
+        }
+
+        for (List<Node> list : nodes.values()) {
+            this.compactUserPermissions.prepare(c, list);
+        }
+
+        // move each user's nodes atomically, so a concurrent or interrupted migration can't duplicate them
+        boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            for (Map.Entry<UUID, List<Node>> entry : nodes.entrySet()) {
+                this.compactUserPermissions.update(c, entry.getKey(), new HashSet<>(entry.getValue()), Collections.emptySet());
+                if (deleteLegacyUserPermissions(c, entry.getKey()) < entry.getValue().size()) {
+                    // moved concurrently by another thread or server
+                    c.rollback();
+                } else {
+                    c.commit();
+                }
+            }
+        } catch (SQLException e) {
+            c.rollback();
+            throw e;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+        return remaining;
+    }
+
+    private void initGroupMembershipTable() throws IOException, SQLException {
+        boolean tableExists;
+        boolean filled;
+        try (Connection c = this.connectionFactory.getConnection()) {
+            tableExists = tableExists(c, this.statementProcessor.apply("{prefix}group_members"));
+            filled = tableExists && Boolean.parseBoolean(readMetadata(c, GROUP_MEMBERS_FILLED_KEY));
+        }
+
+        if (!tableExists) {
+            applySchema("members/");
+        }
+
+        // the table is kept up to date from now on, but searches can't use it until the existing data has been copied
+        if (!filled) {
+            this.plugin.getBootstrap().getScheduler().executeAsync(this::fillGroupMembershipTable);
+        }
+    }
+
+    private void fillGroupMembershipTable() {
+        try {
+            // only one server fills the table, the others start using it once the filled flag is set
+            if (!tryAcquireLock(GROUP_MEMBERS_FILL_LOCK, GROUP_MEMBERS_FILL_LOCK_DURATION)) {
+                this.plugin.getLogger().info("The group membership table is being filled by another server");
+                return;
+            }
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("Exception whilst filling the group membership table, it will be filled again on next startup", e);
+            return;
+        }
+
+        this.plugin.getLogger().info("Filling the group membership table, this may take a while...");
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            List<UUID> users = new ArrayList<>(getUniqueUsers());
+            for (List<UUID> batch : Iterables.partition(users, 500)) {
+                boolean autoCommit = c.getAutoCommit();
+                int isolation = c.getTransactionIsolation();
+                c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                c.setAutoCommit(false);
+                try {
+                    copyGroupMembership(c, new HashSet<>(batch));
+                    c.commit();
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                } finally {
+                    c.setAutoCommit(autoCommit);
+                    c.setTransactionIsolation(isolation);
+                }
+            }
+
+            writeMetadata(c, GROUP_MEMBERS_FILLED_KEY, "true");
+            this.plugin.getLogger().info("Filled the group membership table with the data of " + users.size() + " users");
+        } catch (Exception e) {
+            this.plugin.getLogger().severe("Exception whilst filling the group membership table, it will be filled again on next startup", e);
+
+            // let the next server to start try again straight away
+            try (Connection c = this.connectionFactory.getConnection()) {
+                writeMetadata(c, "lock_" + GROUP_MEMBERS_FILL_LOCK, "0");
+            } catch (SQLException ex) {
+                // ignore, the lock will expire
+            }
+        }
+    }
+
+    /**
+     * Replaces the group membership rows of the given users with those
+     * derived from their current permissions.
+     *
+     * <p>Must be called within a serializable transaction. Whilst the
+     * permissions are read, this stops a concurrent {@link #saveUser(User)}
+     * from writing permissions which would then be missing from the
+     * membership rows written here.</p>
+     *
+     * @param c the connection
+     * @param users the users to copy
+     * @throws SQLException if an error occurs
+     */
+    private void copyGroupMembership(Connection c, Set<UUID> users) throws SQLException {
+        Map<UUID, List<Node>> nodes;
+        if (this.compactUserPermissions == null) {
+            nodes = selectLegacyUserPermissions(c, users);
+        } else {
+            // read both tables rather than migrating the users, as the migration commits its own transactions
+            nodes = this.compactUserPermissions.select(c, users);
+            if (this.pendingCompactMigration) {
+                for (Map.Entry<UUID, List<Node>> entry : selectLegacyUserPermissions(c, users).entrySet()) {
+                    nodes.get(entry.getKey()).addAll(entry.getValue());
+                }
+            }
+        }
+        this.groupMembershipTable.replace(c, nodes);
+    }
+
+    private List<String> selectLegacyUserBatch(Connection c, int limit, int offset) throws SQLException {
+        List<String> uuids = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_DISTINCT_BATCH))) {
+            ps.setInt(1, limit);
+            ps.setInt(2, offset);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    uuids.add(rs.getString("uuid"));
+                }
+            }
+        }
+        return uuids;
+    }
+
     @Override
     public void shutdown() {
         try {
@@ -288,32 +658,26 @@ public class SqlStorage implements StorageImplementation {
 
         try (Connection c = this.connectionFactory.getConnection()) {
             if (bulkUpdate.getDataType().isIncludingUsers()) {
-                Function<String, String> tableReplacement = s -> s.replace("{table}", "{prefix}user_permissions");
-
-                BulkUpdateSqlBuilder sqlBuilder = new BulkUpdateSqlBuilder();
-                sqlBuilder.visit(bulkUpdate);
-
-                try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor.compose(tableReplacement))) {
-                    if (bulkUpdate.isTrackingStatistics()) {
-                        BulkUpdateSqlBuilder statsSqlBuilder = new BulkUpdateSqlBuilder();
-                        statsSqlBuilder.builder().append(USER_PERMISSIONS_SELECT_DISTINCT);
-                        statsSqlBuilder.visit(bulkUpdate.getFilters());
-
-                        try (PreparedStatement lookup = statsSqlBuilder.builder().build(c, this.statementProcessor)) {
-                            try (ResultSet rs = lookup.executeQuery()) {
-                                Set<UUID> uuids = new HashSet<>();
-                                while (rs.next()) {
-                                    uuids.add(Uuids.fromString(rs.getString("uuid")));
-                                }
-                                uuids.remove(null);
-                                stats.incrementAffectedUsers(uuids.size());
-                            }
+                if (this.groupMembershipTable == null) {
+                    applyUserBulkUpdate(c, bulkUpdate);
+                } else {
+                    // bulk updates are applied directly to the permission rows, so copy the membership of the affected users again
+                    boolean autoCommit = c.getAutoCommit();
+                    int isolation = c.getTransactionIsolation();
+                    c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+                    c.setAutoCommit(false);
+                    try {
+                        Set<UUID> users = applyUserBulkUpdate(c, bulkUpdate);
+                        for (List<UUID> batch : Iterables.partition(users, 500)) {
+                            copyGroupMembership(c, new HashSet<>(batch));
                         }
-
-                        int rowsAffected = ps.executeUpdate();
-                        stats.incrementAffectedNodes(rowsAffected);
-                    } else {
-                        ps.execute();
+                        c.commit();
+                    } catch (SQLException e) {
+                        c.rollback();
+                        throw e;
+                    } finally {
+                        c.setAutoCommit(autoCommit);
+                        c.setTransactionIsolation(isolation);
                     }
                 }
             }
@@ -351,6 +715,61 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    /**
+     * Applies the given bulk update to the user permissions.
+     *
+     * @param c the connection
+     * @param bulkUpdate the bulk update
+     * @return the users which may have been affected
+     * @throws SQLException if an error occurs
+     */
+    private Set<UUID> applyUserBulkUpdate(Connection c, BulkUpdate bulkUpdate) throws SQLException {
+        BulkUpdateStatistics stats = bulkUpdate.getStatistics();
+        Set<UUID> users = new HashSet<>();
+
+        if (this.compactUserPermissions != null) {
+            users.addAll(this.compactUserPermissions.applyBulkUpdate(c, bulkUpdate));
+        }
+
+        if (this.compactUserPermissions == null || this.pendingCompactMigration) {
+            Function<String, String> tableReplacement = s -> s.replace("{table}", "{prefix}user_permissions");
+
+            BulkUpdateSqlBuilder sqlBuilder = new BulkUpdateSqlBuilder();
+            sqlBuilder.visit(bulkUpdate);
+
+            try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor.compose(tableReplacement))) {
+                if (bulkUpdate.isTrackingStatistics() || this.groupMembershipTable != null) {
+                    BulkUpdateSqlBuilder statsSqlBuilder = new BulkUpdateSqlBuilder();
+                    statsSqlBuilder.builder().append(USER_PERMISSIONS_SELECT_DISTINCT);
+                    statsSqlBuilder.visit(bulkUpdate.getFilters());
+
+                    Set<UUID> uuids = new HashSet<>();
+                    try (PreparedStatement lookup = statsSqlBuilder.builder().build(c, this.statementProcessor)) {
+                        try (ResultSet rs = lookup.executeQuery()) {
+                            while (rs.next()) {
+                                uuids.add(Uuids.fromString(rs.getString("uuid")));
+                            }
+                        }
+                    }
+                    uuids.remove(null);
+                    users.addAll(uuids);
+                    if (bulkUpdate.isTrackingStatistics()) {
+                        stats.incrementAffectedUsers(uuids.size());
+                    }
+                }
+
+                if (bulkUpdate.isTrackingStatistics()) {
+                    int rowsAffected = ps.executeUpdate();
+                    stats.incrementAffectedNodes(rowsAffected);
+                } else {
+                    ps.execute();
+                }
+            }
+        }
+
+        return users;
+    }
+
     @Override
     public User loadUser(UUID uniqueId, String username) throws SQLException {
         List<Node> nodes;
@@ -448,6 +867,13 @@ public class SqlStorage implements StorageImplementation {
     public Set<UUID> getUniqueUsers() throws SQLException {
         Set<UUID> uuids = new HashSet<>();
         try (Connection c = this.connectionFactory.getConnection()) {
+            if (this.compactUserPermissions != null) {
+                uuids.addAll(this.compactUserPermissions.selectUniqueUsers(c));
+                if (!this.pendingCompactMigration) {
+                    return uuids;
+                }
+            }
+
             try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_DISTINCT))) {
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
@@ -462,36 +888,246 @@ public class SqlStorage implements StorageImplementation {
         return uuids;
     }
 
+    @Override
+    public void iterateUsers(Consumer<? super StoredUser> consumer) throws SQLException {
+        // rows are streamed over one connection whilst player data is read using another
+        try (Connection c = this.connectionFactory.getConnection(); Connection playerConnection = this.connectionFactory.getConnection()) {
+            if (this.compactUserPermissions != null) {
+                try (PreparedStatement ps = this.compactUserPermissions.prepareSelectAll(c)) {
+                    iterateUsers(c, ps, true, playerConnection, consumer);
+                }
+                if (!this.pendingCompactMigration) {
+                    return;
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_ALL))) {
+                iterateUsers(c, ps, false, playerConnection, consumer);
+            }
+        }
+    }
+
+    private void iterateUsers(Connection c, PreparedStatement ps, boolean binaryUuids, Connection playerConnection, Consumer<? super StoredUser> consumer) throws SQLException {
+        boolean useTransaction = beginCursorRead(c);
+        try {
+            ps.setFetchSize(ITERATE_FETCH_SIZE);
+            try (ResultSet rs = ps.executeQuery()) {
+                // rows are ordered by uuid, so each user's nodes are read consecutively
+                Map<UUID, List<Node>> batch = new LinkedHashMap<>();
+                UUID current = null;
+                List<Node> nodes = null;
+
+                while (rs.next()) {
+                    UUID uuid = binaryUuids ? CompactUserPermissions.fromBytes(rs.getBytes("uuid")) : Uuids.fromString(rs.getString("uuid"));
+                    if (uuid == null) {
+                        continue;
+                    }
+
+                    if (!uuid.equals(current)) {
+                        if (batch.size() >= ITERATE_BATCH_SIZE) {
+                            acceptUsers(playerConnection, batch, consumer);
+                            batch.clear();
+                        }
+                        current = uuid;
+                        nodes = new ArrayList<>();
+                        batch.put(uuid, nodes);
+                    }
+
+                    Node node = readNode(rs);
+                    if (node != null) {
+                        nodes.add(node);
+                    }
+                }
+
+                if (!batch.isEmpty()) {
+                    acceptUsers(playerConnection, batch, consumer);
+                }
+            }
+        } finally {
+            endCursorRead(c, useTransaction);
+        }
+    }
+
+    /**
+     * Starts a transaction if one is needed for the driver to read a large
+     * result set using a cursor. The PostgreSQL driver only respects the
+     * fetch size (and otherwise buffers every row) within a transaction.
+     *
+     * @param c the connection
+     * @return if a transaction was started, to be passed to {@link #endCursorRead(Connection, boolean)}
+     * @throws SQLException if the transaction couldn't be started
+     */
+    private boolean beginCursorRead(Connection c) throws SQLException {
+        boolean useTransaction = this.connectionFactory.getImplementationName().equals("PostgreSQL") && c.getAutoCommit();
+        if (useTransaction) {
+            c.setAutoCommit(false);
+        }
+        return useTransaction;
+    }
+
+    private static void endCursorRead(Connection c, boolean useTransaction) throws SQLException {
+        if (useTransaction) {
+            c.commit();
+            c.setAutoCommit(true);
+        }
+    }
+
+    private void acceptUsers(Connection c, Map<UUID, List<Node>> batch, Consumer<? super StoredUser> consumer) throws SQLException {
+        Map<UUID, SqlPlayerData> playerData = selectPlayerData(c, batch.keySet());
+        for (Map.Entry<UUID, List<Node>> entry : batch.entrySet()) {
+            SqlPlayerData data = playerData.get(entry.getKey());
+            if (data != null) {
+                consumer.accept(StoredUser.of(entry.getKey(), data.username, data.primaryGroup, entry.getValue()));
+            } else {
+                consumer.accept(StoredUser.of(entry.getKey(), null, null, entry.getValue()));
+            }
+        }
+    }
+
     @Override
     public <N extends Node> List<NodeEntry<UUID, N>> searchUserNodes(ConstraintNodeMatcher<N> constraint) throws SQLException {
-        ConstraintSqlBuilder sqlBuilder = new ConstraintSqlBuilder();
+        NodeSearchSqlBuilder sqlBuilder = new NodeSearchSqlBuilder(this.connectionFactory.getImplementationName());
         sqlBuilder.builder().append(USER_PERMISSIONS_SELECT_PERMISSION);
-        sqlBuilder.builder().append("permission ");
-        sqlBuilder.visit(constraint.getConstraint());
+        sqlBuilder.visitPermission("permission", constraint.getConstraint());
 
         List<NodeEntry<UUID, N>> held = new ArrayList<>();
         try (Connection c = this.connectionFactory.getConnection()) {
-            try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor)) {
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        UUID holder = UUID.fromString(rs.getString("uuid"));
-                        Node node = readNode(rs);
-                        if (node == null) {
-                            continue;
-                        }
+            // only matching rows are kept, so read the rest through a cursor rather than all at once
+            boolean useTransaction = beginCursorRead(c);
+            try {
+                if (this.groupMembershipTable != null) {
+                    // read the flag every time, as the table may have been filled by another server
+                    String group = GroupMembershipTable.getSearchGroup(constraint.getConstraint());
+                    if (group != null && Boolean.parseBoolean(readMetadata(c, GROUP_MEMBERS_FILLED_KEY))) {
+                        this.groupMembershipTable.search(c, group, constraint, held);
+                        return held;
+                    }
+                }
 
-                        N match = constraint.filterConstraintMatch(node);
-                        if (match != null) {
-                            held.add(NodeEntry.of(holder, match));
+                if (this.compactUserPermissions != null) {
+                    this.compactUserPermissions.search(c, constraint, held);
+                    if (!this.pendingCompactMigration) {
+                        return held;
+                    }
+                }
+
+                try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor)) {
+                    ps.setFetchSize(ITERATE_FETCH_SIZE);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            UUID holder = UUID.fromString(rs.getString("uuid"));
+                            Node node = readNode(rs);
+                            if (node == null) {
+                                continue;
+                            }
+
+                            N match = constraint.filterConstraintMatch(node);
+                            if (match != null) {
+                                held.add(NodeEntry.of(holder, match));
+                            }
                         }
                     }
                 }
+            } finally {
+                endCursorRead(c, useTransaction);
             }
         }
         return held;
     }
 
 
+    @Override
+    public int deleteExpiredUserNodes(Instant time, int limit) throws SQLException {
+        long now = time.getEpochSecond();
+        int removed = 0;
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            if (this.compactUserPermissions != null) {
+                ExpiredRows expired = this.compactUserPermissions.selectExpired(c, now, limit);
+                this.compactUserPermissions.deleteRows(c, expired.rowIds);
+                updateExpiredMemberships(c, expired.nodes);
+                removed += expired.rowIds.size();
+            }
+
+            if ((this.compactUserPermissions == null || this.pendingCompactMigration) && removed < limit) {
+                ExpiredRows expired = new ExpiredRows();
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT_EXPIRED))) {
+                    ps.setLong(1, now);
+                    ps.setInt(2, limit - removed);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            expired.add(Uuids.fromString(rs.getString("uuid")), rs.getLong("id"), readNode(rs));
+                        }
+                    }
+                }
+                deleteRows(c, this.statementProcessor.apply(USER_PERMISSIONS_DELETE_SPECIFIC), expired.rowIds);
+                updateExpiredMemberships(c, expired.nodes);
+                removed += expired.rowIds.size();
+            }
+        }
+        return removed;
+    }
+
+    private void updateExpiredMemberships(Connection c, Map<UUID, List<Node>> expired) throws SQLException {
+        if (this.groupMembershipTable == null) {
+            return;
+        }
+        for (Map.Entry<UUID, List<Node>> entry : expired.entrySet()) {
+            this.groupMembershipTable.update(c, entry.getKey(), Collections.emptySet(), entry.getValue());
+        }
+    }
+
+    /**
+     * The rows selected by a sweep for expired nodes.
+     */
+    static final class ExpiredRows {
+        /** The ids of every selected row - rows which can't be read as a node are deleted too */
+        final List<Long> rowIds = new ArrayList<>();
+        /** The nodes which could be read, by holder */
+        final Map<UUID, List<Node>> nodes = new HashMap<>();
+
+        void add(@Nullable UUID holder, long rowId, @Nullable Node node) {
+            this.rowIds.add(rowId);
+            if (holder != null && node != null) {
+                this.nodes.computeIfAbsent(holder, x -> new ArrayList<>()).add(node);
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAcquireLock(String name, Duration duration) throws SQLException {
+        String key = "lock_" + name;
+        long now = System.currentTimeMillis();
+        String until = Long.toString(now + duration.toMillis());
+
+        try (Connection c = this.connectionFactory.getConnection()) {
+            String current = readMetadata(c, key);
+            if (current == null) {
+                try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(METADATA_INSERT))) {
+                    ps.setString(1, key);
+                    ps.setString(2, until);
+                    ps.execute();
+                    return true;
+                } catch (SQLException e) {
+                    // another server acquired the lock first
+                    return false;
+                }
+            }
+
+            if (Long.parseLong(current) > now) {
+                return false;
+            }
+
+            // only replace the value we read, in case another server is also taking over the lock
+            try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(METADATA_REPLACE))) {
+                ps.setString(1, until);
+                ps.setString(2, key);
+                ps.setString(3, current);
+                return ps.executeUpdate() == 1;
+            }
+        }
+    }
+
     @Override
     public Group createAndLoadGroup(String name) throws SQLException {
         String query = GROUP_INSERT.getOrDefault(this.connectionFactory.getImplementationName(), GROUP_INSERT_DEFAULT);
@@ -570,14 +1206,15 @@ public class SqlStorage implements StorageImplementation {
 
     @Override
     public <N extends Node> List<NodeEntry<String, N>> searchGroupNodes(ConstraintNodeMatcher<N> constraint) throws SQLException {
-        ConstraintSqlBuilder sqlBuilder = new ConstraintSqlBuilder();
+        NodeSearchSqlBuilder sqlBuilder = new NodeSearchSqlBuilder(this.connectionFactory.getImplementationName());
         sqlBuilder.builder().append(GROUP_PERMISSIONS_SELECT_PERMISSION);
-        sqlBuilder.builder().append("permission ");
-        sqlBuilder.visit(constraint.getConstraint());
+        sqlBuilder.visitPermission("permission", constraint.getConstraint());
 
         List<NodeEntry<String, N>> held = new ArrayList<>();
         try (Connection c = this.connectionFactory.getConnection()) {
+            boolean useTransaction = beginCursorRead(c);
             try (PreparedStatement ps = sqlBuilder.builder().build(c, this.statementProcessor)) {
+                ps.setFetchSize(ITERATE_FETCH_SIZE);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
                         String holder = rs.getString("name");
@@ -592,6 +1229,8 @@ public class SqlStorage implements StorageImplementation {
                         }
                     }
                 }
+            } finally {
+                endCursorRead(c, useTransaction);
             }
         }
         return held;
@@ -794,20 +1433,23 @@ public class SqlStorage implements StorageImplementation {
                 .build();
     }
 
-    private static Node readNode(ResultSet rs) throws SQLException {
-        long id = rs.getLong("id");
-        String permission = rs.getString("permission");
+    static Node readNode(ResultSet rs) throws SQLException {
+        return createNode(
+                rs.getLong("id"),
+                rs.getString("permission"),
+                rs.getBoolean("value"),
+                rs.getString("server"),
+                rs.getString("world"),
+                rs.getLong("expiry"),
+                rs.getString("contexts")
+        );
+    }
 
+    static Node createNode(long id, String permission, boolean value, String server, String world, long expiry, String contexts) {
         if (permission == null || permission.isEmpty()) {
             return null;
         }
 
-        boolean value = rs.getBoolean("value");
-        String server = rs.getString("server");
-        String world = rs.getString("world");
-        long expiry = rs.getLong("expiry");
-        String contexts = rs.getString("contexts");
-
         if (Strings.isNullOrEmpty(server)) {
             server = "global";
         }
@@ -815,17 +1457,26 @@ public class SqlStorage implements StorageImplementation {
             world = "global";
         }
 
-        return NodeBuilders.determineMostApplicable(permission)
+        ImmutableContextSet contextSet = new ImmutableContextSetImpl.BuilderImpl()
+                .add(DefaultContextKeys.SERVER_KEY, server)
+                .add(DefaultContextKeys.WORLD_KEY, world)
+                .addAll(ContextSetJsonSerializer.deserialize(GsonProvider.normal(), contexts))
+                .build();
+
+        // intern the key & contexts so they are shared with the same node held by other holders
+        NodeBuilder<?, ?> builder = NodeBuilders.determineMostApplicable(NodeInterner.internKey(permission))
                 .value(value)
-                .withContext(DefaultContextKeys.SERVER_KEY, server)
-                .withContext(DefaultContextKeys.WORLD_KEY, world)
                 .expiry(expiry)
-                .withContext(ContextSetJsonSerializer.deserialize(GsonProvider.normal(), contexts).immutableCopy())
-                .withMetadata(SqlRowId.KEY, new SqlRowId(id))
-                .build();
+                .context(NodeInterner.intern(contextSet));
+
+        // nodes read from derived tables have no row id
+        if (id > 0) {
+            builder.withMetadata(SqlRowId.KEY, new SqlRowId(id));
+        }
+        return builder.build();
     }
 
-    private static String getFirstContextValue(MutableContextSet set, String key) {
+    static String getFirstContextValue(MutableContextSet set, String key) {
         Set<String> values = set.getValues(key);
         String value = values.stream().sorted().findFirst().orElse(null);
         if (value != null) {
@@ -851,13 +1502,35 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private void updateUserPermissions(Connection c, UUID user, Set<Node> add, Set<Node> delete) throws SQLException {
-        updatePermissions(c, user.toString(), add, delete, USER_PERMISSIONS_DELETE_SPECIFIC, USER_PERMISSIONS_DELETE_SPECIFIC_PROPS, USER_PERMISSIONS_INSERT);
+        if (this.compactUserPermissions != null) {
+            this.compactUserPermissions.update(c, user, add, delete);
+        } else {
+            updatePermissions(c, user.toString(), add, delete, USER_PERMISSIONS_DELETE_SPECIFIC, USER_PERMISSIONS_DELETE_SPECIFIC_PROPS, USER_PERMISSIONS_INSERT);
+        }
+
+        // written after the permissions, see GroupMembershipTable
+        if (this.groupMembershipTable != null) {
+            this.groupMembershipTable.update(c, user, add, delete);
+        }
     }
 
     private void updateGroupPermissions(Connection c, String group, Set<Node> add, Set<Node> delete) throws SQLException {
         updatePermissions(c, group, add, delete, GROUP_PERMISSIONS_DELETE_SPECIFIC, GROUP_PERMISSIONS_DELETE_SPECIFIC_PROPS, GROUP_PERMISSIONS_INSERT);
     }
 
+    static void deleteRows(Connection c, String deleteSpecificQuery, Collection<Long> rowIds) throws SQLException {
+        if (rowIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement ps = c.prepareStatement(deleteSpecificQuery)) {
+            for (long rowId : rowIds) {
+                ps.setLong(1, rowId);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
     private void updatePermissions(Connection c, String holder, Set<Node> add, Set<Node> delete, String deleteSpecificQuery, String deleteQuery, String insertQuery) throws SQLException {
         if (!delete.isEmpty()) {
             List<Long> deleteRows = new ArrayList<>(delete.size());
@@ -905,6 +1578,13 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private List<Node> selectUserPermissions(Connection c, UUID user) throws SQLException {
+        if (this.compactUserPermissions != null) {
+            if (this.pendingCompactMigration) {
+                migrateToCompactUserPermissions(c, Collections.singleton(user));
+            }
+            return this.compactUserPermissions.select(c, user);
+        }
+
         List<Node> nodes = new ArrayList<>();
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_SELECT))) {
             ps.setString(1, user.toString());
@@ -934,6 +1614,16 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private Map<UUID, List<Node>> selectUserPermissions(Connection c, Set<UUID> users) throws SQLException {
+        if (this.compactUserPermissions != null) {
+            if (this.pendingCompactMigration) {
+                migrateToCompactUserPermissions(c, users);
+            }
+            return this.compactUserPermissions.select(c, users);
+        }
+        return selectLegacyUserPermissions(c, users);
+    }
+
+    private Map<UUID, List<Node>> selectLegacyUserPermissions(Connection c, Set<UUID> users) throws SQLException {
         Map<UUID, List<Node>> map = new HashMap<>();
         for (UUID uuid : users) {
             map.put(uuid, new ArrayList<>());
@@ -946,7 +1636,7 @@ public class SqlStorage implements StorageImplementation {
                     UUID uuid = UUID.fromString(rs.getString("uuid"));
                     Node node = readNode(rs);
                     if (node != null) {
-                        map.get(uuid).add(readNode(rs));
+                        map.get(uuid).add(node);
                     }
                 }
             }
@@ -986,9 +1676,15 @@ public class SqlStorage implements StorageImplementation {
     }
 
     private void deleteUser(Connection c, UUID user) throws SQLException {
-        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_DELETE))) {
-            ps.setString(1, user.toString());
-            ps.execute();
+        if (this.compactUserPermissions != null) {
+            this.compactUserPermissions.delete(c, user);
+        }
+        if (this.compactUserPermissions == null || this.pendingCompactMigration) {
+            deleteLegacyUserPermissions(c, user);
+        }
+        // written after the permissions, see GroupMembershipTable
+        if (this.groupMembershipTable != null) {
+            this.groupMembershipTable.delete(c, user);
         }
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_UPDATE_PRIMARY_GROUP_BY_UUID))) {
             ps.setString(1, GroupManager.DEFAULT_GROUP_NAME);
@@ -997,6 +1693,13 @@ public class SqlStorage implements StorageImplementation {
         }
     }
 
+    private int deleteLegacyUserPermissions(Connection c, UUID user) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(USER_PERMISSIONS_DELETE))) {
+            ps.setString(1, user.toString());
+            return ps.executeUpdate();
+        }
+    }
+
     private void insertPlayerData(Connection c, UUID user, SqlPlayerData data) throws SQLException {
         boolean hasPrimaryGroupSaved;
         try (PreparedStatement ps = c.prepareStatement(this.statementProcessor.apply(PLAYER_SELECT_PRIMARY_GROUP_BY_UUID))) {
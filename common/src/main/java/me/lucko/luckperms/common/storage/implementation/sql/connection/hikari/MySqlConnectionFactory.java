@@ -71,6 +71,9 @@ public class MySqlConnectionFactory extends DriverBasedHikariConnectionFactory {
         properties.putIfAbsent("alwaysSendSetIsolation", "false");
         properties.putIfAbsent("cacheCallableStmts", "true");
 
+        // read large result sets in batches using a server-side cursor, when a fetch size is set
+        properties.putIfAbsent("useCursorFetch", "true");
+
         // https://stackoverflow.com/a/54256150
         // It's not super important which timezone we pick, because we don't use time-based
         // data types in any of our schemas/queries.
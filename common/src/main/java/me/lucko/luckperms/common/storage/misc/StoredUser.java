@@ -0,0 +1,113 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.misc;
+
+import me.lucko.luckperms.common.model.User;
+import net.luckperms.api.node.Node;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A lightweight, read-only view of the data stored for a user.
+ *
+ * <p>Unlike {@link User}, instances are not registered with the user manager,
+ * and hold no cached or computed data.</p>
+ */
+public final class StoredUser {
+
+    /**
+     * Creates a new stored user.
+     *
+     * <p>Usernames equivalent to null are normalised, and nodes which have
+     * expired are excluded.</p>
+     *
+     * @param uniqueId the users unique id
+     * @param username the users username, if known
+     * @param primaryGroup the users stored primary group, if set
+     * @param nodes the users nodes
+     * @return the stored user
+     */
+    public static StoredUser of(UUID uniqueId, @Nullable String username, @Nullable String primaryGroup, Collection<Node> nodes) {
+        if (username != null && (username.isEmpty() || username.equalsIgnoreCase("null"))) {
+            username = null;
+        }
+
+        List<Node> unexpired = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            if (!node.hasExpired()) {
+                unexpired.add(node);
+            }
+        }
+        return new StoredUser(uniqueId, username, primaryGroup, Collections.unmodifiableList(unexpired));
+    }
+
+    public static StoredUser of(User user) {
+        return of(
+                user.getUniqueId(),
+                user.getUsername().orElse(null),
+                user.getPrimaryGroup().getStoredValue().orElse(null),
+                user.normalData().asList()
+        );
+    }
+
+    private final UUID uniqueId;
+    private final @Nullable String username;
+    private final @Nullable String primaryGroup;
+    private final Collection<Node> nodes;
+
+    private StoredUser(UUID uniqueId, @Nullable String username, @Nullable String primaryGroup, Collection<Node> nodes) {
+        this.uniqueId = uniqueId;
+        this.username = username;
+        this.primaryGroup = primaryGroup;
+        this.nodes = nodes;
+    }
+
+    public UUID getUniqueId() {
+        return this.uniqueId;
+    }
+
+    public @Nullable String getUsername() {
+        return this.username;
+    }
+
+    public @Nullable String getPrimaryGroup() {
+        return this.primaryGroup;
+    }
+
+    public Collection<Node> getNodes() {
+        return this.nodes;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredUser(uniqueId=" + this.uniqueId + ", username=" + this.username + ", primaryGroup=" + this.primaryGroup + ", nodes=" + this.nodes + ')';
+    }
+}
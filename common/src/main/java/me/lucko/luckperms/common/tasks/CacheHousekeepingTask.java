@@ -26,10 +26,17 @@
 package me.lucko.luckperms.common.tasks;
 
 import me.lucko.luckperms.common.model.Group;
-import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.nodemap.NodeMap;
+import me.lucko.luckperms.common.model.nodemap.NodeMapMutable;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.concurrent.TimeUnit;
+
 public class CacheHousekeepingTask implements Runnable {
+
+    /** How long a group's nodes must go unmodified before they are compacted */
+    private static final long COMPACT_AFTER_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
     private final LuckPermsPlugin plugin;
 
     public CacheHousekeepingTask(LuckPermsPlugin plugin) {
@@ -38,11 +45,20 @@ public class CacheHousekeepingTask implements Runnable {
 
     @Override
     public void run() {
-        for (User user : this.plugin.getUserManager().getAll().values()) {
-            user.getCachedData().performCacheCleanup();
-        }
         for (Group group : this.plugin.getGroupManager().getAll().values()) {
-            group.getCachedData().performCacheCleanup();
+            compactIfIdle(group.normalData().bypass());
+            compactIfIdle(group.transientData());
+        }
+    }
+
+    private static void compactIfIdle(NodeMap nodeMap) {
+        if (!(nodeMap instanceof NodeMapMutable)) {
+            return;
+        }
+
+        NodeMapMutable map = (NodeMapMutable) nodeMap;
+        if (!map.isCompacted() && System.currentTimeMillis() - map.getLastMutationTime() >= COMPACT_AFTER_IDLE_MILLIS) {
+            map.compact();
         }
     }
 }
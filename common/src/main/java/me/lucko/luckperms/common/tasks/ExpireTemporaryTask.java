@@ -29,6 +29,9 @@ import me.lucko.luckperms.common.model.Group;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ExpireTemporaryTask implements Runnable {
     private final LuckPermsPlugin plugin;
 
@@ -46,12 +49,17 @@ public class ExpireTemporaryTask implements Runnable {
             }
         }
 
+        List<User> changedUsers = new ArrayList<>();
         for (User user : this.plugin.getUserManager().getAll().values()) {
             if (user.auditTemporaryNodes()) {
-                this.plugin.getStorage().saveUser(user);
+                changedUsers.add(user);
             }
         }
 
+        if (!changedUsers.isEmpty()) {
+            this.plugin.getStorage().saveUsers(changedUsers);
+        }
+
         if (groupChanges) {
             this.plugin.getGroupManager().invalidateAllGroupCaches();
             this.plugin.getUserManager().invalidateAllUserCaches();
@@ -0,0 +1,152 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.tasks;
+
+import me.lucko.luckperms.common.actionlog.LoggedAction;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.Storage;
+import net.luckperms.api.actionlog.Action;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Removes expired temporary nodes from the stored data of all users.
+ *
+ * <p>{@link ExpireTemporaryTask} only processes loaded users, so without this
+ * task, expired nodes held by users who never log in again are kept forever.</p>
+ *
+ * <p>Nodes are removed in batches, each scheduled a short while after the last,
+ * to limit the load placed on the storage. A storage lock is held for most of
+ * the interval between runs, so only one server sharing the same storage
+ * performs each sweep. Sweeps stop when the lock expires, and any remaining
+ * nodes are removed by the next sweep.</p>
+ */
+public class ExpiredNodeSweepTask implements Runnable {
+    private static final String LOCK_NAME = "expired_node_sweep";
+
+    /** The maximum number of nodes to remove in each batch */
+    private static final int BATCH_SIZE = 500;
+
+    /** The pause between each batch */
+    private static final long BATCH_INTERVAL_MILLIS = 1000;
+
+    private final LuckPermsPlugin plugin;
+    private final Duration interval;
+
+    /** If a sweep is in progress on this server */
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public ExpiredNodeSweepTask(LuckPermsPlugin plugin, Duration interval) {
+        this.plugin = plugin;
+        this.interval = interval;
+    }
+
+    @Override
+    public void run() {
+        if (!this.running.compareAndSet(false, true)) {
+            return;
+        }
+
+        // hold the lock until shortly before the next run, so that this server can take it again
+        Duration lease = this.interval.multipliedBy(9).dividedBy(10);
+        long start = System.currentTimeMillis();
+        boolean acquired;
+        try {
+            acquired = this.plugin.getStorage().tryAcquireLock(LOCK_NAME, lease).join();
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("Exception whilst acquiring the lock to remove expired nodes from storage", e);
+            acquired = false;
+        }
+
+        if (!acquired) {
+            this.running.set(false);
+            return;
+        }
+
+        new Sweep(Instant.now(), start, start + lease.toMillis()).run();
+    }
+
+    private final class Sweep implements Runnable {
+        private final Instant time;
+        private final long start;
+        private final long deadline;
+
+        private int removed = 0;
+        private int batches = 0;
+
+        Sweep(Instant time, long start, long deadline) {
+            this.time = time;
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // the lock may be taken by another server once it expires
+                if (System.currentTimeMillis() >= this.deadline) {
+                    complete();
+                    return;
+                }
+
+                int count = ExpiredNodeSweepTask.this.plugin.getStorage().deleteExpiredUserNodes(this.time, BATCH_SIZE).join();
+                this.removed += count;
+                this.batches++;
+
+                if (count < BATCH_SIZE) {
+                    complete();
+                    return;
+                }
+
+                // schedule the next batch rather than sleeping, so a worker thread isn't held between batches
+                ExpiredNodeSweepTask.this.plugin.getBootstrap().getScheduler().asyncLater(this, BATCH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                ExpiredNodeSweepTask.this.plugin.getLogger().warn("Exception whilst removing expired nodes from storage", e);
+                complete();
+            }
+        }
+
+        private void complete() {
+            ExpiredNodeSweepTask.this.running.set(false);
+            if (this.removed == 0) {
+                return;
+            }
+
+            LoggedAction action = LoggedAction.build()
+                    .source(ExpiredNodeSweepTask.this.plugin.getConsoleSender())
+                    .targetName("offline-users")
+                    .targetType(Action.Target.Type.USER)
+                    .description("expired-node-sweep", "removed", this.removed, "nodes", "in", this.batches, "batches",
+                            Duration.ofMillis(System.currentTimeMillis() - this.start))
+                    .build();
+            ExpiredNodeSweepTask.this.plugin.getLogDispatcher().logToStorage(action);
+        }
+    }
+
+}
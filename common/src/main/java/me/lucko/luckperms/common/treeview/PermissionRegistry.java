@@ -25,33 +25,54 @@
 
 package me.lucko.luckperms.common.treeview;
 
-import com.google.common.base.Splitter;
+import com.github.benmanes.caffeine.cache.Cache;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import me.lucko.luckperms.common.util.CaffeineFactory;
 import me.lucko.luckperms.common.util.ImmutableCollectors;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Stores a collection of all permissions known to the platform.
  */
 public class PermissionRegistry implements AutoCloseable {
-    private static final Splitter DOT_SPLIT = Splitter.on('.').omitEmptyStrings();
+
+    /** The default maximum number of nodes in the tree */
+    public static final int DEFAULT_MAXIMUM_SIZE = 100_000;
 
     /** The root node in the tree */
     private final TreeNode rootNode;
+    /** The number of nodes in the tree, excluding the root */
+    private final AtomicInteger size = new AtomicInteger(0);
+    /** A cache of recently offered permission strings, used to avoid queueing duplicates */
+    private final Cache<String, Boolean> recentlyOffered;
     /** A queue of permission strings to be added to the tree */
     private final Queue<String> queue;
+    /** The number of elements in the queue (ConcurrentLinkedQueue#size is not constant time) */
+    private final AtomicInteger queueSize = new AtomicInteger(0);
     /** The tick task */
     private final SchedulerTask task;
 
+    /** The maximum number of nodes in the tree */
+    private volatile int maximumSize = DEFAULT_MAXIMUM_SIZE;
+
     public PermissionRegistry(SchedulerAdapter scheduler) {
         this.rootNode = new TreeNode();
+        // entries expire so that permissions which are still being checked
+        // are periodically re-offered, and marked as recently used in the tree
+        this.recentlyOffered = CaffeineFactory.newBuilder()
+                .maximumSize(DEFAULT_MAXIMUM_SIZE)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .build();
         this.queue = new ConcurrentLinkedQueue<>();
         this.task = scheduler.asyncRepeating(this::tick, 1, TimeUnit.SECONDS);
     }
@@ -66,16 +87,65 @@ public class PermissionRegistry implements AutoCloseable {
                 .collect(ImmutableCollectors.toList());
     }
 
+    /**
+     * Gets the number of nodes in the tree, excluding the root.
+     *
+     * @return the size of the tree
+     */
+    public int getSize() {
+        return this.size.get();
+    }
+
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * Sets the maximum number of nodes in the tree.
+     *
+     * <p>When the tree grows beyond this size, the least recently used
+     * nodes are pruned.</p>
+     *
+     * @param maximumSize the maximum size
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.recentlyOffered.policy().eviction().ifPresent(eviction -> eviction.setMaximum(maximumSize));
+    }
+
     public void offer(String permission) {
         if (permission == null) {
             throw new NullPointerException("permission");
         }
+
+        // ignore permissions which have been offered recently
+        if (this.recentlyOffered.asMap().putIfAbsent(permission, Boolean.TRUE) != null) {
+            return;
+        }
+
+        // don't allow the queue to grow without bound if the tick task falls behind
+        if (this.queueSize.get() >= this.maximumSize) {
+            // the permission wasn't queued, so allow it to be offered again
+            this.recentlyOffered.invalidate(permission);
+            return;
+        }
+
         this.queue.offer(permission);
+        this.queueSize.incrementAndGet();
     }
 
     private void tick() {
+        long now = System.currentTimeMillis();
         for (String e; (e = this.queue.poll()) != null; ) {
-            insert(e);
+            this.queueSize.decrementAndGet();
+            insert(e, now);
+        }
+
+        if (this.size.get() > this.maximumSize) {
+            prune();
         }
     }
 
@@ -85,24 +155,75 @@ public class PermissionRegistry implements AutoCloseable {
     }
 
     public void insert(String permission) {
+        insert(permission, System.currentTimeMillis());
+    }
+
+    void insert(String permission, long now) {
         try {
-            doInsert(permission);
+            doInsert(permission, now);
         } catch (Exception ex) {
             ex.printStackTrace();
         }
     }
 
-    private void doInsert(String permission) {
+    private void doInsert(String permission, long now) {
         permission = permission.toLowerCase(Locale.ROOT);
 
-        // split the permission up into parts
-        Iterable<String> parts = DOT_SPLIT.split(permission);
-
-        // insert the permission into the node structure
+        // split the permission up into parts, and insert each into the node structure
+        // (equivalent to splitting on '.' and omitting empty strings)
         TreeNode current = this.rootNode;
-        for (String part : parts) {
-            current = current.tryInsert(part);
-            if (current == null) {
+        int length = permission.length();
+        int start = 0;
+        while (start < length) {
+            int end = permission.indexOf('.', start);
+            if (end == -1) {
+                end = length;
+            }
+
+            if (end > start) {
+                TreeNode next = current.tryInsert(permission.substring(start, end), now, this.size);
+                if (next == TreeNode.RETRY) {
+                    // pruned whilst we were inserting - start again from the root
+                    current = this.rootNode;
+                    start = 0;
+                    continue;
+                }
+                if (next == null) {
+                    return;
+                }
+                current = next;
+            }
+
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Removes the least recently used nodes from the tree until it is
+     * back below 90% of the maximum size.
+     */
+    private synchronized void prune() {
+        int target = (int) (this.maximumSize * 0.9);
+
+        while (this.size.get() > target) {
+            List<TreeNode.Leaf> leaves = new ArrayList<>();
+            this.rootNode.collectLeaves(leaves);
+            if (leaves.isEmpty()) {
+                return;
+            }
+
+            leaves.sort(Comparator.comparingLong(TreeNode.Leaf::getLastUsed));
+
+            int excess = this.size.get() - target;
+            int removed = 0;
+            for (int i = 0; i < excess && i < leaves.size(); i++) {
+                if (leaves.get(i).remove()) {
+                    this.size.decrementAndGet();
+                    removed++;
+                }
+            }
+
+            if (removed == 0) {
                 return;
             }
         }
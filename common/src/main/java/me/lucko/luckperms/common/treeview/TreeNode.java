@@ -28,9 +28,12 @@ package me.lucko.luckperms.common.treeview;
 import com.google.common.collect.Maps;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Represents one "branch" or "level" of the node tree
@@ -59,10 +62,29 @@ public class TreeNode {
         }
     }
 
-    private Map<String, TreeNode> children = null;
+    /**
+     * Returned by {@link #tryInsert(String, long, AtomicInteger)} if the node was
+     * pruned whilst the child was being inserted.
+     */
+    static final TreeNode RETRY = new TreeNode();
+
+    private static final int ALIVE = 0;
+    private static final int REMOVING = 1;
+    private static final int REMOVED = 2;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<TreeNode, Map> CHILDREN = AtomicReferenceFieldUpdater.newUpdater(TreeNode.class, Map.class, "children");
+
+    private volatile Map<String, TreeNode> children = null;
 
     private final int level;
 
+    /** The last time this node (or one of its children) was inserted */
+    private volatile long lastUsed;
+
+    /** The removal state of this node, only written by {@link Leaf#remove()} */
+    private volatile int state = ALIVE;
+
     public TreeNode() {
         this.level = 0;
     }
@@ -73,19 +95,86 @@ public class TreeNode {
     }
 
     // lazy init
-    private synchronized Map<String, TreeNode> getChildMap() {
-        if (this.children == null) {
-            this.children = new ConcurrentHashMap<>();
+    private Map<String, TreeNode> getChildMap() {
+        Map<String, TreeNode> children = this.children;
+        if (children == null) {
+            CHILDREN.compareAndSet(this, null, new ConcurrentHashMap<>());
+            children = this.children;
         }
-        return this.children;
+        return children;
     }
 
-    public @Nullable TreeNode tryInsert(String s) {
+    /**
+     * Gets or inserts a child node, marking it as used.
+     *
+     * <p>Returns null if this node is full, or {@link #RETRY} if this node
+     * has been pruned and the insertion should start again from the root.</p>
+     *
+     * <p>This doesn't lock: a concurrent removal by {@link Leaf#remove()} marks
+     * the node as removing before checking that it has no children, and this
+     * method inserts the child before checking the mark, so at least one side
+     * will see the other. Only an insert which sees a removal in progress waits
+     * for it to be decided.</p>
+     *
+     * @param s the child key
+     * @param now the current time
+     * @param size the tree size, incremented if a child is inserted
+     * @return the child, null or {@link #RETRY}
+     */
+    @Nullable TreeNode tryInsert(String s, long now, AtomicInteger size) {
+        // once pruned, children added here would be unreachable
+        if (awaitRemoved()) {
+            return RETRY;
+        }
+
         Map<String, TreeNode> childMap = getChildMap();
-        if (!allowInsert(this)) {
-            return null;
+
+        TreeNode existing = childMap.get(s);
+        if (existing == null) {
+            // the limit is approximate when children are inserted concurrently
+            if (!allowInsert(this)) {
+                return null;
+            }
+            TreeNode created = new TreeNode(this);
+            existing = childMap.putIfAbsent(s, created);
+            if (existing == null) {
+                existing = created;
+                size.incrementAndGet();
+            }
+        }
+
+        if (awaitRemoved()) {
+            // pruned whilst inserting - the removal didn't see the child, so undo it
+            if (childMap.remove(s, existing)) {
+                size.decrementAndGet();
+            }
+            return RETRY;
+        }
+
+        existing.lastUsed = now;
+        return existing;
+    }
+
+    private boolean awaitRemoved() {
+        int state;
+        while ((state = this.state) == REMOVING) {
+            Thread.yield();
+        }
+        return state == REMOVED;
+    }
+
+    void collectLeaves(List<Leaf> accumulator) {
+        if (this.children == null) {
+            return;
+        }
+        for (Map.Entry<String, TreeNode> e : this.children.entrySet()) {
+            TreeNode child = e.getValue();
+            if (child.getChildrenSize() == 0) {
+                accumulator.add(new Leaf(this, e.getKey(), child));
+            } else {
+                child.collectLeaves(accumulator);
+            }
         }
-        return childMap.computeIfAbsent(s, x -> new TreeNode(this));
     }
 
     public Optional<Map<String, TreeNode>> getChildren() {
@@ -112,4 +201,43 @@ public class TreeNode {
             );
         }
     }
+
+    /**
+     * A node with no children, and a reference to its parent so it can be removed.
+     */
+    static final class Leaf {
+        private final TreeNode parent;
+        private final String key;
+        private final TreeNode node;
+        private final long lastUsed;
+
+        Leaf(TreeNode parent, String key, TreeNode node) {
+            this.parent = parent;
+            this.key = key;
+            this.node = node;
+            this.lastUsed = node.lastUsed;
+        }
+
+        long getLastUsed() {
+            return this.lastUsed;
+        }
+
+        /**
+         * Removes the node from its parent, if it is still a leaf and hasn't
+         * been used since it was collected.
+         *
+         * @return if the node was removed
+         */
+        boolean remove() {
+            // mark the node first, so a child inserted concurrently is either
+            // seen here, or sees the mark and is undone by the inserter
+            this.node.state = REMOVING;
+            if (this.node.getChildrenSize() != 0 || this.node.lastUsed != this.lastUsed || !this.parent.children.remove(this.key, this.node)) {
+                this.node.state = ALIVE;
+                return false;
+            }
+            this.node.state = REMOVED;
+            return true;
+        }
+    }
 }
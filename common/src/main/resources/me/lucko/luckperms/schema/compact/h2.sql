@@ -0,0 +1,32 @@
+-- LuckPerms H2 Schema - compact user permissions
+
+CREATE TABLE `{prefix}compact_permissions` (
+  `id`              INT AUTO_INCREMENT NOT NULL,
+  `permission`      VARCHAR(200)       NOT NULL,
+  `permission_hash` BINARY(20)         NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE UNIQUE INDEX ON `{prefix}compact_permissions` (`permission_hash`);
+
+CREATE TABLE `{prefix}compact_contexts` (
+  `id`            INT AUTO_INCREMENT NOT NULL,
+  `server`        VARCHAR(36)        NOT NULL,
+  `world`         VARCHAR(64)        NOT NULL,
+  `contexts`      VARCHAR(200)       NOT NULL,
+  `contexts_hash` BINARY(20)         NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE UNIQUE INDEX ON `{prefix}compact_contexts` (`contexts_hash`);
+
+CREATE TABLE `{prefix}compact_user_permissions` (
+  `id`            INT AUTO_INCREMENT NOT NULL,
+  `uuid`          BINARY(16)         NOT NULL,
+  `permission_id` INT                NOT NULL,
+  `value`         BOOL               NOT NULL,
+  `expiry`        BIGINT             NOT NULL,
+  `context_id`    INT                NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE INDEX ON `{prefix}compact_user_permissions` (`uuid`);
+CREATE INDEX ON `{prefix}compact_user_permissions` (`permission_id`);
+CREATE INDEX ON `{prefix}compact_user_permissions` (`expiry`);
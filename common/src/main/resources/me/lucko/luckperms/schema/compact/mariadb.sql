@@ -0,0 +1,32 @@
+-- LuckPerms MariaDB Schema - compact user permissions
+
+CREATE TABLE `{prefix}compact_permissions` (
+  `id`              INT AUTO_INCREMENT NOT NULL,
+  `permission`      VARCHAR(200)       NOT NULL,
+  `permission_hash` BINARY(20)         NOT NULL,
+  PRIMARY KEY (`id`)
+) DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_bin;
+CREATE UNIQUE INDEX `{prefix}compact_permissions_hash` ON `{prefix}compact_permissions` (`permission_hash`);
+
+CREATE TABLE `{prefix}compact_contexts` (
+  `id`            INT AUTO_INCREMENT NOT NULL,
+  `server`        VARCHAR(36)        NOT NULL,
+  `world`         VARCHAR(64)        NOT NULL,
+  `contexts`      VARCHAR(200)       NOT NULL,
+  `contexts_hash` BINARY(20)         NOT NULL,
+  PRIMARY KEY (`id`)
+) DEFAULT CHARSET = utf8mb4 COLLATE = utf8mb4_bin;
+CREATE UNIQUE INDEX `{prefix}compact_contexts_hash` ON `{prefix}compact_contexts` (`contexts_hash`);
+
+CREATE TABLE `{prefix}compact_user_permissions` (
+  `id`            INT AUTO_INCREMENT NOT NULL,
+  `uuid`          BINARY(16)         NOT NULL,
+  `permission_id` INT                NOT NULL,
+  `value`         BOOL               NOT NULL,
+  `expiry`        BIGINT             NOT NULL,
+  `context_id`    INT                NOT NULL,
+  PRIMARY KEY (`id`)
+);
+CREATE INDEX `{prefix}compact_user_permissions_uuid` ON `{prefix}compact_user_permissions` (`uuid`);
+CREATE INDEX `{prefix}compact_user_permissions_permission_id` ON `{prefix}compact_user_permissions` (`permission_id`);
+CREATE INDEX `{prefix}compact_user_permissions_expiry` ON `{prefix}compact_user_permissions` (`expiry`);
@@ -0,0 +1,29 @@
+-- LuckPerms SQLite Schema - compact user permissions
+
+CREATE TABLE `{prefix}compact_permissions` (
+  `id`              INTEGER PRIMARY KEY NOT NULL,
+  `permission`      VARCHAR(200)        NOT NULL,
+  `permission_hash` BLOB                NOT NULL
+);
+CREATE UNIQUE INDEX `{prefix}compact_permissions_hash` ON `{prefix}compact_permissions` (`permission_hash`);
+
+CREATE TABLE `{prefix}compact_contexts` (
+  `id`            INTEGER PRIMARY KEY NOT NULL,
+  `server`        VARCHAR(36)         NOT NULL,
+  `world`         VARCHAR(64)         NOT NULL,
+  `contexts`      VARCHAR(200)        NOT NULL,
+  `contexts_hash` BLOB                NOT NULL
+);
+CREATE UNIQUE INDEX `{prefix}compact_contexts_hash` ON `{prefix}compact_contexts` (`contexts_hash`);
+
+CREATE TABLE `{prefix}compact_user_permissions` (
+  `id`            INTEGER PRIMARY KEY NOT NULL,
+  `uuid`          BLOB                NOT NULL,
+  `permission_id` INTEGER             NOT NULL,
+  `value`         BOOL                NOT NULL,
+  `expiry`        BIGINT              NOT NULL,
+  `context_id`    INTEGER             NOT NULL
+);
+CREATE INDEX `{prefix}compact_user_permissions_uuid` ON `{prefix}compact_user_permissions` (`uuid`);
+CREATE INDEX `{prefix}compact_user_permissions_permission_id` ON `{prefix}compact_user_permissions` (`permission_id`);
+CREATE INDEX `{prefix}compact_user_permissions_expiry` ON `{prefix}compact_user_permissions` (`expiry`);
@@ -0,0 +1,13 @@
+-- LuckPerms H2 Schema - group membership
+
+CREATE TABLE `{prefix}group_members` (
+  `group_name` VARCHAR(36)  NOT NULL,
+  `uuid`       VARCHAR(36)  NOT NULL,
+  `value`      BOOL         NOT NULL,
+  `server`     VARCHAR(36)  NOT NULL,
+  `world`      VARCHAR(64)  NOT NULL,
+  `expiry`     BIGINT       NOT NULL,
+  `contexts`   VARCHAR(200) NOT NULL
+);
+CREATE INDEX ON `{prefix}group_members` (`group_name`, `uuid`);
+CREATE INDEX ON `{prefix}group_members` (`uuid`);
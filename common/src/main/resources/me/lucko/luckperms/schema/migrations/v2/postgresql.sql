@@ -0,0 +1,10 @@
+-- LuckPerms PostgreSQL Schema - v2
+-- Adds indexes used by node searches, bulk updates, expiry checks and action log queries
+
+CREATE INDEX IF NOT EXISTS "{prefix}user_permissions_permission" ON "{prefix}user_permissions" ("permission" varchar_pattern_ops);
+CREATE INDEX IF NOT EXISTS "{prefix}user_permissions_expiry" ON "{prefix}user_permissions" ("expiry");
+CREATE INDEX IF NOT EXISTS "{prefix}group_permissions_permission" ON "{prefix}group_permissions" ("permission" varchar_pattern_ops);
+CREATE INDEX IF NOT EXISTS "{prefix}group_permissions_expiry" ON "{prefix}group_permissions" ("expiry");
+CREATE INDEX IF NOT EXISTS "{prefix}actions_time" ON "{prefix}actions" ("time");
+CREATE INDEX IF NOT EXISTS "{prefix}actions_actor_uuid" ON "{prefix}actions" ("actor_uuid");
+CREATE INDEX IF NOT EXISTS "{prefix}actions_acted_uuid" ON "{prefix}actions" ("acted_uuid");
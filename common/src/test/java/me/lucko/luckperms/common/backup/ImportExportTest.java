@@ -0,0 +1,180 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.backup;
+
+import com.google.gson.JsonObject;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.user.UserHousekeeper;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
+import me.lucko.luckperms.common.sender.Sender;
+import me.lucko.luckperms.common.storage.Storage;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
+import me.lucko.luckperms.common.tasks.SyncTask;
+import me.lucko.luckperms.common.util.gson.GsonProvider;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class ImportExportTest {
+
+    private static final UUID FIRST = UUID.fromString("c1d60c50-70b5-4722-8057-87767557e50d");
+    private static final UUID SECOND = UUID.fromString("a5a2d2a8-9f76-4d6c-8ba0-a3d1a0d1ba7e");
+
+    private static final List<Node> FIRST_NODES = Arrays.asList(
+            Permission.builder().permission("test").build(),
+            Inheritance.builder("admin").withContext("server", "survival").build()
+    );
+    private static final List<Node> SECOND_NODES = Arrays.asList(
+            Permission.builder().permission("hello").value(false).build()
+    );
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private Storage storage;
+    @Mock private Sender sender;
+
+    @BeforeEach
+    public void setupMocks() {
+        UserManager<?> userManager = mock(UserManager.class);
+        lenient().when(userManager.getHouseKeeper()).thenReturn(mock(UserHousekeeper.class));
+
+        lenient().when(this.plugin.getStorage()).thenReturn(this.storage);
+        lenient().when(this.plugin.getConsoleSender()).thenReturn(this.sender);
+        lenient().when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        lenient().when(this.plugin.getSyncTaskBuffer()).thenReturn(mock(SyncTask.Buffer.class));
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+        lenient().when(this.sender.isConsole()).thenReturn(true);
+        lenient().when(this.sender.getNameWithLocation()).thenReturn("Console");
+    }
+
+    private String export(StoredUser... users) {
+        lenient().when(this.storage.iterateUsers(any())).thenAnswer(invocation -> {
+            Consumer<StoredUser> consumer = invocation.getArgument(0);
+            for (StoredUser user : users) {
+                consumer.accept(user);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+
+        StringWriter out = new StringWriter();
+        new Exporter(this.plugin, this.sender, true, false) {
+            @Override
+            protected Writer openWriter() {
+                return out;
+            }
+
+            @Override
+            protected void processOutput() {
+
+            }
+        }.run();
+        return out.toString();
+    }
+
+    private void runImport(String data) {
+        new Importer(this.plugin, this.sender, new StringReader(data), () -> new StringReader(data), true).run();
+    }
+
+    @Test
+    public void testExport() {
+        String data = export(
+                StoredUser.of(FIRST, "Player1", "admin", FIRST_NODES),
+                StoredUser.of(SECOND, null, null, SECOND_NODES)
+        );
+
+        JsonObject users = GsonProvider.normal().fromJson(data, JsonObject.class).getAsJsonObject("users");
+        assertEquals(2, users.size());
+
+        JsonObject first = users.getAsJsonObject(FIRST.toString());
+        assertEquals("Player1", first.get("username").getAsString());
+        assertEquals("admin", first.get("primaryGroup").getAsString());
+        assertEquals(2, first.getAsJsonArray("nodes").size());
+
+        JsonObject second = users.getAsJsonObject(SECOND.toString());
+        assertTrue(!second.has("username") && !second.has("primaryGroup"));
+        assertEquals(1, second.getAsJsonArray("nodes").size());
+    }
+
+    @Test
+    public void testImportExported() {
+        String data = export(
+                StoredUser.of(FIRST, "Player1", null, FIRST_NODES),
+                StoredUser.of(SECOND, null, null, SECOND_NODES)
+        );
+
+        User first = mock(User.class, RETURNS_DEEP_STUBS);
+        User second = mock(User.class, RETURNS_DEEP_STUBS);
+        lenient().when(this.storage.loadUser(FIRST, "Player1")).thenReturn(CompletableFuture.completedFuture(first));
+        lenient().when(this.storage.loadUser(SECOND, null)).thenReturn(CompletableFuture.completedFuture(second));
+        lenient().when(this.storage.saveUser(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        runImport(data);
+
+        verify(first).mergeNodes(eq(DataType.NORMAL), eq(new HashSet<>(FIRST_NODES)));
+        verify(second).mergeNodes(eq(DataType.NORMAL), eq(new HashSet<>(SECOND_NODES)));
+        verify(this.storage, times(2)).saveUser(any());
+    }
+
+    @Test
+    public void testNothingImportedFromMalformedData() {
+        // an entry which can't be read, after one which can
+        runImport("{\"users\":{\"" + FIRST + "\":{\"nodes\":[]},\"not-a-uuid\":{\"nodes\":[]}}}");
+
+        verify(this.storage, never()).loadUser(any(), any());
+        verify(this.storage, never()).saveUser(any());
+    }
+
+}
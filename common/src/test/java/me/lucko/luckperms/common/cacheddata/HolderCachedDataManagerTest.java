@@ -0,0 +1,217 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.calculator.CalculatorFactory;
+import me.lucko.luckperms.common.calculator.PermissionCalculator;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.model.data.TemporaryNodeMergeStrategy;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
+import net.luckperms.api.query.QueryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class HolderCachedDataManagerTest {
+    private static final QueryOptions QUERY_OPTIONS = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
+    @Mock private CalculatorFactory calculatorFactory;
+
+    private StandardGroupManager groupManager;
+    private Group group;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.groupManager = new StandardGroupManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) this.groupManager);
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.plugin.getCalculatorFactory()).thenReturn(this.calculatorFactory);
+        lenient().when(this.calculatorFactory.build(any(), any())).thenAnswer(invocation -> mock(PermissionCalculator.class));
+        lenient().when(this.configuration.get(ConfigKeys.CONTEXT_SATISFY_MODE)).thenReturn(ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        lenient().when(this.configuration.get(ConfigKeys.GROUP_WEIGHTS)).thenReturn(Collections.emptyMap());
+        lenient().when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        lenient().when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+        lenient().when(this.configuration.get(ConfigKeys.APPLYING_SHORTHAND)).thenReturn(false);
+
+        Group member = this.groupManager.getOrMake("member");
+        member.normalData().add(Permission.builder().permission("test.inherited").build());
+        member.normalData().add(Permission.builder().permission("test.override").value(false).build());
+
+        this.group = this.groupManager.getOrMake("test");
+        this.group.normalData().add(Inheritance.builder("member").build());
+        this.group.normalData().add(Permission.builder().permission("test.own").build());
+    }
+
+    private PermissionCache getCache() {
+        return this.group.getCachedData().getPermissionData(QUERY_OPTIONS);
+    }
+
+    private void assertMatchesRecalculation() {
+        Map<String, Node> cached = getCache().getSourcePermissions();
+        Map<String, Node> recalculated = this.group.exportPermissions(HashMap::new, QUERY_OPTIONS, true, false);
+        assertEquals(recalculated, new HashMap<>(cached));
+
+        // node equality ignores metadata, so check each entry came from the same holder too
+        for (Map.Entry<String, Node> entry : recalculated.entrySet()) {
+            assertEquals(origin(entry.getValue()), origin(cached.get(entry.getKey())), entry.getKey());
+        }
+    }
+
+    private static String origin(Node node) {
+        return node.metadata(InheritanceOriginMetadata.KEY).getOrigin().getName();
+    }
+
+    @Test
+    public void testAdd() {
+        PermissionCache cache = getCache();
+
+        this.group.setNode(DataType.NORMAL, Permission.builder().permission("test.added").build(), true);
+
+        assertSame(cache, getCache());
+        assertTrue(cache.getSourcePermissions().containsKey("test.added"));
+        assertMatchesRecalculation();
+    }
+
+    @Test
+    public void testAddOverridesInherited() {
+        PermissionCache cache = getCache();
+        assertFalse(cache.getSourcePermissions().get("test.override").getValue());
+
+        this.group.setNode(DataType.NORMAL, Permission.builder().permission("test.override").build(), true);
+
+        assertSame(cache, getCache());
+        assertTrue(cache.getSourcePermissions().get("test.override").getValue());
+        assertMatchesRecalculation();
+    }
+
+    @Test
+    public void testRemove() {
+        this.group.setNode(DataType.NORMAL, Permission.builder().permission("test.override").build(), true);
+        PermissionCache cache = getCache();
+
+        // the inherited node applies again, which can't be patched without walking the inheritance graph
+        this.group.unsetNode(DataType.NORMAL, Permission.builder().permission("test.override").build());
+
+        assertNotSame(cache, getCache());
+        assertFalse(getCache().getSourcePermissions().get("test.override").getValue());
+        assertMatchesRecalculation();
+
+        this.group.unsetNode(DataType.NORMAL, Permission.builder().permission("test.own").build());
+        assertFalse(getCache().getSourcePermissions().containsKey("test.own"));
+        assertMatchesRecalculation();
+    }
+
+    @Test
+    public void testExtendExpiry() {
+        Instant expiry = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        this.group.setNode(DataType.NORMAL, Permission.builder().permission("test.temp").expiry(expiry).build(), true);
+        PermissionCache cache = getCache();
+
+        // merging replaces the existing node with one with a later expiry
+        this.group.setNode(DataType.NORMAL, Permission.builder().permission("test.temp").expiry(expiry).build(), TemporaryNodeMergeStrategy.ADD_NEW_DURATION_TO_EXISTING);
+
+        assertSame(cache, getCache());
+        assertTrue(cache.getSourcePermissions().get("test.temp").getExpiry().isAfter(expiry));
+        assertMatchesRecalculation();
+    }
+
+    @Test
+    public void testEvictionNotifiesListeners() throws InterruptedException {
+        CountDownLatch notified = new CountDownLatch(1);
+        this.group.getCachedData().addInvalidationListener(notified::countDown);
+
+        // load more data than the container holds
+        List<QueryOptions> loaded = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            QueryOptions queryOptions = QUERY_OPTIONS.toBuilder().context(ImmutableContextSetImpl.of("server", "test-" + i)).build();
+            this.group.getCachedData().getPermissionData(queryOptions);
+            loaded.add(queryOptions);
+        }
+
+        assertTrue(notified.await(10, TimeUnit.SECONDS));
+        assertTrue(loaded.stream().anyMatch(queryOptions -> this.group.getCachedData().getPermissionDataIfPresent(queryOptions) == null));
+    }
+
+    @Test
+    public void testReduceExpiry() {
+        Instant expiry = Instant.now().plus(2, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        Node node = Permission.builder().permission("test.temp").expiry(expiry).build();
+        this.group.setNode(DataType.NORMAL, node, true);
+        PermissionCache cache = getCache();
+
+        this.group.unsetNode(DataType.NORMAL, node, Duration.ofHours(1));
+
+        assertSame(cache, getCache());
+        assertTrue(cache.getSourcePermissions().get("test.temp").getExpiry().isBefore(expiry));
+        assertMatchesRecalculation();
+    }
+
+}
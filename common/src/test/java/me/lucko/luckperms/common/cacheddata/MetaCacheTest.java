@@ -0,0 +1,116 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import com.google.common.collect.ImmutableMap;
+import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.MetaCache;
+import me.lucko.luckperms.common.cacheddata.type.SimpleMetaValueSelector;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.metastacking.SimpleMetaStackDefinition;
+import me.lucko.luckperms.common.metastacking.StandardStackElements;
+import me.lucko.luckperms.common.node.types.Meta;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.metastacking.DuplicateRemovalFunction;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class MetaCacheTest {
+
+    private static final MetaStackDefinition STACK = new SimpleMetaStackDefinition(
+            Collections.singletonList(StandardStackElements.HIGHEST),
+            DuplicateRemovalFunction.RETAIN_ALL,
+            "", "", ""
+    );
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
+
+    private MetaCache cache;
+
+    @BeforeEach
+    public void setup() {
+        when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        when(this.configuration.get(ConfigKeys.META_VALUE_SELECTOR)).thenReturn(new SimpleMetaValueSelector(ImmutableMap.of(), SimpleMetaValueSelector.Strategy.INHERITANCE));
+
+        MetaAccumulator accumulator = new MetaAccumulator(STACK, STACK);
+        accumulator.accumulateNode(Meta.builder("homes", "5").build());
+        accumulator.accumulateNode(Meta.builder("balance", "12.5").build());
+        accumulator.accumulateNode(Meta.builder("big", "10000000000").build());
+        accumulator.accumulateNode(Meta.builder("flying", "TRUE").build());
+        accumulator.accumulateNode(Meta.builder("cooldown", "1h30m").build());
+        accumulator.accumulateNode(Meta.builder("delay", "90").build());
+        accumulator.accumulateNode(Meta.builder("text", "hello").build());
+        accumulator.complete();
+
+        this.cache = new MetaCache(this.plugin, QueryOptionsImpl.DEFAULT_CONTEXTUAL, accumulator);
+    }
+
+    @Test
+    public void testTypedValues() {
+        assertEquals(OptionalInt.of(5), this.cache.getIntegerMetaValue("homes"));
+        assertEquals(OptionalInt.of(5), this.cache.getIntegerMetaValue("HOMES"));
+        assertEquals(OptionalLong.of(10000000000L), this.cache.getLongMetaValue("big"));
+        assertEquals(OptionalDouble.of(12.5), this.cache.getDoubleMetaValue("balance"));
+        assertEquals(Optional.of(true), this.cache.getBooleanMetaValue("flying"));
+        assertEquals(Optional.of(Duration.ofMinutes(90)), this.cache.getDurationMetaValue("cooldown"));
+        assertEquals(Optional.of(Duration.ofSeconds(90)), this.cache.getDurationMetaValue("delay"));
+    }
+
+    @Test
+    public void testInvalidOrMissingValues() {
+        assertEquals(OptionalInt.empty(), this.cache.getIntegerMetaValue("big"));
+        assertEquals(OptionalInt.empty(), this.cache.getIntegerMetaValue("text"));
+        assertEquals(OptionalDouble.empty(), this.cache.getDoubleMetaValue("missing"));
+        assertEquals(Optional.empty(), this.cache.getBooleanMetaValue("text"));
+        assertEquals(Optional.empty(), this.cache.getDurationMetaValue("text"));
+    }
+
+    @Test
+    public void testParsedValuesAreCached() {
+        assertSame(this.cache.getIntegerMetaValue("homes"), this.cache.getIntegerMetaValue("homes"));
+        assertSame(this.cache.getDurationMetaValue("cooldown"), this.cache.getDurationMetaValue("cooldown"));
+    }
+
+}
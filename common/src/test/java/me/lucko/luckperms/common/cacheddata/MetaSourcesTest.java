@@ -0,0 +1,137 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.cacheddata.type.MetaAccumulator;
+import me.lucko.luckperms.common.cacheddata.type.MetaSources;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.graph.TraversalAlgorithm;
+import me.lucko.luckperms.common.inheritance.InheritanceGraphFactory;
+import me.lucko.luckperms.common.metastacking.SimpleMetaStackDefinition;
+import me.lucko.luckperms.common.metastacking.StandardStackElements;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Meta;
+import me.lucko.luckperms.common.node.types.Prefix;
+import me.lucko.luckperms.common.node.types.Weight;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.context.ContextSatisfyMode;
+import net.luckperms.api.metastacking.DuplicateRemovalFunction;
+import net.luckperms.api.metastacking.MetaStackDefinition;
+import net.luckperms.api.query.QueryOptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class MetaSourcesTest {
+
+    private static final MetaStackDefinition STACK = new SimpleMetaStackDefinition(
+            Collections.singletonList(StandardStackElements.HIGHEST),
+            DuplicateRemovalFunction.RETAIN_ALL,
+            "", "", ""
+    );
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
+
+    private StandardGroupManager groupManager;
+
+    @BeforeEach
+    public void setupMocks() {
+        this.groupManager = new StandardGroupManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        lenient().when(this.plugin.getGroupManager()).thenReturn((GroupManager) this.groupManager);
+        lenient().when(this.plugin.getInheritanceGraphFactory()).thenReturn(new InheritanceGraphFactory(this.plugin));
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.configuration.get(ConfigKeys.CONTEXT_SATISFY_MODE)).thenReturn(ContextSatisfyMode.AT_LEAST_ONE_VALUE_PER_KEY);
+        lenient().when(this.configuration.get(ConfigKeys.GROUP_WEIGHTS)).thenReturn(Collections.emptyMap());
+        lenient().when(this.configuration.get(ConfigKeys.INHERITANCE_TRAVERSAL_ALGORITHM)).thenReturn(TraversalAlgorithm.DEPTH_FIRST_PRE_ORDER);
+        lenient().when(this.configuration.get(ConfigKeys.POST_TRAVERSAL_INHERITANCE_SORT)).thenReturn(false);
+    }
+
+    @Test
+    public void testReplayWithChangedRootNodes() {
+        QueryOptions queryOptions = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+
+        Group parent = this.groupManager.getOrMake("parent");
+        parent.normalData().add(Weight.builder().weight(10).build());
+        parent.normalData().add(Meta.builder("colour", "red").build());
+        parent.normalData().add(Meta.builder("rank", "parent").build());
+        parent.normalData().add(Prefix.builder("[Parent]", 10).build());
+
+        Group child = this.groupManager.getOrMake("child");
+        child.normalData().add(Inheritance.builder().group(parent.getName()).build());
+        child.normalData().add(Meta.builder("rank", "child").build());
+
+        MetaSources sources = new MetaSources();
+        child.accumulateMeta(new MetaAccumulator(STACK, STACK), queryOptions, sources);
+
+        // change the child's own meta
+        child.normalData().add(Meta.builder("colour", "blue").build());
+        child.normalData().add(Prefix.builder("[Child]", 20).build());
+
+        MetaSources patched = sources.withRootNodes(child.getOwnMetaNodes(queryOptions));
+        assertNotNull(patched);
+
+        MetaAccumulator replayed = patched.replay(new MetaAccumulator(STACK, STACK));
+        MetaAccumulator expected = child.accumulateMeta(new MetaAccumulator(STACK, STACK), queryOptions);
+
+        assertEquals(flatten(expected), flatten(replayed));
+        assertEquals("blue", replayed.getMeta().get("colour").get(0).result());
+        assertEquals("child", replayed.getMeta().get("rank").get(0).result());
+        assertEquals(expected.getPrefix().result(), replayed.getPrefix().result());
+        assertEquals("[Child]", replayed.getPrefix().result());
+        assertEquals(expected.getWeight().intResult(), replayed.getWeight().intResult());
+    }
+
+    private static Map<String, List<String>> flatten(MetaAccumulator accumulator) {
+        return accumulator.getMeta().asMap().entrySet().stream().collect(Collectors.toMap(
+                Map.Entry::getKey,
+                e -> e.getValue().stream().map(r -> r.result()).collect(Collectors.toList())
+        ));
+    }
+
+}
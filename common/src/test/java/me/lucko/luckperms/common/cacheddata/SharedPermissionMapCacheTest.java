@@ -0,0 +1,156 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.cacheddata;
+
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
+import me.lucko.luckperms.common.event.EventDispatcher;
+import me.lucko.luckperms.common.model.PermissionHolder;
+import me.lucko.luckperms.common.model.PrimaryGroupHolder;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.types.InheritanceOriginMetadata;
+import net.luckperms.api.query.Flag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class SharedPermissionMapCacheTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPermsConfiguration configuration;
+
+    private final AtomicInteger resolveCount = new AtomicInteger();
+
+    @BeforeEach
+    public void setupMocks() {
+        lenient().when(this.plugin.getConfiguration()).thenReturn(this.configuration);
+        lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
+        lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.Stored::new);
+    }
+
+    private User createUser(Node... nodes) {
+        User user = new User(UUID.randomUUID(), this.plugin);
+        for (Node node : nodes) {
+            user.normalData().add(node);
+        }
+        return user;
+    }
+
+    private ConcurrentHashMap<String, Node> resolve(SharedPermissionMapCache cache, User user) {
+        return cache.resolve(user, QueryOptionsImpl.DEFAULT_CONTEXTUAL, queryOptions -> {
+            this.resolveCount.incrementAndGet();
+            // stand in for a full resolution: the users own nodes, followed by one inherited from a group
+            ConcurrentHashMap<String, Node> map = user.exportPermissions(ConcurrentHashMap::new, queryOptions.toBuilder().flag(Flag.RESOLVE_INHERITANCE, false).build(), true, false);
+            map.putIfAbsent("inherited", Permission.builder().permission("inherited").build());
+            return map;
+        });
+    }
+
+    private static PermissionHolder.Identifier origin(Node node) {
+        return node.metadata(InheritanceOriginMetadata.KEY).getOrigin();
+    }
+
+    @Test
+    public void testSharedBetweenEquivalentUsers() {
+        SharedPermissionMapCache cache = new SharedPermissionMapCache();
+
+        User first = createUser(Inheritance.builder("member").build());
+        User second = createUser(Inheritance.builder("member").build());
+
+        assertEquals(resolve(cache, first).keySet(), resolve(cache, second).keySet());
+        assertEquals(1, this.resolveCount.get());
+
+        User other = createUser(Inheritance.builder("vip").build());
+        resolve(cache, other);
+        assertEquals(2, this.resolveCount.get());
+    }
+
+    @Test
+    public void testOriginsNotShared() {
+        SharedPermissionMapCache cache = new SharedPermissionMapCache();
+
+        User first = createUser(Inheritance.builder("member").build());
+        User second = createUser(Inheritance.builder("member").build());
+
+        ConcurrentHashMap<String, Node> firstMap = resolve(cache, first);
+        ConcurrentHashMap<String, Node> secondMap = resolve(cache, second);
+        assertEquals(1, this.resolveCount.get());
+        assertNotSame(firstMap, secondMap);
+
+        assertEquals(first.getIdentifier(), origin(firstMap.get("group.member")));
+        assertEquals(second.getIdentifier(), origin(secondMap.get("group.member")));
+
+        // modifying one users map doesn't affect the other
+        firstMap.put("test", Permission.builder().permission("test").build());
+        assertFalse(secondMap.containsKey("test"));
+        assertFalse(resolve(cache, second).containsKey("test"));
+    }
+
+    @Test
+    public void testNotSharedWithOwnPermissions() {
+        SharedPermissionMapCache cache = new SharedPermissionMapCache();
+
+        User first = createUser(Inheritance.builder("member").build(), Permission.builder().permission("test").build());
+        User second = createUser(Inheritance.builder("member").build(), Permission.builder().permission("test").build());
+
+        assertNotSame(resolve(cache, first), resolve(cache, second));
+        assertEquals(2, this.resolveCount.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        SharedPermissionMapCache cache = new SharedPermissionMapCache();
+
+        User user = createUser(Inheritance.builder("member").build());
+        resolve(cache, user);
+        resolve(cache, user);
+        assertEquals(1, this.resolveCount.get());
+
+        cache.invalidate();
+        resolve(cache, user);
+        assertEquals(2, this.resolveCount.get());
+    }
+
+}
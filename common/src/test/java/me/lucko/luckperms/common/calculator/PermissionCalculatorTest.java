@@ -27,6 +27,7 @@ package me.lucko.luckperms.common.calculator;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import me.lucko.luckperms.common.cacheddata.CacheMetadata;
 import me.lucko.luckperms.common.cacheddata.result.TristateResult;
 import me.lucko.luckperms.common.calculator.processor.AbstractOverrideWildcardProcessor;
@@ -54,6 +55,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -221,6 +223,39 @@ public class PermissionCalculatorTest {
         }
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "test.*, true, test.other, TRUE",
+            "one.two.*, true, one.two.test, TRUE",
+            "one.two.*, , one.two.test, FALSE",
+            "one.*, true, one.test, TRUE",
+            "*, true, test, TRUE",
+            "*, , test, UNDEFINED",
+            "r=hello\\d+, false, hello1, FALSE",
+            "r=hello\\d+, , hello1, FALSE",
+            "r=world, true, world, TRUE",
+            "test.node1, , test.node1, FALSE",
+    })
+    public void testRefreshChangedKeys(String key, Boolean value, String node, Tristate expected) {
+        Map<String, Node> source = new ConcurrentHashMap<>(EXAMPLE_PERMISSIONS);
+        PermissionCalculator calculator = createCalculator(new DirectProcessor(), new RegexProcessor(), new WildcardProcessor());
+        calculator.setSourcePermissions(source);
+        calculator.checkPermission(node, CheckOrigin.INTERNAL);
+
+        if (value == null) {
+            source.remove(key);
+        } else {
+            source.put(key, NodeBuilders.determineMostApplicable(key).value(value).build());
+        }
+        calculator.refresh(ImmutableSet.of(key));
+
+        PermissionCalculator recalculated = createCalculator(new DirectProcessor(), new RegexProcessor(), new WildcardProcessor());
+        recalculated.setSourcePermissions(source);
+
+        assertEquals(expected, calculator.checkPermission(node, CheckOrigin.INTERNAL).result());
+        assertEquals(expected, recalculated.checkPermission(node, CheckOrigin.INTERNAL).result());
+    }
+
     @Test
     public void testOverrideWildcard() {
         AbstractOverrideWildcardProcessor overrideProcessor = new AbstractOverrideWildcardProcessor(true) {
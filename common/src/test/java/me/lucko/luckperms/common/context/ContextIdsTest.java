@@ -0,0 +1,72 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.context;
+
+import net.luckperms.api.context.ImmutableContextSet;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ContextIdsTest {
+
+    @Test
+    public void testHighCardinalityKey() {
+        for (int i = 0; i < ContextIds.MAX_VALUES_PER_KEY; i++) {
+            assertNotEquals(ContextIds.NO_ID, ContextIds.entryId(new ContextImpl("test-random", "value" + i)));
+        }
+        assertFalse(ContextIds.getHighCardinalityKeys().contains("test-random"));
+
+        assertEquals(ContextIds.NO_ID, ContextIds.entryId(new ContextImpl("test-random", "overflow")));
+        assertTrue(ContextIds.getHighCardinalityKeys().contains("test-random"));
+
+        // values assigned before the limit keep their ids
+        assertNotEquals(ContextIds.NO_ID, ContextIds.entryId(new ContextImpl("test-random", "value0")));
+
+        // other keys are unaffected
+        assertFalse(ContextIds.getHighCardinalityKeys().contains("test-world"));
+        assertNotEquals(ContextIds.NO_ID, ContextIds.entryId(new ContextImpl("test-world", "nether")));
+    }
+
+    @Test
+    public void testSetsWithoutIdsStillCompare() {
+        for (int i = 0; i <= ContextIds.MAX_VALUES_PER_KEY; i++) {
+            ContextIds.entryId(new ContextImpl("test-session", "value" + i));
+        }
+
+        ImmutableContextSet a = ImmutableContextSetImpl.of("test-session", "unassigned");
+        ImmutableContextSet b = ImmutableContextSetImpl.of("test-session", "unassigned");
+        ImmutableContextSet c = ImmutableContextSetImpl.of("test-session", "other");
+
+        assertEquals(a, b);
+        assertNotEquals(a, c);
+        assertTrue(a.isSatisfiedBy(new ImmutableContextSetImpl.BuilderImpl().add("test-session", "unassigned").add("server", "test").build()));
+        assertFalse(c.isSatisfiedBy(a));
+    }
+
+}
@@ -31,8 +31,10 @@ import net.luckperms.api.context.ContextSatisfyMode;
 import net.luckperms.api.context.ImmutableContextSet;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.Random;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -170,4 +172,32 @@ public class ImmutableContextSetTest {
         );
     }
 
+
+    @ParameterizedTest
+    @EnumSource(ContextSatisfyMode.class)
+    public void testContainsAllMatchesValueComparison(ContextSatisfyMode mode) {
+        Random random = new Random(0);
+        String[] keys = {"server", "world", "gamemode", "dimension-type", "test"};
+        String[] values = {"a", "b", "c"};
+
+        for (int i = 0; i < 1000; i++) {
+            ImmutableContextSetImpl set = randomSet(random, keys, values);
+            ImmutableContextSetImpl other = randomSet(random, keys, values);
+
+            assertEquals(
+                    set.otherContainsAllByValue(other, mode),
+                    set.otherContainsAll(other, mode),
+                    () -> set + " satisfied by " + other
+            );
+        }
+    }
+
+    private static ImmutableContextSetImpl randomSet(Random random, String[] keys, String[] values) {
+        ImmutableContextSet.Builder builder = new ImmutableContextSetImpl.BuilderImpl();
+        for (int i = 0, size = 1 + random.nextInt(6); i < size; i++) {
+            builder.add(keys[random.nextInt(keys.length)], values[random.nextInt(values.length)]);
+        }
+        return (ImmutableContextSetImpl) builder.build();
+    }
+
 }
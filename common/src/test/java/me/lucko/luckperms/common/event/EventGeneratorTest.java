@@ -25,7 +25,9 @@
 
 package me.lucko.luckperms.common.event;
 
-import me.lucko.luckperms.common.event.gen.GeneratedEventClass;
+import me.lucko.luckperms.common.event.gen.GeneratedEvents;
+import me.lucko.luckperms.common.event.gen.player.PlayerDataSaveEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PreSyncEventImpl;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.event.LuckPermsEvent;
 import net.luckperms.api.event.player.PlayerDataSaveEvent;
@@ -36,11 +38,25 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -51,18 +67,75 @@ public class EventGeneratorTest {
     @Mock public LuckPerms luckPermsApi;
 
     @Test
-    public void testGenerateAll() {
-        GeneratedEventClass.preGenerate();
+    public void testGenerateAll() throws Exception {
+        Set<Class<? extends LuckPermsEvent>> apiEventTypes = findApiEventTypes();
+        assertFalse(apiEventTypes.isEmpty());
+
+        for (Class<? extends LuckPermsEvent> eventType : apiEventTypes) {
+            Class<?> implementation = GeneratedEvents.getImplementation(eventType);
+            assertNotNull(implementation, eventType.getName());
+            assertTrue(eventType.isAssignableFrom(implementation), eventType.getName());
+        }
+
+        assertEquals(apiEventTypes, new HashSet<>(Arrays.asList(EventDispatcher.getKnownEventTypes())));
+    }
+
+    /**
+     * Finds the event interfaces in the API which can be posted - those which
+     * are not extended by another event interface (e.g. NodeMutateEvent).
+     *
+     * @return the event types declared by the API
+     */
+    @SuppressWarnings("unchecked")
+    private static Set<Class<? extends LuckPermsEvent>> findApiEventTypes() throws IOException, URISyntaxException, ClassNotFoundException {
+        Set<Class<? extends LuckPermsEvent>> eventTypes = new HashSet<>();
+        for (String className : listApiClassNames()) {
+            Class<?> clazz = Class.forName(className, false, LuckPermsEvent.class.getClassLoader());
+            if (clazz.isInterface() && clazz != LuckPermsEvent.class && LuckPermsEvent.class.isAssignableFrom(clazz)) {
+                eventTypes.add((Class<? extends LuckPermsEvent>) clazz);
+            }
+        }
+
+        Set<Class<?>> parents = eventTypes.stream()
+                .flatMap(type -> Arrays.stream(type.getInterfaces()))
+                .collect(Collectors.toSet());
+        eventTypes.removeAll(parents);
+        return eventTypes;
+    }
+
+    private static Set<String> listApiClassNames() throws IOException, URISyntaxException {
+        String packagePath = LuckPermsEvent.class.getPackage().getName().replace('.', '/') + '/';
+        Path location = Paths.get(LuckPermsEvent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        Set<String> classFiles = new HashSet<>();
+        if (Files.isDirectory(location)) {
+            try (Stream<Path> files = Files.walk(location.resolve(packagePath))) {
+                files.map(file -> location.relativize(file).toString().replace(location.getFileSystem().getSeparator(), "/"))
+                        .forEach(classFiles::add);
+            }
+        } else {
+            try (JarFile jar = new JarFile(location.toFile())) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    classFiles.add(entries.nextElement().getName());
+                }
+            }
+        }
+
+        return classFiles.stream()
+                .filter(name -> name.startsWith(packagePath) && name.endsWith(".class"))
+                .filter(name -> !name.contains("$") && !name.endsWith("package-info.class"))
+                .map(name -> name.substring(0, name.length() - ".class".length()).replace('/', '.'))
+                .collect(Collectors.toSet());
     }
 
     @Test
-    public void testSimple() throws Throwable {
+    public void testSimple() {
         UUID randomUniqueId = UUID.randomUUID();
         String randomUsername = "random";
         PlayerSaveResult mockResult = mock(PlayerSaveResult.class);
 
-        GeneratedEventClass eventClass = GeneratedEventClass.generate(PlayerDataSaveEvent.class);
-        LuckPermsEvent rawEvent = eventClass.newInstance(this.luckPermsApi, randomUniqueId, randomUsername, mockResult);
+        LuckPermsEvent rawEvent = new PlayerDataSaveEventImpl(this.luckPermsApi, randomUniqueId, randomUsername, mockResult);
 
         assertTrue(rawEvent instanceof PlayerDataSaveEvent);
         PlayerDataSaveEvent event = (PlayerDataSaveEvent) rawEvent;
@@ -75,10 +148,9 @@ public class EventGeneratorTest {
     }
 
     @Test
-    public void testDefaultMethods() throws Throwable {
+    public void testDefaultMethods() {
         AtomicBoolean state = new AtomicBoolean(false);
-        GeneratedEventClass eventClass = GeneratedEventClass.generate(PreSyncEvent.class);
-        PreSyncEvent event = (PreSyncEvent) eventClass.newInstance(this.luckPermsApi, state);
+        PreSyncEvent event = new PreSyncEventImpl(this.luckPermsApi, state);
 
         assertFalse(event.isCancelled());
         assertTrue(event.isNotCancelled());
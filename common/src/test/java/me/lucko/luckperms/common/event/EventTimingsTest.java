@@ -0,0 +1,110 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.event;
+
+import me.lucko.luckperms.common.event.gen.player.PlayerDataSaveEventImpl;
+import me.lucko.luckperms.common.event.gen.sync.PreSyncEventImpl;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.player.PlayerDataSaveEvent;
+import net.luckperms.api.event.sync.PreSyncEvent;
+import net.luckperms.api.model.PlayerSaveResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+@ExtendWith(MockitoExtension.class)
+public class EventTimingsTest {
+
+    @Mock private LuckPermsPlugin plugin;
+    @Mock private LuckPerms luckPermsApi;
+
+    @Test
+    public void testTimingsRecordedPerSubscription() {
+        TestEventBus bus = new TestEventBus(this.plugin);
+        assertNull(bus.getSlowestSubscription());
+
+        EventSubscription<PreSyncEvent> fast = bus.subscribe(PreSyncEvent.class, e -> {});
+        EventSubscription<PreSyncEvent> slow = bus.subscribe(PreSyncEvent.class, e -> sleep(5));
+        EventSubscription<PlayerDataSaveEvent> other = bus.subscribe(PlayerDataSaveEvent.class, e -> {});
+
+        for (int i = 0; i < 3; i++) {
+            bus.post(new PreSyncEventImpl(this.luckPermsApi, new AtomicBoolean(false)));
+        }
+
+        EventTimings fastTimings = ((LuckPermsEventSubscription<?>) fast).getTimings();
+        EventTimings slowTimings = ((LuckPermsEventSubscription<?>) slow).getTimings();
+        EventTimings otherTimings = ((LuckPermsEventSubscription<?>) other).getTimings();
+
+        assertEquals(3, fastTimings.getCount());
+        assertEquals(3, slowTimings.getCount());
+        assertEquals(0, otherTimings.getCount());
+        assertTrue(slowTimings.getMaxTime(TimeUnit.MILLISECONDS) >= 5);
+        assertTrue(slowTimings.getTotalTime(TimeUnit.NANOSECONDS) > fastTimings.getTotalTime(TimeUnit.NANOSECONDS));
+        assertSame(slow, bus.getSlowestSubscription());
+
+        assertEquals(3, bus.getPostedCount());
+        assertEquals(3, bus.getEventTimings().get(PreSyncEvent.class).getCount());
+        assertFalse(bus.getEventTimings().containsKey(PlayerDataSaveEvent.class));
+
+        bus.post(new PlayerDataSaveEventImpl(this.luckPermsApi, UUID.randomUUID(), "test", mock(PlayerSaveResult.class)));
+        assertEquals(1, otherTimings.getCount());
+        assertEquals(4, bus.getPostedCount());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class TestEventBus extends AbstractEventBus<Object> {
+        TestEventBus(LuckPermsPlugin plugin) {
+            super(plugin, null);
+        }
+
+        @Override
+        protected Object checkPlugin(Object plugin) throws IllegalArgumentException {
+            return plugin;
+        }
+    }
+
+}
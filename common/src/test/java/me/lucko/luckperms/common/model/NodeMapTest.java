@@ -52,6 +52,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -59,6 +60,9 @@ import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -324,5 +328,101 @@ public class NodeMapTest {
         assertEquals(expectedInheritance, inheritanceOutput.size());
     }
 
+    @ParameterizedTest
+    @CsvSource({
+            "AT_LEAST_ONE_VALUE_PER_KEY, server=a|world=x",
+            "AT_LEAST_ONE_VALUE_PER_KEY, server=a|server=b|gamemode=creative",
+            "ALL_VALUES_PER_KEY, server=a|world=x",
+            "ALL_VALUES_PER_KEY, server=a|server=b|gamemode=creative",
+    })
+    public void testContextIndexMatchesScan(ContextSatisfyMode mode, String context) {
+        NodeMapMutable map = new NodeMapMutable(this.mockHolder, DataType.NORMAL) {
+            @Override
+            protected ContextSatisfyMode defaultSatisfyMode() {
+                return mode;
+            }
+        };
+
+        ImmutableContextSet.Builder builder = new ImmutableContextSetImpl.BuilderImpl();
+        for (String pair : Splitter.on('|').split(context)) {
+            List<String> split = Splitter.on('=').splitToList(pair);
+            builder.add(split.get(0), split.get(1));
+        }
+        QueryOptions options = new QueryOptionsBuilderImpl(QueryMode.CONTEXTUAL)
+                .context(builder.build())
+                .flags(EnumSet.allOf(Flag.class))
+                .build();
+
+        int i = 0;
+        for (String server : new String[]{null, "a", "b", "c"}) {
+            for (String world : new String[]{null, "x", "y"}) {
+                for (String gamemode : new String[]{null, "creative", "survival"}) {
+                    Node.Builder<?, ?> node = makeNode("test" + (i++)).toBuilder();
+                    if (server != null) node.withContext("server", server);
+                    if (world != null) node.withContext("world", world);
+                    if (gamemode != null) node.withContext("gamemode", gamemode);
+                    map.add(node.build());
+
+                    // query after each addition, so the index has to be rebuilt each time
+                    List<Node> expected = new ArrayList<>();
+                    for (Node n : map.asList()) {
+                        if (options.satisfies(n.getContexts(), mode)) {
+                            expected.add(n);
+                        }
+                    }
+
+                    List<Node> output = new ArrayList<>();
+                    map.copyTo(output, options);
+                    assertEquals(expected, output);
+                }
+            }
+        }
+
+        map.clear(ImmutableContextSetImpl.of("server", "a"));
+        List<Node> output = new ArrayList<>();
+        map.forEach(options, output::add);
+        for (Node n : output) {
+            assertTrue(options.satisfies(n.getContexts(), mode));
+            assertNotEquals(ImmutableContextSetImpl.of("server", "a"), n.getContexts());
+        }
+    }
+
+
+    @Test
+    public void testCompactAndThaw() {
+        NodeMapMutable map = new NodeMapMutable(this.mockHolder, DataType.NORMAL);
+        map.add(makeNode("test1"));
+        map.add(makeNode("test2").toBuilder().withContext("server", "test").build());
+        map.add(makeNode("group.test1"));
+        map.add(makeNode("group.test2").toBuilder().withContext("server", "test").build());
+        map.remove(makeNode("test2").toBuilder().withContext("server", "test").build());
+
+        List<Node> before = map.asList();
+        List<InheritanceNode> beforeInheritance = map.inheritanceAsList();
+        long sizeBefore = map.estimateStructureSize();
+
+        assertTrue(map.compact());
+        assertTrue(map.isCompacted());
+        assertFalse(map.compact());
+        assertEquals(before, map.asList());
+        assertEquals(beforeInheritance, map.inheritanceAsList());
+        assertTrue(map.estimateStructureSize() < sizeBefore);
+
+        // the next mutation should copy the map back into mutable form
+        Node node = makeNode("test3").toBuilder().withContext("world", "test").build();
+        Difference<Node> result = map.add(node);
+        assertFalse(map.isCompacted());
+        assertEquals(1, result.getAdded().size());
+        assertEquals(before.size() + 1, map.size());
+
+        map.remove(makeNode("group.test1"));
+        assertEquals(1, map.inheritanceAsList().size());
+
+        // the compacted form must also be copied before removals
+        assertTrue(map.compact());
+        assertEquals(1, map.removeIf(n -> n.getKey().equals("test1")).getRemoved().size());
+        assertFalse(map.isCompacted());
+        assertEquals(2, map.size());
+    }
 
 }
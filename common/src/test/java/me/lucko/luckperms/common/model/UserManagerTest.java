@@ -30,17 +30,21 @@ import me.lucko.luckperms.common.config.ConfigKeys;
 import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.event.EventDispatcher;
 import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
 import me.lucko.luckperms.common.node.types.Inheritance;
 import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import net.luckperms.api.node.Node;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -49,6 +53,7 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class UserManagerTest {
@@ -65,6 +70,8 @@ public class UserManagerTest {
         lenient().when(this.bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class));
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+        lenient().when(this.configuration.get(ConfigKeys.OFFLINE_USER_MEMORY_BUDGET)).thenReturn(5);
+        lenient().when(this.configuration.get(ConfigKeys.DEBUG_LOGINS)).thenReturn(false);
     }
 
     @Test
@@ -110,4 +117,60 @@ public class UserManagerTest {
         assertFalse(manager.isDefaultNode(Permission.builder().permission("hello").build()));
     }
 
+    @Test
+    public void testHousekeeperCleanup() {
+        StandardUserManager manager = new StandardUserManager(this.plugin);
+
+        UUID loaded = UUID.randomUUID();
+        manager.getOrMake(loaded);
+
+        UUID recentlyUsed = UUID.randomUUID();
+        manager.getOrMake(recentlyUsed);
+        manager.getHouseKeeper().registerUsage(recentlyUsed);
+
+        UUID usedByApi = UUID.randomUUID();
+        manager.getOrMake(usedByApi);
+        manager.getHouseKeeper().registerApiUsage(usedByApi);
+
+        assertEquals(3, manager.getHouseKeeper().getStats().loaded());
+        assertEquals(3, manager.getHouseKeeper().getStats().tracked());
+
+        manager.getHouseKeeper().cleanup(loaded);
+        manager.getHouseKeeper().cleanup(recentlyUsed);
+        manager.getHouseKeeper().cleanup(usedByApi);
+
+        assertFalse(manager.isLoaded(loaded));
+        assertTrue(manager.isLoaded(recentlyUsed));
+        assertTrue(manager.isLoaded(usedByApi));
+
+        manager.getHouseKeeper().clearApiUsage(usedByApi);
+        manager.getHouseKeeper().cleanup(usedByApi);
+        assertFalse(manager.isLoaded(usedByApi));
+
+        assertEquals(2, manager.getHouseKeeper().getStats().unloads());
+        assertEquals(0, manager.getHouseKeeper().getStats().evictions());
+    }
+
+    @Test
+    public void testHousekeeperReweighsOnLoad() {
+        StandardUserManager manager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) manager);
+
+        User user = manager.getOrMake(UUID.randomUUID());
+        manager.getHouseKeeper().run();
+        long initial = manager.getHouseKeeper().getStats().estimatedBytes();
+
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            nodes.add(Permission.builder().permission("test.permission." + i).build());
+        }
+        user.loadNodesFromStorage(nodes);
+
+        manager.getHouseKeeper().run();
+        assertTrue(manager.getHouseKeeper().getStats().estimatedBytes() > initial);
+        assertEquals(1, manager.getHouseKeeper().getStats().tracked());
+    }
+
 }
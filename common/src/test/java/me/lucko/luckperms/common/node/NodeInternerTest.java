@@ -0,0 +1,92 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.node;
+
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
+import me.lucko.luckperms.common.node.factory.NodeBuilders;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.metadata.NodeMetadataKey;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class NodeInternerTest {
+
+    private static final NodeMetadataKey<String> TEST_KEY = NodeMetadataKey.of("test", String.class);
+
+    @Test
+    public void testInternKey() {
+        String k1 = new String("some.permission");
+        String k2 = new String("some.permission");
+        assertNotSame(k1, k2);
+        assertSame(NodeInterner.internKey(k1), NodeInterner.internKey(k2));
+    }
+
+    @Test
+    public void testInternContexts() {
+        ImmutableContextSet c1 = ImmutableContextSetImpl.of("server", "test");
+        ImmutableContextSet c2 = ImmutableContextSetImpl.of("server", "test");
+        assertNotSame(c1, c2);
+
+        ImmutableContextSet interned = NodeInterner.intern(c1);
+        assertSame(interned, NodeInterner.intern(c2));
+        assertNotSame(interned, NodeInterner.intern(ImmutableContextSetImpl.of("server", "other")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"group.default", "some.permission", "meta.key.value", "prefix.100.hello"})
+    public void testRebuildSharesKeyAndContexts(String key) {
+        Node node = NodeBuilders.determineMostApplicable(key).withContext("server", "test").build();
+        Node withMetadata = node.toBuilder().withMetadata(TEST_KEY, "a").build();
+        assertNotSame(node, withMetadata);
+        assertSame(node.getKey(), withMetadata.getKey());
+        assertSame(node.getContexts(), withMetadata.getContexts());
+
+        Node negated = node.toBuilder().value(false).build();
+        assertSame(node.getKey(), negated.getKey());
+    }
+
+    @Test
+    public void testRebuildWithChanges() {
+        Node node = Inheritance.builder("test").withContext("server", "test").build();
+
+        Node modified = node.toBuilder().withContext("world", "test").build();
+        assertEquals(2, modified.getContexts().size());
+        assertEquals(1, node.getContexts().size());
+
+        Node renamed = ((Inheritance) node).toBuilder().group("other").build();
+        assertEquals("group.other", renamed.getKey());
+        assertNotEquals(node.getKey(), renamed.getKey());
+    }
+
+}
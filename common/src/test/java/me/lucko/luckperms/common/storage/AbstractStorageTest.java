@@ -41,12 +41,15 @@ import me.lucko.luckperms.common.model.manager.group.GroupManager;
 import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
 import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
 import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
 import me.lucko.luckperms.common.node.types.Inheritance;
 import me.lucko.luckperms.common.node.types.Permission;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.plugin.bootstrap.LuckPermsBootstrap;
 import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import me.lucko.luckperms.common.storage.misc.StoredUser;
 import net.luckperms.api.actionlog.Action;
 import net.luckperms.api.model.PlayerSaveResult;
 import net.luckperms.api.model.PlayerSaveResult.Outcome;
@@ -62,7 +65,10 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -98,6 +104,8 @@ public abstract class AbstractStorageTest {
         lenient().when(this.bootstrap.getScheduler()).thenReturn(mock(SchedulerAdapter.class));
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION)).thenReturn(PrimaryGroupHolder.AllParentsByWeight::new);
         lenient().when(this.configuration.get(ConfigKeys.PRIMARY_GROUP_CALCULATION_METHOD)).thenReturn("parents-by-weight");
+        lenient().when(this.configuration.get(ConfigKeys.OFFLINE_USER_MEMORY_BUDGET)).thenReturn(5);
+        lenient().when(this.configuration.get(ConfigKeys.DEBUG_LOGINS)).thenReturn(false);
         lenient().when(this.bootstrap.getResourceStream(anyString()))
                 .then(answer((String path) -> AbstractStorageTest.class.getClassLoader().getResourceAsStream(path)));
         lenient().when(this.plugin.getEventDispatcher()).thenReturn(mock(EventDispatcher.class));
@@ -358,4 +366,110 @@ public abstract class AbstractStorageTest {
         assertEquals(ImmutableSet.of(defaultGroupNode, examplePermission), user.normalData().asSet());
     }
 
+    @Test
+    public void testSaveAndLoadUsersInBulk() throws Exception {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        PermissionNode examplePermission = Permission.builder().permission("test.bulk").build();
+        PermissionNode otherPermission = Permission.builder().permission("test.other").build();
+        InheritanceNode defaultGroupNode = Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build();
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            User user = this.storage.loadUser(UUID.randomUUID(), "user" + i);
+            user.setNode(DataType.NORMAL, examplePermission, true);
+            if (i % 2 == 0) {
+                user.setNode(DataType.NORMAL, otherPermission, true);
+            }
+            users.add(user);
+        }
+        this.storage.saveUsers(users);
+
+        Set<UUID> uniqueIds = users.stream().map(User::getUniqueId).collect(Collectors.toSet());
+        uniqueIds.forEach(userManager::unload);
+
+        Map<UUID, User> loaded = this.storage.loadUsers(uniqueIds);
+        assertEquals(uniqueIds, loaded.keySet());
+        for (User user : users) {
+            assertEquals(user.normalData().asSet(), loaded.get(user.getUniqueId()).normalData().asSet());
+        }
+
+        List<NodeEntry<UUID, Node>> results = this.storage.searchUserNodes(StandardNodeMatchers.key(otherPermission));
+        assertEquals(3, results.size());
+        for (NodeEntry<UUID, Node> result : results) {
+            assertTrue(uniqueIds.contains(result.getHolder()));
+            assertEquals(otherPermission, result.getNode());
+        }
+
+        assertFalse(this.storage.searchUserNodes(StandardNodeMatchers.key(defaultGroupNode)).isEmpty());
+    }
+
+    @Test
+    public void testDeleteExpiredUserNodes() throws Exception {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        PermissionNode temporaryPermission = Permission.builder().permission("test.temporary").expiry(1, TimeUnit.HOURS).build();
+        PermissionNode permanentPermission = Permission.builder().permission("test.permanent").build();
+        InheritanceNode defaultGroupNode = Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build();
+
+        UUID uniqueId = UUID.randomUUID();
+        User user = this.storage.loadUser(uniqueId, "Player1");
+        user.setNode(DataType.NORMAL, temporaryPermission, true);
+        user.setNode(DataType.NORMAL, permanentPermission, true);
+        this.storage.saveUser(user);
+        userManager.unload(uniqueId);
+
+        assertEquals(0, this.storage.deleteExpiredUserNodes(Instant.now(), 100));
+        assertEquals(1, this.storage.deleteExpiredUserNodes(Instant.now().plusSeconds(TimeUnit.HOURS.toSeconds(2)), 100));
+
+        User loaded = this.storage.loadUser(uniqueId, "Player1");
+        assertEquals(ImmutableSet.of(defaultGroupNode, permanentPermission), loaded.normalData().asSet());
+    }
+
+    @Test
+    public void testIterateUsers() throws Exception {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        PermissionNode examplePermission = Permission.builder().permission("test.iterate").build();
+        InheritanceNode defaultGroupNode = Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build();
+
+        Map<UUID, User> users = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+            User user = this.storage.loadUser(UUID.randomUUID(), "user" + i);
+            user.setNode(DataType.NORMAL, examplePermission, true);
+            if (i % 2 == 0) {
+                user.getPrimaryGroup().setStoredValue("test");
+            }
+            this.storage.saveUser(user);
+            users.put(user.getUniqueId(), user);
+        }
+        users.keySet().forEach(userManager::unload);
+
+        List<StoredUser> results = new ArrayList<>();
+        this.storage.iterateUsers(results::add);
+
+        // iterating must not load users into the user manager
+        assertTrue(userManager.getAll().isEmpty());
+
+        assertEquals(users.keySet(), results.stream().map(StoredUser::getUniqueId).collect(Collectors.toSet()));
+        for (StoredUser result : results) {
+            User user = users.get(result.getUniqueId());
+            assertTrue(user.getUsername().get().equalsIgnoreCase(result.getUsername()));
+            assertEquals(
+                    user.getPrimaryGroup().getStoredValue().orElse(GroupManager.DEFAULT_GROUP_NAME),
+                    result.getPrimaryGroup() == null ? GroupManager.DEFAULT_GROUP_NAME : result.getPrimaryGroup()
+            );
+            assertEquals(ImmutableSet.of(defaultGroupNode, examplePermission), ImmutableSet.copyOf(result.getNodes()));
+        }
+    }
+
 }
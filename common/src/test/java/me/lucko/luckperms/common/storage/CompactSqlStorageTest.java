@@ -0,0 +1,118 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import com.google.common.collect.ImmutableSet;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.types.InheritanceNode;
+import net.luckperms.api.node.types.PermissionNode;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+public class CompactSqlStorageTest extends AbstractStorageTest {
+
+    private SqlStorageTest.TestH2ConnectionFactory connectionFactory;
+    private SqlStorage storage;
+
+    @Override
+    protected StorageImplementation makeStorage(LuckPermsPlugin plugin) throws Exception {
+        this.connectionFactory = new SqlStorageTest.TestH2ConnectionFactory();
+        this.storage = new SqlStorage(plugin, this.connectionFactory, "luckperms_", true);
+        return this.storage;
+    }
+
+    @Test
+    public void testMigrateToCompactLayout() throws Exception {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        UUID uniqueId = UUID.randomUUID();
+        PermissionNode permission = Permission.builder()
+                .permission("test.1")
+                .withContext("server", "test")
+                .withContext("foo", "bar")
+                .build();
+        InheritanceNode defaultGroupNode = Inheritance.builder(GroupManager.DEFAULT_GROUP_NAME).build();
+
+        // save a user using the standard layout
+        SqlStorage legacyStorage = new SqlStorage(this.plugin, this.connectionFactory, "luckperms_", false);
+        legacyStorage.init();
+        User user = legacyStorage.loadUser(uniqueId, "Player1");
+        user.setNode(DataType.NORMAL, permission, true);
+        legacyStorage.saveUser(user);
+        assertEquals(2, countRows("luckperms_user_permissions"));
+
+        // re-open in compact mode - the user should be migrated when they are loaded
+        SqlStorage compactStorage = new SqlStorage(this.plugin, this.connectionFactory, "luckperms_", true);
+        compactStorage.init();
+        assertTrue(compactStorage.getUniqueUsers().contains(uniqueId));
+
+        user = compactStorage.loadUser(uniqueId, "Player1");
+        assertEquals(ImmutableSet.of(defaultGroupNode, permission), user.normalData().asSet());
+        assertEquals(0, countRows("luckperms_user_permissions"));
+        assertEquals(2, countRows("luckperms_compact_user_permissions"));
+    }
+
+    @Test
+    public void testDeleteUnreadableExpiredUserNodes() throws Exception {
+        // rows referring to a missing dictionary entry can't be read as a node
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            s.execute("INSERT INTO `luckperms_compact_user_permissions` (`uuid`, `permission_id`, `value`, `expiry`, `context_id`) " +
+                    "VALUES (X'00000000000000000000000000000001', 999999, TRUE, 1, 999999)");
+        }
+
+        assertEquals(1, this.storage.deleteExpiredUserNodes(Instant.now(), 100));
+        assertEquals(0, countRows("luckperms_compact_user_permissions"));
+    }
+
+    private int countRows(String table) throws Exception {
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `" + table + "`")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
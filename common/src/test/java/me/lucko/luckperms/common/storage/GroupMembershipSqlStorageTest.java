@@ -0,0 +1,144 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateBuilder;
+import me.lucko.luckperms.common.bulkupdate.BulkUpdateField;
+import me.lucko.luckperms.common.bulkupdate.action.UpdateAction;
+import me.lucko.luckperms.common.filter.Comparison;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.model.manager.user.StandardUserManager;
+import me.lucko.luckperms.common.model.manager.user.UserManager;
+import me.lucko.luckperms.common.node.matcher.StandardNodeMatchers;
+import me.lucko.luckperms.common.node.types.Inheritance;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import me.lucko.luckperms.common.storage.misc.NodeEntry;
+import net.luckperms.api.model.data.DataType;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.types.InheritanceNode;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GroupMembershipSqlStorageTest extends AbstractStorageTest {
+
+    private SqlStorageTest.TestH2ConnectionFactory connectionFactory;
+
+    @Override
+    protected StorageImplementation makeStorage(LuckPermsPlugin plugin) throws Exception {
+        // run the table fill immediately
+        SchedulerAdapter scheduler = mock(SchedulerAdapter.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(scheduler).executeAsync(any());
+        when(this.bootstrap.getScheduler()).thenReturn(scheduler);
+
+        this.connectionFactory = new SqlStorageTest.TestH2ConnectionFactory();
+        return new SqlStorage(plugin, this.connectionFactory, "luckperms_", false, true);
+    }
+
+    @Test
+    public void testGroupMembershipTable() throws Exception {
+        StandardUserManager userManager = new StandardUserManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getUserManager()).thenReturn((UserManager) userManager);
+
+        InheritanceNode adminNode = Inheritance.builder("admin").build();
+        InheritanceNode tempAdminNode = Inheritance.builder("admin").withContext("server", "test").expiry(1, TimeUnit.DAYS).build();
+
+        // save a user before the table is enabled, they should be picked up when it is filled
+        UUID existingId = UUID.randomUUID();
+        SqlStorage plainStorage = new SqlStorage(this.plugin, this.connectionFactory, "members_", false);
+        plainStorage.init();
+        User existing = plainStorage.loadUser(existingId, "Player1");
+        existing.setNode(DataType.NORMAL, adminNode, true);
+        plainStorage.saveUser(existing);
+
+        SqlStorage storage = new SqlStorage(this.plugin, this.connectionFactory, "members_", false, true);
+        storage.init();
+        assertEquals(2, countRows("members_group_members")); // admin & default
+
+        UUID uniqueId = UUID.randomUUID();
+        User user = storage.loadUser(uniqueId, "Player2");
+        user.setNode(DataType.NORMAL, tempAdminNode, true);
+        storage.saveUser(user);
+        assertEquals(4, countRows("members_group_members"));
+
+        List<NodeEntry<UUID, Node>> results = storage.searchUserNodes(StandardNodeMatchers.key(adminNode));
+        assertEquals(2, results.size());
+        for (NodeEntry<UUID, Node> result : results) {
+            if (result.getHolder().equals(existingId)) {
+                assertEquals(adminNode, result.getNode());
+            } else {
+                assertEquals(uniqueId, result.getHolder());
+                assertEquals(tempAdminNode, result.getNode());
+            }
+        }
+
+        // removing the node (and with it, all non-default data) removes the membership
+        user.unsetNode(DataType.NORMAL, tempAdminNode);
+        storage.saveUser(user);
+        assertEquals(1, storage.searchUserNodes(StandardNodeMatchers.key(adminNode)).size());
+        assertEquals(2, countRows("members_group_members"));
+
+        // bulk updates are copied to the table directly, which stays usable
+        storage.applyBulkUpdate(BulkUpdateBuilder.create()
+                .action(UpdateAction.of(BulkUpdateField.PERMISSION, "group.moderator"))
+                .filter(BulkUpdateField.PERMISSION, Comparison.EQUAL, "group.admin")
+                .build());
+        assertEquals(0, storage.searchUserNodes(StandardNodeMatchers.key(adminNode)).size());
+
+        List<NodeEntry<UUID, Node>> moderators = storage.searchUserNodes(StandardNodeMatchers.key(Inheritance.builder("moderator").build()));
+        assertEquals(1, moderators.size());
+        assertEquals(existingId, moderators.get(0).getHolder());
+        assertEquals(2, countRows("members_group_members"));
+    }
+
+    private int countRows(String table) throws Exception {
+        try (Statement s = this.connectionFactory.getConnection().createStatement()) {
+            try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `" + table + "`")) {
+                assertTrue(rs.next());
+                return rs.getInt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage;
+
+import com.google.common.collect.ImmutableMap;
+import me.lucko.luckperms.common.model.Group;
+import me.lucko.luckperms.common.model.manager.group.GroupManager;
+import me.lucko.luckperms.common.model.manager.group.StandardGroupManager;
+import me.lucko.luckperms.common.node.types.Permission;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
+import me.lucko.luckperms.common.storage.implementation.split.SplitStorage;
+import me.lucko.luckperms.common.storage.implementation.split.SplitStorageCache;
+import me.lucko.luckperms.common.storage.implementation.split.SplitStorageType;
+import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Statement;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SplitStorageCacheTest extends AbstractStorageTest {
+
+    private SqlStorageTest.TestH2ConnectionFactory remoteConnectionFactory;
+    private SplitStorage storage;
+
+    @Override
+    protected StorageImplementation makeStorage(LuckPermsPlugin plugin) throws Exception {
+        this.remoteConnectionFactory = new SqlStorageTest.TestH2ConnectionFactory("split_remote");
+        SqlStorage remote = new SqlStorage(plugin, this.remoteConnectionFactory, "luckperms_");
+
+        // pretend the backend is remote, so everything cacheable goes through the cache
+        Map<SplitStorageType, StorageType> types = new EnumMap<>(SplitStorageType.class);
+        for (SplitStorageType type : SplitStorageType.values()) {
+            types.put(type, StorageType.MYSQL);
+        }
+
+        SplitStorageCache cache = new SplitStorageCache(plugin, new SqlStorageTest.TestH2ConnectionFactory("split_cache"));
+        this.storage = new SplitStorage(plugin, ImmutableMap.of(StorageType.MYSQL, remote), types, cache);
+        return this.storage;
+    }
+
+    @Test
+    public void testGroupsServedFromCache() throws Exception {
+        StandardGroupManager groupManager = new StandardGroupManager(this.plugin);
+
+        //noinspection unchecked,rawtypes
+        when(this.plugin.getGroupManager()).thenReturn((GroupManager) groupManager);
+
+        Group group = this.storage.createAndLoadGroup("test");
+        group.normalData().add(Permission.builder().permission("test.1").build());
+        this.storage.saveGroup(group);
+        groupManager.unload("test");
+
+        // the first load is served from the cache, and refreshed in the background
+        this.storage.loadAllGroups();
+        assertTrue(groupManager.isLoaded("test"));
+        verify(this.bootstrap.getScheduler()).executeAsync(any());
+
+        // the stale copy can't be saved over the remote data
+        Group stale = groupManager.getIfLoaded("test");
+        assertThrows(IllegalStateException.class, () -> this.storage.saveGroup(stale));
+
+        // then the remote storage is read, and the cache becomes fresh
+        this.storage.loadAllGroups();
+        assertTrue(groupManager.isLoaded("test"));
+        this.storage.saveGroup(groupManager.getIfLoaded("test"));
+
+        try (Statement s = this.remoteConnectionFactory.getConnection().createStatement()) {
+            s.execute("DELETE FROM `luckperms_group_permissions`");
+            s.execute("DELETE FROM `luckperms_groups`");
+        }
+
+        this.storage.loadAllGroups();
+        assertTrue(groupManager.isLoaded("test"));
+        assertEquals(1, groupManager.getIfLoaded("test").normalData().size());
+
+        // e.g. an update ping was received
+        this.storage.invalidateCache();
+        this.storage.loadAllGroups();
+        assertFalse(groupManager.isLoaded("test"));
+    }
+
+    @Test
+    public void testPlayerDataServedFromCache() throws Exception {
+        UUID uniqueId = UUID.randomUUID();
+        this.storage.savePlayerData(uniqueId, "Player1");
+
+        try (Statement s = this.remoteConnectionFactory.getConnection().createStatement()) {
+            s.execute("DELETE FROM `luckperms_players`");
+        }
+
+        assertEquals(uniqueId, this.storage.getPlayerUniqueId("player1"));
+        assertEquals("player1", this.storage.getPlayerName(uniqueId));
+
+        this.storage.invalidateCache();
+        assertNull(this.storage.getPlayerUniqueId("player1"));
+        assertNull(this.storage.getPlayerName(uniqueId));
+    }
+
+}
@@ -26,29 +26,108 @@
 package me.lucko.luckperms.common.storage;
 
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import me.lucko.luckperms.common.plugin.logging.PluginLogger;
 import me.lucko.luckperms.common.storage.implementation.StorageImplementation;
 import me.lucko.luckperms.common.storage.implementation.sql.SqlStorage;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.ConnectionFactory;
 import me.lucko.luckperms.common.storage.implementation.sql.connection.file.NonClosableConnection;
+import org.junit.jupiter.api.Test;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
 import java.util.function.Function;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class SqlStorageTest extends AbstractStorageTest {
 
+    private TestH2ConnectionFactory connectionFactory;
+    private SqlStorage storage;
+
     @Override
     protected StorageImplementation makeStorage(LuckPermsPlugin plugin) throws Exception {
-        return new SqlStorage(plugin, new TestH2ConnectionFactory(), "luckperms_");
+        this.connectionFactory = new TestH2ConnectionFactory();
+        this.storage = new SqlStorage(plugin, this.connectionFactory, "luckperms_");
+        return this.storage;
     }
 
-    private static class TestH2ConnectionFactory implements ConnectionFactory {
+    @Test
+    public void testSchemaMigration() throws Exception {
+        when(this.plugin.getLogger()).thenReturn(mock(PluginLogger.class));
+        Connection c = this.connectionFactory.getConnection();
+
+        // simulate a database created before schema versioning was introduced
+        try (Statement s = c.createStatement()) {
+            s.execute("DROP INDEX `luckperms_user_permissions_permission`");
+            s.execute("DROP TABLE `luckperms_metadata`");
+        }
+
+        this.storage.init();
+
+        try (Statement s = c.createStatement()) {
+            try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'luckperms_user_permissions_permission'")) {
+                assertTrue(rs.next());
+                assertEquals(1, rs.getInt(1));
+            }
+            try (ResultSet rs = s.executeQuery("SELECT `value` FROM `luckperms_metadata` WHERE `name` = 'schema_version'")) {
+                assertTrue(rs.next());
+                assertEquals("2", rs.getString(1));
+            }
+        }
+    }
+
+    @Test
+    public void testTryAcquireLock() throws Exception {
+        assertTrue(this.storage.tryAcquireLock("test", Duration.ofMinutes(1)));
+        assertFalse(this.storage.tryAcquireLock("test", Duration.ofMinutes(1)));
+
+        // lapsed locks can be taken over
+        assertTrue(this.storage.tryAcquireLock("test_lapsed", Duration.ofMillis(-1)));
+        assertTrue(this.storage.tryAcquireLock("test_lapsed", Duration.ofMinutes(1)));
+        assertFalse(this.storage.tryAcquireLock("test_lapsed", Duration.ofMinutes(1)));
+    }
+
+    @Test
+    public void testDeleteUnreadableExpiredUserNodes() throws Exception {
+        Connection c = this.connectionFactory.getConnection();
+
+        // rows with an empty permission can't be read as a node
+        try (Statement s = c.createStatement()) {
+            s.execute("INSERT INTO `luckperms_user_permissions` (`uuid`, `permission`, `value`, `server`, `world`, `expiry`, `contexts`) " +
+                    "VALUES ('" + UUID.randomUUID() + "', '', TRUE, 'global', 'global', 1, '{}')");
+        }
+
+        assertEquals(1, this.storage.deleteExpiredUserNodes(Instant.now(), 100));
+        assertEquals(0, this.storage.deleteExpiredUserNodes(Instant.now(), 100));
+
+        try (Statement s = c.createStatement()) {
+            try (ResultSet rs = s.executeQuery("SELECT COUNT(*) FROM `luckperms_user_permissions`")) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+        }
+    }
+
+    static class TestH2ConnectionFactory implements ConnectionFactory {
         private final NonClosableConnection connection;
 
         TestH2ConnectionFactory() throws SQLException {
+            this("test");
+        }
+
+        TestH2ConnectionFactory(String database) throws SQLException {
             this.connection = new NonClosableConnection(
-                    DriverManager.getConnection("jdbc:h2:mem:test")
+                    DriverManager.getConnection("jdbc:h2:mem:" + database)
             );
         }
 
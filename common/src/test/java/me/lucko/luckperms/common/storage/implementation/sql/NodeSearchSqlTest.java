@@ -0,0 +1,83 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.storage.implementation.sql;
+
+import me.lucko.luckperms.common.filter.Comparison;
+import me.lucko.luckperms.common.filter.ConstraintFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class NodeSearchSqlTest {
+
+    private static Stream<Arguments> testQueries() {
+        return Stream.of(
+                Arguments.of("H2", Comparison.EQUAL, "test.permission",
+                        "permission = test.permission",
+                        "permission = ?"
+                ),
+                Arguments.of("H2", Comparison.EQUAL, "group.VIP",
+                        "permission = group.vip",
+                        "permission = ?"
+                ),
+                Arguments.of("H2", Comparison.SIMILAR, "test.%",
+                        "permission LIKE test.%",
+                        "permission LIKE ?"
+                ),
+                Arguments.of("H2", Comparison.SIMILAR, "group.%",
+                        "permission >= group. AND permission < group/ AND permission LIKE group.%",
+                        "permission >= ? AND permission < ? AND permission LIKE ?"
+                ),
+                Arguments.of("SQLite", Comparison.SIMILAR, "Group.V_p%",
+                        "permission >= group.v AND permission < group.w AND permission LIKE group.v_p%",
+                        "permission >= ? AND permission < ? AND permission LIKE ?"
+                ),
+                Arguments.of("H2", Comparison.NOT_SIMILAR, "group.%",
+                        "permission NOT LIKE group.%",
+                        "permission NOT LIKE ?"
+                ),
+                Arguments.of("PostgreSQL", Comparison.SIMILAR, "group.%",
+                        "permission LIKE group.%",
+                        "permission LIKE ?"
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "[{index}] {0} {1} {2}")
+    @MethodSource
+    public void testQueries(String implementationName, Comparison comparison, String value, String expectedSql, String expectedSqlParams) {
+        NodeSearchSqlBuilder sqlBuilder = new NodeSearchSqlBuilder(implementationName);
+        sqlBuilder.visitPermission("permission", ConstraintFactory.STRINGS.build(comparison, value));
+
+        assertEquals(expectedSql, sqlBuilder.builder().toReadableString());
+        assertEquals(expectedSqlParams, sqlBuilder.builder().toQueryString());
+    }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * This file is part of LuckPerms, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.luckperms.common.treeview;
+
+import com.google.common.collect.ImmutableList;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerAdapter;
+import me.lucko.luckperms.common.plugin.scheduler.SchedulerTask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PermissionRegistryTest {
+
+    private final AtomicReference<Runnable> tickTask = new AtomicReference<>();
+    private PermissionRegistry registry;
+
+    @BeforeEach
+    public void setupRegistry() {
+        SchedulerAdapter scheduler = mock(SchedulerAdapter.class);
+        when(scheduler.asyncRepeating(any(Runnable.class), anyLong(), any(TimeUnit.class))).thenAnswer(invocation -> {
+            this.tickTask.set(invocation.getArgument(0));
+            return mock(SchedulerTask.class);
+        });
+        this.registry = new PermissionRegistry(scheduler);
+    }
+
+    @Test
+    public void testInsertSplitsSegments() {
+        this.registry.insert("Example.Permission");
+        this.registry.insert("example..other.");
+
+        assertEquals(ImmutableList.of("example", "example.other", "example.permission"), this.registry.rootAsList());
+        assertEquals(3, this.registry.getSize());
+    }
+
+    @Test
+    public void testOfferIsAppliedOnTick() {
+        this.registry.offer("example.permission");
+        this.registry.offer("example.permission");
+        assertEquals(0, this.registry.getSize());
+
+        this.tickTask.get().run();
+        assertEquals(ImmutableList.of("example", "example.permission"), this.registry.rootAsList());
+        assertEquals(2, this.registry.getSize());
+    }
+
+    @Test
+    public void testPruneToMaximumSize() {
+        this.registry.setMaximumSize(50);
+        for (int i = 0; i < 100; i++) {
+            this.registry.offer("dynamic." + i);
+        }
+
+        this.tickTask.get().run();
+        assertTrue(this.registry.getSize() <= 45);
+        assertEquals(this.registry.getSize(), this.registry.rootAsList().size());
+    }
+
+    @Test
+    public void testPruneLeastRecentlyUsed() {
+        this.registry.setMaximumSize(20);
+        for (int i = 0; i < 10; i++) {
+            this.registry.insert("a." + i, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            this.registry.insert("b." + i, 10 + i);
+        }
+        // inserting again marks the node as used
+        this.registry.insert("a.0", 100);
+        assertEquals(22, this.registry.getSize());
+
+        // pruned back to 18 nodes, removing the 4 least recently used leaves
+        this.tickTask.get().run();
+        assertEquals(18, this.registry.getSize());
+
+        List<String> expected = new ArrayList<>();
+        expected.add("a");
+        expected.add("a.0");
+        for (int i = 5; i < 10; i++) {
+            expected.add("a." + i);
+        }
+        expected.add("b");
+        for (int i = 0; i < 10; i++) {
+            expected.add("b." + i);
+        }
+        assertEquals(expected, this.registry.rootAsList());
+    }
+
+    @Test
+    public void testDroppedOfferCanBeRetried() {
+        this.registry.setMaximumSize(3);
+        this.registry.offer("x");
+        this.registry.offer("y");
+        this.registry.offer("z");
+        this.registry.offer("w"); // queue is full
+        this.tickTask.get().run();
+        assertEquals(ImmutableList.of("x", "y", "z"), this.registry.rootAsList());
+
+        this.registry.setMaximumSize(10);
+        this.registry.offer("w");
+        this.tickTask.get().run();
+        assertEquals(ImmutableList.of("w", "x", "y", "z"), this.registry.rootAsList());
+    }
+
+    @Test
+    public void testConcurrentInsertAndPrune() throws Exception {
+        this.registry.setMaximumSize(200);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 2000; i++) {
+                        this.registry.insert("shared." + (i % 50) + "." + thread + "." + i);
+                    }
+                    return null;
+                }));
+            }
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 200; i++) {
+                    this.tickTask.get().run();
+                }
+                return null;
+            }));
+            start.countDown();
+
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every counted node is reachable from the root
+        assertEquals(this.registry.getSize(), this.registry.rootAsList().size());
+        this.tickTask.get().run();
+        assertTrue(this.registry.getSize() <= 200);
+        assertEquals(this.registry.getSize(), this.registry.rootAsList().size());
+    }
+
+}
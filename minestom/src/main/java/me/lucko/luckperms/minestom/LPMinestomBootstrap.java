@@ -41,6 +41,7 @@ public final class LPMinestomBootstrap implements LuckPermsBootstrap {
             @NotNull Logger logger,
             @NotNull Path dataDirectory,
             @NotNull Set<ContextProvider> contextProviders,
+            boolean tickAlignedContexts,
             @NotNull Function<LPMinestomPlugin, ConfigurationAdapter> configurationAdapter,
             boolean dependencyManager,
             @NotNull Set<String> permissionSuggestions,
@@ -50,7 +51,7 @@ public final class LPMinestomBootstrap implements LuckPermsBootstrap {
         this.dataDirectory = dataDirectory;
         this.schedulerAdapter = new MinestomSchedulerAdapter(this);
         this.classPathAppender = new NoopClassPathAppender();
-        this.plugin = new LPMinestomPlugin(this, contextProviders, configurationAdapter, dependencyManager, permissionSuggestions, commandRegistry);
+        this.plugin = new LPMinestomPlugin(this, contextProviders, tickAlignedContexts, configurationAdapter, dependencyManager, permissionSuggestions, commandRegistry);
     }
 
     public void onEnable() {
@@ -7,6 +7,7 @@ import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Stream;
 import me.lucko.luckperms.common.api.LuckPermsApiProvider;
+import me.lucko.luckperms.common.cacheddata.SharedPermissionMapCache;
 import me.lucko.luckperms.common.calculator.CalculatorFactory;
 import me.lucko.luckperms.common.command.CommandManager;
 import me.lucko.luckperms.common.config.ConfigKeys;
@@ -51,6 +52,7 @@ public final class LPMinestomPlugin extends AbstractLuckPermsPlugin {
 
     private final LPMinestomBootstrap bootstrap;
     private final Set<ContextProvider> contextProviders;
+    private final boolean tickAlignedContexts;
     private final @NotNull Set<String> permissionSuggestions;
     private final @NotNull ConfigurationAdapter configurationAdapter;
     private final @NotNull DependencyManager dependencyManager;
@@ -67,6 +69,7 @@ public final class LPMinestomPlugin extends AbstractLuckPermsPlugin {
     LPMinestomPlugin(
             @NotNull LPMinestomBootstrap bootstrap,
             @NotNull Set<ContextProvider> contextProviders,
+            boolean tickAlignedContexts,
             @NotNull Function<LPMinestomPlugin, ConfigurationAdapter> configurationAdapter,
             boolean dependencyManager,
             @NotNull Set<String> permissionSuggestions,
@@ -74,6 +77,7 @@ public final class LPMinestomPlugin extends AbstractLuckPermsPlugin {
     ) {
         this.bootstrap = bootstrap;
         this.contextProviders = contextProviders;
+        this.tickAlignedContexts = tickAlignedContexts;
         this.permissionSuggestions = permissionSuggestions;
         this.configurationAdapter = configurationAdapter.apply(this);
         this.dependencyManager = dependencyManager ? new DependencyManagerImpl(this) : new NoopDependencyManager();
@@ -123,15 +127,32 @@ public final class LPMinestomPlugin extends AbstractLuckPermsPlugin {
 
     @Override
     protected void setupContextManager() {
-        this.contextManager = new MinestomContextManager(this);
+        this.contextManager = new MinestomContextManager(this, this.tickAlignedContexts);
         this.contextManager.registerCalculator(new MinestomPlayerCalculator(this, this.eventNode, this.contextProviders, getConfiguration().get(ConfigKeys.DISABLED_CONTEXTS)));
     }
 
+    @Override
+    protected SharedPermissionMapCache provideSharedPermissionMapCache() {
+        // players are commonly moved between instances in large batches, all
+        // with the same group memberships - share one resolved map between them
+        return new SharedPermissionMapCache();
+    }
+
     @Override
     protected void setupPlatformHooks() {
 
     }
 
+    @Override
+    protected void removePlatformHooks() {
+        if (this.connectionListener != null) {
+            this.connectionListener.shutdown();
+        }
+        if (this.contextManager != null) {
+            this.contextManager.shutdown();
+        }
+    }
+
     @Override
     protected AbstractEventBus<?> provideEventBus(LuckPermsApiProvider apiProvider) {
         return new MinestomEventBus(this, apiProvider);
@@ -97,6 +97,23 @@ public final class LuckPermsMinestom {
          */
         @NotNull Builder contextProviders(@NotNull Iterable<ContextProvider> providers);
 
+        /**
+         * Sets whether player contexts should be recalculated in step with
+         * the server tick, rather than expiring after a fixed amount of time.
+         *
+         * <p>When enabled, each player's contexts are recalculated at most
+         * once per tick, at the start of the tick, and only if a context
+         * provider signalled a change since the previous tick. Until then,
+         * the previous snapshot is reused. Disabled by default.</p>
+         *
+         * <p>Providers must signal every change to their values when this is
+         * enabled, as contexts are otherwise never recalculated.</p>
+         *
+         * @param enabled if tick aligned contexts should be enabled
+         * @return the builder instance
+         */
+        @NotNull Builder tickAlignedContexts(boolean enabled);
+
 
         /**
          * Suggests a permission to be registered with the platform
@@ -175,6 +192,7 @@ public final class LuckPermsMinestom {
         private @Nullable CommandRegistry commandRegistry;
         private @NotNull Function<LPMinestomPlugin, ConfigurationAdapter> configurationAdapter = EnvironmentVariableConfigAdapter::new;
         private boolean dependencyManager = false;
+        private boolean tickAlignedContexts = false;
         private @NotNull Logger logger = LoggerFactory.getLogger(LuckPermsMinestom.class);
 
         private BuilderImpl(@NotNull Path dataDirectory) {
@@ -204,6 +222,12 @@ public final class LuckPermsMinestom {
             return this;
         }
 
+        @Override
+        public @NotNull Builder tickAlignedContexts(boolean enabled) {
+            this.tickAlignedContexts = enabled;
+            return this;
+        }
+
         @Override
         public @NotNull Builder permissionSuggestion(@NotNull String permission) {
             this.permissionSuggestions.add(permission);
@@ -245,6 +269,7 @@ public final class LuckPermsMinestom {
                     this.logger,
                     this.dataDirectory,
                     this.contextProviders,
+                    this.tickAlignedContexts,
                     this.configurationAdapter,
                     this.dependencyManager,
                     this.permissionSuggestions,
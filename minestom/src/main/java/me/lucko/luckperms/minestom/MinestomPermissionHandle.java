@@ -0,0 +1,199 @@
+package me.lucko.luckperms.minestom;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import me.lucko.luckperms.common.cacheddata.UserCachedDataManager;
+import me.lucko.luckperms.common.cacheddata.type.MonitoredMetaCache;
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.verbose.event.CheckOrigin;
+import net.luckperms.api.cacheddata.CachedMetaData;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.query.QueryOptions;
+import net.luckperms.api.util.Tristate;
+import net.minestom.server.entity.Player;
+import net.minestom.server.tag.Tag;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A handle bound to an online {@link Player}, holding direct references to
+ * the player's current query options and cached permission/meta data.
+ *
+ * <p>Checks made through the handle skip the user, context and cached data
+ * lookups normally performed by the API player adapter - they are served
+ * straight from the referenced caches.</p>
+ *
+ * <p>The referenced data is swapped atomically whenever the user's cached
+ * data is invalidated or recalculated, or a context provider signals that
+ * the player's contexts have changed. Not every context calculator signals
+ * its changes, so the player's query options are also looked up again once
+ * the data has been held for as long as the context manager caches them
+ * (roughly a tick). At the same point, the referenced data is checked to
+ * still be the data held by the user's cached data manager (it may have
+ * been evicted), and is looked up again if not, or if the query options
+ * have changed.</p>
+ */
+public final class MinestomPermissionHandle {
+
+    private static final Tag<MinestomPermissionHandle> TAG = Tag.Transient("luckperms-permission-handle");
+
+    /** How long a snapshot is used before the query options are checked again, the same as QueryOptionsCache */
+    private static final long SNAPSHOT_LIFETIME_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /**
+     * Gets the permission handle attached to the given player, if any.
+     *
+     * <p>A handle is attached once the player's data has been loaded and
+     * they have passed the login stage, and is removed when they disconnect.</p>
+     *
+     * @param player the player
+     * @return the handle, or null if the player has no handle attached
+     */
+    public static @Nullable MinestomPermissionHandle get(@NotNull Player player) {
+        return player.getTag(TAG);
+    }
+
+    @ApiStatus.Internal
+    public static MinestomPermissionHandle attach(LPMinestomPlugin plugin, Player player, User user) {
+        MinestomPermissionHandle handle = new MinestomPermissionHandle(plugin, player, user);
+        user.getCachedData().addInvalidationListener(handle.invalidationListener);
+        player.setTag(TAG, handle);
+        return handle;
+    }
+
+    @ApiStatus.Internal
+    public static void detach(Player player) {
+        MinestomPermissionHandle handle = player.getTag(TAG);
+        if (handle != null) {
+            player.removeTag(TAG);
+            handle.user.getCachedData().removeInvalidationListener(handle.invalidationListener);
+            handle.snapshot.set(Snapshot.INVALID);
+        }
+    }
+
+    private final LPMinestomPlugin plugin;
+    private final Player player;
+    private final User user;
+    private final Runnable invalidationListener = this::invalidate;
+
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot());
+
+    private MinestomPermissionHandle(LPMinestomPlugin plugin, Player player, User user) {
+        this.plugin = plugin;
+        this.player = player;
+        this.user = user;
+    }
+
+    public @NotNull Player getPlayer() {
+        return this.player;
+    }
+
+    public @NotNull QueryOptions getQueryOptions() {
+        return snapshot().queryOptions;
+    }
+
+    public @NotNull CachedPermissionData getPermissionData() {
+        return snapshot().permissions;
+    }
+
+    public @NotNull CachedMetaData getMetaData() {
+        return snapshot().meta;
+    }
+
+    public @NotNull Tristate checkPermission(@NotNull String permission) {
+        return snapshot().permissions.checkPermission(permission, CheckOrigin.PLATFORM_API_HAS_PERMISSION).result();
+    }
+
+    public boolean hasPermission(@NotNull String permission) {
+        return checkPermission(permission).asBoolean();
+    }
+
+    public @NotNull Optional<String> getMetaValue(@NotNull String key) {
+        return Optional.ofNullable(snapshot().meta.getMetaValue(key, CheckOrigin.PLATFORM_API).result());
+    }
+
+    public @Nullable String getPrefix() {
+        return snapshot().meta.getPrefix(CheckOrigin.PLATFORM_API).result();
+    }
+
+    public @Nullable String getSuffix() {
+        return snapshot().meta.getSuffix(CheckOrigin.PLATFORM_API).result();
+    }
+
+    /**
+     * Drops the referenced data, causing it to be looked up again on the
+     * next check.
+     */
+    public void invalidate() {
+        // always swap in a fresh marker, so that an in-flight refresh holding
+        // the previous one fails to publish its (possibly stale) result
+        Snapshot current;
+        do {
+            current = this.snapshot.get();
+            if (current == Snapshot.INVALID) {
+                return;
+            }
+        } while (!this.snapshot.compareAndSet(current, new Snapshot()));
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = this.snapshot.get();
+        long now = System.nanoTime();
+        if (current.isValid(now)) {
+            return current;
+        }
+
+        QueryOptions queryOptions = this.plugin.getContextManager().getQueryOptions(this.player);
+        long expiry = now + SNAPSHOT_LIFETIME_NANOS;
+        UserCachedDataManager cachedData = this.user.getCachedData();
+        Snapshot computed;
+        if (current.permissions != null && queryOptions.equals(current.queryOptions) &&
+                cachedData.getPermissionDataIfPresent(queryOptions) == current.permissions &&
+                cachedData.getMetaDataIfPresent(queryOptions) == current.meta) {
+            // expired, but the contexts haven't changed and the data is still the current data
+            computed = new Snapshot(queryOptions, current.permissions, current.meta, expiry);
+        } else {
+            computed = new Snapshot(
+                    queryOptions,
+                    cachedData.getPermissionData(queryOptions),
+                    cachedData.getMetaData(queryOptions),
+                    expiry
+            );
+        }
+
+        // publish only if nothing was invalidated whilst computing
+        if (current != Snapshot.INVALID) {
+            this.snapshot.compareAndSet(current, computed);
+        }
+        return computed;
+    }
+
+    private static final class Snapshot {
+        /** Marker used once the handle has been detached, never replaced */
+        static final Snapshot INVALID = new Snapshot();
+
+        final QueryOptions queryOptions;
+        final PermissionCache permissions;
+        final MonitoredMetaCache meta;
+        final long expiry;
+
+        Snapshot() {
+            this(null, null, null, 0L);
+        }
+
+        Snapshot(QueryOptions queryOptions, PermissionCache permissions, MonitoredMetaCache meta, long expiry) {
+            this.queryOptions = queryOptions;
+            this.permissions = permissions;
+            this.meta = meta;
+            this.expiry = expiry;
+        }
+
+        boolean isValid(long now) {
+            return this.permissions != null && now - this.expiry < 0;
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import me.lucko.luckperms.common.locale.TranslationManager;
 import me.lucko.luckperms.common.sender.Sender;
 import me.lucko.luckperms.common.sender.SenderFactory;
 import net.kyori.adventure.text.Component;
+import net.luckperms.api.cacheddata.CachedPermissionData;
 import net.luckperms.api.util.Tristate;
 import net.minestom.server.MinecraftServer;
 import net.minestom.server.command.CommandSender;
@@ -37,15 +38,20 @@ public final class MinestomSenderFactory extends SenderFactory<LPMinestomPlugin,
 
     @Override
     protected Tristate getPermissionValue(CommandSender sender, String node) {
-        return sender instanceof Player player ? this.plugin.getApiProvider().getPlayerAdapter(Player.class).getPermissionData(player)
-                .checkPermission(node) : Tristate.TRUE;
+        return sender instanceof Player player ? getPermissionData(player).checkPermission(node) : Tristate.TRUE;
     }
 
     @Override
     protected boolean hasPermission(CommandSender sender, String node) {
-        return !(sender instanceof Player player) || this.plugin.getApiProvider().getPlayerAdapter(Player.class).getPermissionData(player)
-                .checkPermission(node)
-                .asBoolean();
+        return !(sender instanceof Player player) || getPermissionData(player).checkPermission(node).asBoolean();
+    }
+
+    private CachedPermissionData getPermissionData(Player player) {
+        MinestomPermissionHandle handle = MinestomPermissionHandle.get(player);
+        if (handle != null) {
+            return handle.getPermissionData();
+        }
+        return this.plugin.getApiProvider().getPlayerAdapter(Player.class).getPermissionData(player);
     }
 
     @Override
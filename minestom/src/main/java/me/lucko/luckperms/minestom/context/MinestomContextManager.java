@@ -1,8 +1,11 @@
 package me.lucko.luckperms.minestom.context;
 
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import java.util.Iterator;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import me.lucko.luckperms.common.cache.LoadingMap;
 import me.lucko.luckperms.common.config.ConfigKeys;
@@ -11,9 +14,15 @@ import me.lucko.luckperms.common.context.manager.QueryOptionsCache;
 import me.lucko.luckperms.common.context.manager.QueryOptionsSupplier;
 import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
 import me.lucko.luckperms.common.util.CaffeineFactory;
+import me.lucko.luckperms.minestom.MinestomPermissionHandle;
 import net.luckperms.api.context.ImmutableContextSet;
 import net.luckperms.api.query.QueryOptions;
+import net.minestom.server.MinecraftServer;
 import net.minestom.server.entity.Player;
+import net.minestom.server.timer.ExecutionType;
+import net.minestom.server.timer.Task;
+import net.minestom.server.timer.TaskSchedule;
+import org.jetbrains.annotations.Nullable;
 
 public final class MinestomContextManager extends ContextManager<Player, Player> {
 
@@ -26,12 +35,63 @@ public final class MinestomContextManager extends ContextManager<Player, Player>
                 return Objects.requireNonNullElseGet(cache, () -> new QueryOptionsCache<>(key, this));
             });
 
-    public MinestomContextManager(LuckPermsPlugin plugin) {
+    // only used when tick aligned contexts are enabled, in place of onlineSubjectCaches
+    private final LoadingMap<Player, TickAlignedQueryOptionsCache> tickAlignedCaches = LoadingMap.of(key -> new TickAlignedQueryOptionsCache(() -> calculate(key)));
+    private final Set<Player> staleTickAlignedCaches = ConcurrentHashMap.newKeySet();
+
+    private final boolean tickAligned;
+    private @Nullable Task tickTask;
+
+    public MinestomContextManager(LuckPermsPlugin plugin, boolean tickAligned) {
         super(plugin, Player.class, Player.class);
+        this.tickAligned = tickAligned;
+
+        if (tickAligned) {
+            this.tickTask = MinecraftServer.getSchedulerManager().buildTask(this::onTickStart)
+                    .executionType(ExecutionType.TICK_START)
+                    .repeat(TaskSchedule.nextTick())
+                    .schedule();
+        }
+    }
+
+    /**
+     * Recalculates the contexts of each online player whose snapshot has been
+     * signalled as stale since the last tick.
+     *
+     * <p>Each player is recalculated at most once per tick, regardless of how
+     * many signals were received.</p>
+     */
+    private void onTickStart() {
+        if (this.staleTickAlignedCaches.isEmpty()) {
+            return;
+        }
+
+        Iterator<Player> iterator = this.staleTickAlignedCaches.iterator();
+        while (iterator.hasNext()) {
+            Player player = iterator.next();
+            iterator.remove();
+
+            TickAlignedQueryOptionsCache cache = this.tickAlignedCaches.getIfPresent(player);
+            if (cache != null && cache.refresh()) {
+                MinestomPermissionHandle handle = MinestomPermissionHandle.get(player);
+                if (handle != null) {
+                    handle.invalidate();
+                }
+            }
+        }
     }
 
     public void onPlayerQuit(Player player) {
         this.onlineSubjectCaches.remove(player);
+        this.tickAlignedCaches.remove(player);
+        this.staleTickAlignedCaches.remove(player);
+    }
+
+    public void shutdown() {
+        if (this.tickTask != null) {
+            this.tickTask.cancel();
+            this.tickTask = null;
+        }
     }
 
     @Override
@@ -43,7 +103,9 @@ public final class MinestomContextManager extends ContextManager<Player, Player>
     public QueryOptionsSupplier getCacheFor(Player subject) {
         if (subject == null) throw new NullPointerException("subject");
 
-        if (subject.isOnline()) return this.onlineSubjectCaches.get(subject);
+        if (subject.isOnline()) {
+            return this.tickAligned ? this.tickAlignedCaches.get(subject) : this.onlineSubjectCaches.get(subject);
+        }
         return this.offlineSubjectCaches.get(subject);
     }
 
@@ -55,6 +117,20 @@ public final class MinestomContextManager extends ContextManager<Player, Player>
 
     @Override
     protected void invalidateCache(Player subject) {
+        if (this.tickAligned) {
+            // the snapshot (and any permission handle) will be refreshed at the start of the next tick
+            TickAlignedQueryOptionsCache tickAlignedCache = this.tickAlignedCaches.getIfPresent(subject);
+            if (tickAlignedCache != null && tickAlignedCache.invalidate()) {
+                this.staleTickAlignedCaches.add(subject);
+            }
+
+            QueryOptionsCache<Player> cache = this.offlineSubjectCaches.getIfPresent(subject);
+            if (cache != null) {
+                cache.invalidate();
+            }
+            return;
+        }
+
         QueryOptionsCache<Player> cache = this.onlineSubjectCaches.getIfPresent(subject);
         if (cache != null) {
             cache.invalidate();
@@ -64,6 +140,11 @@ public final class MinestomContextManager extends ContextManager<Player, Player>
         if (cache != null) {
             cache.invalidate();
         }
+
+        MinestomPermissionHandle handle = MinestomPermissionHandle.get(subject);
+        if (handle != null) {
+            handle.invalidate();
+        }
     }
 
 }
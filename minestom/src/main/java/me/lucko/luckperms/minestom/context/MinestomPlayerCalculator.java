@@ -7,6 +7,7 @@ import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.minestom.LPMinestomPlugin;
 import me.lucko.luckperms.minestom.context.defaults.DimensionTypeContextProvider;
 import me.lucko.luckperms.minestom.context.defaults.GameModeContextProvider;
+import me.lucko.luckperms.minestom.context.defaults.InstanceContextProvider;
 import net.luckperms.api.context.ContextCalculator;
 import net.luckperms.api.context.ContextConsumer;
 import net.luckperms.api.context.ContextSet;
@@ -27,6 +28,7 @@ public final class MinestomPlayerCalculator implements ContextCalculator<Player>
         // register the default providers
         providers.add(new GameModeContextProvider());
         providers.add(new DimensionTypeContextProvider());
+        providers.add(new InstanceContextProvider());
 
         this.providers = providers.stream()
                 .filter(p -> !disabled.contains(p.key()))
@@ -0,0 +1,72 @@
+package me.lucko.luckperms.minestom.context;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import me.lucko.luckperms.common.context.manager.QueryOptionsSupplier;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.query.QueryOptions;
+
+/**
+ * Implementation of {@link QueryOptionsSupplier} which holds a snapshot of
+ * the subjects query options, only recalculated on tick boundaries.
+ *
+ * <p>Unlike {@link me.lucko.luckperms.common.context.manager.QueryOptionsCache},
+ * the snapshot does not expire with time. Invalidating it just marks it as
+ * stale - the snapshot keeps being served until the next call to
+ * {@link #refresh()}, which is made by the context manager at the start of
+ * each tick.</p>
+ */
+final class TickAlignedQueryOptionsCache implements QueryOptionsSupplier {
+    private final Supplier<QueryOptions> calculator;
+
+    private volatile QueryOptions snapshot;
+    private final AtomicBoolean stale = new AtomicBoolean();
+
+    TickAlignedQueryOptionsCache(Supplier<QueryOptions> calculator) {
+        this.calculator = calculator;
+    }
+
+    /**
+     * Marks the snapshot as stale.
+     *
+     * @return true if the snapshot was not already stale
+     */
+    boolean invalidate() {
+        return this.stale.compareAndSet(false, true);
+    }
+
+    /**
+     * Recalculates the snapshot if it is stale.
+     *
+     * @return true if the snapshot was recalculated
+     */
+    synchronized boolean refresh() {
+        // clear the flag first, so a signal received whilst calculating is not lost
+        if (!this.stale.compareAndSet(true, false)) {
+            return false;
+        }
+        this.snapshot = this.calculator.get();
+        return true;
+    }
+
+    @Override
+    public QueryOptions getQueryOptions() {
+        QueryOptions snapshot = this.snapshot;
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        // first access - calculate now rather than waiting for the next tick
+        synchronized (this) {
+            if (this.snapshot == null) {
+                this.snapshot = this.calculator.get();
+            }
+            return this.snapshot;
+        }
+    }
+
+    @Override
+    public ImmutableContextSet getContextSet() {
+        return getQueryOptions().context();
+    }
+}
@@ -0,0 +1,69 @@
+package me.lucko.luckperms.minestom.context.defaults;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import me.lucko.luckperms.minestom.context.ContextProvider;
+import net.minestom.server.MinecraftServer;
+import net.minestom.server.entity.Player;
+import net.minestom.server.event.Event;
+import net.minestom.server.event.EventNode;
+import net.minestom.server.event.player.PlayerSpawnEvent;
+import net.minestom.server.instance.Instance;
+import net.minestom.server.tag.Tag;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Provides the name of the instance a player is in.
+ *
+ * <p>Instances are named by setting {@link #NAME_TAG} on them. Instances
+ * without a name don't provide a context - instance ids are random, so can't
+ * be used in permission data, and would otherwise make a new context (and
+ * new cached data) for every instance ever created. Instances which are
+ * copies of each other (e.g. rounds of the same minigame) should be given
+ * the same name.</p>
+ */
+public final class InstanceContextProvider implements ContextProvider {
+
+    public static final String INSTANCE_KEY = "instance";
+
+    public static final Tag<String> NAME_TAG = Tag.String("luckperms:instance");
+
+    /**
+     * Gets the context value for the given instance.
+     *
+     * @param instance the instance
+     * @return the name of the instance, if it has one
+     */
+    public static @NotNull Optional<String> name(@NotNull Instance instance) {
+        return Optional.ofNullable(instance.getTag(NAME_TAG));
+    }
+
+    @Override
+    public @NotNull String key() {
+        return INSTANCE_KEY;
+    }
+
+    @Override
+    public @NotNull Optional<String> query(@NotNull Player subject) {
+        return Optional.ofNullable(subject.getInstance()).flatMap(InstanceContextProvider::name);
+    }
+
+    @Override
+    public @NotNull Set<String> potentialValues() {
+        return MinecraftServer.getInstanceManager().getInstances().stream()
+                .map(instance -> instance.getTag(NAME_TAG))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+    }
+
+    @Override
+    public void register(@NonNull Consumer<Player> contextUpdateSignaller, @NonNull EventNode<Event> eventNode) {
+        // called both on first spawn and whenever the player moves to another instance
+        eventNode.addListener(PlayerSpawnEvent.class, event -> contextUpdateSignaller.accept(event.getPlayer()));
+    }
+
+}
@@ -1,13 +1,23 @@
 package me.lucko.luckperms.minestom.listeners;
 
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.context.ImmutableContextSetImpl;
 import me.lucko.luckperms.common.locale.Message;
 import me.lucko.luckperms.common.locale.TranslationManager;
 import me.lucko.luckperms.common.model.User;
 import me.lucko.luckperms.common.plugin.util.AbstractConnectionListener;
 import me.lucko.luckperms.minestom.LPMinestomPlugin;
+import me.lucko.luckperms.minestom.MinestomPermissionHandle;
+import me.lucko.luckperms.minestom.context.defaults.InstanceContextProvider;
 import net.kyori.adventure.text.Component;
+import net.luckperms.api.context.Context;
+import net.luckperms.api.context.DefaultContextKeys;
+import net.luckperms.api.context.ImmutableContextSet;
+import net.luckperms.api.query.QueryOptions;
 import net.minestom.server.MinecraftServer;
 import net.minestom.server.entity.Player;
 import net.minestom.server.event.Event;
@@ -15,11 +25,15 @@ import net.minestom.server.event.EventNode;
 import net.minestom.server.event.player.AsyncPlayerConfigurationEvent;
 import net.minestom.server.event.player.AsyncPlayerPreLoginEvent;
 import net.minestom.server.event.player.PlayerDisconnectEvent;
+import net.minestom.server.instance.Instance;
 
 public final class MinestomConnectionListener extends AbstractConnectionListener {
 
     private final LPMinestomPlugin plugin;
 
+    // used to warm up the caches of joining players off the game thread
+    private final ExecutorService warmupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
     public MinestomConnectionListener(LPMinestomPlugin plugin, EventNode<Event> eventNode) {
         super(plugin);
         this.plugin = plugin;
@@ -83,11 +97,63 @@ public final class MinestomConnectionListener extends AbstractConnectionListener
             return;
         }
 
+        MinestomPermissionHandle.attach(this.plugin, player, user);
         this.plugin.getContextManager().signalContextUpdate(player);
+
+        Instance spawningInstance = event.getSpawningInstance();
+        if (spawningInstance != null) {
+            warmCaches(player, user, spawningInstance);
+        }
+    }
+
+    /**
+     * Calculates the cached permission and meta data the player is expected to
+     * need once they spawn, so the first checks made after joining do not have
+     * to resolve it on the game thread.
+     *
+     * <p>The expected contexts are the players current contexts, with the
+     * instance and dimension replaced by those of the instance they are
+     * about to spawn in.</p>
+     *
+     * @param player the player
+     * @param user the user
+     * @param spawningInstance the instance the player will spawn in
+     */
+    private void warmCaches(Player player, User user, Instance spawningInstance) {
+        this.warmupExecutor.execute(() -> {
+            try {
+                Set<String> disabled = this.plugin.getConfiguration().get(ConfigKeys.DISABLED_CONTEXTS);
+                ImmutableContextSet current = this.plugin.getContextManager().getContext(player);
+
+                ImmutableContextSet.Builder builder = new ImmutableContextSetImpl.BuilderImpl();
+                for (Context context : current) {
+                    if (!context.getKey().equals(DefaultContextKeys.DIMENSION_TYPE_KEY) && !context.getKey().equals(InstanceContextProvider.INSTANCE_KEY)) {
+                        builder.add(context);
+                    }
+                }
+                if (!disabled.contains(DefaultContextKeys.DIMENSION_TYPE_KEY)) {
+                    builder.add(DefaultContextKeys.DIMENSION_TYPE_KEY, spawningInstance.getDimensionName());
+                }
+                if (!disabled.contains(InstanceContextProvider.INSTANCE_KEY)) {
+                    InstanceContextProvider.name(spawningInstance).ifPresent(name -> builder.add(InstanceContextProvider.INSTANCE_KEY, name));
+                }
+
+                QueryOptions queryOptions = this.plugin.getContextManager().formQueryOptions(player, builder.build());
+                user.getCachedData().getPermissionData(queryOptions);
+                user.getCachedData().getMetaData(queryOptions);
+            } catch (Exception e) {
+                this.plugin.getLogger().warn("Exception occurred whilst warming caches for " + player.getUuid() + " - " + player.getUsername(), e);
+            }
+        });
+    }
+
+    public void shutdown() {
+        this.warmupExecutor.shutdown();
     }
 
     private void onPlayerDisconnect(PlayerDisconnectEvent event) {
         final Player player = event.getPlayer();
+        MinestomPermissionHandle.detach(player);
         handleDisconnect(player.getUuid());
 
         MinecraftServer.getSchedulerManager().scheduleNextTick(() -> this.plugin.getContextManager().onPlayerQuit(player));
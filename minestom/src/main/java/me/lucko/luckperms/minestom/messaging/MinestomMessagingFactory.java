@@ -1,5 +1,9 @@
 package me.lucko.luckperms.minestom.messaging;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import me.lucko.luckperms.common.config.ConfigKeys;
+import me.lucko.luckperms.common.config.LuckPermsConfiguration;
 import me.lucko.luckperms.common.messaging.InternalMessagingService;
 import me.lucko.luckperms.common.messaging.LuckPermsMessagingService;
 import me.lucko.luckperms.common.messaging.MessagingFactory;
@@ -29,11 +33,42 @@ public final class MinestomMessagingFactory extends MessagingFactory<LPMinestomP
             } catch (Exception e) {
                 e.printStackTrace();
             }
+        } else if (messagingType.equals("multicast")) {
+            try {
+                return new LuckPermsMessagingService(getPlugin(), new MulticastMessengerProvider());
+            } catch (Exception e) {
+                getPlugin().getLogger().severe("Exception occurred whilst enabling Multicast messaging service", e);
+            }
         }
 
         return super.getServiceFor(messagingType);
     }
 
+    private class MulticastMessengerProvider implements MessengerProvider {
+
+        @Override
+        public @NonNull String getName() {
+            return "Multicast";
+        }
+
+        @Override
+        public @NonNull Messenger obtain(@NonNull IncomingMessageConsumer incomingMessageConsumer) {
+            MulticastMessenger messenger = new MulticastMessenger(getPlugin(), incomingMessageConsumer);
+
+            LuckPermsConfiguration config = getPlugin().getConfiguration();
+            String address = config.get(ConfigKeys.MULTICAST_ADDRESS);
+            String networkInterface = config.get(ConfigKeys.MULTICAST_INTERFACE);
+            String secret = config.get(ConfigKeys.MULTICAST_SECRET);
+
+            try {
+                messenger.init(address, networkInterface, secret);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return messenger;
+        }
+    }
+
     private record PluginMessageMessengerProvider(
             @NotNull EventNode<? super PlayerPluginMessageEvent> eventNode
     ) implements MessengerProvider {
@@ -0,0 +1,413 @@
+package me.lucko.luckperms.minestom.messaging;
+
+import java.io.IOException;
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import net.luckperms.api.messenger.IncomingMessageConsumer;
+import net.luckperms.api.messenger.Messenger;
+import net.luckperms.api.messenger.message.OutgoingMessage;
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * An implementation of {@link Messenger} which exchanges messages directly
+ * between servers using UDP multicast.
+ *
+ * <p>Unlike the plugin message messenger, no player connection (or proxy) is
+ * required - servers on the same network segment simply join the same
+ * multicast group.</p>
+ *
+ * <p>Outgoing messages are queued and flushed by a single I/O thread at most
+ * every {@link #FLUSH_INTERVAL_MILLIS}ms, packing as many messages into each
+ * datagram as will fit. Each datagram has the following layout:</p>
+ * <pre>
+ *   int magic, byte[32] mac, short count, count * (int length, byte[length] utf8 encoded message)
+ * </pre>
+ *
+ * <p>The mac is a HMAC-SHA256 of everything following it, keyed with a secret
+ * shared by all servers, so datagrams from anyone without the secret are
+ * dropped. Messages are not encrypted, and a captured datagram may be sent
+ * again - replays are only ignored whilst the messaging service still
+ * remembers the message ids (a few minutes).</p>
+ *
+ * <p>Delivery is not guaranteed: datagrams lost on the network are not sent
+ * again, and nothing reports the loss. A server which misses an update ping
+ * only catches up on the next sync task.</p>
+ *
+ * <p>Messages sent by this server are received back (multicast loopback is
+ * left enabled so that several servers may share a host) and are ignored
+ * by the messaging service, which tracks the ids of its own messages.</p>
+ */
+public final class MulticastMessenger implements Messenger {
+
+    private static final int MAGIC = 0x4C504D32; // "LPM2"
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int MAC_OFFSET = Integer.BYTES;
+    private static final int MAC_LENGTH = 32;
+    private static final int COUNT_OFFSET = MAC_OFFSET + MAC_LENGTH;
+    static final int HEADER_SIZE = COUNT_OFFSET + Short.BYTES;
+
+    /** The largest payload which can be sent in a single (IPv4) UDP datagram */
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
+    /** The port used if the configured address doesn't specify one */
+    private static final int DEFAULT_PORT = 25580;
+
+    /** How often queued outgoing messages are flushed */
+    private static final long FLUSH_INTERVAL_MILLIS = 50;
+
+    private final LuckPermsPlugin plugin;
+    private final IncomingMessageConsumer consumer;
+    private final Queue<byte[]> outgoing = new ConcurrentLinkedQueue<>();
+
+    private Mac mac;
+    private InetSocketAddress group;
+    private DatagramChannel channel;
+    private MembershipKey membership;
+    private Selector selector;
+    private Thread ioThread;
+    private volatile boolean running;
+
+    public MulticastMessenger(LuckPermsPlugin plugin, IncomingMessageConsumer consumer) {
+        this.plugin = plugin;
+        this.consumer = consumer;
+    }
+
+    public void init(String address, String interfaceName, String secret) throws IOException {
+        if (secret.isEmpty()) {
+            throw new IllegalArgumentException("A shared secret must be set (multicast.secret) to use multicast messaging");
+        }
+        this.mac = createMac(secret);
+
+        this.group = parseAddress(address);
+        int port = this.group.getPort();
+
+        NetworkInterface networkInterface = selectInterface(interfaceName);
+        StandardProtocolFamily family = this.group.getAddress() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET;
+
+        this.channel = DatagramChannel.open(family)
+                .setOption(StandardSocketOptions.SO_REUSEADDR, true)
+                .bind(new InetSocketAddress(port))
+                .setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface)
+                .setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        this.channel.configureBlocking(false);
+        this.membership = this.channel.join(this.group.getAddress(), networkInterface);
+
+        this.selector = Selector.open();
+        this.channel.register(this.selector, SelectionKey.OP_READ);
+
+        this.running = true;
+        this.ioThread = Thread.ofPlatform()
+                .name("luckperms-multicast-messenger")
+                .daemon()
+                .start(this::run);
+    }
+
+    /**
+     * Parses the multicast group address from the config.
+     *
+     * <p>Accepts {@code host}, {@code host:port}, {@code [ipv6]} or
+     * {@code [ipv6]:port} - IPv6 addresses must be enclosed in brackets.</p>
+     *
+     * @param address the address
+     * @return the group address
+     * @throws IllegalArgumentException if the address is malformed, or not a multicast address
+     */
+    static InetSocketAddress parseAddress(String address) {
+        String host;
+        String port = null;
+
+        if (address.startsWith("[")) {
+            int end = address.indexOf(']');
+            if (end == -1) {
+                throw invalidAddress(address, "missing closing bracket");
+            }
+            host = address.substring(1, end);
+
+            String rest = address.substring(end + 1);
+            if (!rest.isEmpty()) {
+                if (rest.charAt(0) != ':') {
+                    throw invalidAddress(address, "unexpected characters after the closing bracket");
+                }
+                port = rest.substring(1);
+            }
+        } else {
+            int colon = address.indexOf(':');
+            if (colon != address.lastIndexOf(':')) {
+                throw invalidAddress(address, "IPv6 addresses must be enclosed in brackets, e.g. [ff02::1]:" + DEFAULT_PORT);
+            }
+            if (colon == -1) {
+                host = address;
+            } else {
+                host = address.substring(0, colon);
+                port = address.substring(colon + 1);
+            }
+        }
+
+        if (host.isEmpty()) {
+            throw invalidAddress(address, "missing host");
+        }
+
+        int portNumber = DEFAULT_PORT;
+        if (port != null) {
+            try {
+                portNumber = Integer.parseInt(port);
+            } catch (NumberFormatException e) {
+                portNumber = -1;
+            }
+            if (portNumber < 1 || portNumber > 65535) {
+                throw invalidAddress(address, "invalid port '" + port + "'");
+            }
+        }
+
+        InetSocketAddress group = new InetSocketAddress(host, portNumber);
+        if (group.isUnresolved()) {
+            throw invalidAddress(address, "unable to resolve host '" + host + "'");
+        }
+        if (!group.getAddress().isMulticastAddress()) {
+            throw invalidAddress(address, "not a multicast address");
+        }
+        return group;
+    }
+
+    private static IllegalArgumentException invalidAddress(String address, String reason) {
+        return new IllegalArgumentException("Invalid multicast address (multicast.address) '" + address + "': " + reason);
+    }
+
+    static NetworkInterface selectInterface(String name) throws SocketException {
+        if (!name.isEmpty()) {
+            NetworkInterface networkInterface = NetworkInterface.getByName(name);
+            if (networkInterface == null) {
+                throw new IllegalArgumentException("Unknown network interface: " + name);
+            }
+            return networkInterface;
+        }
+
+        // prefer the first non-loopback interface capable of multicast
+        NetworkInterface loopback = null;
+        for (NetworkInterface networkInterface : NetworkInterface.networkInterfaces().toList()) {
+            if (!networkInterface.isUp() || !networkInterface.supportsMulticast()) {
+                continue;
+            }
+            if (!networkInterface.isLoopback()) {
+                return networkInterface;
+            }
+            loopback = networkInterface;
+        }
+
+        if (loopback == null) {
+            throw new IllegalStateException("Unable to find a network interface which supports multicast");
+        }
+        return loopback;
+    }
+
+    @Override
+    public void sendOutgoingMessage(@NonNull OutgoingMessage outgoingMessage) {
+        byte[] message = outgoingMessage.asEncodedString().getBytes(StandardCharsets.UTF_8);
+        if (HEADER_SIZE + Integer.BYTES + message.length > MAX_DATAGRAM_SIZE) {
+            this.plugin.getLogger().warn("Unable to send message " + outgoingMessage.getId() + " via multicast - it is too large (" + message.length + " bytes)");
+            return;
+        }
+        this.outgoing.add(message);
+    }
+
+    private void run() {
+        ByteBuffer receiveBuffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        ByteBuffer sendBuffer = ByteBuffer.allocate(MAX_DATAGRAM_SIZE);
+        sendBuffer.limit(0);
+
+        long nextFlush = System.nanoTime();
+        while (this.running) {
+            try {
+                long timeout = TimeUnit.NANOSECONDS.toMillis(nextFlush - System.nanoTime());
+                if (timeout > 0) {
+                    this.selector.select(timeout);
+                } else {
+                    this.selector.selectNow();
+                }
+                this.selector.selectedKeys().clear();
+
+                receive(receiveBuffer);
+
+                if (System.nanoTime() - nextFlush >= 0) {
+                    flush(sendBuffer);
+                    nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS);
+                }
+            } catch (IOException e) {
+                if (this.running) {
+                    this.plugin.getLogger().warn("Exception occurred in multicast messenger", e);
+                }
+            }
+        }
+
+        // send anything still queued before closing
+        try {
+            flush(sendBuffer);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private void receive(ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            if (this.channel.receive(buffer) == null) {
+                return;
+            }
+            buffer.flip();
+
+            // malformed or unsigned datagrams are ignored
+            read(buffer, this.mac, this.consumer::consumeIncomingMessageAsString);
+        }
+    }
+
+    static Mac createMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), MAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Signs the datagram between the buffer's position and limit.
+     *
+     * @param datagram the datagram, with space reserved for the mac
+     * @param mac the mac
+     */
+    static void sign(ByteBuffer datagram, Mac mac) {
+        int start = datagram.position();
+        mac.update(datagram.duplicate().position(start + COUNT_OFFSET));
+        datagram.put(start + MAC_OFFSET, mac.doFinal());
+    }
+
+    /**
+     * Reads the messages from the datagram between the buffer's position and
+     * limit, passing them to the consumer.
+     *
+     * <p>No messages are passed on unless the whole datagram is well-formed
+     * and signed with the shared secret.</p>
+     *
+     * @param datagram the datagram
+     * @param mac the mac
+     * @param consumer the message consumer
+     * @return true if the datagram was valid
+     */
+    static boolean read(ByteBuffer datagram, Mac mac, Consumer<String> consumer) {
+        int start = datagram.position();
+        if (datagram.remaining() < HEADER_SIZE || datagram.getInt(start) != MAGIC) {
+            return false;
+        }
+
+        byte[] signature = new byte[MAC_LENGTH];
+        datagram.get(start + MAC_OFFSET, signature);
+        mac.update(datagram.duplicate().position(start + COUNT_OFFSET));
+        if (!MessageDigest.isEqual(signature, mac.doFinal())) {
+            return false;
+        }
+
+        datagram.position(start + COUNT_OFFSET);
+        int count = datagram.getShort() & 0xFFFF;
+        List<String> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (datagram.remaining() < Integer.BYTES) {
+                return false;
+            }
+
+            // never trust the length enough to allocate more than was received
+            int length = datagram.getInt();
+            if (length < 0 || length > datagram.remaining()) {
+                return false;
+            }
+
+            byte[] message = new byte[length];
+            datagram.get(message);
+            messages.add(new String(message, StandardCharsets.UTF_8));
+        }
+
+        messages.forEach(consumer);
+        return true;
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        while (true) {
+            // a previous datagram could not be sent (socket buffer full), try again
+            if (buffer.hasRemaining()) {
+                if (this.channel.send(buffer, this.group) == 0) {
+                    return;
+                }
+                buffer.limit(0);
+            }
+
+            if (this.outgoing.isEmpty()) {
+                return;
+            }
+
+            buffer.clear();
+            buffer.position(HEADER_SIZE);
+
+            int count = 0;
+            byte[] message;
+            while (count < 0xFFFF && (message = this.outgoing.peek()) != null && buffer.remaining() >= Integer.BYTES + message.length) {
+                this.outgoing.poll();
+                buffer.putInt(message.length);
+                buffer.put(message);
+                count++;
+            }
+
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(COUNT_OFFSET, (short) count);
+            buffer.flip();
+            sign(buffer, this.mac);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        if (this.selector != null) {
+            this.selector.wakeup();
+        }
+
+        try {
+            if (this.ioThread != null) {
+                this.ioThread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            if (this.membership != null) {
+                this.membership.drop();
+            }
+            if (this.channel != null) {
+                this.channel.close();
+            }
+            if (this.selector != null) {
+                this.selector.close();
+            }
+        } catch (Exception e) {
+            this.plugin.getLogger().warn("An error occurred during closing messenger.", e);
+        }
+    }
+
+}
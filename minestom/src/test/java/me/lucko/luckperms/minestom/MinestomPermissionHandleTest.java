@@ -0,0 +1,85 @@
+package me.lucko.luckperms.minestom;
+
+import me.lucko.luckperms.common.cacheddata.UserCachedDataManager;
+import me.lucko.luckperms.common.cacheddata.type.MonitoredMetaCache;
+import me.lucko.luckperms.common.cacheddata.type.PermissionCache;
+import me.lucko.luckperms.common.model.User;
+import me.lucko.luckperms.common.query.QueryOptionsImpl;
+import me.lucko.luckperms.minestom.context.MinestomContextManager;
+import net.luckperms.api.query.QueryOptions;
+import net.minestom.server.entity.Player;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MinestomPermissionHandleTest {
+
+    private static final QueryOptions QUERY_OPTIONS = QueryOptionsImpl.DEFAULT_CONTEXTUAL;
+
+    private final UserCachedDataManager cachedData = mock(UserCachedDataManager.class);
+    private final PermissionCache first = mock(PermissionCache.class);
+    private final PermissionCache second = mock(PermissionCache.class);
+    private final MonitoredMetaCache meta = mock(MonitoredMetaCache.class);
+
+    private MinestomPermissionHandle handle;
+
+    @BeforeEach
+    public void setupHandle() {
+        LPMinestomPlugin plugin = mock(LPMinestomPlugin.class);
+        MinestomContextManager contextManager = mock(MinestomContextManager.class);
+        Player player = mock(Player.class);
+        User user = mock(User.class);
+
+        when(plugin.getContextManager()).thenReturn(contextManager);
+        when(contextManager.getQueryOptions(player)).thenReturn(QUERY_OPTIONS);
+        when(user.getCachedData()).thenReturn(this.cachedData);
+
+        when(this.cachedData.getPermissionData(QUERY_OPTIONS)).thenReturn(this.first, this.second);
+        when(this.cachedData.getMetaData(QUERY_OPTIONS)).thenReturn(this.meta);
+        when(this.cachedData.getPermissionDataIfPresent(QUERY_OPTIONS)).thenReturn(this.first);
+        when(this.cachedData.getMetaDataIfPresent(QUERY_OPTIONS)).thenReturn(this.meta);
+
+        this.handle = MinestomPermissionHandle.attach(plugin, player, user);
+    }
+
+    private static void waitForSnapshotExpiry() throws InterruptedException {
+        Thread.sleep(60);
+    }
+
+    @Test
+    public void testReusedWhilstHeld() throws InterruptedException {
+        assertSame(this.first, this.handle.getPermissionData());
+
+        waitForSnapshotExpiry();
+        assertSame(this.first, this.handle.getPermissionData());
+    }
+
+    @Test
+    public void testReloadedWhenEvicted() throws InterruptedException {
+        assertSame(this.first, this.handle.getPermissionData());
+
+        // evicted from the cached data manager, without the listener having run yet
+        when(this.cachedData.getPermissionDataIfPresent(QUERY_OPTIONS)).thenReturn(null);
+
+        waitForSnapshotExpiry();
+        assertSame(this.second, this.handle.getPermissionData());
+    }
+
+    @Test
+    public void testReloadedWhenNotified() {
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        verify(this.cachedData).addInvalidationListener(listener.capture());
+
+        assertSame(this.first, this.handle.getPermissionData());
+
+        // called by the cached data manager when the data is evicted
+        listener.getValue().run();
+        assertSame(this.second, this.handle.getPermissionData());
+    }
+
+}
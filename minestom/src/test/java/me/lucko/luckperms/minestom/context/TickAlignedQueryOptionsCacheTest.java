@@ -0,0 +1,112 @@
+package me.lucko.luckperms.minestom.context;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import net.luckperms.api.query.QueryOptions;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TickAlignedQueryOptionsCacheTest {
+
+    private final AtomicInteger calculations = new AtomicInteger();
+    private final Supplier<QueryOptions> calculator = () -> {
+        this.calculations.incrementAndGet();
+        return mock(QueryOptions.class);
+    };
+
+    @Test
+    public void testInvalidationsCoalescedUntilTick() {
+        TickAlignedQueryOptionsCache cache = new TickAlignedQueryOptionsCache(this.calculator);
+        QueryOptions initial = cache.getQueryOptions();
+        assertEquals(1, this.calculations.get());
+
+        // several invalidations within one tick - only the first marks the snapshot as stale
+        assertTrue(cache.invalidate());
+        assertFalse(cache.invalidate());
+        assertFalse(cache.invalidate());
+
+        // readers see the old snapshot until the tick boundary
+        assertSame(initial, cache.getQueryOptions());
+        assertEquals(1, this.calculations.get());
+
+        // tick boundary
+        assertTrue(cache.refresh());
+        assertEquals(2, this.calculations.get());
+        QueryOptions refreshed = cache.getQueryOptions();
+        assertNotSame(initial, refreshed);
+
+        // nothing changed during the next tick
+        assertFalse(cache.refresh());
+        assertEquals(2, this.calculations.get());
+        assertSame(refreshed, cache.getQueryOptions());
+    }
+
+    @Test
+    public void testConcurrentInvalidations() throws Exception {
+        TickAlignedQueryOptionsCache cache = new TickAlignedQueryOptionsCache(this.calculator);
+        cache.getQueryOptions();
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return cache.invalidate();
+                }));
+            }
+            start.countDown();
+
+            int marked = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    marked++;
+                }
+            }
+            assertEquals(1, marked);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(cache.refresh());
+        assertFalse(cache.refresh());
+        assertEquals(2, this.calculations.get());
+    }
+
+    @Test
+    public void testInvalidationDuringRefreshNotLost() {
+        AtomicReference<TickAlignedQueryOptionsCache> cache = new AtomicReference<>();
+        AtomicInteger calculations = new AtomicInteger();
+        cache.set(new TickAlignedQueryOptionsCache(() -> {
+            // a signal received whilst the second calculation is in progress
+            if (calculations.incrementAndGet() == 2) {
+                assertTrue(cache.get().invalidate());
+            }
+            return mock(QueryOptions.class);
+        }));
+
+        cache.get().getQueryOptions();
+        cache.get().invalidate();
+
+        assertTrue(cache.get().refresh());
+        assertTrue(cache.get().refresh());
+        assertFalse(cache.get().refresh());
+        assertEquals(3, calculations.get());
+    }
+
+}
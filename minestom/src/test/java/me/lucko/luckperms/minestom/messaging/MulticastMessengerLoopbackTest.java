@@ -0,0 +1,160 @@
+package me.lucko.luckperms.minestom.messaging;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import me.lucko.luckperms.common.plugin.LuckPermsPlugin;
+import net.luckperms.api.messenger.IncomingMessageConsumer;
+import net.luckperms.api.messenger.message.OutgoingMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Exchanges datagrams between messengers over the loopback of a real multicast group.
+ *
+ * <p>Skipped if multicast datagrams aren't delivered in the test environment.</p>
+ */
+public class MulticastMessengerLoopbackTest {
+
+    private static final String GROUP = "239.255.76.81";
+    private static final int TIMEOUT_MILLIS = 2000;
+
+    private final List<MulticastMessenger> messengers = new ArrayList<>();
+    private InetSocketAddress group;
+    private MulticastSocket listener;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        int port;
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        this.group = new InetSocketAddress(GROUP, port);
+
+        NetworkInterface networkInterface;
+        try {
+            networkInterface = MulticastMessenger.selectInterface("");
+        } catch (IllegalStateException e) {
+            assumeTrue(false, e.getMessage());
+            return;
+        }
+
+        // a plain socket in the same group, used to observe & inject datagrams
+        this.listener = new MulticastSocket(port);
+        this.listener.setNetworkInterface(networkInterface);
+        this.listener.setSoTimeout(TIMEOUT_MILLIS);
+        this.listener.joinGroup(this.group, networkInterface);
+
+        byte[] probe = "probe".getBytes(StandardCharsets.UTF_8);
+        this.listener.send(new DatagramPacket(probe, probe.length, this.group));
+        assumeTrue(receive() != null, "multicast datagrams are not delivered in this environment");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        this.messengers.forEach(MulticastMessenger::close);
+        if (this.listener != null) {
+            this.listener.close();
+        }
+    }
+
+    private MulticastMessenger start(IncomingMessageConsumer consumer, String secret) throws IOException {
+        MulticastMessenger messenger = new MulticastMessenger(mock(LuckPermsPlugin.class), consumer);
+        messenger.init(GROUP + ":" + this.group.getPort(), "", secret);
+        this.messengers.add(messenger);
+        return messenger;
+    }
+
+    private ByteBuffer receive() throws IOException {
+        DatagramPacket packet = new DatagramPacket(new byte[65536], 65536);
+        try {
+            this.listener.receive(packet);
+        } catch (SocketTimeoutException e) {
+            return null;
+        }
+        return ByteBuffer.wrap(packet.getData(), packet.getOffset(), packet.getLength());
+    }
+
+    private static OutgoingMessage message(String content) {
+        OutgoingMessage message = mock(OutgoingMessage.class);
+        when(message.getId()).thenReturn(UUID.randomUUID());
+        when(message.asEncodedString()).thenReturn(content);
+        return message;
+    }
+
+    @Test
+    public void testSendReceive() throws IOException {
+        IncomingMessageConsumer receiver = mock(IncomingMessageConsumer.class);
+        start(receiver, "secret");
+        MulticastMessenger sender = start(mock(IncomingMessageConsumer.class), "secret");
+
+        sender.sendOutgoingMessage(message("one"));
+        sender.sendOutgoingMessage(message("two"));
+        sender.sendOutgoingMessage(message("three"));
+
+        verify(receiver, timeout(TIMEOUT_MILLIS)).consumeIncomingMessageAsString("one");
+        verify(receiver, timeout(TIMEOUT_MILLIS)).consumeIncomingMessageAsString("two");
+        verify(receiver, timeout(TIMEOUT_MILLIS)).consumeIncomingMessageAsString("three");
+
+        // messages queued within the same flush interval are packed into a single datagram
+        ByteBuffer datagram = receive();
+        List<String> received = new ArrayList<>();
+        assertTrue(datagram != null && MulticastMessenger.read(datagram, MulticastMessenger.createMac("secret"), received::add));
+        assertEquals(List.of("one", "two", "three"), received);
+    }
+
+    @Test
+    public void testRejectsWrongSecret() throws IOException {
+        IncomingMessageConsumer receiver = mock(IncomingMessageConsumer.class);
+        start(receiver, "secret");
+        MulticastMessenger sender = start(mock(IncomingMessageConsumer.class), "other");
+
+        sender.sendOutgoingMessage(message("hello"));
+
+        // the datagram reached the group, but was dropped by the receiver
+        ByteBuffer datagram = receive();
+        List<String> received = new ArrayList<>();
+        assertTrue(datagram != null && MulticastMessenger.read(datagram, MulticastMessenger.createMac("other"), received::add));
+        assertEquals(List.of("hello"), received);
+
+        verify(receiver, after(500).never()).consumeIncomingMessageAsString(anyString());
+    }
+
+    @Test
+    public void testRejectsUnsigned() throws IOException {
+        IncomingMessageConsumer receiver = mock(IncomingMessageConsumer.class);
+        start(receiver, "secret");
+
+        // a well-formed datagram with an empty mac
+        byte[] message = "hello".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer datagram = ByteBuffer.allocate(MulticastMessenger.HEADER_SIZE + Integer.BYTES + message.length);
+        datagram.putInt(0x4C504D32);
+        datagram.position(MulticastMessenger.HEADER_SIZE - Short.BYTES);
+        datagram.putShort((short) 1).putInt(message.length).put(message);
+        this.listener.send(new DatagramPacket(datagram.array(), datagram.capacity(), this.group));
+
+        verify(receiver, after(500).never()).consumeIncomingMessageAsString(anyString());
+    }
+
+}
@@ -0,0 +1,130 @@
+package me.lucko.luckperms.minestom.messaging;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.Mac;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MulticastMessengerTest {
+
+    private static final int MAGIC = 0x4C504D32;
+
+    private final Mac mac = MulticastMessenger.createMac("secret");
+
+    private static ByteBuffer datagram(int count, byte[]... messages) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.putInt(MAGIC);
+        buffer.position(MulticastMessenger.HEADER_SIZE - Short.BYTES);
+        buffer.putShort((short) count);
+        for (byte[] message : messages) {
+            buffer.putInt(message.length);
+            buffer.put(message);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testRead() {
+        ByteBuffer datagram = datagram(2, utf8("hello"), utf8("world"));
+        MulticastMessenger.sign(datagram, this.mac);
+
+        List<String> received = new ArrayList<>();
+        assertTrue(MulticastMessenger.read(datagram, this.mac, received::add));
+        assertEquals(List.of("hello", "world"), received);
+    }
+
+    @Test
+    public void testWrongSecret() {
+        ByteBuffer datagram = datagram(1, utf8("hello"));
+        MulticastMessenger.sign(datagram, MulticastMessenger.createMac("other"));
+
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(datagram, this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testUnsigned() {
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(datagram(1, utf8("hello")), this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testTamperedMessage() {
+        ByteBuffer datagram = datagram(1, utf8("hello"));
+        MulticastMessenger.sign(datagram, this.mac);
+        datagram.put(datagram.limit() - 1, (byte) 'x');
+
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(datagram, this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testOversizedLength() {
+        ByteBuffer datagram = datagram(1);
+        ByteBuffer withLength = ByteBuffer.allocate(datagram.remaining() + Integer.BYTES);
+        withLength.put(datagram).putInt(Integer.MAX_VALUE).flip();
+        MulticastMessenger.sign(withLength, this.mac);
+
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(withLength, this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testTruncated() {
+        // claims two messages, only contains one - nothing should be passed on
+        ByteBuffer datagram = datagram(2, utf8("hello"));
+        MulticastMessenger.sign(datagram, this.mac);
+
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(datagram, this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testNotMulticastDatagram() {
+        List<String> received = new ArrayList<>();
+        assertFalse(MulticastMessenger.read(ByteBuffer.wrap(utf8("hello")), this.mac, received::add));
+        assertFalse(MulticastMessenger.read(ByteBuffer.allocate(0), this.mac, received::add));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testParseAddress() {
+        assertEquals(new InetSocketAddress("239.255.76.80", 25580), MulticastMessenger.parseAddress("239.255.76.80"));
+        assertEquals(new InetSocketAddress("239.255.76.80", 1234), MulticastMessenger.parseAddress("239.255.76.80:1234"));
+        assertEquals(new InetSocketAddress("ff02::1", 25580), MulticastMessenger.parseAddress("[ff02::1]"));
+        assertEquals(new InetSocketAddress("ff02::1", 1234), MulticastMessenger.parseAddress("[ff02::1]:1234"));
+    }
+
+    @Test
+    public void testParseInvalidAddress() {
+        List<String> invalid = List.of(
+                "", ":1234", "[]:1234",
+                "ff02::1", "ff02::1:1234", "[ff02::1", "[ff02::1]1234", "[ff02::1]:",
+                "239.255.76.80:", "239.255.76.80:abc", "239.255.76.80:0", "239.255.76.80:70000",
+                "127.0.0.1:1234", "[::1]:1234"
+        );
+        for (String address : invalid) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> MulticastMessenger.parseAddress(address), address);
+            assertTrue(e.getMessage().contains("multicast.address"), e.getMessage());
+        }
+    }
+
+}
@@ -71,8 +71,6 @@ public interface LPSubject {
 
     Optional<String> getOption(ImmutableContextSet contexts, String key);
 
-    void performCacheCleanup();
-
     void invalidateCaches();
 
 }
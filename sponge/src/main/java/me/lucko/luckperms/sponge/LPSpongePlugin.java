@@ -54,7 +54,6 @@ import me.lucko.luckperms.sponge.model.manager.SpongeUserManager;
 import me.lucko.luckperms.sponge.service.LuckPermsService;
 import me.lucko.luckperms.sponge.service.model.LPSubjectCollection;
 import me.lucko.luckperms.sponge.service.model.persisted.PersistedCollection;
-import me.lucko.luckperms.sponge.tasks.ServiceCacheHousekeepingTask;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 import net.luckperms.api.LuckPerms;
@@ -75,7 +74,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 /**
@@ -241,12 +239,6 @@ public class LPSpongePlugin extends AbstractLuckPermsPlugin {
         }
     }
 
-    @Override
-    protected void registerHousekeepingTasks() {
-        super.registerHousekeepingTasks();
-        this.bootstrap.getScheduler().asyncRepeating(new ServiceCacheHousekeepingTask(this.service), 2, TimeUnit.MINUTES);
-    }
-
     @Override
     protected void performFinalSetup() {
         // register permissions
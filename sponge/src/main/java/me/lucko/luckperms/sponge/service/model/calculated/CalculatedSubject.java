@@ -206,11 +206,6 @@ public abstract class CalculatedSubject implements LPSubject {
         return Optional.ofNullable(((MetaCache) this.cachedData.getMetaData(QueryOptionsImpl.DEFAULT_CONTEXTUAL.toBuilder().context(contexts).build())).getMetaValue(key, CheckOrigin.PLATFORM_API).result());
     }
 
-    @Override
-    public void performCacheCleanup() {
-        this.cachedData.performCacheCleanup();
-    }
-
     @Override
     public void invalidateCaches() {
         this.cachedData.invalidate();
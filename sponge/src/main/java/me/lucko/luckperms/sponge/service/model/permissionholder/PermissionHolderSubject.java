@@ -169,11 +169,6 @@ public abstract class PermissionHolderSubject<T extends PermissionHolder> implem
         return this.plugin.getService().getRootDefaults().getOption(contexts, s);
     }
 
-    @Override
-    public void performCacheCleanup() {
-        // do nothing, permission holders are "cleaned up" by a different task
-    }
-
     @Override
     public void invalidateCaches() {
         // invalidate for all changes